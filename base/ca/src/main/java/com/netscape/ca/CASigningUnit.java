@@ -116,6 +116,9 @@ public final class CASigningUnit extends SigningUnit {
             mDefSigningAlgorithm = checkSigningAlgorithmFromName(mDefSigningAlgname);
             logger.debug("SigningUnit: signing algorithm: " + mDefSigningAlgorithm);
 
+            // discard contexts initialized with the previous key
+            resetSignatureContexts(config.getMaxSignatureContexts());
+
             mInited = true;
 
         } catch (java.security.cert.CertificateException e) {
@@ -141,10 +144,11 @@ public final class CASigningUnit extends SigningUnit {
     }
 
     /**
+     * Creates a signature context initialized with the signing key.
+     *
      * @param algname is expected to be one of JCA's algorithm names.
      */
-    @Override
-    public byte[] sign(byte[] data, String algname) throws Exception {
+    public Signature getSignatureContext(String algname) throws Exception {
 
         if (!mInited) {
             throw new EBaseException("CASigningUnit not initialized");
@@ -164,7 +168,17 @@ public final class CASigningUnit extends SigningUnit {
         Signature signer = mToken.getSignatureContext(signAlg);
 
         signer.initSign(mPrivk);
-        signer.update(data);
+
+        return signer;
+    }
+
+    /**
+     * Completes the signature over the data that has been fed
+     * into the signature context.
+     *
+     * @param signer signature context from getSignatureContext()
+     */
+    public byte[] sign(Signature signer) throws Exception {
 
         /* debugging
         boolean testAutoShutdown = false;
@@ -185,6 +199,28 @@ public final class CASigningUnit extends SigningUnit {
         return signer.sign();
     }
 
+    /**
+     * @param algname is expected to be one of JCA's algorithm names.
+     */
+    @Override
+    public byte[] sign(byte[] data, String algname) throws Exception {
+
+        if (!mInited) {
+            throw new EBaseException("CASigningUnit not initialized");
+        }
+
+        Signature signer = getReusableSignatureContext(algname);
+
+        try {
+            signer.update(data);
+            return sign(signer);
+
+        } catch (Exception e) {
+            discardSignatureContext(algname);
+            throw e;
+        }
+    }
+
     @Override
     public boolean verify(byte[] data, byte[] signature, String algname) throws Exception {
 
@@ -5,6 +5,7 @@
 //
 package com.netscape.ca;
 
+import com.netscape.certsrv.base.EBaseException;
 import com.netscape.cmscore.base.ConfigStorage;
 import com.netscape.cmscore.base.ConfigStore;
 import com.netscape.cmscore.base.SimpleProperties;
@@ -22,6 +23,18 @@ public class CRLConfig extends ConfigStore {
         super(name, source);
     }
 
+    /**
+     * Returns the maximum number of CRL issuing points
+     * that can be updated at the same time.
+     */
+    public int getMaxUpdateThreads() throws EBaseException {
+        return getInteger("maxUpdateThreads", 4);
+    }
+
+    public void setMaxUpdateThreads(int maxUpdateThreads) {
+        putInteger("maxUpdateThreads", maxUpdateThreads);
+    }
+
     /**
      * Returns ca.crl.<name>.* parameters.
      */
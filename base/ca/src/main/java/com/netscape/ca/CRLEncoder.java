@@ -0,0 +1,369 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.ca;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.SignatureException;
+import java.security.cert.CRLException;
+import java.util.Date;
+import java.util.Hashtable;
+import java.util.Map;
+
+import org.mozilla.jss.crypto.Signature;
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+import org.mozilla.jss.netscape.security.util.DerValue;
+import org.mozilla.jss.netscape.security.x509.AlgorithmId;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
+import org.mozilla.jss.netscape.security.x509.X509ExtensionException;
+
+/**
+ * This class encodes a CRL directly from the revoked certificate table
+ * without materializing an X509CRLImpl for the whole list.
+ *
+ * The revokedCertificates SEQUENCE is sized in a first pass and then
+ * written entry by entry into an exactly sized TBSCertList buffer, which
+ * is fed into the signature context as it is produced. The fields
+ * surrounding the revoked certificates are taken from an X509CRLImpl
+ * holding a single entry, so the output is byte-identical to the one
+ * produced by X509CRLImpl.encodeInfo() and CertificateAuthority.sign()
+ * for the same order of entries. Entries are written in the iteration
+ * order of the supplied map, i.e. sorted by serial number for sorted
+ * snapshots of the CRL cache.
+ */
+public class CRLEncoder {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CRLEncoder.class);
+
+    private X500Name issuer;
+    private AlgorithmId algId;
+    private Date thisUpdate;
+    private Date nextUpdate;
+    private Map<BigInteger, RevokedCertificate> revokedCerts;
+    private CRLExtensions extensions;
+
+    public CRLEncoder(
+            X500Name issuer,
+            AlgorithmId algId,
+            Date thisUpdate,
+            Date nextUpdate,
+            Map<BigInteger, RevokedCertificate> revokedCerts,
+            CRLExtensions extensions) {
+
+        this.issuer = issuer;
+        this.algId = algId;
+        this.thisUpdate = thisUpdate;
+        this.nextUpdate = nextUpdate;
+        this.revokedCerts = revokedCerts;
+        this.extensions = extensions;
+    }
+
+    public int size() {
+        return revokedCerts.size();
+    }
+
+    /**
+     * Encodes the TBSCertList and feeds it into the signature context.
+     *
+     * @param signer signature context initialized for signing, or null
+     *            to encode without signing
+     * @return DER encoding of the TBSCertList
+     */
+    public byte[] encodeInfo(Signature signer)
+            throws CRLException, X509ExtensionException, IOException, SignatureException {
+
+        if (revokedCerts.isEmpty()) {
+            // nothing to stream, use the regular encoder
+            X509CRLImpl crl = new X509CRLImpl(issuer, algId, thisUpdate, nextUpdate, new Hashtable<>(), extensions);
+            try (DerOutputStream out = new DerOutputStream()) {
+                crl.encodeInfo(out);
+                byte[] tbsCertList = out.toByteArray();
+                if (signer != null) {
+                    signer.update(tbsCertList);
+                }
+                return tbsCertList;
+            }
+        }
+
+        // Encode the CRL with a single entry to obtain the fields before
+        // and after the revokedCertificates SEQUENCE. An entry with
+        // extensions is preferred since it determines the CRL version.
+        RevokedCertificate sample = null;
+        for (RevokedCertificate entry : revokedCerts.values()) {
+            if (sample == null || entry.hasExtensions()) {
+                sample = entry;
+            }
+            if (sample.hasExtensions()) {
+                break;
+            }
+        }
+
+        Hashtable<BigInteger, RevokedCertificate> sampleCerts = new Hashtable<>();
+        sampleCerts.put(sample.getSerialNumber(), sample);
+
+        byte[] sampleInfo;
+        X509CRLImpl sampleCRL = new X509CRLImpl(issuer, algId, thisUpdate, nextUpdate, sampleCerts, extensions);
+        try (DerOutputStream out = new DerOutputStream()) {
+            sampleCRL.encodeInfo(out);
+            sampleInfo = out.toByteArray();
+        }
+
+        // locate revokedCertificates in the sample TBSCertList
+        int start = headerLength(sampleInfo, 0);
+        int offset = findRevokedCertificates(sampleInfo);
+
+        if (offset < 0) {
+            throw new CRLException("Unable to locate revoked certificates in CRL");
+        }
+
+        int headerEnd = offset;
+        int trailerStart = offset + headerLength(sampleInfo, offset) + contentLength(sampleInfo, offset);
+
+        // first pass: compute the size of the revokedCertificates SEQUENCE
+        long entriesLength = 0;
+        try (DerOutputStream entry = new DerOutputStream()) {
+            for (RevokedCertificate revokedCert : revokedCerts.values()) {
+                entry.reset();
+                ((RevokedCertImpl) revokedCert).encode(entry);
+                entriesLength += entry.size();
+            }
+        }
+
+        long contentLength = (headerEnd - start)
+                + lengthOf(entriesLength)
+                + (sampleInfo.length - trailerStart);
+
+        long totalLength = lengthOf(contentLength);
+        if (totalLength > Integer.MAX_VALUE) {
+            throw new CRLException("CRL too large: " + totalLength + " bytes");
+        }
+
+        logger.debug("CRLEncoder: Encoding " + revokedCerts.size() + " entries into " + totalLength + " bytes");
+
+        // second pass: write the TBSCertList
+        SigningOutputStream out = new SigningOutputStream(new byte[(int) totalLength], signer);
+
+        writeHeader(out, DerValue.tag_Sequence, contentLength);
+        out.write(sampleInfo, start, headerEnd - start);
+
+        writeHeader(out, DerValue.tag_Sequence, entriesLength);
+        long written = 0;
+        try (DerOutputStream entry = new DerOutputStream()) {
+            for (RevokedCertificate revokedCert : revokedCerts.values()) {
+                entry.reset();
+                ((RevokedCertImpl) revokedCert).encode(entry);
+                written += entry.size();
+                if (written > entriesLength) {
+                    break;
+                }
+                entry.writeTo(out);
+            }
+        }
+
+        if (written != entriesLength) {
+            throw new CRLException("Revoked certificates changed while encoding CRL");
+        }
+
+        out.write(sampleInfo, trailerStart, sampleInfo.length - trailerStart);
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Wraps the TBSCertList and its signature into a signed CRL.
+     *
+     * @param tbsCertList DER encoding of the TBSCertList
+     * @param signatureAlgId signature algorithm
+     * @param signature signature over the TBSCertList
+     * @return DER encoding of the signed CRL
+     */
+    public byte[] encode(byte[] tbsCertList, AlgorithmId signatureAlgId, byte[] signature)
+            throws IOException {
+
+        byte[] trailer;
+        try (DerOutputStream tmp = new DerOutputStream()) {
+            signatureAlgId.encode(tmp);
+            tmp.putBitString(signature);
+            trailer = tmp.toByteArray();
+        }
+
+        long contentLength = (long) tbsCertList.length + trailer.length;
+        long totalLength = lengthOf(contentLength);
+        if (totalLength > Integer.MAX_VALUE) {
+            throw new IOException("CRL too large: " + totalLength + " bytes");
+        }
+
+        SigningOutputStream out = new SigningOutputStream(new byte[(int) totalLength], null);
+        writeHeader(out, DerValue.tag_Sequence, contentLength);
+        out.write(tbsCertList);
+        out.write(trailer);
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the offset of the revokedCertificates SEQUENCE in a
+     * TBSCertList, i.e. the first SEQUENCE following thisUpdate,
+     * or -1 if the CRL has no revoked certificates.
+     */
+    static int findRevokedCertificates(byte[] tbsCertList) throws CRLException {
+
+        int offset = headerLength(tbsCertList, 0);
+        boolean timeFound = false;
+
+        while (offset < tbsCertList.length) {
+            byte tag = tbsCertList[offset];
+            if (timeFound && tag == DerValue.tag_Sequence) {
+                return offset;
+            }
+            if (tag == DerValue.tag_UtcTime || tag == DerValue.tag_GeneralizedTime) {
+                timeFound = true;
+            }
+            offset += headerLength(tbsCertList, offset) + contentLength(tbsCertList, offset);
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the size of a DER TLV with the given content length.
+     */
+    static long lengthOf(long contentLength) {
+
+        long length = 1 + contentLength;
+
+        if (contentLength < 128) {
+            return length + 1;
+        }
+
+        for (long l = contentLength; l > 0; l >>= 8) {
+            length++;
+        }
+
+        return length + 1;
+    }
+
+    static void writeHeader(OutputStream out, byte tag, long contentLength) throws IOException {
+
+        out.write(tag);
+
+        if (contentLength < 128) {
+            out.write((int) contentLength);
+            return;
+        }
+
+        int bytes = 0;
+        for (long l = contentLength; l > 0; l >>= 8) {
+            bytes++;
+        }
+
+        out.write(0x80 | bytes);
+        for (int i = bytes - 1; i >= 0; i--) {
+            out.write((int) (contentLength >> (8 * i)));
+        }
+    }
+
+    static int headerLength(byte[] data, int offset) throws CRLException {
+
+        if (offset + 1 >= data.length) {
+            throw new CRLException("Invalid DER encoding");
+        }
+
+        int b = data[offset + 1] & 0xff;
+        if (b < 128) {
+            return 2;
+        }
+
+        return 2 + (b & 0x7f);
+    }
+
+    static int contentLength(byte[] data, int offset) throws CRLException {
+
+        int b = data[offset + 1] & 0xff;
+        if (b < 128) {
+            return b;
+        }
+
+        int bytes = b & 0x7f;
+        if (bytes > 4 || offset + 2 + bytes > data.length) {
+            throw new CRLException("Invalid DER length");
+        }
+
+        int length = 0;
+        for (int i = 0; i < bytes; i++) {
+            length = (length << 8) | (data[offset + 2 + i] & 0xff);
+        }
+
+        return length;
+    }
+
+    /**
+     * Output stream writing into a fixed size buffer that optionally
+     * updates a signature context with the data written.
+     */
+    static class SigningOutputStream extends OutputStream {
+
+        private byte[] buffer;
+        private int count;
+        private Signature signer;
+
+        SigningOutputStream(byte[] buffer, Signature signer) {
+            this.buffer = buffer;
+            this.signer = signer;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+
+            if (count + len > buffer.length) {
+                throw new IOException("CRL buffer overflow");
+            }
+
+            System.arraycopy(b, off, buffer, count, len);
+
+            if (signer != null) {
+                try {
+                    signer.update(b, off, len);
+                } catch (SignatureException e) {
+                    throw new IOException("Unable to update signature: " + e.getMessage(), e);
+                }
+            }
+
+            count += len;
+        }
+
+        public byte[] toByteArray() throws IOException {
+
+            if (count != buffer.length) {
+                throw new IOException("CRL buffer underflow: " + count + " of " + buffer.length + " bytes");
+            }
+
+            return buffer;
+        }
+    }
+}
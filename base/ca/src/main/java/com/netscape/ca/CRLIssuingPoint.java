@@ -19,15 +19,26 @@ package com.netscape.ca;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TimeZone;
+import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 
 import org.dogtagpki.server.ca.CAConfig;
 import org.dogtagpki.server.ca.CAEngine;
@@ -67,6 +78,7 @@ import com.netscape.cms.logging.Logger;
 import com.netscape.cms.logging.SignedAuditLogger;
 import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.dbs.CRLCacheJournalEntry;
 import com.netscape.cmscore.dbs.CRLIssuingPointRecord;
 import com.netscape.cmscore.dbs.CRLRepository;
 import com.netscape.cmscore.dbs.CertRecord;
@@ -77,6 +89,8 @@ import com.netscape.cmscore.ldap.LdapRule;
 import com.netscape.cmscore.request.CertRequestRepository;
 import com.netscape.cmscore.request.Request;
 
+import netscape.ldap.LDAPException;
+
 /**
  * This class encapsulates CRL issuing mechanism. CertificateAuthority
  * contains a map of CRLIssuingPoint indexed by string ids. Each issuing
@@ -179,12 +193,12 @@ public class CRLIssuingPoint implements Runnable {
     private String mDescription = null;
 
     /**
-     * CRL cache
+     * CRL cache sorted by serial number
      */
-    private Hashtable<BigInteger, RevokedCertificate> mCRLCerts = new Hashtable<>();
-    private Hashtable<BigInteger, RevokedCertificate> mRevokedCerts = new Hashtable<>();
-    private Hashtable<BigInteger, RevokedCertificate> mUnrevokedCerts = new Hashtable<>();
-    private Hashtable<BigInteger, RevokedCertificate> mExpiredCerts = new Hashtable<>();
+    private RevocationIndex mCRLCerts = new RevocationIndex();
+    private RevocationIndex mRevokedCerts = new RevocationIndex();
+    private RevocationIndex mUnrevokedCerts = new RevocationIndex();
+    private RevocationIndex mExpiredCerts = new RevocationIndex();
     private boolean mIncludeExpiredCerts = false;
     private boolean mIncludeExpiredCertsOneExtraTime = false;
     private boolean mCACertsOnly = false;
@@ -201,6 +215,16 @@ public class CRLIssuingPoint implements Runnable {
     private String mFirstUnsaved = null;
     private boolean mEnableCacheTesting = false;
 
+    /**
+     * Enable CRL cache journal. Each change of the CRL cache is
+     * appended to the issuing point record as a separate value
+     * instead of rewriting the whole cache.
+     */
+    private boolean mEnableCacheJournal = false;
+    private int mCacheJournalMaxEntries;
+    private int mCacheJournalSize = 0;
+    private long mCacheJournalSequence = 0;
+
     /**
      * Last CRL cache update
      */
@@ -327,10 +351,24 @@ public class CRLIssuingPoint implements Runnable {
     private boolean mExtendedNextUpdate;
 
     /**
-     * Worker thread doing auto-update
+     * Auto-update task scheduled on the shared CRL update executor
+     */
+    private ScheduledFuture<?> mUpdateTask = null;
+    private long mUpdateTaskTime = 0;
+
+    /**
+     * Executor thread currently running auto-update
      */
     private Thread mUpdateThread = null;
 
+    /**
+     * State used to slow down auto-updates when depending
+     * components are not available: e.g. Directory server, HSM
+     */
+    private boolean mUnexpectedFailure = false;
+    private long mTimeOfUnexpectedFailure = 0;
+    private int mLoopCounter = 0;
+
     /**
      * for going one more round when auto-interval is set to 0 (turned off)
      */
@@ -369,10 +407,21 @@ public class CRLIssuingPoint implements Runnable {
     private String mSignatureAlgorithmForManualUpdate = null;
 
     private boolean mPublishOnStart = false;
-    private long[] mSplits = new long[10];
+
+    /**
+     * Timing metrics of CRL updates.
+     */
+    private CRLUpdateMetrics mMetrics;
 
     private boolean mSaveMemory = false;
 
+    /**
+     * Boolean flag controlling whether CRLs are streamed into the
+     * encoder and signature context instead of being materialized
+     * as X509CRLImpl objects.
+     */
+    private boolean mStreamingEncoding = false;
+
     /**
      * One time config flag that we have an updated schedule and we want it
      * followed immediately after startup.
@@ -591,6 +640,7 @@ public class CRLIssuingPoint implements Runnable {
     public void init(CertificateAuthority ca, String id, CRLIssuingPointConfig config) throws EBaseException {
         mCA = ca;
         mId = id;
+        mMetrics = new CRLUpdateMetrics(id);
 
         if (mId.equals(CertificateAuthority.PROP_MASTER_CRL)) {
             mCrlUpdateStatus = Request.CRL_UPDATE_STATUS;
@@ -632,10 +682,6 @@ public class CRLIssuingPoint implements Runnable {
                     crlListName, new RevocationRequestListener(this));
         }
 
-        for (int i = 0; i < mSplits.length; i++) {
-            mSplits[i] = 0;
-        }
-
         // this will start a thread if necessary for automatic updates.
         setAutoUpdates();
     }
@@ -832,6 +878,8 @@ public class CRLIssuingPoint implements Runnable {
         mCacheUpdateInterval = MINUTE * config.getCacheUpdateInterval();
         mEnableCacheRecovery = config.getEnableCacheRecovery();
         mEnableCacheTesting = config.getEnableCacheTesting();
+        mEnableCacheJournal = config.getEnableCacheJournal();
+        mCacheJournalMaxEntries = config.getCacheJournalMaxEntries();
 
         // check if CRL generation is enabled
         mEnableCRLUpdates = config.getEnableCRLUpdates();
@@ -903,6 +951,7 @@ public class CRLIssuingPoint implements Runnable {
         mPublishDN = config.getPublishDN();
 
         mSaveMemory = config.getSaveMemory();
+        mStreamingEncoding = config.getStreamingEncoding();
 
         mCMSCRLExtensions = new CMSCRLExtensions(this, config);
 
@@ -956,7 +1005,12 @@ public class CRLIssuingPoint implements Runnable {
             logger.warn("CRLIssuingPoint: CRL issuing point not found: " + mId);
         }
 
+        boolean journalReplayed = false;
+
         if (crlRecord != null) {
+            Vector<CRLCacheJournalEntry> journal = crlRecord.getCRLCacheJournal();
+            mCacheJournalSize = journal == null ? 0 : journal.size();
+
             mCRLNumber = crlRecord.getCRLNumber();
             if (crlRecord.getCRLSize() != null) {
                 mCRLSize = crlRecord.getCRLSize().longValue();
@@ -1031,27 +1085,26 @@ public class CRLIssuingPoint implements Runnable {
                         mLastFullUpdate = x509crl.getThisUpdate();
                         if (mEnableCRLCache) {
                             if (mCRLCacheIsCleared && mUpdatingCRL == CRL_UPDATE_DONE) {
-                                mRevokedCerts = crlRecord.getRevokedCerts();
-                                if (mRevokedCerts == null) {
-                                    mRevokedCerts = new Hashtable<>();
-                                }
-                                mUnrevokedCerts = crlRecord.getUnrevokedCerts();
-                                if (mUnrevokedCerts == null) {
-                                    mUnrevokedCerts = new Hashtable<>();
-                                }
-                                mExpiredCerts = crlRecord.getExpiredCerts();
-                                if (mExpiredCerts == null) {
-                                    mExpiredCerts = new Hashtable<>();
-                                }
+                                mRevokedCerts = new RevocationIndex(crlRecord.getRevokedCerts());
+                                mUnrevokedCerts = new RevocationIndex(crlRecord.getUnrevokedCerts());
+                                mExpiredCerts = new RevocationIndex(crlRecord.getExpiredCerts());
                                 if (isDeltaCRLEnabled()) {
                                     mNextUpdate = x509crl.getNextUpdate();
                                 }
-                                mCRLCerts = x509crl.getListOfRevokedCertificates();
+                                mCRLCerts = new RevocationIndex(x509crl.getListOfRevokedCertificates());
+                                replayCRLCacheJournal(journal);
+                                journalReplayed = true;
                             }
+                            // recover requests that were not saved into the
+                            // CRL cache or the journal
                             if (mFirstUnsaved != null && !mFirstUnsaved.equals(CRLIssuingPointRecord.CLEAN_CACHE)) {
                                 recoverCRLCache();
                             } else {
                                 mCRLCacheIsCleared = false;
+                                if (journalReplayed && mCacheJournalSize > 0) {
+                                    // merge the journal into the stored CRL cache
+                                    updateCRLCacheRepository();
+                                }
                             }
                             mInitialized = CRLIssuingPointStatus.Initialized;
                         }
@@ -1076,6 +1129,23 @@ public class CRLIssuingPoint implements Runnable {
             }
         }
 
+        if (!journalReplayed && mCacheJournalSize > 0) {
+            // The CRL cache will be rebuilt from the database. Remove the
+            // journal now since the sequence numbers restart at 0 and its
+            // outdated entries must not be replayed after a later restart.
+            logger.info("CRLIssuingPoint: Removing " + mCacheJournalSize + " CRL cache journal entries");
+            try {
+                mCRLRepository.clearCRLCacheJournal(mId);
+                mCacheJournalSize = 0;
+            } catch (EBaseException e) {
+                // don't mix new entries with the outdated ones,
+                // the journal is removed when the cache is saved
+                logger.warn("CRLIssuingPoint: Disabling CRL cache journal for " + mId
+                        + ", unable to remove outdated entries: " + e.getMessage(), e);
+                mEnableCacheJournal = false;
+            }
+        }
+
         if (crlRecord == null) {
             // no crl was ever created, or crl in db is corrupted.
             logger.info("CRLIssuingPoint: creating new CRL issuing point: " + mId);
@@ -1097,7 +1167,9 @@ public class CRLIssuingPoint implements Runnable {
 
                 crlRecord = new CRLIssuingPointRecord(mId, startingCrlNumberBig, Long.valueOf(-1),
                                                null, null, BigInteger.ZERO, Long.valueOf(-1),
-                                          mRevokedCerts, mUnrevokedCerts, mExpiredCerts);
+                                          mRevokedCerts.view(),
+                                          mUnrevokedCerts.view(),
+                                          mExpiredCerts.view());
                 mCRLRepository.addCRLIssuingPointRecord(crlRecord);
                 mCRLNumber = startingCrlNumberBig;
 
@@ -1638,7 +1710,7 @@ public class CRLIssuingPoint implements Runnable {
      */
 
     private synchronized void setAutoUpdates() {
-        if ((mEnable && mUpdateThread == null) &&
+        if ((mEnable && mUpdateTask == null) &&
                 ((mEnableCRLCache && mCacheUpdateInterval > 0) ||
                 (mEnableCRLUpdates &&
                 ((mEnableDailyUpdates && mDailyUpdates != null &&
@@ -1649,9 +1721,7 @@ public class CRLIssuingPoint implements Runnable {
 
             logger.info(CMS.getLogMessage("CMSCORE_CA_ISSUING_START_CRL", mId));
 
-            mUpdateThread = new Thread(this, "CRLIssuingPoint-" + mId);
-            mUpdateThread.setDaemon(true);
-            mUpdateThread.start();
+            scheduleUpdate(0);
         }
 
         if (isCRLIssuingPointInitialized() && (((mNextUpdate != null) ^
@@ -1667,6 +1737,48 @@ public class CRLIssuingPoint implements Runnable {
         }
 
         notifyAll();
+        rescheduleUpdate();
+    }
+
+    /**
+     * Schedules auto-update on the shared CRL update executor.
+     *
+     * @param delay delay in milliseconds
+     */
+    private synchronized void scheduleUpdate(long delay) {
+
+        CAEngine engine = CAEngine.getInstance();
+        ScheduledThreadPoolExecutor executor = engine.getCRLUpdateExecutor();
+
+        if (executor == null) {
+            logger.warn("CRLIssuingPoint: CRL update executor not available for " + mId);
+            return;
+        }
+
+        try {
+            mUpdateTaskTime = System.currentTimeMillis() + delay;
+            mUpdateTask = executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+
+        } catch (RejectedExecutionException e) {
+            logger.warn("CRLIssuingPoint: Unable to schedule update for " + mId + ": " + e.getMessage());
+            mUpdateTask = null;
+        }
+    }
+
+    /**
+     * Reschedules pending auto-update to run immediately so that
+     * it picks up changed settings. An update that is currently
+     * running will calculate the next delay when it completes.
+     */
+    private synchronized void rescheduleUpdate() {
+
+        if (mUpdateTask == null || mUpdateThread != null) {
+            return;
+        }
+
+        if (mUpdateTask.cancel(false)) {
+            scheduleUpdate(0);
+        }
     }
 
     /**
@@ -1679,8 +1791,9 @@ public class CRLIssuingPoint implements Runnable {
         if (!mDoManualUpdate) {
             mDoManualUpdate = true;
             mSignatureAlgorithmForManualUpdate = signatureAlgorithm;
-            if (mEnableUpdateFreq && mAutoUpdateInterval > 0 && mUpdateThread != null) {
+            if (mEnableUpdateFreq && mAutoUpdateInterval > 0 && mUpdateTask != null) {
                 notifyAll();
+                rescheduleUpdate();
             } else {
                 setAutoUpdates();
             }
@@ -1954,14 +2067,18 @@ public class CRLIssuingPoint implements Runnable {
         return (fromLastUpdate) ? next - now : next;
     }
 
-    public void handleUnexpectedFailure(int loopCounter, long timeOfUnexpectedFailure) {
+    /**
+     * Returns the time in milliseconds to wait after an unexpected
+     * failure before the next update attempt.
+     */
+    public long handleUnexpectedFailure(int loopCounter, long timeOfUnexpectedFailure) {
 
         logger.info("CRLIssuingPoint: Handling unexpected failure");
         logger.info("CRLIssuingPoint: - loop counter: " + loopCounter);
 
         if (loopCounter <= mUnexpectedExceptionLoopMax) {
             logger.info("CRLIssuingPoint: Max loop not reached, no wait time");
-            return;
+            return 0;
         }
 
         logger.info("CRLIssuingPoint: Max loop reached, slowdown procedure ensues");
@@ -1978,135 +2095,164 @@ public class CRLIssuingPoint implements Runnable {
 
         if (waitTime <= 0) {
             logger.info("CRLIssuingPoint: No wait after failure");
-            return;
+            return 0;
         }
 
         logger.info("CRLIssuingPoint: Waiting for " + waitTime + " ms");
 
-        try {
-            wait(waitTime);
-
-        } catch (InterruptedException e) {
-            logger.error("CRLIssuingPoint: " + e.getMessage(), e);
-        }
-
         // timeOfUnexpectedFailure will be reset again if it still fails
+        return waitTime;
     }
 
     /**
      * Implements Runnable interface. Defines auto-update
-     * logic used by worker thread.
+     * logic executed by the shared CRL update executor.
+     * Each run performs a single update step and schedules
+     * the next one.
      * <P>
      */
     @Override
     public void run() {
-        /*
-         * mechnism to slow down the infinite loop when depending
-         * components are not available: e.g. Directory server, HSM
-         */
-        boolean unexpectedFailure = false;
-        long timeOfUnexpectedFailure = 0;
-        int loopCounter = 0;
 
-        try {
-            while (mEnable && ((mEnableCRLCache && mCacheUpdateInterval > 0) ||
-                    (mInitialized == CRLIssuingPointStatus.NotInitialized) ||
-                    mDoLastAutoUpdate || (mEnableCRLUpdates &&
-                    ((mEnableDailyUpdates && mDailyUpdates != null &&
-                            mTimeListSize > 0) ||
-                            (mEnableUpdateFreq && mAutoUpdateInterval > 0) ||
-                    mDoManualUpdate)))) {
-
-                synchronized (this) {
-                    long delay = 0;
-                    long delay2 = 0;
-                    boolean doCacheUpdate = false;
-                    boolean scheduledUpdates = mEnableCRLUpdates &&
-                            ((mEnableDailyUpdates && mDailyUpdates != null &&
-                            mTimeListSize > 0) ||
-                            (mEnableUpdateFreq && mAutoUpdateInterval > 0));
-
-                    if (mInitialized == CRLIssuingPointStatus.NotInitialized) {
-                        initCRL();
-                    }
+        CAEngine engine = CAEngine.getInstance();
 
-                    if ((mEnableCRLUpdates && mDoManualUpdate) || mDoLastAutoUpdate) {
-                        delay = 0;
-                    } else if (scheduledUpdates) {
-                        delay = findNextUpdate(true, false);
-                    }
+        synchronized (this) {
+            long queueWait = Math.max(0, System.currentTimeMillis() - mUpdateTaskTime);
+            int queueDepth = engine.getCRLUpdateQueueDepth();
+            mMetrics.queued(queueWait);
 
-                    if (mEnableCRLCache && mCacheUpdateInterval > 0) {
-                        delay2 = mLastCacheUpdate + mCacheUpdateInterval -
-                                System.currentTimeMillis();
-                        if (delay2 < delay ||
-                                (!(scheduledUpdates || mDoLastAutoUpdate ||
-                                (mEnableCRLUpdates && mDoManualUpdate)))) {
-                            delay = delay2;
-                            if (delay <= 0) {
-                                doCacheUpdate = true;
-                                mLastCacheUpdate = System.currentTimeMillis();
-                            }
-                        }
-                    }
+            logger.debug("CRLIssuingPoint: Running update for " + mId +
+                    " (queue wait: " + queueWait + " ms, queue depth: " + queueDepth + ")");
 
-                    if (delay > 0) {
-                        try {
-                            wait(delay);
-                        } catch (InterruptedException e) {
-                        }
-                    } else {
-                        /*
-                         * handle last failure so we don't get into
-                         * non-delayed loop
-                         */
-                        if (unexpectedFailure == true) {
-                            // it gets mUnexpectedExceptionLoopMax tries
-                            loopCounter++;
-                            handleUnexpectedFailure(loopCounter, timeOfUnexpectedFailure);
-                        }
+            mUpdateThread = Thread.currentThread();
+            long delay;
 
-                        logger.debug("CRLIssuingPoint:run(): before CRL generation");
-                        try {
-                            if (doCacheUpdate) {
-                                updateCRLCacheRepository();
-                            } else if (mAutoUpdateInterval > 0 || mDoLastAutoUpdate || mDoManualUpdate) {
-                                updateCRL();
-                            }
-                            // reset if no exception
-                            if (unexpectedFailure == true) {
-                                logger.debug("CRLIssuingPoint:run(): reset unexpectedFailure values if no Exception.");
-                                unexpectedFailure = false;
-                                timeOfUnexpectedFailure = 0;
-                                loopCounter = 0;
-                            }
-                        } catch (Exception e) {
-                            logger.debug("CRLIssuingPoint:run(): unexpectedFailure occurred:" + e);
-                            unexpectedFailure = true;
-                            timeOfUnexpectedFailure = System.currentTimeMillis();
-                            logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_CRL",
-                                    (doCacheUpdate) ? "update CRL cache" : "update CRL", e.toString()));
-                            logger.warn((doCacheUpdate) ? "update CRL cache" : "update CRL" + " error " + e, e);
-                        }
-                        // put this here to prevent continuous loop if internal
-                        // db is down.
-                        if (mDoLastAutoUpdate)
-                            logger.debug("CRLIssuingPoint:run(): mDoLastAutoUpdate set to false");
-                            mDoLastAutoUpdate = false;
-                        if (mDoManualUpdate) {
-                            logger.debug("CRLIssuingPoint:run(): mDoManualUpdate set to false");
-                            mDoManualUpdate = false;
-                            mSignatureAlgorithmForManualUpdate = null;
-                        }
-                    }
+            try {
+                delay = runUpdate();
+
+            } catch (EBaseException e) {
+                logger.warn("CRLIssuingPoint: " + e.getMessage(), e);
+                delay = -1;
+
+            } finally {
+                mUpdateThread = null;
+            }
+
+            if (delay < 0) {
+                logger.debug("CRLIssuingPoint:run(): auto-update stopped");
+                mUpdateTask = null;
+                return;
+            }
+
+            scheduleUpdate(delay);
+        }
+    }
+
+    /**
+     * Performs a single auto-update step.
+     *
+     * @return delay in milliseconds before the next step, or -1 if
+     *         auto-updates should stop
+     */
+    private synchronized long runUpdate() throws EBaseException {
+
+        if (!(mEnable && ((mEnableCRLCache && mCacheUpdateInterval > 0) ||
+                (mInitialized == CRLIssuingPointStatus.NotInitialized) ||
+                mDoLastAutoUpdate || (mEnableCRLUpdates &&
+                ((mEnableDailyUpdates && mDailyUpdates != null &&
+                        mTimeListSize > 0) ||
+                        (mEnableUpdateFreq && mAutoUpdateInterval > 0) ||
+                mDoManualUpdate))))) {
+            return -1;
+        }
 
+        long delay = 0;
+        long delay2 = 0;
+        boolean doCacheUpdate = false;
+        boolean scheduledUpdates = mEnableCRLUpdates &&
+                ((mEnableDailyUpdates && mDailyUpdates != null &&
+                mTimeListSize > 0) ||
+                (mEnableUpdateFreq && mAutoUpdateInterval > 0));
+
+        if (mInitialized == CRLIssuingPointStatus.NotInitialized) {
+            initCRL();
+        }
+
+        if ((mEnableCRLUpdates && mDoManualUpdate) || mDoLastAutoUpdate) {
+            delay = 0;
+        } else if (scheduledUpdates) {
+            delay = findNextUpdate(true, false);
+        }
+
+        if (mEnableCRLCache && mCacheUpdateInterval > 0) {
+            delay2 = mLastCacheUpdate + mCacheUpdateInterval -
+                    System.currentTimeMillis();
+            if (delay2 < delay ||
+                    (!(scheduledUpdates || mDoLastAutoUpdate ||
+                    (mEnableCRLUpdates && mDoManualUpdate)))) {
+                delay = delay2;
+                if (delay <= 0) {
+                    doCacheUpdate = true;
+                    mLastCacheUpdate = System.currentTimeMillis();
                 }
             }
-        } catch (EBaseException e1) {
-            e1.printStackTrace();
         }
-        logger.debug("CRLIssuingPoint:run(): out of the while loop");
-        mUpdateThread = null;
+
+        if (delay > 0) {
+            return delay;
+        }
+
+        /*
+         * handle last failure so we don't get into
+         * non-delayed loop
+         */
+        if (mUnexpectedFailure == true) {
+            // it gets mUnexpectedExceptionLoopMax tries
+            mLoopCounter++;
+            long waitTime = handleUnexpectedFailure(mLoopCounter, mTimeOfUnexpectedFailure);
+            if (waitTime > 0) {
+                if (doCacheUpdate) {
+                    // retry cache update after the wait
+                    mLastCacheUpdate -= mCacheUpdateInterval;
+                }
+                return waitTime;
+            }
+        }
+
+        logger.debug("CRLIssuingPoint:run(): before CRL generation");
+        try {
+            if (doCacheUpdate) {
+                updateCRLCacheRepository();
+            } else if (mAutoUpdateInterval > 0 || mDoLastAutoUpdate || mDoManualUpdate) {
+                updateCRL();
+            }
+            // reset if no exception
+            if (mUnexpectedFailure == true) {
+                logger.debug("CRLIssuingPoint:run(): reset unexpectedFailure values if no Exception.");
+                mUnexpectedFailure = false;
+                mTimeOfUnexpectedFailure = 0;
+                mLoopCounter = 0;
+            }
+        } catch (Exception e) {
+            logger.debug("CRLIssuingPoint:run(): unexpectedFailure occurred:" + e);
+            mUnexpectedFailure = true;
+            mTimeOfUnexpectedFailure = System.currentTimeMillis();
+            logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_CRL",
+                    (doCacheUpdate) ? "update CRL cache" : "update CRL", e.toString()));
+            logger.warn((doCacheUpdate) ? "update CRL cache" : "update CRL" + " error " + e, e);
+        }
+        // put this here to prevent continuous loop if internal
+        // db is down.
+        if (mDoLastAutoUpdate)
+            logger.debug("CRLIssuingPoint:run(): mDoLastAutoUpdate set to false");
+            mDoLastAutoUpdate = false;
+        if (mDoManualUpdate) {
+            logger.debug("CRLIssuingPoint:run(): mDoManualUpdate set to false");
+            mDoManualUpdate = false;
+            mSignatureAlgorithmForManualUpdate = null;
+        }
+
+        return 0;
     }
 
     /**
@@ -2206,10 +2352,14 @@ public class CRLIssuingPoint implements Runnable {
         String filter = getFilter();
 
         CAEngine engine = CAEngine.getInstance();
-        synchronized (engine.certStatusUpdateTask) {
 
+        // this code and CertStatusUpdateTask.updateCertStatus() are mutually exclusive,
+        // but multiple issuing points can process revoked certs at the same time
+        Lock lock = engine.getCertStatusReadLock();
+        lock.lock();
+
+        try {
             logger.debug("Starting processRevokedCerts (entered lock)");
-            // this code and CertStatusUpdateTask.updateCertStatus() are mutually exclusive
 
             CertRecordList list = mCertRepository.findCertRecordsInList(
                     filter,
@@ -2223,6 +2373,9 @@ public class CRLIssuingPoint implements Runnable {
 
             list.processCertRecords(0, totalSize - 1, cp);
             logger.debug("processRevokedCerts done");
+
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -2248,6 +2401,63 @@ public class CRLIssuingPoint implements Runnable {
         mSchemaCounter = 0;
     }
 
+    /**
+     * Applies changes recorded in the CRL cache journal since
+     * the CRL cache was last saved to the CRL cache. The caller
+     * merges them into the CRL cache stored in the issuing point
+     * record.
+     */
+    private void replayCRLCacheJournal(Vector<CRLCacheJournalEntry> journal) {
+
+        if (journal == null || journal.isEmpty()) {
+            return;
+        }
+
+        logger.info("CRLIssuingPoint: Replaying " + journal.size() + " CRL cache journal entries");
+
+        synchronized (cacheMonitor) {
+            long sequence = replayCRLCacheJournal(journal,
+                    mRevokedCerts, mUnrevokedCerts, mExpiredCerts, mCRLCerts);
+            mCacheJournalSequence = Math.max(mCacheJournalSequence, sequence);
+        }
+    }
+
+    /**
+     * Applies CRL cache journal entries in sequence order to the
+     * CRL cache lists.
+     *
+     * @return sequence number following the last replayed entry
+     */
+    static long replayCRLCacheJournal(
+            Collection<CRLCacheJournalEntry> journal,
+            RevocationIndex revokedCerts,
+            RevocationIndex unrevokedCerts,
+            RevocationIndex expiredCerts,
+            RevocationIndex crlCerts) {
+
+        List<CRLCacheJournalEntry> entries = new ArrayList<>(journal);
+        Collections.sort(entries);
+
+        long sequence = 0;
+
+        for (CRLCacheJournalEntry entry : entries) {
+            RevokedCertImpl revokedCert = (RevokedCertImpl) entry.getRevokedCert();
+            logger.debug("CRLIssuingPoint: - type=" + entry.getType() +
+                    " sequence=" + entry.getSequence() +
+                    " SerialNumber=0x" + entry.getSerialNumber().toString(16));
+
+            if (entry.getType() == CRLCacheJournalEntry.EXPIRED_CERT) {
+                expiredCerts.putIfAbsent(entry.getSerialNumber(), revokedCert);
+            } else {
+                applyRevokedCert(entry.getType(), revokedCert, revokedCerts, unrevokedCerts, crlCerts);
+            }
+
+            sequence = Math.max(sequence, entry.getSequence() + 1);
+        }
+
+        return sequence;
+    }
+
     /**
      * recovers CRL cache
      * @throws EBaseException
@@ -2321,12 +2531,19 @@ public class CRLIssuingPoint implements Runnable {
                 }
             }
 
-            try {
-                mCRLRepository.updateRevokedCerts(mId, mRevokedCerts, mUnrevokedCerts);
-                mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
+            if (mEnableCacheJournal || mCacheJournalSize > 0) {
+                // store the recovered cache and remove the journal
+                updateCRLCacheRepository();
                 mCRLCacheIsCleared = false;
-            } catch (EBaseException e) {
-                logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_CRL_CACHE", e.toString()), e);
+
+            } else {
+                try {
+                    mCRLRepository.updateRevokedCerts(mId, mRevokedCerts.view(), mUnrevokedCerts.view());
+                    mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
+                    mCRLCacheIsCleared = false;
+                } catch (EBaseException e) {
+                    logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_CRL_CACHE", e.toString()), e);
+                }
             }
         } else {
             clearCRLCache();
@@ -2433,8 +2650,8 @@ public class CRLIssuingPoint implements Runnable {
         return entryExt;
     }
 
-    private static final int REVOKED_CERT = 1;
-    private static final int UNREVOKED_CERT = 2;
+    private static final int REVOKED_CERT = CRLCacheJournalEntry.REVOKED_CERT;
+    private static final int UNREVOKED_CERT = CRLCacheJournalEntry.UNREVOKED_CERT;
     private Object cacheMonitor = new Object();
 
     /**
@@ -2446,10 +2663,29 @@ public class CRLIssuingPoint implements Runnable {
         updateRevokedCert(certType, serialNumber, revokedCert, null);
     }
 
-    private void updateRevokedCert(int certType,
+    private RevokedCertImpl updateRevokedCert(int certType,
                                    BigInteger serialNumber,
                                    RevokedCertImpl revokedCert,
                                    String requestId) {
+
+        RevokedCertImpl newRevokedCert;
+
+        if (certType == REVOKED_CERT) {
+            Date revocationDate = revokedCert.getRevocationDate();
+            CRLExtensions entryExt = getRequiredEntryExtensions(revokedCert.getExtensions());
+            newRevokedCert = new RevokedCertImpl(serialNumber, revocationDate, entryExt);
+
+        } else {
+            CRLExtensions entryExt = new CRLExtensions();
+
+            try {
+                entryExt.set(CRLReasonExtension.REMOVE_FROM_CRL.getName(),
+                        CRLReasonExtension.REMOVE_FROM_CRL);
+            } catch (IOException e) {
+            }
+            newRevokedCert = new RevokedCertImpl(serialNumber, new Date(), entryExt);
+        }
+
         synchronized (cacheMonitor) {
             if (requestId != null && mFirstUnsaved != null &&
                     mFirstUnsaved.equals(CRLIssuingPointRecord.CLEAN_CACHE)) {
@@ -2460,42 +2696,82 @@ public class CRLIssuingPoint implements Runnable {
                     logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_CRL_CACHE", e.toString()), e);
                 }
             }
-            if (certType == REVOKED_CERT) {
-                if (mUnrevokedCerts.containsKey(serialNumber)) {
-                    mUnrevokedCerts.remove(serialNumber);
-                    if (mCRLCerts.containsKey(serialNumber)) {
-                        Date revocationDate = revokedCert.getRevocationDate();
-                        CRLExtensions entryExt = getRequiredEntryExtensions(revokedCert.getExtensions());
-                        RevokedCertImpl newRevokedCert =
-                                new RevokedCertImpl(serialNumber, revocationDate, entryExt);
+            applyRevokedCert(certType, newRevokedCert);
+        }
 
-                        mCRLCerts.put(serialNumber, newRevokedCert);
-                    }
-                } else {
-                    Date revocationDate = revokedCert.getRevocationDate();
-                    CRLExtensions entryExt = getRequiredEntryExtensions(revokedCert.getExtensions());
-                    RevokedCertImpl newRevokedCert =
-                            new RevokedCertImpl(serialNumber, revocationDate, entryExt);
+        return newRevokedCert;
+    }
+
+    /**
+     * Applies revoked-unrevoked certificate entry to CRL cache.
+     * Must be called while holding cacheMonitor.
+     */
+    private void applyRevokedCert(int certType, RevokedCertImpl newRevokedCert) {
+        applyRevokedCert(certType, newRevokedCert, mRevokedCerts, mUnrevokedCerts, mCRLCerts);
+    }
 
-                    mRevokedCerts.put(serialNumber, newRevokedCert);
+    static void applyRevokedCert(
+            int certType,
+            RevokedCertImpl newRevokedCert,
+            RevocationIndex revokedCerts,
+            RevocationIndex unrevokedCerts,
+            RevocationIndex crlCerts) {
+
+        BigInteger serialNumber = newRevokedCert.getSerialNumber();
+
+        if (certType == REVOKED_CERT) {
+            if (unrevokedCerts.containsKey(serialNumber)) {
+                unrevokedCerts.remove(serialNumber);
+                if (crlCerts.containsKey(serialNumber)) {
+                    crlCerts.put(serialNumber, newRevokedCert);
                 }
-            } else if (certType == UNREVOKED_CERT) {
-                if (mRevokedCerts.containsKey(serialNumber)) {
-                    mRevokedCerts.remove(serialNumber);
-                } else {
-                    CRLExtensions entryExt = new CRLExtensions();
+            } else {
+                revokedCerts.put(serialNumber, newRevokedCert);
+            }
+        } else if (certType == UNREVOKED_CERT) {
+            if (revokedCerts.containsKey(serialNumber)) {
+                revokedCerts.remove(serialNumber);
+            } else {
+                unrevokedCerts.put(serialNumber, newRevokedCert);
+            }
+        }
+    }
 
-                    try {
-                        entryExt.set(CRLReasonExtension.REMOVE_FROM_CRL.getName(),
-                                CRLReasonExtension.REMOVE_FROM_CRL);
-                    } catch (IOException e) {
-                    }
-                    RevokedCertImpl newRevokedCert = new RevokedCertImpl(serialNumber,
-                            new Date(), entryExt);
+    /**
+     * Appends CRL cache change to the CRL cache journal.
+     * Must be called while holding repositoryMonitor.
+     */
+    private void appendCRLCacheJournal(int type, RevokedCertImpl revokedCert) {
 
-                    mUnrevokedCerts.put(serialNumber, newRevokedCert);
+        CRLCacheJournalEntry entry = new CRLCacheJournalEntry(type, mCacheJournalSequence++, revokedCert);
+
+        try {
+            mCRLRepository.appendCRLCacheJournal(mId, entry);
+            mCacheJournalSize++;
+
+        } catch (EBaseException e) {
+            logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_CRL_CACHE", e.toString()), e);
+
+            if (e.getCause() instanceof LDAPException) {
+                int code = ((LDAPException) e.getCause()).getLDAPResultCode();
+                if (code == LDAPException.NO_SUCH_ATTRIBUTE
+                        || code == LDAPException.UNDEFINED_ATTRIBUTE_TYPE
+                        || code == LDAPException.OBJECT_CLASS_VIOLATION) {
+                    // the database schema has not been upgraded
+                    logger.warn("CRLIssuingPoint: Disabling CRL cache journal for " + mId
+                            + ", run pki-server db-schema-upgrade to enable it");
+                    mEnableCacheJournal = false;
                 }
             }
+
+            // store the whole cache instead
+            updateCRLCacheRepository();
+            return;
+        }
+
+        if (mCacheJournalSize >= mCacheJournalMaxEntries) {
+            logger.debug("CRLIssuingPoint: Compacting CRL cache journal: " + mCacheJournalSize + " entries");
+            updateCRLCacheRepository();
         }
     }
 
@@ -2525,11 +2801,20 @@ public class CRLIssuingPoint implements Runnable {
             includeCert = cp.checkRevokedCertExtensions(revokedCert.getExtensions());
 
         if (mEnable && mEnableCRLCache && includeCert == true) {
+
+            if (mEnableCacheJournal) {
+                synchronized (repositoryMonitor) {
+                    RevokedCertImpl newRevokedCert = updateRevokedCert(REVOKED_CERT, serialNumber, revokedCert, requestId);
+                    appendCRLCacheJournal(REVOKED_CERT, newRevokedCert);
+                }
+                return;
+            }
+
             updateRevokedCert(REVOKED_CERT, serialNumber, revokedCert, requestId);
 
             if (mCacheUpdateInterval == 0) {
                 try {
-                    mCRLRepository.updateRevokedCerts(mId, mRevokedCerts, mUnrevokedCerts);
+                    mCRLRepository.updateRevokedCerts(mId, mRevokedCerts.view(), mUnrevokedCerts.view());
                     mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
                 } catch (EBaseException e) {
                     logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_REVOKED_CERT", mId, e.toString()), e);
@@ -2555,11 +2840,20 @@ public class CRLIssuingPoint implements Runnable {
      */
     public void addUnrevokedCert(BigInteger serialNumber, String requestId) {
         if (mEnable && mEnableCRLCache) {
+
+            if (mEnableCacheJournal) {
+                synchronized (repositoryMonitor) {
+                    RevokedCertImpl newRevokedCert = updateRevokedCert(UNREVOKED_CERT, serialNumber, null, requestId);
+                    appendCRLCacheJournal(UNREVOKED_CERT, newRevokedCert);
+                }
+                return;
+            }
+
             updateRevokedCert(UNREVOKED_CERT, serialNumber, null, requestId);
 
             if (mCacheUpdateInterval == 0) {
                 try {
-                    mCRLRepository.updateRevokedCerts(mId, mRevokedCerts, mUnrevokedCerts);
+                    mCRLRepository.updateRevokedCerts(mId, mRevokedCerts.view(), mUnrevokedCerts.view());
                     mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
                 } catch (EBaseException e) {
                     logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_UNREVOKED_CERT", mId, e.toString()), e);
@@ -2576,6 +2870,27 @@ public class CRLIssuingPoint implements Runnable {
     public void addExpiredCert(BigInteger serialNumber) {
 
         if (mEnable && mEnableCRLCache && (!mIncludeExpiredCerts)) {
+
+            if (mEnableCacheJournal) {
+                synchronized (repositoryMonitor) {
+                    if (!(mExpiredCerts.containsKey(serialNumber))) {
+                        CRLExtensions entryExt = new CRLExtensions();
+
+                        try {
+                            entryExt.set(CRLReasonExtension.REMOVE_FROM_CRL.getName(),
+                                    CRLReasonExtension.REMOVE_FROM_CRL);
+                        } catch (IOException e) {
+                        }
+                        RevokedCertImpl newRevokedCert = new RevokedCertImpl(serialNumber,
+                                new Date(), entryExt);
+
+                        mExpiredCerts.put(serialNumber, newRevokedCert);
+                        appendCRLCacheJournal(CRLCacheJournalEntry.EXPIRED_CERT, newRevokedCert);
+                    }
+                }
+                return;
+            }
+
             if (!(mExpiredCerts.containsKey(serialNumber))) {
                 CRLExtensions entryExt = new CRLExtensions();
 
@@ -2592,7 +2907,7 @@ public class CRLIssuingPoint implements Runnable {
 
             if (mCacheUpdateInterval == 0) {
                 try {
-                    mCRLRepository.updateExpiredCerts(mId, mExpiredCerts);
+                    mCRLRepository.updateExpiredCerts(mId, mExpiredCerts.view());
                 } catch (EBaseException e) {
                     logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_EXPIRED_CERT", mId, e.toString()), e);
                 }
@@ -2604,13 +2919,18 @@ public class CRLIssuingPoint implements Runnable {
 
     /**
      * Updates CRL cache into local directory.
+     * This also compacts the CRL cache journal.
      */
     public void updateCRLCacheRepository() {
         synchronized (repositoryMonitor) {
             try {
                 mCRLRepository.updateCRLCache(mId, Long.valueOf(mCRLSize),
-                        mRevokedCerts, mUnrevokedCerts, mExpiredCerts);
+                        mRevokedCerts.view(),
+                        mUnrevokedCerts.view(),
+                        mExpiredCerts.view(),
+                        mEnableCacheJournal || mCacheJournalSize > 0);
                 mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
+                mCacheJournalSize = 0;
             } catch (EBaseException e) {
                 logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_CRL_CACHE", e.toString()), e);
             }
@@ -2636,34 +2956,57 @@ public class CRLIssuingPoint implements Runnable {
      * @return true if supplied delta-CRL is matching current delta-CRL
      */
     public boolean isThisCurrentDeltaCRL(X509CRLImpl deltaCRL) {
-        boolean result = false;
 
-        if (isDeltaCRLEnabled() && mDeltaCRLSize > -1) {
-            if (deltaCRL != null) {
-                CRLExtensions crlExtensions = deltaCRL.getExtensions();
+        if (deltaCRL == null) {
+            return false;
+        }
+
+        return isThisCurrentDeltaCRL(getBaseCRLNumber(deltaCRL));
+    }
+
+    /**
+     * Returns true if a delta-CRL based on the given CRL number
+     * is the current one.
+     *
+     * @param baseCRLNumber base CRL number of the delta-CRL
+     * @return true if the delta-CRL is current
+     */
+    public boolean isThisCurrentDeltaCRL(BigInteger baseCRLNumber) {
+
+        if (!isDeltaCRLEnabled() || mDeltaCRLSize <= -1 || baseCRLNumber == null) {
+            return false;
+        }
 
-                if (crlExtensions != null) {
-                    for (int k = 0; k < crlExtensions.size(); k++) {
-                        Extension ext = crlExtensions.elementAt(k);
+        return baseCRLNumber.equals(mLastCRLNumber) || mLastCRLNumber.equals(BigInteger.ZERO);
+    }
 
-                        if (DeltaCRLIndicatorExtension.OID.equals(ext.getExtensionId().toString())) {
-                            DeltaCRLIndicatorExtension dExt = (DeltaCRLIndicatorExtension) ext;
-                            BigInteger crlNumber = null;
+    /**
+     * Returns the base CRL number from the delta CRL indicator
+     * extension of a delta-CRL, or null.
+     */
+    public static BigInteger getBaseCRLNumber(X509CRLImpl deltaCRL) {
 
-                            try {
-                                crlNumber = (BigInteger) dExt.get(DeltaCRLIndicatorExtension.NUMBER);
-                            } catch (IOException e) {
-                            }
-                            if (crlNumber != null && (crlNumber.equals(mLastCRLNumber) ||
-                                                      mLastCRLNumber.equals(BigInteger.ZERO))) {
-                                result = true;
-                            }
-                        }
-                    }
+        CRLExtensions crlExtensions = deltaCRL.getExtensions();
+
+        if (crlExtensions == null) {
+            return null;
+        }
+
+        for (int k = 0; k < crlExtensions.size(); k++) {
+            Extension ext = crlExtensions.elementAt(k);
+
+            if (DeltaCRLIndicatorExtension.OID.equals(ext.getExtensionId().toString())) {
+                DeltaCRLIndicatorExtension dExt = (DeltaCRLIndicatorExtension) ext;
+
+                try {
+                    return (BigInteger) dExt.get(DeltaCRLIndicatorExtension.NUMBER);
+                } catch (IOException e) {
+                    return null;
                 }
             }
         }
-        return (result);
+
+        return null;
     }
 
     /**
@@ -2733,13 +3076,8 @@ public class CRLIssuingPoint implements Runnable {
      *
      * @return split times from CRL generation in milliseconds
      */
-    public synchronized Vector<Long> getSplitTimes() {
-        Vector<Long> splits = new Vector<>();
-
-        for (int i = 0; i < mSplits.length; i++) {
-            splits.addElement(Long.valueOf(mSplits[i]));
-        }
-        return splits;
+    public Vector<Long> getSplitTimes() {
+        return mMetrics.getSplitTimes();
     }
 
     /**
@@ -2861,9 +3199,7 @@ public class CRLIssuingPoint implements Runnable {
             }
         }
 
-        for (int i = 0; i < mSplits.length; i++) {
-            mSplits[i] = 0;
-        }
+        mMetrics.reset();
 
         mLastUpdate = thisUpdate;
 
@@ -2887,18 +3223,13 @@ public class CRLIssuingPoint implements Runnable {
             nextDeltaUpdate.setTime((nextDeltaUpdate.getTime()) + mNextUpdateGracePeriod);
         }
 
-        mSplits[0] -= System.currentTimeMillis();
-        @SuppressWarnings("unchecked")
-        Hashtable<BigInteger, RevokedCertificate> clonedRevokedCerts =
-                (Hashtable<BigInteger, RevokedCertificate>) mRevokedCerts.clone();
-        @SuppressWarnings("unchecked")
-        Hashtable<BigInteger, RevokedCertificate> clonedUnrevokedCerts =
-                (Hashtable<BigInteger, RevokedCertificate>) mUnrevokedCerts.clone();
-        @SuppressWarnings("unchecked")
-        Hashtable<BigInteger, RevokedCertificate> clonedExpiredCerts =
-                (Hashtable<BigInteger, RevokedCertificate>) mExpiredCerts.clone();
+        mMetrics.start(CRLUpdateMetrics.CLONE_CACHE);
+        // sorted snapshots, taken without blocking concurrent cache updates
+        NavigableMap<BigInteger, RevokedCertificate> clonedRevokedCerts = mRevokedCerts.snapshot();
+        NavigableMap<BigInteger, RevokedCertificate> clonedUnrevokedCerts = mUnrevokedCerts.snapshot();
+        NavigableMap<BigInteger, RevokedCertificate> clonedExpiredCerts = mExpiredCerts.snapshot();
 
-        mSplits[0] += System.currentTimeMillis();
+        mMetrics.stop(CRLUpdateMetrics.CLONE_CACHE);
 
         // starting from the beginning
 
@@ -2910,12 +3241,12 @@ public class CRLIssuingPoint implements Runnable {
                         (mCRLCerts.isEmpty() && (mCRLSize > 0)) ||
                 (mCRLCerts.size() > 0 && mCRLSize == 0))) {
 
-            mSplits[5] -= System.currentTimeMillis();
+            mMetrics.start(CRLUpdateMetrics.UPDATE_CACHE);
             mDeltaCRLSize = -1;
             clearCRLCache();
-            clonedRevokedCerts.clear();
-            clonedUnrevokedCerts.clear();
-            clonedExpiredCerts.clear();
+            clonedRevokedCerts = Collections.emptyNavigableMap();
+            clonedUnrevokedCerts = Collections.emptyNavigableMap();
+            clonedExpiredCerts = Collections.emptyNavigableMap();
             mSchemaCounter = 0;
 
             IStatsSubsystem statsSub = (IStatsSubsystem) engine.getSubsystem(IStatsSubsystem.ID);
@@ -2930,7 +3261,7 @@ public class CRLIssuingPoint implements Runnable {
             }
 
             mCRLCacheIsCleared = false;
-            mSplits[5] += System.currentTimeMillis();
+            mMetrics.stop(CRLUpdateMetrics.UPDATE_CACHE);
         } else {
             if (isDeltaCRLEnabled()) {
 
@@ -2946,7 +3277,7 @@ public class CRLIssuingPoint implements Runnable {
                 mDeltaCRLSize = -1;
             }
 
-            mSplits[5] -= System.currentTimeMillis();
+            mMetrics.start(CRLUpdateMetrics.UPDATE_CACHE);
 
             if (mSchemaCounter == 0) {
                 if (((!mCRLCerts.isEmpty()) && ((!clonedRevokedCerts.isEmpty()) ||
@@ -2954,8 +3285,7 @@ public class CRLIssuingPoint implements Runnable {
                         (mCRLCerts.isEmpty() && (mCRLSize == 0) && (!clonedRevokedCerts.isEmpty()))) {
 
                     if (!clonedUnrevokedCerts.isEmpty()) {
-                        for (Enumeration<BigInteger> e = clonedUnrevokedCerts.keys(); e.hasMoreElements();) {
-                            BigInteger serialNumber = e.nextElement();
+                        for (BigInteger serialNumber : clonedUnrevokedCerts.keySet()) {
 
                             if (mCRLCerts.containsKey(serialNumber)) {
                                 mCRLCerts.remove(serialNumber);
@@ -2965,21 +3295,22 @@ public class CRLIssuingPoint implements Runnable {
                     }
 
                     if (!clonedRevokedCerts.isEmpty()) {
-                        for (Enumeration<BigInteger> e = clonedRevokedCerts.keys(); e.hasMoreElements();) {
-                            BigInteger serialNumber = e.nextElement();
+                        for (BigInteger serialNumber : clonedRevokedCerts.keySet()) {
 
-                            mCRLCerts.put(serialNumber, mRevokedCerts.get(serialNumber));
-                            mRevokedCerts.remove(serialNumber);
+                            // skip entries unrevoked since the snapshot was taken
+                            RevokedCertificate revokedCert = mRevokedCerts.remove(serialNumber);
+                            if (revokedCert != null) {
+                                mCRLCerts.put(serialNumber, revokedCert);
+                            }
                         }
                     }
 
                     if (!clonedExpiredCerts.isEmpty()) {
-                        for (Enumeration<BigInteger> e = clonedExpiredCerts.keys(); e.hasMoreElements();) {
-                            BigInteger serialNumber = e.nextElement();
+                        for (BigInteger serialNumber : clonedExpiredCerts.keySet()) {
 
                             if ((!mIncludeExpiredCertsOneExtraTime) ||
                                     (mLastFullUpdate != null &&
-                                    mLastFullUpdate.after((mExpiredCerts.get(serialNumber)).getRevocationDate())) ||
+                                    mLastFullUpdate.after((clonedExpiredCerts.get(serialNumber)).getRevocationDate())) ||
                                     mLastFullUpdate == null) {
                                 if (mCRLCerts.containsKey(serialNumber)) {
                                     mCRLCerts.remove(serialNumber);
@@ -2991,12 +3322,9 @@ public class CRLIssuingPoint implements Runnable {
                 }
                 mLastFullUpdate = mLastUpdate;
             }
-            mSplits[5] += System.currentTimeMillis();
+            mMetrics.stop(CRLUpdateMetrics.UPDATE_CACHE);
         }
 
-        clonedRevokedCerts.clear();
-        clonedUnrevokedCerts.clear();
-        clonedExpiredCerts.clear();
         clonedRevokedCerts = null;
         clonedUnrevokedCerts = null;
         clonedExpiredCerts = null;
@@ -3011,6 +3339,9 @@ public class CRLIssuingPoint implements Runnable {
             mNextDeltaCRLNumber = mDeltaCRLNumber.add(BigInteger.ONE);
         }
 
+        // drop encoded CRLs served to clients
+        engine.getEncodedCRLCache().invalidate(mId);
+
         if ((!(mEnableDailyUpdates && mExtendedTimeList)) || mSchemaCounter == 0)
             mSchemaCounter++;
         if ((mEnableDailyUpdates && mExtendedTimeList && mSchemaCounter >= mTimeListSize) ||
@@ -3019,7 +3350,9 @@ public class CRLIssuingPoint implements Runnable {
         mLastDay = mCurrentDay;
 
         mUpdatingCRL = CRL_UPDATE_DONE;
+        mMetrics.completed();
         notifyAll();
+        rescheduleUpdate();
     }
 
     CRLExtensions generateCRLExtensions(String excludedExtension) {
@@ -3040,27 +3373,25 @@ public class CRLIssuingPoint implements Runnable {
     }
 
     void generateDeltaCRL(
-            Hashtable<BigInteger, RevokedCertificate> clonedRevokedCerts,
-            Hashtable<BigInteger, RevokedCertificate> clonedUnrevokedCerts,
-            Hashtable<BigInteger, RevokedCertificate> clonedExpiredCerts,
+            NavigableMap<BigInteger, RevokedCertificate> clonedRevokedCerts,
+            NavigableMap<BigInteger, RevokedCertificate> clonedUnrevokedCerts,
+            NavigableMap<BigInteger, RevokedCertificate> clonedExpiredCerts,
             String signingAlgorithm,
             Date thisUpdate,
             Date nextDeltaUpdate) {
 
-        mSplits[1] -= System.currentTimeMillis();
+        mMetrics.start(CRLUpdateMetrics.DELTA_PREPARE);
 
-        @SuppressWarnings("unchecked")
-        Hashtable<BigInteger, RevokedCertificate> deltaCRLCerts =
-                (Hashtable<BigInteger, RevokedCertificate>) clonedRevokedCerts.clone();
+        // merge sorted snapshots, no need to sort the delta CRL again
+        NavigableMap<BigInteger, RevokedCertificate> deltaCRLCerts = new TreeMap<>(clonedRevokedCerts);
 
         deltaCRLCerts.putAll(clonedUnrevokedCerts);
 
         if (mIncludeExpiredCertsOneExtraTime) {
 
-            for (Enumeration<BigInteger> e = clonedExpiredCerts.keys(); e.hasMoreElements();) {
-                BigInteger serialNumber = e.nextElement();
+            for (BigInteger serialNumber : clonedExpiredCerts.keySet()) {
                 if (mLastFullUpdate == null ||
-                    mLastFullUpdate.after(mExpiredCerts.get(serialNumber).getRevocationDate())) {
+                    mLastFullUpdate.after(clonedExpiredCerts.get(serialNumber).getRevocationDate())) {
                     deltaCRLCerts.put(serialNumber, clonedExpiredCerts.get(serialNumber));
                 }
             }
@@ -3073,12 +3404,13 @@ public class CRLIssuingPoint implements Runnable {
 
         CRLExtensions ext = generateCRLExtensions(FreshestCRLExtension.NAME);
 
-        mSplits[1] += System.currentTimeMillis();
+        mMetrics.stop(CRLUpdateMetrics.DELTA_PREPARE);
 
         X509CRLImpl newX509DeltaCRL = null;
+        byte[] newDeltaCRL = null;
 
         try {
-            mSplits[2] -= System.currentTimeMillis();
+            mMetrics.start(CRLUpdateMetrics.DELTA_SIGN);
 
             // #56123 - dont generate CRL if no revoked certificates
             if (mConfigStore.getNoCRLIfNoRevokedCert()) {
@@ -3092,32 +3424,35 @@ public class CRLIssuingPoint implements Runnable {
                 }
             }
 
-            X509CRLImpl crl = new X509CRLImpl(mCA.getCRLX500Name(),
-                    AlgorithmId.get(signingAlgorithm),
-                    thisUpdate, nextDeltaUpdate, deltaCRLCerts, ext);
+            if (mStreamingEncoding) {
+                CRLEncoder encoder = new CRLEncoder(mCA.getCRLX500Name(),
+                        AlgorithmId.get(signingAlgorithm),
+                        thisUpdate, nextDeltaUpdate, deltaCRLCerts, ext);
+
+                newDeltaCRL = mCA.sign(encoder, signingAlgorithm);
 
-            newX509DeltaCRL = mCA.sign(crl, signingAlgorithm);
+            } else {
+                X509CRLImpl crl = new X509CRLImpl(mCA.getCRLX500Name(),
+                        AlgorithmId.get(signingAlgorithm),
+                        thisUpdate, nextDeltaUpdate, new Hashtable<>(deltaCRLCerts), ext);
 
-            byte[] newDeltaCRL = newX509DeltaCRL.getEncoded();
+                newX509DeltaCRL = mCA.sign(crl, signingAlgorithm);
+
+                newDeltaCRL = newX509DeltaCRL.getEncoded();
+            }
 
-            mSplits[2] += System.currentTimeMillis();
+            mMetrics.stop(CRLUpdateMetrics.DELTA_SIGN);
 
-            mSplits[3] -= System.currentTimeMillis();
+            mMetrics.start(CRLUpdateMetrics.DELTA_STORE);
             mCRLRepository.updateDeltaCRL(mId, mNextDeltaCRLNumber,
                       Long.valueOf(deltaCRLCerts.size()), mNextDeltaUpdate, newDeltaCRL);
-            mSplits[3] += System.currentTimeMillis();
+            mMetrics.stop(CRLUpdateMetrics.DELTA_STORE);
 
             mDeltaCRLSize = deltaCRLCerts.size();
 
-            long totalTime = 0;
-            StringBuffer splitTimes = new StringBuffer("  (");
-            for (int i = 1; i < mSplits.length && i < 5; i++) {
-                totalTime += mSplits[i];
-                if (i > 1)
-                    splitTimes.append(",");
-                splitTimes.append(String.valueOf(mSplits[i]));
-            }
-            splitTimes.append(")");
+            long totalTime = mMetrics.getDeltaCRLTime();
+            String splitTimes = "  (" + mMetrics.format(
+                    CRLUpdateMetrics.DELTA_PREPARE, CRLUpdateMetrics.DELTA_PUBLISH) + ")";
 
             logger.debug("CRLIssuingPoint: - delta CRL number: " + mNextDeltaCRLNumber);
             logger.debug("CRLIssuingPoint: - against CRL number: " + mCRLNumber);
@@ -3150,9 +3485,9 @@ public class CRLIssuingPoint implements Runnable {
         }
 
         try {
-            mSplits[4] -= System.currentTimeMillis();
-            publishCRL(newX509DeltaCRL, true);
-            mSplits[4] += System.currentTimeMillis();
+            mMetrics.start(CRLUpdateMetrics.DELTA_PUBLISH);
+            publishCRL(newX509DeltaCRL, newDeltaCRL, true);
+            mMetrics.stop(CRLUpdateMetrics.DELTA_PUBLISH);
 
             signedAuditLogger.log(new DeltaCRLPublishingEvent(getAuditSubjectID(), mCRLNumber));
 
@@ -3170,7 +3505,7 @@ public class CRLIssuingPoint implements Runnable {
 
         logger.debug("generateFullCRL: thisUpdate: " + thisUpdate + " nextUpdate: " + nextUpdate);
 
-        mSplits[6] -= System.currentTimeMillis();
+        mMetrics.start(CRLUpdateMetrics.CRL_PREPARE);
         if (mNextDeltaCRLNumber.compareTo(mNextCRLNumber) > 0) {
             mNextCRLNumber = mNextDeltaCRLNumber;
         }
@@ -3181,15 +3516,16 @@ public class CRLIssuingPoint implements Runnable {
         } else {
             ext = null;
         }
-        mSplits[6] += System.currentTimeMillis();
+        mMetrics.stop(CRLUpdateMetrics.CRL_PREPARE);
 
         X509CRLImpl newX509CRL = null;
+        byte[] newCRL = null;
 
         try {
             logger.debug("Making CRL with algorithm " +
                     signingAlgorithm + " " + AlgorithmId.get(signingAlgorithm));
 
-            mSplits[7] -= System.currentTimeMillis();
+            mMetrics.start(CRLUpdateMetrics.CRL_SIGN);
 
             // #56123 - dont generate CRL if no revoked certificates
             if (mConfigStore.getNoCRLIfNoRevokedCert()) {
@@ -3202,20 +3538,31 @@ public class CRLIssuingPoint implements Runnable {
                 }
             }
 
-            logger.debug("CRLIssuingPoint: creating CRL object");
-            X509CRLImpl crl = new X509CRLImpl(mCA.getCRLX500Name(),
-                    AlgorithmId.get(signingAlgorithm),
-                    thisUpdate, nextUpdate, mCRLCerts, ext);
+            if (mStreamingEncoding) {
+                logger.debug("CRLIssuingPoint: streaming CRL");
+                CRLEncoder encoder = new CRLEncoder(mCA.getCRLX500Name(),
+                        AlgorithmId.get(signingAlgorithm),
+                        thisUpdate, nextUpdate, mCRLCerts.snapshot(), ext);
+
+                logger.debug("CRLIssuingPoint: signing CRL");
+                newCRL = mCA.sign(encoder, signingAlgorithm);
 
-            logger.debug("CRLIssuingPoint: signing CRL");
-            newX509CRL = mCA.sign(crl, signingAlgorithm);
+            } else {
+                logger.debug("CRLIssuingPoint: creating CRL object");
+                X509CRLImpl crl = new X509CRLImpl(mCA.getCRLX500Name(),
+                        AlgorithmId.get(signingAlgorithm),
+                        thisUpdate, nextUpdate, mCRLCerts.toHashtable(), ext);
 
-            logger.debug("CRLIssuingPoint: encoding CRL");
-            byte[] newCRL = newX509CRL.getEncoded();
+                logger.debug("CRLIssuingPoint: signing CRL");
+                newX509CRL = mCA.sign(crl, signingAlgorithm);
 
-            mSplits[7] += System.currentTimeMillis();
+                logger.debug("CRLIssuingPoint: encoding CRL");
+                newCRL = newX509CRL.getEncoded();
+            }
 
-            mSplits[8] -= System.currentTimeMillis();
+            mMetrics.stop(CRLUpdateMetrics.CRL_SIGN);
+
+            mMetrics.start(CRLUpdateMetrics.CRL_STORE);
 
             Date nextUpdateDate = mNextUpdate;
             if (isDeltaCRLEnabled()
@@ -3231,14 +3578,20 @@ public class CRLIssuingPoint implements Runnable {
                 updateCRLCacheRepository();
 
             } else {
-                mCRLRepository.updateCRLIssuingPointRecord(
-                        mId, newCRL, thisUpdate, nextUpdateDate,
-                        mNextCRLNumber, Long.valueOf(mCRLCerts.size()),
-                        mRevokedCerts, mUnrevokedCerts, mExpiredCerts);
-                mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
+                synchronized (repositoryMonitor) {
+                    mCRLRepository.updateCRLIssuingPointRecord(
+                            mId, newCRL, thisUpdate, nextUpdateDate,
+                            mNextCRLNumber, Long.valueOf(mCRLCerts.size()),
+                            mRevokedCerts.view(),
+                            mUnrevokedCerts.view(),
+                            mExpiredCerts.view(),
+                            mEnableCacheJournal || mCacheJournalSize > 0);
+                    mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
+                    mCacheJournalSize = 0;
+                }
             }
 
-            mSplits[8] += System.currentTimeMillis();
+            mMetrics.stop(CRLUpdateMetrics.CRL_STORE);
 
             mCRLSize = mCRLCerts.size();
             mCRLNumber = mNextCRLNumber;
@@ -3247,22 +3600,12 @@ public class CRLIssuingPoint implements Runnable {
             mNextDeltaCRLNumber = mNextCRLNumber;
 
             logger.debug("CRLIssuingPoint: Logging CRL Update to transaction log");
-            long totalTime = 0;
-            long crlTime = 0;
-            long deltaTime = 0;
-            StringBuilder splitTimes = new StringBuilder("  (");
-            for (int i = 0; i < mSplits.length; i++) {
-                totalTime += mSplits[i];
-                if (i > 0 && i < 5) {
-                    deltaTime += mSplits[i];
-                } else {
-                    crlTime += mSplits[i];
-                }
-                if (i > 0)
-                    splitTimes.append(",");
-                splitTimes.append(mSplits[i]);
-            }
-            splitTimes.append(String.format(",%d,%d,%d)",deltaTime,crlTime,totalTime));
+            long totalTime = mMetrics.getTime();
+            long crlTime = mMetrics.getCRLTime();
+            long deltaTime = mMetrics.getDeltaCRLTime();
+            String splitTimes = "  (" + mMetrics.format(
+                    CRLUpdateMetrics.CLONE_CACHE, CRLUpdateMetrics.CRL_PUBLISH) +
+                    String.format(",%d,%d,%d)", deltaTime, crlTime, totalTime);
 
             logger.debug("CRLIssuingPoint: - CRL number: " + mCRLNumber);
             logger.debug("CRLIssuingPoint: - last update: " + mLastUpdate);
@@ -3298,10 +3641,10 @@ public class CRLIssuingPoint implements Runnable {
         }
 
         try {
-            mSplits[9] -= System.currentTimeMillis();
+            mMetrics.start(CRLUpdateMetrics.CRL_PUBLISH);
             mUpdatingCRL = CRL_PUBLISHING_STARTED;
-            publishCRL(newX509CRL);
-            mSplits[9] += System.currentTimeMillis();
+            publishCRL(newX509CRL, newCRL, false);
+            mMetrics.stop(CRLUpdateMetrics.CRL_PUBLISH);
 
             signedAuditLogger.log(new FullCRLPublishingEvent(getAuditSubjectID(), mCRLNumber));
 
@@ -3336,6 +3679,16 @@ public class CRLIssuingPoint implements Runnable {
      */
     protected void publishCRL(X509CRLImpl x509crl, boolean isDeltaCRL)
             throws EBaseException {
+        publishCRL(x509crl, null, isDeltaCRL);
+    }
+
+    /**
+     * Publishes the CRL given either as an object or in its encoded form.
+     * If neither is given the CRL is read from the CRL repository. The
+     * encoded CRL is only parsed if it is going to be published.
+     */
+    protected void publishCRL(X509CRLImpl x509crl, byte[] encodedCRL, boolean isDeltaCRL)
+            throws EBaseException {
         SessionContext sc = SessionContext.getContext();
 
         CAEngine engine = CAEngine.getInstance();
@@ -3361,22 +3714,21 @@ public class CRLIssuingPoint implements Runnable {
 
         logger.debug("Publish CRL");
         try {
-            if (x509crl == null) {
+            if (x509crl == null && encodedCRL == null) {
                 crlRecord = mCRLRepository.readCRLIssuingPointRecord(mId);
                 if (crlRecord != null) {
-                    byte[] crl = (isDeltaCRL) ? crlRecord.getDeltaCRL() : crlRecord.getCRL();
-
-                    if (crl != null) {
-                        x509crl = new X509CRLImpl(crl);
-                    }
+                    encodedCRL = (isDeltaCRL) ? crlRecord.getDeltaCRL() : crlRecord.getCRL();
                 }
             }
-            if (x509crl != null &&
+            if ((x509crl != null || encodedCRL != null) &&
                     mPublisherProcessor != null && mPublisherProcessor.isCRLPublishingEnabled()) {
                 Enumeration<LdapRule> rules = mPublisherProcessor.getRules(CAPublisherProcessor.PROP_LOCAL_CRL);
                 if (rules == null || !rules.hasMoreElements()) {
                     logger.debug("CRL publishing is not enabled.");
                 } else {
+                    if (x509crl == null) {
+                        x509crl = new X509CRLImpl(encodedCRL);
+                    }
                     if (mPublishDN != null) {
                         mPublisherProcessor.publishCRL(mPublishDN, x509crl);
                         logger.debug("CRL published to " + mPublishDN);
@@ -113,6 +113,22 @@ public class CRLIssuingPointConfig extends ConfigStore {
         putBoolean("enableCRLUpdates", enableCRLUpdates);
     }
 
+    public boolean getEnableCacheJournal() throws EBaseException {
+        return getBoolean("enableCacheJournal", false);
+    }
+
+    public void setEnableCacheJournal(boolean enableCacheJournal) {
+        putBoolean("enableCacheJournal", enableCacheJournal);
+    }
+
+    public int getCacheJournalMaxEntries() throws EBaseException {
+        return getInteger("cacheJournalMaxEntries", 1000);
+    }
+
+    public void setCacheJournalMaxEntries(int cacheJournalMaxEntries) {
+        putInteger("cacheJournalMaxEntries", cacheJournalMaxEntries);
+    }
+
     public boolean getEnableCacheTesting() throws EBaseException {
         return getBoolean("enableCacheTesting", false);
     }
@@ -193,6 +209,14 @@ public class CRLIssuingPointConfig extends ConfigStore {
         putBoolean("saveMemory", saveMemory);
     }
 
+    public boolean getStreamingEncoding() throws EBaseException {
+        return getBoolean("streamingEncoding", false);
+    }
+
+    public void setStreamingEncoding(boolean streamingEncoding) {
+        putBoolean("streamingEncoding", streamingEncoding);
+    }
+
     public String getSigningAlgorithm() throws EBaseException {
         return getString("signingAlgorithm", null);
     }
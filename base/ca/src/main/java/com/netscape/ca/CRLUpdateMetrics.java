@@ -0,0 +1,187 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.ca;
+
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import com.netscape.cmscore.metrics.MetricsRegistry;
+import com.netscape.cmscore.metrics.Timer;
+
+/**
+ * This class collects timing metrics of CRL updates of a single
+ * CRL issuing point.
+ *
+ * The time spent in each phase of the last update is kept in
+ * milliseconds in the same order as the split times displayed
+ * by the CRL update pages. In addition the metrics keep the
+ * cumulative time of each phase and the number of updates.
+ *
+ * The time of each phase and the time the update waited in the
+ * CRL update executor queue are also recorded in the metrics
+ * registry, e.g. crl_update/MasterCRL/crlSign and
+ * crl_update_queue_wait/MasterCRL.
+ */
+public class CRLUpdateMetrics {
+
+    public static final int CLONE_CACHE = 0;
+    public static final int DELTA_PREPARE = 1;
+    public static final int DELTA_SIGN = 2;
+    public static final int DELTA_STORE = 3;
+    public static final int DELTA_PUBLISH = 4;
+    public static final int UPDATE_CACHE = 5;
+    public static final int CRL_PREPARE = 6;
+    public static final int CRL_SIGN = 7;
+    public static final int CRL_STORE = 8;
+    public static final int CRL_PUBLISH = 9;
+
+    public static final String[] PHASES = {
+            "cloneCache",
+            "deltaPrepare",
+            "deltaSign",
+            "deltaStore",
+            "deltaPublish",
+            "updateCache",
+            "crlPrepare",
+            "crlSign",
+            "crlStore",
+            "crlPublish"
+    };
+
+    private long[] startTimes = new long[PHASES.length];
+    private long[] splitTimes = new long[PHASES.length];
+    private long[] totalTimes = new long[PHASES.length];
+
+    private long updates;
+
+    private Timer[] phaseTimers = new Timer[PHASES.length];
+    private Timer queueWaitTimer;
+
+    /**
+     * @param id CRL issuing point id
+     */
+    public CRLUpdateMetrics(String id) {
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+
+        for (int i = 0; i < PHASES.length; i++) {
+            phaseTimers[i] = registry.getTimer("crl_update/" + id + "/" + PHASES[i]);
+        }
+
+        queueWaitTimer = registry.getTimer("crl_update_queue_wait/" + id);
+    }
+
+    /**
+     * Clears the split times before a new update.
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < splitTimes.length; i++) {
+            startTimes[i] = 0;
+            splitTimes[i] = 0;
+        }
+    }
+
+    public synchronized void start(int phase) {
+        startTimes[phase] = System.currentTimeMillis();
+    }
+
+    public synchronized void stop(int phase) {
+        long time = System.currentTimeMillis() - startTimes[phase];
+        splitTimes[phase] += time;
+        totalTimes[phase] += time;
+        phaseTimers[phase].record(TimeUnit.MILLISECONDS.toNanos(time));
+    }
+
+    /**
+     * Records the time in milliseconds a scheduled update
+     * waited for an executor thread.
+     */
+    public void queued(long queueWait) {
+        queueWaitTimer.record(TimeUnit.MILLISECONDS.toNanos(queueWait));
+    }
+
+    public synchronized void completed() {
+        updates++;
+    }
+
+    public synchronized long getSplitTime(int phase) {
+        return splitTimes[phase];
+    }
+
+    public synchronized long getTotalTime(int phase) {
+        return totalTimes[phase];
+    }
+
+    /**
+     * Returns split times of the last update in milliseconds.
+     */
+    public synchronized Vector<Long> getSplitTimes() {
+        Vector<Long> splits = new Vector<>();
+        for (long splitTime : splitTimes) {
+            splits.addElement(splitTime);
+        }
+        return splits;
+    }
+
+    /**
+     * Returns the time of the last update spent on delta CRL.
+     */
+    public synchronized long getDeltaCRLTime() {
+        long time = 0;
+        for (int i = DELTA_PREPARE; i <= DELTA_PUBLISH; i++) {
+            time += splitTimes[i];
+        }
+        return time;
+    }
+
+    /**
+     * Returns the time of the last update spent on full CRL.
+     */
+    public synchronized long getCRLTime() {
+        return getTime() - getDeltaCRLTime();
+    }
+
+    /**
+     * Returns the total time of the last update.
+     */
+    public synchronized long getTime() {
+        long time = 0;
+        for (long splitTime : splitTimes) {
+            time += splitTime;
+        }
+        return time;
+    }
+
+    public synchronized long getUpdates() {
+        return updates;
+    }
+
+    /**
+     * Formats split times of the given phases as a comma-separated list.
+     */
+    public synchronized String format(int from, int to) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i <= to; i++) {
+            if (i > from) {
+                sb.append(",");
+            }
+            sb.append(splitTimes[i]);
+        }
+        return sb.toString();
+    }
+}
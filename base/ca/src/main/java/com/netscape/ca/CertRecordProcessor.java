@@ -19,7 +19,6 @@ package com.netscape.ca;
 
 import java.math.BigInteger;
 import java.util.Date;
-import java.util.Hashtable;
 import java.util.Vector;
 
 import org.mozilla.jss.netscape.security.util.BitArray;
@@ -43,7 +42,7 @@ public class CertRecordProcessor implements IElementProcessor {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CertRecordProcessor.class);
 
-    private Hashtable<BigInteger, RevokedCertificate> crlCerts;
+    private RevocationIndex crlCerts;
     private boolean allowExtensions;
     private CRLIssuingPoint issuingPoint;
 
@@ -52,7 +51,7 @@ public class CertRecordProcessor implements IElementProcessor {
     private BitArray onlySomeReasons;
 
     public CertRecordProcessor(
-            Hashtable<BigInteger, RevokedCertificate> crlCerts,
+            RevocationIndex crlCerts,
             CRLIssuingPoint ip,
             boolean allowExtensions) {
 
@@ -126,7 +126,9 @@ import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.base.ArgBlock;
 import com.netscape.cmscore.base.ConfigStore;
 import com.netscape.cmscore.dbs.CertRecord;
+import com.netscape.cmscore.dbs.CertStatusCache;
 import com.netscape.cmscore.dbs.CertificateRepository;
+import com.netscape.cmscore.ocsp.OCSPResponseCache;
 import com.netscape.cmscore.profile.ProfileSubsystem;
 import com.netscape.cmsutil.crypto.CryptoUtil;
 import com.netscape.cmsutil.ocsp.BasicOCSPResponse;
@@ -869,13 +871,13 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
 
     /**
      * Signs CRL using the specified signature algorithm.
-     * If no algorithm is specified the CA's default signing algorithm
-     * is used.
+     * If no algorithm is specified the default algorithm of the
+     * CRL signing unit is used.
      *
      * @param crl the CRL to be signed.
      * @param algname the algorithm name to use. This is a JCA name such
-     *            as MD5withRSA, etc. If set to null the default signing algorithm
-     *            is used.
+     *            as MD5withRSA, etc. If set to null the default algorithm
+     *            of the CRL signing unit is used.
      * @return the signed CRL
      * @exception EBaseException failed to sign CRL
      */
@@ -895,7 +897,7 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
             DerOutputStream tmp = new DerOutputStream();
 
             if (algname == null) {
-                algname = mSigningUnit.getDefaultAlgorithm();
+                algname = mCRLSigningUnit.getDefaultAlgorithm();
             }
 
             crl.encodeInfo(tmp);
@@ -919,41 +921,91 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
                 logger.warn("Failed to add signature to CRL object.");
             }
 
-        } catch (CRLException e) {
-            logger.error(CMS.getLogMessage("CMSCORE_CA_CA_SIGN_CRL", e.toString(), e.getMessage()), e);
-            throw new ECAException(
-                    CMS.getUserMessage("CMS_CA_SIGNING_CRL_FAILED", e.getMessage()), e);
+        } catch (Exception e) {
+            throw handleCRLSigningFailure(engine, e);
 
-        } catch (X509ExtensionException e) {
-            logger.error(CMS.getLogMessage("CMSCORE_CA_CA_SIGN_CRL", e.toString(), e.getMessage()), e);
-            throw new ECAException(
-                    CMS.getUserMessage("CMS_CA_SIGNING_CRL_FAILED", e.getMessage()), e);
+        } finally {
+            if (statsSub != null) {
+                statsSub.endTiming("signing");
+            }
+        }
 
-        } catch (NoSuchAlgorithmException e) {
-            logger.error(CMS.getLogMessage("CMSCORE_CA_CA_SIGN_CRL", e.toString(), e.getMessage()), e);
-            throw new ECAException(CMS.getUserMessage("CMS_CA_SIGNING_CRL_FAILED", e.getMessage()), e);
+        return signedcrl;
+    }
 
-        } catch (IOException e) {
-            logger.error(CMS.getLogMessage("CMSCORE_CA_CA_SIGN_CRL", e.toString(), e.getMessage()), e);
-            throw new ECAException(
-                    CMS.getUserMessage("CMS_CA_SIGNING_CRL_FAILED", e.getMessage()), e);
+    /**
+     * Signs CRL streamed by the CRL encoder using the specified
+     * signature algorithm. Unlike sign(X509CRLImpl, String) the
+     * CRL is not materialized as an X509CRLImpl object.
+     *
+     * @param encoder the encoder of the CRL to be signed.
+     * @param algname the algorithm name to use. If set to null the
+     *            default algorithm of the CRL signing unit is used,
+     *            as in sign(X509CRLImpl, String).
+     * @return DER encoding of the signed CRL
+     * @exception EBaseException failed to sign CRL
+     */
+    public byte[] sign(CRLEncoder encoder, String algname)
+            throws EBaseException {
 
-        } catch (SignatureException e) {
-            logger.error(CMS.getUserMessage("CMS_CA_SIGNING_OPERATION_FAILED", e.toString()), e);
-            engine.checkForAndAutoShutdown();
-            throw new EBaseException(e);
+        CAEngine engine = CAEngine.getInstance();
+        ensureReady();
+
+        IStatsSubsystem statsSub = (IStatsSubsystem) engine.getSubsystem(IStatsSubsystem.ID);
+        if (statsSub != null) {
+            statsSub.startTiming("signing");
+        }
+
+        try {
+            if (algname == null) {
+                algname = mCRLSigningUnit.getDefaultAlgorithm();
+            }
+
+            logger.debug("CertificateAuthority: streaming CRL with " + encoder.size() + " entries");
+            org.mozilla.jss.crypto.Signature signer = mCRLSigningUnit.getSignatureContext(algname);
+            byte[] tbsCertList = encoder.encodeInfo(signer);
+
+            byte[] signature = mCRLSigningUnit.sign(signer);
+
+            return encoder.encode(tbsCertList, AlgorithmId.get(algname), signature);
 
         } catch (Exception e) {
-            logger.error("Unable to sign data: " + e.getMessage(), e);
-            throw new EBaseException(e);
+            throw handleCRLSigningFailure(engine, e);
 
         } finally {
             if (statsSub != null) {
                 statsSub.endTiming("signing");
             }
         }
+    }
 
-        return signedcrl;
+    /**
+     * Logs a failure to sign a CRL and returns the exception
+     * to be thrown by the CRL signing methods.
+     */
+    private EBaseException handleCRLSigningFailure(CAEngine engine, Exception e) {
+
+        if (e instanceof EBaseException) {
+            return (EBaseException) e;
+        }
+
+        if (e instanceof CRLException
+                || e instanceof X509ExtensionException
+                || e instanceof NoSuchAlgorithmException
+                || e instanceof IOException) {
+            logger.error(CMS.getLogMessage("CMSCORE_CA_CA_SIGN_CRL", e.toString(), e.getMessage()), e);
+            return new ECAException(
+                    CMS.getUserMessage("CMS_CA_SIGNING_CRL_FAILED", e.getMessage()), e);
+        }
+
+        if (e instanceof SignatureException) {
+            logger.error(CMS.getUserMessage("CMS_CA_SIGNING_OPERATION_FAILED", e.toString()), e);
+            engine.checkForAndAutoShutdown();
+            return new EBaseException(e);
+        }
+
+        logger.error("Unable to sign data: " + e.getMessage(), e);
+        return new EBaseException(e);
     }
 
     /**
@@ -1370,6 +1422,18 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
         return mLookupTime;
     }
 
+    @Override
+    public long getOCSPResponseCacheHits() {
+        OCSPResponseCache responseCache = CAEngine.getInstance().getOCSPResponseCache();
+        return responseCache == null ? 0 : responseCache.getHits();
+    }
+
+    @Override
+    public long getOCSPResponseCacheMisses() {
+        OCSPResponseCache responseCache = CAEngine.getInstance().getOCSPResponseCache();
+        return responseCache == null ? 0 : responseCache.getMisses();
+    }
+
     public ResponderID getResponderIDByName() {
         try {
             X500Name name = getOCSPX500Name();
@@ -1423,6 +1487,26 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
             throw new EBaseException("OCSP request is empty");
         }
 
+        // The cache is shared by all CAs and keyed by the issuer
+        // hashes, so it can be checked before locating the issuer.
+        OCSPResponseCache responseCache = engine.getOCSPResponseCache();
+        String key = null;
+        long cacheVersion = 0;
+
+        if (responseCache != null) {
+            // read before signing so a revocation in the meantime
+            // prevents the response from being cached
+            cacheVersion = responseCache.getVersion();
+            key = responseCache.createKey(request);
+            OCSPResponse response = key == null ? null : responseCache.get(key);
+
+            if (response != null) {
+                logger.debug("CertificateAuthority: using cached OCSP response");
+                mNumOCSPRequest++;
+                return response;
+            }
+        }
+
         /* An OCSP request can contain CertIDs for certificates
          * issued by different CAs, but each SingleResponse is valid
          * only if the combined response was signed by its issuer or
@@ -1456,9 +1540,21 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
             BigInteger serialNo = req.getCertID().getSerialNumber();
 
             CertificateRepository certificateRepository = engine.getCertificateRepository();
-            X509CertImpl cert = certificateRepository.getX509Certificate(serialNo);
+            CertStatusCache statusCache = certificateRepository.getStatusCache();
+            X500Name certIssuerDN;
+
+            if (statusCache != null) {
+                CertStatusCache.Entry entry = statusCache.get(serialNo);
+                if (entry == null) {
+                    throw new EBaseException("Certificate not found: 0x" + serialNo.toString(16));
+                }
+                certIssuerDN = entry.getIssuerDN();
+
+            } else {
+                X509CertImpl cert = certificateRepository.getX509Certificate(serialNo);
+                certIssuerDN = cert.getIssuerName();
+            }
 
-            X500Name certIssuerDN = cert.getIssuerName();
             ocspCA = engine.getCA(certIssuerDN);
         }
 
@@ -1473,6 +1569,24 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
         logger.debug("CertificateAuthority: validating OCSP request");
 
         mNumOCSPRequest++;
+
+        OCSPResponse response = createOCSPResponse(request);
+
+        if (key != null) {
+            responseCache.put(key, request, response, this::createOCSPResponse, cacheVersion);
+        }
+
+        return response;
+    }
+
+    /**
+     * Looks up the certificate status and signs a new OCSP response.
+     */
+    private OCSPResponse createOCSPResponse(OCSPRequest request) throws EBaseException {
+
+        CAEngine engine = CAEngine.getInstance();
+        TBSRequest tbsReq = request.getTBSRequest();
+
         IStatsSubsystem statsSub = (IStatsSubsystem) engine.getSubsystem(IStatsSubsystem.ID);
         long startTime = new Date().getTime();
 
@@ -1583,11 +1697,11 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
         try (DerOutputStream out = new DerOutputStream()) {
             DerOutputStream tmp = new DerOutputStream();
 
+            // encode the response data once for both signing and output
             byte rd_data[] = ASN1Util.encode(rd);
-            if (rd_data != null) {
-                mTotalData += rd_data.length;
-            }
-            rd.encode(tmp);
+            mTotalData += rd_data.length;
+
+            tmp.write(rd_data);
             AlgorithmId.get(algname).encode(tmp);
             logger.debug("adding signature");
             byte[] signature = mOCSPSigningUnit.sign(rd_data, algname);
@@ -1595,16 +1709,8 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
             tmp.putBitString(signature);
             // optional, put the certificate chains in also
 
-            DerOutputStream tmpChain = new DerOutputStream();
-            DerOutputStream tmp1 = new DerOutputStream();
-            java.security.cert.X509Certificate chains[] = mOCSPSigningUnit.getCertChain().getChain();
-
-            for (int i = 0; i < chains.length; i++) {
-                tmpChain.putDerValue(new DerValue(chains[i].getEncoded()));
-            }
-            tmp1.write(DerValue.tag_Sequence, tmpChain);
             tmp.write(DerValue.createTag(DerValue.TAG_CONTEXT, true, (byte) 0),
-                    tmp1);
+                    mOCSPSigningUnit.getEncodedCertChain());
 
             out.write(DerValue.tag_Sequence, tmp);
 
@@ -1708,8 +1814,20 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
         }
 
         try {
-            CertRecord rec = certificateRepository.readCertificateRecord(serialNo);
-            String status = rec.getStatus();
+            CertStatusCache statusCache = certificateRepository.getStatusCache();
+            String status;
+            Date revokedOn;
+
+            if (statusCache != null) {
+                CertStatusCache.Entry entry = statusCache.get(serialNo);
+                status = entry == null ? null : entry.getStatus();
+                revokedOn = entry == null ? null : entry.getRevokedOn();
+
+            } else {
+                CertRecord rec = certificateRepository.readCertificateRecord(serialNo);
+                status = rec.getStatus();
+                revokedOn = rec.getRevokedOn();
+            }
 
             if (status == null) {
                 certStatus = new UnknownInfo();
@@ -1719,11 +1837,11 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
                 // not yet valid
                 certStatus = new UnknownInfo();
             } else if (status.equals(CertRecord.STATUS_REVOKED)) {
-                certStatus = new RevokedInfo(new GeneralizedTime(rec.getRevokedOn()));
+                certStatus = new RevokedInfo(new GeneralizedTime(revokedOn));
             } else if (status.equals(CertRecord.STATUS_EXPIRED)) {
                 certStatus = new UnknownInfo();
             } else if (status.equals(CertRecord.STATUS_REVOKED_EXPIRED)) {
-                certStatus = new RevokedInfo(new GeneralizedTime(rec.getRevokedOn()));
+                certStatus = new RevokedInfo(new GeneralizedTime(revokedOn));
             } else {
                 certStatus = new UnknownInfo();
             }
@@ -0,0 +1,163 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.ca;
+
+import java.math.BigInteger;
+import java.util.Date;
+
+import org.mozilla.jss.netscape.security.util.Utils;
+
+import com.netscape.cmscore.cert.CertUtils;
+
+/**
+ * This class keeps an encoded CRL of a CRL issuing point together
+ * with its base64 and PEM encodings and the validators used for
+ * conditional requests.
+ *
+ * The base64 and PEM encodings are created on first use.
+ */
+public class EncodedCRL {
+
+    private final String id;
+    private final BigInteger crlNumber;
+    private final boolean delta;
+    private final byte[] der;
+    private final Date thisUpdate;
+    private final BigInteger baseCRLNumber;
+    private final String etag;
+
+    private volatile String base64;
+    private volatile String pem;
+
+    public EncodedCRL(String id, BigInteger crlNumber, boolean delta, byte[] der, Date thisUpdate) {
+        this(id, crlNumber, delta, der, thisUpdate, null);
+    }
+
+    /**
+     * @param baseCRLNumber CRL number of the base CRL of a delta-CRL
+     */
+    public EncodedCRL(
+            String id,
+            BigInteger crlNumber,
+            boolean delta,
+            byte[] der,
+            Date thisUpdate,
+            BigInteger baseCRLNumber) {
+
+        this.id = id;
+        this.crlNumber = crlNumber;
+        this.delta = delta;
+        this.der = der;
+        this.thisUpdate = thisUpdate;
+        this.baseCRLNumber = baseCRLNumber;
+        this.etag = "\"" + id + (delta ? "-delta-" : "-") + crlNumber.toString(16) + "\"";
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public BigInteger getCRLNumber() {
+        return crlNumber;
+    }
+
+    public boolean isDelta() {
+        return delta;
+    }
+
+    /**
+     * Returns the DER encoding of the CRL. The returned array
+     * is shared and must not be modified.
+     */
+    public byte[] getEncoded() {
+        return der;
+    }
+
+    public Date getThisUpdate() {
+        return thisUpdate;
+    }
+
+    /**
+     * Returns the CRL number of the base CRL of a delta-CRL,
+     * or null for a full CRL.
+     */
+    public BigInteger getBaseCRLNumber() {
+        return baseCRLNumber;
+    }
+
+    public String getETag() {
+        return etag;
+    }
+
+    public String getBase64() {
+        String s = base64;
+        if (s == null) {
+            s = Utils.base64encode(der, true);
+            base64 = s;
+        }
+        return s;
+    }
+
+    public String getPEM() {
+        String s = pem;
+        if (s == null) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(CertUtils.BEGIN_CRL_HEADER);
+            sb.append("\n");
+            sb.append(getBase64());
+            if (sb.charAt(sb.length() - 1) != '\n') {
+                sb.append("\n");
+            }
+            sb.append(CertUtils.END_CRL_HEADER);
+            sb.append("\n");
+            s = sb.toString();
+            pem = s;
+        }
+        return s;
+    }
+
+    /**
+     * Returns true if the value of an If-None-Match header
+     * matches the entity tag of this CRL.
+     */
+    public boolean matches(String ifNoneMatch) {
+
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+
+            if (tag.equals("*")) {
+                return true;
+            }
+
+            // weak comparison
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
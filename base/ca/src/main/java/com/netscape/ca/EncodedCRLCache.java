@@ -0,0 +1,84 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.ca;
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class keeps the most recent encoded full and delta CRL of
+ * each CRL issuing point in memory so CRL downloads do not need to
+ * read the CRL issuing point record from the database.
+ *
+ * Entries are looked up by CRL number, so an entry stored for an
+ * older CRL will not be returned once the CRL issuing point has
+ * a newer CRL. The CRL issuing point also invalidates its entries
+ * when it stores a new CRL.
+ */
+public class EncodedCRLCache {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(EncodedCRLCache.class);
+
+    private final Map<String, EncodedCRL> entries = new ConcurrentHashMap<>();
+
+    static String createKey(String id, boolean delta) {
+        return id + (delta ? ":delta" : ":full");
+    }
+
+    /**
+     * Returns the cached CRL with the given number, or null.
+     */
+    public EncodedCRL get(String id, BigInteger crlNumber, boolean delta) {
+
+        if (crlNumber == null) {
+            return null;
+        }
+
+        EncodedCRL crl = entries.get(createKey(id, delta));
+
+        if (crl == null || !crlNumber.equals(crl.getCRLNumber())) {
+            return null;
+        }
+
+        return crl;
+    }
+
+    public void put(EncodedCRL crl) {
+        logger.debug("EncodedCRLCache: Caching " + (crl.isDelta() ? "delta " : "")
+                + "CRL " + crl.getCRLNumber() + " of " + crl.getId());
+        entries.put(createKey(crl.getId(), crl.isDelta()), crl);
+    }
+
+    /**
+     * Removes cached CRLs of a CRL issuing point.
+     */
+    public void invalidate(String id) {
+        logger.debug("EncodedCRLCache: Invalidating CRLs of " + id);
+        entries.remove(createKey(id, false));
+        entries.remove(createKey(id, true));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
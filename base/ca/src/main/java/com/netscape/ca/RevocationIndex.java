@@ -0,0 +1,156 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.ca;
+
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+/**
+ * This class keeps revoked certificate entries of a CRL issuing point
+ * sorted by serial number.
+ *
+ * Reads do not lock and may run concurrently with updates. Snapshots
+ * are copy-on-write: taking a snapshot shares the current entries
+ * without copying them, and the first update after a snapshot copies
+ * the entries once before modifying them. Further updates modify the
+ * copy until the next snapshot is taken.
+ *
+ * Snapshots should only be taken where the entries are iterated
+ * while the index may be modified and a consistent view is needed,
+ * e.g. to generate a CRL. Code that only reads the entries once,
+ * e.g. to store them in the repository, should use view() instead
+ * so that the next update does not have to copy the entries.
+ */
+public class RevocationIndex {
+
+    private volatile ConcurrentSkipListMap<BigInteger, RevokedCertificate> entries = new ConcurrentSkipListMap<>();
+
+    // true if the current entries are shared by a snapshot
+    private boolean shared;
+
+    public RevocationIndex() {
+    }
+
+    public RevocationIndex(Map<BigInteger, RevokedCertificate> certs) {
+        if (certs != null) {
+            entries.putAll(certs);
+        }
+    }
+
+    public RevokedCertificate get(BigInteger serialNumber) {
+        return entries.get(serialNumber);
+    }
+
+    public boolean containsKey(BigInteger serialNumber) {
+        return entries.containsKey(serialNumber);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Returns the entries that can be modified, copying them
+     * first if they are shared by a snapshot.
+     */
+    private ConcurrentSkipListMap<BigInteger, RevokedCertificate> writableEntries() {
+
+        if (shared) {
+            entries = new ConcurrentSkipListMap<>(entries);
+            shared = false;
+        }
+
+        return entries;
+    }
+
+    public synchronized RevokedCertificate put(BigInteger serialNumber, RevokedCertificate revokedCert) {
+        return writableEntries().put(serialNumber, revokedCert);
+    }
+
+    public synchronized RevokedCertificate putIfAbsent(BigInteger serialNumber, RevokedCertificate revokedCert) {
+
+        RevokedCertificate previous = entries.get(serialNumber);
+        if (previous != null) {
+            return previous;
+        }
+
+        return writableEntries().putIfAbsent(serialNumber, revokedCert);
+    }
+
+    public synchronized void putAll(Map<BigInteger, RevokedCertificate> certs) {
+        writableEntries().putAll(certs);
+    }
+
+    public synchronized RevokedCertificate remove(BigInteger serialNumber) {
+
+        if (!entries.containsKey(serialNumber)) {
+            return null;
+        }
+
+        return writableEntries().remove(serialNumber);
+    }
+
+    public synchronized void clear() {
+        entries = new ConcurrentSkipListMap<>();
+        shared = false;
+    }
+
+    /**
+     * Returns view of the current entries in serial number order.
+     */
+    public Collection<RevokedCertificate> values() {
+        return entries.values();
+    }
+
+    /**
+     * Returns a read-only sorted view of the current entries. Unlike
+     * snapshot() the view reflects later updates, but it does not
+     * cause the next update to copy the entries.
+     */
+    public NavigableMap<BigInteger, RevokedCertificate> view() {
+        return Collections.unmodifiableNavigableMap(entries);
+    }
+
+    /**
+     * Returns a read-only sorted snapshot of the entries. The snapshot
+     * does not change when the index is modified afterwards.
+     */
+    public synchronized NavigableMap<BigInteger, RevokedCertificate> snapshot() {
+        shared = true;
+        return Collections.unmodifiableNavigableMap(entries);
+    }
+
+    /**
+     * Returns a copy of the entries as a Hashtable for
+     * X509CRLImpl.
+     */
+    public Hashtable<BigInteger, RevokedCertificate> toHashtable() {
+        return new Hashtable<>(entries);
+    }
+}
@@ -39,6 +39,8 @@ import org.mozilla.jss.netscape.security.util.Utils;
 import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
 
 import com.netscape.ca.CRLIssuingPoint;
+import com.netscape.ca.EncodedCRL;
+import com.netscape.ca.EncodedCRLCache;
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.IArgBlock;
 import com.netscape.certsrv.base.ICRLPrettyPrint;
@@ -243,16 +245,29 @@ public class DisplayCRL extends CMSServlet {
             crlDisplayType = "cachedCRL";
         header.addStringValue("crlDisplayType", crlDisplayType);
 
-        try {
-            crlRecord = crlRepository.readCRLIssuingPointRecord(crlIssuingPointId);
-        } catch (EBaseException e) {
-            header.addStringValue("error", e.toString(locale));
-            return;
+        // base64 encoding of the current CRL
+        EncodedCRL encodedCRL = null;
+        EncodedCRLCache encodedCRLCache = engine.getEncodedCRLCache();
+        boolean cacheable = crlIP != null && crlIP.isCRLGenerationEnabled() &&
+                crlDisplayType.equals("base64Encoded");
+
+        if (cacheable) {
+            encodedCRL = encodedCRLCache.get(crlIssuingPointId, crlIP.getCRLNumber(), false);
         }
-        if (crlRecord == null) {
-            logger.warn(CMS.getLogMessage("CMSGW_CRL_NOT_YET_UPDATED_1", crlIssuingPointId));
-            header.addStringValue("error", new ECMSGWException(CMS.getUserMessage(locale, "CMS_GW_CRL_NOT_YET_UPDATED")).toString());
-            return;
+
+        // the CRL issuing point record is not needed for a cached CRL
+        if (encodedCRL == null) {
+            try {
+                crlRecord = crlRepository.readCRLIssuingPointRecord(crlIssuingPointId);
+            } catch (EBaseException e) {
+                header.addStringValue("error", e.toString(locale));
+                return;
+            }
+            if (crlRecord == null) {
+                logger.warn(CMS.getLogMessage("CMSGW_CRL_NOT_YET_UPDATED_1", crlIssuingPointId));
+                header.addStringValue("error", new ECMSGWException(CMS.getUserMessage(locale, "CMS_GW_CRL_NOT_YET_UPDATED")).toString());
+                return;
+            }
         }
 
         header.addStringValue("crlIssuingPoint", crlIssuingPointId);
@@ -269,14 +284,17 @@ public class DisplayCRL extends CMSServlet {
                 header.addStringValue("crlNumber", crlIP.getCRLNumber().toString());
             }
         }
-        long lCRLSize = crlRecord.getCRLSize().longValue();
+        long lCRLSize = encodedCRL != null ? crlIP.getCRLSize() : crlRecord.getCRLSize().longValue();
         header.addLongValue("crlSize", lCRLSize);
 
         if (crlIP != null) {
             header.addStringValue("crlDescription", crlIP.getDescription());
         }
 
-        if (!crlDisplayType.equals("cachedCRL")) {
+        if (encodedCRL != null) {
+            logger.debug("DisplayCRL: Using cached CRL " + encodedCRL.getCRLNumber());
+
+        } else if (!crlDisplayType.equals("cachedCRL")) {
             byte[] crlbytes = crlRecord.getCRL();
 
             if (crlbytes == null) {
@@ -292,13 +310,19 @@ public class DisplayCRL extends CMSServlet {
                     crl = new X509CRLImpl(crlbytes);
                 }
 
+                if (cacheable && crlRecord.getCRLNumber() != null) {
+                    encodedCRL = new EncodedCRL(crlIssuingPointId, crlRecord.getCRLNumber(),
+                            false, crlbytes, crl.getThisUpdate());
+                    encodedCRLCache.put(encodedCRL);
+                }
+
             } catch (Exception e) {
                 logger.warn(CMS.getLogMessage("CMSGW_ERR_DECODE_CRL", e.toString()), e);
                 header.addStringValue("error", new ECMSGWException(CMS.getUserMessage(locale, "CMS_GW_DECODE_CRL_FAILED")).toString());
             }
         }
 
-        if (crl != null || (isCRLCacheEnabled && crlDisplayType.equals("cachedCRL"))) {
+        if (crl != null || encodedCRL != null || (isCRLCacheEnabled && crlDisplayType.equals("cachedCRL"))) {
             if (crlDisplayType.equals("entireCRL") || crlDisplayType.equals("cachedCRL")) {
                 ICRLPrettyPrint crlDetails = null;
                 if (crlDisplayType.equals("entireCRL")) {
@@ -345,8 +369,12 @@ public class DisplayCRL extends CMSServlet {
                         "crlPrettyPrint", crlDetails.toString(locale, lCRLSize, 0, 0));
             } else if (crlDisplayType.equals("base64Encoded")) {
                 try {
-                    byte[] ba = crl.getEncoded();
-                    String crlBase64Encoded = Utils.base64encode(ba, true);
+                    String crlBase64Encoded;
+                    if (encodedCRL != null) {
+                        crlBase64Encoded = encodedCRL.getBase64();
+                    } else {
+                        crlBase64Encoded = Utils.base64encode(crl.getEncoded(), true);
+                    }
                     int length = crlBase64Encoded.length();
                     int i = 0;
                     int j = 0;
@@ -20,6 +20,7 @@ package com.netscape.cms.servlet.cert;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.security.cert.CRLException;
+import java.util.Date;
 import java.util.Locale;
 
 import javax.servlet.ServletConfig;
@@ -36,6 +37,8 @@ import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
 
 import com.netscape.ca.CRLIssuingPoint;
 import com.netscape.ca.CertificateAuthority;
+import com.netscape.ca.EncodedCRL;
+import com.netscape.ca.EncodedCRLCache;
 import com.netscape.certsrv.authorization.EAuthzAccessDenied;
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.IArgBlock;
@@ -172,6 +175,33 @@ public class GetCRL extends CMSServlet {
         if (ca != null)
             crlIP = engine.getCRLIssuingPoint(crlId);
 
+        boolean download = op.equals("getCRL") || op.equals("importCRL") ||
+                op.equals("getDeltaCRL") || op.equals("importDeltaCRL");
+        boolean delta = op.equals("getDeltaCRL") || op.equals("importDeltaCRL");
+
+        // CRL numbers of an issuing point are current only
+        // if the issuing point generates the CRLs
+        EncodedCRLCache encodedCRLCache = engine.getEncodedCRLCache();
+        boolean cacheable = download && crlIP != null && crlIP.isCRLGenerationEnabled();
+
+        if (cacheable) {
+            BigInteger crlNumber = delta ? crlIP.getDeltaCRLNumber() : crlIP.getCRLNumber();
+            EncodedCRL encodedCRL = encodedCRLCache.get(crlId, crlNumber, delta);
+
+            // cached delta-CRL must still be based on the current CRL
+            if (encodedCRL != null && delta && !crlIP.isThisCurrentDeltaCRL(encodedCRL.getBaseCRLNumber())) {
+                logger.debug("GetCRL: Cached delta CRL " + crlNumber + " is not current");
+                encodedCRL = null;
+            }
+
+            if (encodedCRL != null) {
+                logger.debug("GetCRL: Serving cached " + (delta ? "delta " : "") + "CRL " + crlNumber);
+                sendCRL(httpReq, httpResp, op, crlId, encodedCRL.getEncoded(), encodedCRL);
+                cmsReq.setStatus(CMSRequest.SUCCESS);
+                return;
+            }
+        }
+
         try {
             crlRecord = crlRepository.readCRLIssuingPointRecord(crlId);
         } catch (EBaseException e) {
@@ -280,7 +310,16 @@ public class GetCRL extends CMSServlet {
             }
         }
 
-        String mimeType = "application/x-pkcs7-crl";
+        EncodedCRL encodedCRL = null;
+
+        if (download) {
+            encodedCRL = createEncodedCRL(crlId, crlRecord, delta, crlbytes, crl);
+
+            if (encodedCRL != null && cacheable &&
+                    (!delta || crlIP.isThisCurrentDeltaCRL(encodedCRL.getBaseCRLNumber()))) {
+                encodedCRLCache.put(encodedCRL);
+            }
+        }
 
         if (op.equals("checkCRLcache") || op.equals("checkCRL") || op.equals("displayCRL")) {
             header.addStringValue("toDo", op);
@@ -432,7 +471,88 @@ public class GetCRL extends CMSServlet {
                 cmsReq.setStatus(CMSRequest.ERROR);
             }
             return;
-        } else if (op.equals("importCRL") || op.equals("importDeltaCRL")) {
+        } else if (!download) {
+            logger.error(CMS.getLogMessage("CMSGW_INVALID_OPTIONS_SELECTED"));
+            throw new ECMSGWException(CMS.getUserMessage("CMS_GW_INVALID_OPTIONS_SELECTED"));
+        }
+
+        sendCRL(httpReq, httpResp, op, crlId, bytes, encodedCRL);
+        //		cmsReq.setResult(null);
+        cmsReq.setStatus(CMSRequest.SUCCESS);
+        return;
+    }
+
+    /**
+     * Creates the encoded form of a downloaded CRL with the CRL
+     * number from the same record, or returns null if the record
+     * does not provide a consistent CRL.
+     */
+    private EncodedCRL createEncodedCRL(
+            String crlId,
+            CRLIssuingPointRecord crlRecord,
+            boolean delta,
+            byte[] crlbytes,
+            X509CRLImpl crl) {
+
+        BigInteger crlNumber = crlRecord.getCRLNumber();
+        if (crlNumber == null) {
+            return null;
+        }
+
+        Date thisUpdate = crlRecord.getThisUpdate();
+        BigInteger baseCRLNumber = null;
+
+        if (delta) {
+            BigInteger deltaNumber = crlRecord.getDeltaCRLNumber();
+            if (deltaNumber == null || deltaNumber.compareTo(crlNumber) < 0) {
+                return null;
+            }
+
+            Long deltaSize = crlRecord.getDeltaCRLSize();
+            if (deltaSize == null || deltaSize.longValue() == -1) {
+                return null;
+            }
+
+            crlNumber = deltaNumber;
+
+            try {
+                if (crl == null) {
+                    crl = new X509CRLImpl(crlbytes, false);
+                }
+                thisUpdate = crl.getThisUpdate();
+                baseCRLNumber = CRLIssuingPoint.getBaseCRLNumber(crl);
+            } catch (Exception e) {
+                logger.warn("GetCRL: Unable to decode delta CRL header: " + e.getMessage(), e);
+                return null;
+            }
+
+            if (baseCRLNumber == null) {
+                return null;
+            }
+        }
+
+        if (thisUpdate == null) {
+            return null;
+        }
+
+        return new EncodedCRL(crlId, crlNumber, delta, crlbytes, thisUpdate, baseCRLNumber);
+    }
+
+    /**
+     * Sends a downloaded CRL, or a 304 (Not Modified) status
+     * if the client already has the same CRL.
+     */
+    private void sendCRL(
+            HttpServletRequest httpReq,
+            HttpServletResponse httpResp,
+            String op,
+            String crlId,
+            byte[] bytes,
+            EncodedCRL encodedCRL) throws EBaseException {
+
+        String mimeType = "application/x-pkcs7-crl";
+
+        if (op.equals("importCRL") || op.equals("importDeltaCRL")) {
             if (clientIsMSIE(httpReq))
                 mimeType = "application/pkix-crl";
             else
@@ -445,9 +565,17 @@ public class GetCRL extends CMSServlet {
             mimeType = "application/octet-stream";
             httpResp.setHeader("Content-disposition",
                     "attachment; filename=delta-" + crlId + ".crl");
-        } else {
-            logger.error(CMS.getLogMessage("CMSGW_INVALID_OPTIONS_SELECTED"));
-            throw new ECMSGWException(CMS.getUserMessage("CMS_GW_INVALID_OPTIONS_SELECTED"));
+        }
+
+        if (encodedCRL != null) {
+            httpResp.setHeader("ETag", encodedCRL.getETag());
+            httpResp.setDateHeader("Last-Modified", encodedCRL.getThisUpdate().getTime());
+
+            if (encodedCRL.matches(httpReq.getHeader("If-None-Match"))) {
+                logger.debug("GetCRL: CRL not modified: " + encodedCRL.getETag());
+                httpResp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
         }
 
         try {
@@ -462,9 +590,6 @@ public class GetCRL extends CMSServlet {
             logger.error(CMS.getLogMessage("CMSGW_ERROR_DISPLAYING_CRLINFO"), e);
             throw new ECMSGWException(CMS.getUserMessage("CMS_GW_DISPLAYING_CRLINFO_ERROR"), e);
         }
-        //		cmsReq.setResult(null);
-        cmsReq.setStatus(CMSRequest.SUCCESS);
-        return;
     }
 
     private String hexToDecimal(String hex) {
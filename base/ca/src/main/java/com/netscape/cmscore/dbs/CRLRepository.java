@@ -19,7 +19,7 @@ package com.netscape.cmscore.dbs;
 
 import java.math.BigInteger;
 import java.util.Date;
-import java.util.Hashtable;
+import java.util.Map;
 import java.util.Vector;
 
 import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
@@ -307,9 +307,50 @@ public class CRLRepository extends Repository {
             Date nextUpdate,
             BigInteger crlNumber,
             Long crlSize,
-            Hashtable<BigInteger, RevokedCertificate> revokedCerts,
-            Hashtable<BigInteger, RevokedCertificate> unrevokedCerts,
-            Hashtable<BigInteger, RevokedCertificate> expiredCerts)
+            Map<BigInteger, RevokedCertificate> revokedCerts,
+            Map<BigInteger, RevokedCertificate> unrevokedCerts,
+            Map<BigInteger, RevokedCertificate> expiredCerts)
+            throws EBaseException {
+
+        updateCRLIssuingPointRecord(
+                id,
+                newCRL,
+                thisUpdate,
+                nextUpdate,
+                crlNumber,
+                crlSize,
+                revokedCerts,
+                unrevokedCerts,
+                expiredCerts,
+                false);
+    }
+
+    /**
+     * Updates CRL issuing point record.
+     *
+     * @param id issuing point record id
+     * @param newCRL encoded binary CRL
+     * @param thisUpdate time of this update
+     * @param nextUpdate time of next update
+     * @param crlNumber CRL number
+     * @param crlSize CRL size
+     * @param revokedCerts list of revoked certificates
+     * @param unrevokedCerts list of released from hold certificates
+     * @param expiredCerts list of expired certificates
+     * @param clearJournal remove CRL cache journal merged into the lists
+     * @exception EBaseException failed to update issuing point record
+     */
+    public void updateCRLIssuingPointRecord(
+            String id,
+            byte[] newCRL,
+            Date thisUpdate,
+            Date nextUpdate,
+            BigInteger crlNumber,
+            Long crlSize,
+            Map<BigInteger, RevokedCertificate> revokedCerts,
+            Map<BigInteger, RevokedCertificate> unrevokedCerts,
+            Map<BigInteger, RevokedCertificate> expiredCerts,
+            boolean clearJournal)
             throws EBaseException {
 
         logger.info("CRLReposiotry: Updating CRL issuing point record");
@@ -344,6 +385,11 @@ public class CRLRepository extends Repository {
             mods.add(CRLIssuingPointRecord.ATTR_FIRST_UNSAVED, Modification.MOD_REPLACE, CRLIssuingPointRecord.CLEAN_CACHE);
         }
 
+        if (clearJournal) {
+            mods.add(CRLIssuingPointRecord.ATTR_CRL_CACHE_JOURNAL, Modification.MOD_REPLACE,
+                    new Vector<CRLCacheJournalEntry>());
+        }
+
         modifyCRLIssuingPointRecord(id, mods);
     }
 
@@ -357,8 +403,8 @@ public class CRLRepository extends Repository {
      */
     public void updateRevokedCerts(
             String id,
-            Hashtable<BigInteger, RevokedCertificate> revokedCerts,
-            Hashtable<BigInteger, RevokedCertificate> unrevokedCerts)
+            Map<BigInteger, RevokedCertificate> revokedCerts,
+            Map<BigInteger, RevokedCertificate> unrevokedCerts)
             throws EBaseException {
 
         logger.info("CRLReposiotry: Updating revoked certificates");
@@ -378,7 +424,7 @@ public class CRLRepository extends Repository {
      * @param expiredCerts list of expired certificates
      * @exception EBaseException failed to update issuing point record
      */
-    public void updateExpiredCerts(String id, Hashtable<BigInteger, RevokedCertificate> expiredCerts)
+    public void updateExpiredCerts(String id, Map<BigInteger, RevokedCertificate> expiredCerts)
             throws EBaseException {
         ModificationSet mods = new ModificationSet();
 
@@ -398,9 +444,29 @@ public class CRLRepository extends Repository {
      * @exception EBaseException failed to update issuing point record
      */
     public void updateCRLCache(String id, Long crlSize,
-            Hashtable<BigInteger, RevokedCertificate> revokedCerts,
-            Hashtable<BigInteger, RevokedCertificate> unrevokedCerts,
-            Hashtable<BigInteger, RevokedCertificate> expiredCerts)
+            Map<BigInteger, RevokedCertificate> revokedCerts,
+            Map<BigInteger, RevokedCertificate> unrevokedCerts,
+            Map<BigInteger, RevokedCertificate> expiredCerts)
+            throws EBaseException {
+        updateCRLCache(id, crlSize, revokedCerts, unrevokedCerts, expiredCerts, false);
+    }
+
+    /**
+     * Updates CRL issuing point record with CRL cache info.
+     *
+     * @param id issuing point record id
+     * @param crlSize CRL size
+     * @param revokedCerts list of revoked certificates
+     * @param unrevokedCerts list of released from hold certificates
+     * @param expiredCerts list of expired certificates
+     * @param clearJournal remove CRL cache journal merged into the lists
+     * @exception EBaseException failed to update issuing point record
+     */
+    public void updateCRLCache(String id, Long crlSize,
+            Map<BigInteger, RevokedCertificate> revokedCerts,
+            Map<BigInteger, RevokedCertificate> unrevokedCerts,
+            Map<BigInteger, RevokedCertificate> expiredCerts,
+            boolean clearJournal)
             throws EBaseException {
         ModificationSet mods = new ModificationSet();
 
@@ -416,6 +482,43 @@ public class CRLRepository extends Repository {
                 Modification.MOD_REPLACE, expiredCerts);
         mods.add(CRLIssuingPointRecord.ATTR_FIRST_UNSAVED,
                 Modification.MOD_REPLACE, CRLIssuingPointRecord.CLEAN_CACHE);
+        if (clearJournal) {
+            mods.add(CRLIssuingPointRecord.ATTR_CRL_CACHE_JOURNAL,
+                    Modification.MOD_REPLACE, new Vector<CRLCacheJournalEntry>());
+        }
+        modifyCRLIssuingPointRecord(id, mods);
+    }
+
+    /**
+     * Appends a change of the CRL cache to the CRL cache journal
+     * of the issuing point record. Only the changed entry is written,
+     * the journal is merged into the CRL cache lists by updateCRLCache().
+     *
+     * @param id issuing point record id
+     * @param entry CRL cache journal entry
+     * @exception EBaseException failed to update issuing point record
+     */
+    public void appendCRLCacheJournal(String id, CRLCacheJournalEntry entry)
+            throws EBaseException {
+        ModificationSet mods = new ModificationSet();
+
+        mods.add(CRLIssuingPointRecord.ATTR_CRL_CACHE_JOURNAL,
+                Modification.MOD_ADD, entry);
+        modifyCRLIssuingPointRecord(id, mods);
+    }
+
+    /**
+     * Removes the CRL cache journal from the issuing point record
+     * without merging it into the CRL cache lists.
+     *
+     * @param id issuing point record id
+     * @exception EBaseException failed to update issuing point record
+     */
+    public void clearCRLCacheJournal(String id) throws EBaseException {
+        ModificationSet mods = new ModificationSet();
+
+        mods.add(CRLIssuingPointRecord.ATTR_CRL_CACHE_JOURNAL,
+                Modification.MOD_REPLACE, new Vector<CRLCacheJournalEntry>());
         modifyCRLIssuingPointRecord(id, mods);
     }
 
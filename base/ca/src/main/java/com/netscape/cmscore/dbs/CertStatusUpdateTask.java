@@ -24,6 +24,9 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.dogtagpki.server.ca.CAEngine;
 
@@ -43,16 +46,34 @@ public class CertStatusUpdateTask implements Runnable {
 
     ScheduledExecutorService executorService;
 
+    /**
+     * Cert status updates hold the write lock, CRL generation holds
+     * the read lock so multiple CRL issuing points can read revoked
+     * certs concurrently.
+     */
+    ReadWriteLock lock;
+
     public CertStatusUpdateTask(
             CertificateRepository repository,
             int interval,
             int pageSize,
             int maxRecords) {
 
+        this(repository, interval, pageSize, maxRecords, new ReentrantReadWriteLock());
+    }
+
+    public CertStatusUpdateTask(
+            CertificateRepository repository,
+            int interval,
+            int pageSize,
+            int maxRecords,
+            ReadWriteLock lock) {
+
         this.repository = repository;
         this.interval = interval;
         this.pageSize = pageSize;
         this.maxRecords = maxRecords;
+        this.lock = lock;
     }
 
     public void start() {
@@ -219,22 +240,36 @@ public class CertStatusUpdateTask implements Runnable {
      *
      * @exception EBaseException failed to update
      */
-    public synchronized void updateCertStatus() throws Exception {
+    public void updateCertStatus() throws Exception {
 
         logger.info("CertStatusUpdateTask: Updating cert status");
         // this code and CRLIssuingPoint.processRevokedCerts() are mutually exclusive
+        lock.writeLock().lock();
+
+        try {
+            logger.debug(CMS.getLogMessage("CMSCORE_DBS_START_VALID_SEARCH"));
+            updateInvalidCertificates();
+            logger.debug(CMS.getLogMessage("CMSCORE_DBS_FINISH_VALID_SEARCH"));
+
+            logger.debug(CMS.getLogMessage("CMSCORE_DBS_START_EXPIRED_SEARCH"));
+            updateValidCertificates();
+            logger.debug(CMS.getLogMessage("CMSCORE_DBS_FINISH_EXPIRED_SEARCH"));
 
-        logger.debug(CMS.getLogMessage("CMSCORE_DBS_START_VALID_SEARCH"));
-        updateInvalidCertificates();
-        logger.debug(CMS.getLogMessage("CMSCORE_DBS_FINISH_VALID_SEARCH"));
+            logger.debug(CMS.getLogMessage("CMSCORE_DBS_START_REVOKED_EXPIRED_SEARCH"));
+            updateRevokedExpiredCertificates();
+            logger.debug(CMS.getLogMessage("CMSCORE_DBS_FINISH_REVOKED_EXPIRED_SEARCH"));
 
-        logger.debug(CMS.getLogMessage("CMSCORE_DBS_START_EXPIRED_SEARCH"));
-        updateValidCertificates();
-        logger.debug(CMS.getLogMessage("CMSCORE_DBS_FINISH_EXPIRED_SEARCH"));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-        logger.debug(CMS.getLogMessage("CMSCORE_DBS_START_REVOKED_EXPIRED_SEARCH"));
-        updateRevokedExpiredCertificates();
-        logger.debug(CMS.getLogMessage("CMSCORE_DBS_FINISH_REVOKED_EXPIRED_SEARCH"));
+    /**
+     * Returns the lock that excludes cert status updates
+     * while revoked certs are being processed.
+     */
+    public Lock getReadLock() {
+        return lock.readLock();
     }
 
     @Override
@@ -27,6 +27,7 @@ import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
 
 import com.netscape.ca.CRLIssuingPoint;
 import com.netscape.certsrv.base.EBaseException;
+import com.netscape.cmscore.ocsp.OCSPResponseCache;
 
 import netscape.ldap.LDAPAttributeSet;
 import netscape.ldap.LDAPEntry;
@@ -108,6 +109,17 @@ public class RetrieveModificationsTask implements Runnable {
             return;
         }
 
+        CertStatusCache statusCache = repository.getStatusCache();
+        if (statusCache != null) {
+            statusCache.update(certRecord);
+        }
+
+        // responses signed before the modification are outdated
+        OCSPResponseCache ocspResponseCache = repository.getOCSPResponseCache();
+        if (ocspResponseCache != null) {
+            ocspResponseCache.remove(certRecord.getSerialNumber());
+        }
+
         String status = certRecord.getStatus();
         logger.info("RetrieveModificationsTask: status: " + status);
 
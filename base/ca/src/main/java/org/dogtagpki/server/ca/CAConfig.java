@@ -10,7 +10,9 @@ import com.netscape.certsrv.security.SigningUnitConfig;
 import com.netscape.cmscore.base.ConfigStorage;
 import com.netscape.cmscore.base.ConfigStore;
 import com.netscape.cmscore.base.SimpleProperties;
+import com.netscape.cmscore.dbs.CertStatusCacheConfig;
 import com.netscape.cmscore.ldap.PublishingConfig;
+import com.netscape.cmscore.ocsp.OCSPResponseCacheConfig;
 
 /**
  * Provides ca.* parameters.
@@ -56,4 +58,18 @@ public class CAConfig extends ConfigStore {
     public CRLConfig getCRLConfig() {
         return getSubStore("crl", CRLConfig.class);
     }
+
+    /**
+     * Returns ca.ocspResponseCache.* parameters.
+     */
+    public OCSPResponseCacheConfig getOCSPResponseCacheConfig() {
+        return getSubStore("ocspResponseCache", OCSPResponseCacheConfig.class);
+    }
+
+    /**
+     * Returns ca.certStatusCache.* parameters.
+     */
+    public CertStatusCacheConfig getCertStatusCacheConfig() {
+        return getSubStore("certStatusCache", CertStatusCacheConfig.class);
+    }
 }
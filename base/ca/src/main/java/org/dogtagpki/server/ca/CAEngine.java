@@ -33,6 +33,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.lang3.StringUtils;
 import org.dogtagpki.legacy.ca.CAPolicy;
@@ -51,6 +59,7 @@ import com.netscape.ca.CRLConfig;
 import com.netscape.ca.CRLIssuingPoint;
 import com.netscape.ca.CRLIssuingPointConfig;
 import com.netscape.ca.CertificateAuthority;
+import com.netscape.ca.EncodedCRLCache;
 import com.netscape.ca.KeyRetriever;
 import com.netscape.ca.KeyRetrieverRunner;
 import com.netscape.certsrv.base.EBaseException;
@@ -72,6 +81,8 @@ import com.netscape.cmscore.base.ConfigStore;
 import com.netscape.cmscore.cert.CertUtils;
 import com.netscape.cmscore.cert.CrossCertPairSubsystem;
 import com.netscape.cmscore.dbs.CRLRepository;
+import com.netscape.cmscore.dbs.CertStatusCache;
+import com.netscape.cmscore.dbs.CertStatusCacheConfig;
 import com.netscape.cmscore.dbs.CertStatusUpdateTask;
 import com.netscape.cmscore.dbs.CertificateRepository;
 import com.netscape.cmscore.dbs.ReplicaIDRepository;
@@ -85,6 +96,10 @@ import com.netscape.cmscore.ldapconn.LDAPConfig;
 import com.netscape.cmscore.ldapconn.LdapBoundConnFactory;
 import com.netscape.cmscore.ldapconn.PKISocketConfig;
 import com.netscape.cmscore.listeners.ListenerPlugin;
+import com.netscape.cmscore.metrics.Gauge;
+import com.netscape.cmscore.metrics.MetricsRegistry;
+import com.netscape.cmscore.ocsp.OCSPResponseCache;
+import com.netscape.cmscore.ocsp.OCSPResponseCacheConfig;
 import com.netscape.cmscore.profile.ProfileSubsystem;
 import com.netscape.cmscore.request.CertRequestRepository;
 import com.netscape.cmscore.request.RequestNotifier;
@@ -127,11 +142,22 @@ public class CAEngine extends CMSEngine {
     protected Hashtable<String, ListenerPlugin> listenerPlugins = new Hashtable<>();
 
     protected boolean ocspResponderByName = true;
+    protected OCSPResponseCache ocspResponseCache;
     protected CRLPublisher crlPublisher;
     protected CAPublisherProcessor publisherProcessor;
 
     protected Map<String, CRLIssuingPoint> crlIssuingPoints = new HashMap<>();
 
+    // shared executor running auto-updates of all CRL issuing points
+    protected ScheduledThreadPoolExecutor crlUpdateExecutor;
+    protected Gauge crlUpdateQueueGauge;
+
+    // excludes cert status updates while CRLs process revoked certs
+    protected ReadWriteLock certStatusLock = new ReentrantReadWriteLock();
+
+    // encoded CRLs served by CRL download servlets
+    protected EncodedCRLCache encodedCRLCache = new EncodedCRLCache();
+
     // for CMC shared secret operations
     protected org.mozilla.jss.crypto.X509Certificate issuanceProtectionCert;
     protected PublicKey issuanceProtectionPublicKey;
@@ -294,6 +320,14 @@ public class CAEngine extends CMSEngine {
         return ocspResponderByName;
     }
 
+    /**
+     * Returns the OCSP response cache shared by all CAs,
+     * or null if disabled.
+     */
+    public OCSPResponseCache getOCSPResponseCache() {
+        return ocspResponseCache;
+    }
+
     public CRLPublisher getCRLPublisher() {
         return crlPublisher;
     }
@@ -334,6 +368,78 @@ public class CAEngine extends CMSEngine {
         return crlIssuingPoints.remove(id);
     }
 
+    public ScheduledThreadPoolExecutor getCRLUpdateExecutor() {
+        return crlUpdateExecutor;
+    }
+
+    public EncodedCRLCache getEncodedCRLCache() {
+        return encodedCRLCache;
+    }
+
+    /**
+     * Returns the number of CRL issuing point updates that are
+     * due but waiting for an executor thread.
+     */
+    public int getCRLUpdateQueueDepth() {
+        return getCRLUpdateQueueDepth(crlUpdateExecutor);
+    }
+
+    static int getCRLUpdateQueueDepth(ScheduledThreadPoolExecutor executor) {
+
+        if (executor == null) {
+            return 0;
+        }
+
+        int depth = 0;
+        for (Runnable task : executor.getQueue()) {
+            if (((Delayed) task).getDelay(TimeUnit.MILLISECONDS) <= 0) {
+                depth++;
+            }
+        }
+
+        return depth;
+    }
+
+    /**
+     * Returns the lock held while CRL issuing points process
+     * revoked certificates. Cert status updates are excluded
+     * while the lock is held.
+     */
+    public Lock getCertStatusReadLock() {
+        return certStatusLock.readLock();
+    }
+
+    public void initCRLUpdateExecutor(CRLConfig crlConfig) throws Exception {
+
+        int maxThreads = crlConfig.getMaxUpdateThreads();
+        logger.info("CAEngine: - max CRL update threads: " + maxThreads);
+
+        crlUpdateExecutor = createCRLUpdateExecutor(maxThreads);
+
+        crlUpdateQueueGauge = MetricsRegistry.getInstance().registerGauge(
+                "crl_update_queue_depth", this::getCRLUpdateQueueDepth);
+    }
+
+    static ScheduledThreadPoolExecutor createCRLUpdateExecutor(int maxThreads) {
+
+        AtomicInteger counter = new AtomicInteger();
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(maxThreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "CRLUpdate-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        // don't run pending updates after shutdown
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        executor.setRemoveOnCancelPolicy(true);
+
+        return executor;
+    }
+
     /**
      * Get Issuance Protection Certificate
      */
@@ -509,6 +615,8 @@ public class CAEngine extends CMSEngine {
             return;
         }
 
+        initCRLUpdateExecutor(crlConfig);
+
         Enumeration<String> ipIDs = crlConfig.getSubStoreNames();
 
         if (ipIDs == null || !ipIDs.hasMoreElements()) {
@@ -679,6 +787,10 @@ public class CAEngine extends CMSEngine {
         int maxRecords = caConfig.getInteger(CertificateRepository.PROP_TRANS_MAXRECORDS, 1000000);
         logger.info("CAEngine: - max records: " + maxRecords);
 
+        int transitWindow = caConfig.getInteger(CertificateRepository.PROP_TRANS_WINDOW, 64);
+        logger.info("CAEngine: - transit window: " + transitWindow);
+        certificateRepository.setTransitWindow(transitWindow);
+
         if (certStatusUpdateTask != null) {
             certStatusUpdateTask.stop();
         }
@@ -703,7 +815,8 @@ public class CAEngine extends CMSEngine {
                 certificateRepository,
                 interval,
                 pageSize,
-                maxRecords);
+                maxRecords,
+                certStatusLock);
         certStatusUpdateTask.start();
     }
 
@@ -842,6 +955,21 @@ public class CAEngine extends CMSEngine {
             ocspResponderByName = caConfig.getBoolean("byName", true);
             logger.info("CAEngine: - by name: " + ocspResponderByName);
 
+            OCSPResponseCacheConfig ocspResponseCacheConfig = caConfig.getOCSPResponseCacheConfig();
+            if (ocspResponseCacheConfig.getEnable()) {
+                logger.info("CAEngine: Initializing OCSP response cache");
+                ocspResponseCache = new OCSPResponseCache();
+                ocspResponseCache.init(ocspResponseCacheConfig);
+
+                // remove cached responses whenever a cert record is modified
+                certificateRepository.setOCSPResponseCache(ocspResponseCache);
+
+                if (!caConfig.getBoolean("listenToCloneModifications", false)) {
+                    logger.warn("CAEngine: OCSP responses for certs revoked on other clones"
+                            + " will be served until they expire since ca.listenToCloneModifications is disabled");
+                }
+            }
+
             initCRLPublisher();
             initPublisherProcessor();
         }
@@ -912,6 +1040,10 @@ public class CAEngine extends CMSEngine {
             startPublisherProcessor();
             initCertIssuedListener();
             initCertRevokedListener();
+
+            if (ocspResponseCache != null) {
+                ocspResponseCache.startup();
+            }
         }
 
         super.startupSubsystems();
@@ -1609,6 +1741,14 @@ public class CAEngine extends CMSEngine {
 
         certificateRepository = new CertificateRepository(dbSubsystem);
         certificateRepository.init();
+
+        CertStatusCacheConfig statusCacheConfig = getConfig().getCAConfig().getCertStatusCacheConfig();
+        if (statusCacheConfig.getEnable()) {
+            logger.info("CAEngine: Initializing cert status cache");
+            CertStatusCache statusCache = new CertStatusCache(certificateRepository);
+            statusCache.init(statusCacheConfig);
+            certificateRepository.setStatusCache(statusCache);
+        }
     }
 
     public void initCrlDatabase() throws Exception {
@@ -1704,6 +1844,21 @@ public class CAEngine extends CMSEngine {
             masterCRLIssuingPoint.shutdown();
         }
 
+        if (crlUpdateQueueGauge != null) {
+            MetricsRegistry.getInstance().removeGauge(crlUpdateQueueGauge);
+        }
+
+        if (crlUpdateExecutor != null) {
+            // let running updates complete
+            crlUpdateExecutor.shutdown();
+        }
+
+        encodedCRLCache.clear();
+
+        if (ocspResponseCache != null) {
+            ocspResponseCache.shutdown();
+        }
+
         if (serialNumberUpdateTask != null) {
             serialNumberUpdateTask.stop();
         }
@@ -0,0 +1,148 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.ca;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+
+import com.netscape.cmscore.dbs.CRLCacheJournalEntry;
+
+public class CRLCacheJournalReplayTest {
+
+    static final long NOW = 1650000000000L;
+
+    RevocationIndex revokedCerts = new RevocationIndex();
+    RevocationIndex unrevokedCerts = new RevocationIndex();
+    RevocationIndex expiredCerts = new RevocationIndex();
+    RevocationIndex crlCerts = new RevocationIndex();
+
+    List<CRLCacheJournalEntry> journal = new ArrayList<>();
+
+    CRLCacheJournalEntry add(int type, long sequence, long serial) {
+        RevokedCertImpl revokedCert = new RevokedCertImpl(BigInteger.valueOf(serial), new Date(NOW + sequence), null);
+        CRLCacheJournalEntry entry = new CRLCacheJournalEntry(type, sequence, revokedCert);
+        journal.add(entry);
+        return entry;
+    }
+
+    long replay() {
+        return CRLIssuingPoint.replayCRLCacheJournal(journal, revokedCerts, unrevokedCerts, expiredCerts, crlCerts);
+    }
+
+    @Test
+    public void testEmpty() {
+        assertEquals(0, replay());
+        assertTrue(revokedCerts.isEmpty());
+        assertTrue(unrevokedCerts.isEmpty());
+        assertTrue(expiredCerts.isEmpty());
+    }
+
+    @Test
+    public void testRevokeAndUnrevoke() {
+
+        add(CRLCacheJournalEntry.REVOKED_CERT, 0, 1);
+        add(CRLCacheJournalEntry.REVOKED_CERT, 1, 2);
+        add(CRLCacheJournalEntry.UNREVOKED_CERT, 2, 1);
+
+        assertEquals(3, replay());
+
+        // unrevoking a certificate not yet on a CRL cancels the revocation
+        assertFalse(revokedCerts.containsKey(BigInteger.valueOf(1)));
+        assertTrue(revokedCerts.containsKey(BigInteger.valueOf(2)));
+        assertTrue(unrevokedCerts.isEmpty());
+    }
+
+    @Test
+    public void testUnrevokeCertOnCRL() {
+
+        // certificate on the last full CRL
+        BigInteger serial = BigInteger.valueOf(5);
+        crlCerts.put(serial, new RevokedCertImpl(serial, new Date(NOW - 1000), null));
+
+        add(CRLCacheJournalEntry.UNREVOKED_CERT, 10, 5);
+        replay();
+
+        assertTrue(unrevokedCerts.containsKey(serial));
+        assertTrue(revokedCerts.isEmpty());
+
+        // revoking it again cancels the unrevocation
+        journal.clear();
+        CRLCacheJournalEntry entry = add(CRLCacheJournalEntry.REVOKED_CERT, 11, 5);
+        assertEquals(12, replay());
+
+        assertFalse(unrevokedCerts.containsKey(serial));
+        assertSame(entry.getRevokedCert(), crlCerts.get(serial));
+    }
+
+    @Test
+    public void testSequenceOrder() {
+
+        // LDAP does not preserve the order of the values
+        add(CRLCacheJournalEntry.UNREVOKED_CERT, 4, 1);
+        add(CRLCacheJournalEntry.REVOKED_CERT, 3, 1);
+        add(CRLCacheJournalEntry.REVOKED_CERT, 5, 1);
+
+        assertEquals(6, replay());
+
+        // revoke, unrevoke, revoke
+        assertTrue(revokedCerts.containsKey(BigInteger.valueOf(1)));
+        assertEquals(new Date(NOW + 5), revokedCerts.get(BigInteger.valueOf(1)).getRevocationDate());
+        assertTrue(unrevokedCerts.isEmpty());
+    }
+
+    @Test
+    public void testExpiredCerts() {
+
+        CRLCacheJournalEntry first = add(CRLCacheJournalEntry.EXPIRED_CERT, 0, 7);
+        add(CRLCacheJournalEntry.EXPIRED_CERT, 1, 7);
+
+        assertEquals(2, replay());
+
+        assertEquals(1, expiredCerts.size());
+        assertSame(first.getRevokedCert(), expiredCerts.get(BigInteger.valueOf(7)));
+        assertTrue(revokedCerts.isEmpty());
+    }
+
+    @Test
+    public void testReplayTwice() {
+
+        // replaying a journal on top of its own result gives the same cache
+        add(CRLCacheJournalEntry.REVOKED_CERT, 0, 1);
+        add(CRLCacheJournalEntry.REVOKED_CERT, 1, 2);
+        add(CRLCacheJournalEntry.UNREVOKED_CERT, 2, 2);
+        add(CRLCacheJournalEntry.EXPIRED_CERT, 3, 3);
+
+        replay();
+        replay();
+
+        assertEquals(1, revokedCerts.size());
+        assertTrue(revokedCerts.containsKey(BigInteger.valueOf(1)));
+        assertTrue(unrevokedCerts.isEmpty());
+        assertEquals(1, expiredCerts.size());
+    }
+}
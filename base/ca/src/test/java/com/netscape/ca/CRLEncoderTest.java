@@ -0,0 +1,225 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.ca;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+import org.mozilla.jss.netscape.security.util.DerValue;
+import org.mozilla.jss.netscape.security.x509.AlgorithmId;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLNumberExtension;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
+
+/**
+ * Verifies that CRLEncoder produces the same encoding as X509CRLImpl.
+ */
+public class CRLEncoderTest {
+
+    static final long NOW = 1650000000000L;
+
+    X500Name issuer;
+    AlgorithmId algId;
+    Date thisUpdate = new Date(NOW);
+    Date nextUpdate = new Date(NOW + 86400000L);
+
+    public CRLEncoderTest() throws Exception {
+        issuer = new X500Name("CN=CA Signing Certificate,O=EXAMPLE");
+        algId = AlgorithmId.get("SHA256withRSA");
+    }
+
+    RevokedCertificate createEntry(long serial, RevocationReason reason) throws Exception {
+
+        CRLExtensions exts = null;
+        if (reason != null) {
+            exts = new CRLExtensions();
+            exts.set(CRLReasonExtension.NAME, new CRLReasonExtension(reason));
+        }
+
+        return new RevokedCertImpl(BigInteger.valueOf(serial), new Date(NOW - serial * 1000), exts);
+    }
+
+    CRLExtensions createCRLExtensions() throws Exception {
+        CRLExtensions exts = new CRLExtensions();
+        exts.set(CRLNumberExtension.NAME, new CRLNumberExtension(BigInteger.valueOf(42)));
+        return exts;
+    }
+
+    byte[] encodeInfo(Map<BigInteger, RevokedCertificate> entries, CRLExtensions exts) throws Exception {
+
+        X509CRLImpl crl = new X509CRLImpl(issuer, algId, thisUpdate, nextUpdate, new Hashtable<>(entries), exts);
+
+        try (DerOutputStream out = new DerOutputStream()) {
+            crl.encodeInfo(out);
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Returns the serial numbers in the order of the encoded entries.
+     */
+    List<BigInteger> getSerialNumbers(byte[] tbsCertList) throws Exception {
+
+        List<BigInteger> serials = new ArrayList<>();
+
+        int offset = CRLEncoder.findRevokedCertificates(tbsCertList);
+        if (offset < 0) {
+            return serials;
+        }
+
+        int end = offset + CRLEncoder.headerLength(tbsCertList, offset) + CRLEncoder.contentLength(tbsCertList, offset);
+        offset += CRLEncoder.headerLength(tbsCertList, offset);
+
+        while (offset < end) {
+            int serial = offset + CRLEncoder.headerLength(tbsCertList, offset);
+            int start = serial + CRLEncoder.headerLength(tbsCertList, serial);
+            int length = CRLEncoder.contentLength(tbsCertList, serial);
+            serials.add(new BigInteger(Arrays.copyOfRange(tbsCertList, start, start + length)));
+
+            offset += CRLEncoder.headerLength(tbsCertList, offset) + CRLEncoder.contentLength(tbsCertList, offset);
+        }
+
+        return serials;
+    }
+
+    void verify(Map<BigInteger, RevokedCertificate> entries, CRLExtensions exts) throws Exception {
+
+        byte[] expected = encodeInfo(entries, exts);
+
+        // stream the entries in the order used by X509CRLImpl
+        Map<BigInteger, RevokedCertificate> ordered = new LinkedHashMap<>();
+        for (BigInteger serial : getSerialNumbers(expected)) {
+            ordered.put(serial, entries.get(serial));
+        }
+        assertEquals(entries.keySet(), ordered.keySet());
+
+        CRLEncoder encoder = new CRLEncoder(issuer, algId, thisUpdate, nextUpdate, ordered, exts);
+        assertArrayEquals(expected, encoder.encodeInfo(null));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        verify(new LinkedHashMap<>(), null);
+        verify(new LinkedHashMap<>(), createCRLExtensions());
+    }
+
+    @Test
+    public void testEntriesWithoutExtensions() throws Exception {
+
+        Map<BigInteger, RevokedCertificate> entries = new LinkedHashMap<>();
+        for (long serial : new long[] { 1, 0x7f, 0x80, 0xff, 0x8000, 0x7fffffffffffffffL }) {
+            entries.put(BigInteger.valueOf(serial), createEntry(serial, null));
+        }
+
+        verify(entries, null);
+        verify(entries, createCRLExtensions());
+    }
+
+    @Test
+    public void testEntriesWithExtensions() throws Exception {
+
+        Map<BigInteger, RevokedCertificate> entries = new LinkedHashMap<>();
+        entries.put(BigInteger.valueOf(1), createEntry(1, null));
+        entries.put(BigInteger.valueOf(2), createEntry(2, RevocationReason.KEY_COMPROMISE));
+        entries.put(BigInteger.valueOf(3), createEntry(3, null));
+        entries.put(BigInteger.valueOf(4), createEntry(4, RevocationReason.CERTIFICATE_HOLD));
+
+        verify(entries, createCRLExtensions());
+    }
+
+    @Test
+    public void testSingleEntry() throws Exception {
+
+        Map<BigInteger, RevokedCertificate> entries = new LinkedHashMap<>();
+        entries.put(BigInteger.valueOf(5), createEntry(5, RevocationReason.SUPERSEDED));
+
+        verify(entries, createCRLExtensions());
+    }
+
+    @Test
+    public void testManyEntries() throws Exception {
+
+        // large enough to require multi-byte DER lengths
+        Map<BigInteger, RevokedCertificate> entries = new LinkedHashMap<>();
+        for (long serial = 1; serial <= 3000; serial++) {
+            RevocationReason reason = serial % 3 == 0 ? RevocationReason.AFFILIATION_CHANGED : null;
+            entries.put(BigInteger.valueOf(serial), createEntry(serial, reason));
+        }
+
+        verify(entries, createCRLExtensions());
+    }
+
+    @Test
+    public void testEncodeSignedCRL() throws Exception {
+
+        Map<BigInteger, RevokedCertificate> entries = new LinkedHashMap<>();
+        entries.put(BigInteger.valueOf(1), createEntry(1, RevocationReason.KEY_COMPROMISE));
+
+        CRLEncoder encoder = new CRLEncoder(issuer, algId, thisUpdate, nextUpdate, entries, createCRLExtensions());
+        byte[] tbsCertList = encoder.encodeInfo(null);
+
+        byte[] signature = new byte[256];
+        Arrays.fill(signature, (byte) 0xa5);
+
+        // same encoding as CertificateAuthority.sign(X509CRLImpl, String)
+        byte[] expected;
+        try (DerOutputStream out = new DerOutputStream();
+                DerOutputStream tmp = new DerOutputStream()) {
+            tmp.write(tbsCertList);
+            algId.encode(tmp);
+            tmp.putBitString(signature);
+            out.write(DerValue.tag_Sequence, tmp);
+            expected = out.toByteArray();
+        }
+
+        assertArrayEquals(expected, encoder.encode(tbsCertList, algId, signature));
+    }
+
+    @Test
+    public void testHeader() throws Exception {
+
+        for (long length : new long[] { 0, 1, 127, 128, 255, 256, 65535, 65536, 16777216 }) {
+
+            DerOutputStream out = new DerOutputStream();
+            CRLEncoder.writeHeader(out, DerValue.tag_Sequence, length);
+            byte[] header = out.toByteArray();
+
+            assertEquals(CRLEncoder.lengthOf(length), header.length + length);
+
+            byte[] data = Arrays.copyOf(header, header.length + 1);
+            assertEquals(header.length, CRLEncoder.headerLength(data, 0));
+            assertEquals(length, CRLEncoder.contentLength(data, 0));
+        }
+    }
+}
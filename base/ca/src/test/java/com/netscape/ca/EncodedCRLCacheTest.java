@@ -0,0 +1,162 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.ca;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Date;
+
+import org.junit.Test;
+
+public class EncodedCRLCacheTest {
+
+    static final Date NOW = new Date(1650000000000L);
+
+    EncodedCRLCache cache = new EncodedCRLCache();
+
+    EncodedCRL createCRL(String id, long crlNumber, boolean delta) {
+        return new EncodedCRL(
+                id,
+                BigInteger.valueOf(crlNumber),
+                delta,
+                new byte[] { 0x30, 0x00 },
+                NOW,
+                delta ? BigInteger.valueOf(crlNumber - 1) : null);
+    }
+
+    @Test
+    public void testCreateKey() throws Exception {
+
+        assertEquals("MasterCRL:full", EncodedCRLCache.createKey("MasterCRL", false));
+        assertEquals("MasterCRL:delta", EncodedCRLCache.createKey("MasterCRL", true));
+        assertNotEquals(
+                EncodedCRLCache.createKey("MasterCRL", false),
+                EncodedCRLCache.createKey("MasterCRL", true));
+    }
+
+    @Test
+    public void testGet() throws Exception {
+
+        EncodedCRL crl = createCRL("MasterCRL", 5, false);
+        cache.put(crl);
+
+        assertSame(crl, cache.get("MasterCRL", BigInteger.valueOf(5), false));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testMissing() throws Exception {
+
+        assertNull(cache.get("MasterCRL", BigInteger.ONE, false));
+
+        cache.put(createCRL("MasterCRL", 5, false));
+
+        // unknown issuing point
+        assertNull(cache.get("OtherCRL", BigInteger.valueOf(5), false));
+
+        // unknown CRL number
+        assertNull(cache.get("MasterCRL", null, false));
+    }
+
+    @Test
+    public void testOutdatedCRL() throws Exception {
+
+        cache.put(createCRL("MasterCRL", 5, false));
+
+        // issuing point has a newer CRL
+        assertNull(cache.get("MasterCRL", BigInteger.valueOf(6), false));
+        assertNull(cache.get("MasterCRL", BigInteger.valueOf(4), false));
+    }
+
+    @Test
+    public void testReplace() throws Exception {
+
+        cache.put(createCRL("MasterCRL", 5, false));
+
+        EncodedCRL crl = createCRL("MasterCRL", 6, false);
+        cache.put(crl);
+
+        assertEquals(1, cache.size());
+        assertNull(cache.get("MasterCRL", BigInteger.valueOf(5), false));
+        assertSame(crl, cache.get("MasterCRL", BigInteger.valueOf(6), false));
+    }
+
+    @Test
+    public void testFullAndDelta() throws Exception {
+
+        EncodedCRL fullCRL = createCRL("MasterCRL", 5, false);
+        EncodedCRL deltaCRL = createCRL("MasterCRL", 6, true);
+
+        cache.put(fullCRL);
+        cache.put(deltaCRL);
+
+        assertEquals(2, cache.size());
+        assertSame(fullCRL, cache.get("MasterCRL", BigInteger.valueOf(5), false));
+        assertSame(deltaCRL, cache.get("MasterCRL", BigInteger.valueOf(6), true));
+
+        // full and delta CRLs are kept separately
+        assertNull(cache.get("MasterCRL", BigInteger.valueOf(5), true));
+        assertNull(cache.get("MasterCRL", BigInteger.valueOf(6), false));
+
+        assertNull(fullCRL.getBaseCRLNumber());
+        assertEquals(BigInteger.valueOf(5), deltaCRL.getBaseCRLNumber());
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+
+        cache.put(createCRL("MasterCRL", 5, false));
+        cache.put(createCRL("MasterCRL", 6, true));
+        cache.put(createCRL("OtherCRL", 3, false));
+
+        cache.invalidate("MasterCRL");
+
+        assertEquals(1, cache.size());
+        assertNull(cache.get("MasterCRL", BigInteger.valueOf(5), false));
+        assertNull(cache.get("MasterCRL", BigInteger.valueOf(6), true));
+        assertEquals(BigInteger.valueOf(3), cache.get("OtherCRL", BigInteger.valueOf(3), false).getCRLNumber());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testETag() throws Exception {
+
+        EncodedCRL fullCRL = createCRL("MasterCRL", 26, false);
+        EncodedCRL deltaCRL = createCRL("MasterCRL", 26, true);
+
+        assertEquals("\"MasterCRL-1a\"", fullCRL.getETag());
+        assertEquals("\"MasterCRL-delta-1a\"", deltaCRL.getETag());
+
+        assertTrue(fullCRL.matches("\"MasterCRL-1a\""));
+        assertTrue(fullCRL.matches("W/\"MasterCRL-1a\""));
+        assertTrue(fullCRL.matches("\"MasterCRL-19\", \"MasterCRL-1a\""));
+        assertTrue(fullCRL.matches("*"));
+
+        assertFalse(fullCRL.matches(null));
+        assertFalse(fullCRL.matches("\"MasterCRL-19\""));
+        assertFalse(fullCRL.matches("\"MasterCRL-delta-1a\""));
+    }
+}
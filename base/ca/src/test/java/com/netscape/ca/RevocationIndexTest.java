@@ -0,0 +1,280 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.ca;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+
+import org.junit.Test;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+public class RevocationIndexTest {
+
+    static final long NOW = 1650000000000L;
+
+    RevocationIndex index = new RevocationIndex();
+
+    RevokedCertificate createRevokedCert(long serial) {
+        return new RevokedCertImpl(BigInteger.valueOf(serial), new Date(NOW + serial));
+    }
+
+    void put(long serial) {
+        index.put(BigInteger.valueOf(serial), createRevokedCert(serial));
+    }
+
+    List<BigInteger> serials(NavigableMap<BigInteger, RevokedCertificate> map) {
+        return new ArrayList<>(map.keySet());
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+
+        assertTrue(index.isEmpty());
+        assertEquals(0, index.size());
+        assertNull(index.get(BigInteger.ONE));
+        assertTrue(index.snapshot().isEmpty());
+        assertTrue(index.toHashtable().isEmpty());
+        assertNull(index.remove(BigInteger.ONE));
+    }
+
+    @Test
+    public void testInitialEntries() throws Exception {
+
+        Map<BigInteger, RevokedCertificate> certs = new HashMap<>();
+        certs.put(BigInteger.valueOf(3), createRevokedCert(3));
+        certs.put(BigInteger.valueOf(1), createRevokedCert(1));
+
+        index = new RevocationIndex(certs);
+
+        assertEquals(2, index.size());
+        assertArrayEquals(
+                new BigInteger[] { BigInteger.ONE, BigInteger.valueOf(3) },
+                serials(index.snapshot()).toArray());
+
+        // null is treated as an empty list
+        assertTrue(new RevocationIndex(null).isEmpty());
+    }
+
+    @Test
+    public void testSortedBySerialNumber() throws Exception {
+
+        put(30);
+        put(10);
+        put(20);
+        index.put(new BigInteger("123456789012345678901234567890"), createRevokedCert(40));
+
+        NavigableMap<BigInteger, RevokedCertificate> snapshot = index.snapshot();
+
+        assertEquals(BigInteger.valueOf(10), snapshot.firstKey());
+        assertEquals(new BigInteger("123456789012345678901234567890"), snapshot.lastKey());
+        assertArrayEquals(
+                new BigInteger[] {
+                        BigInteger.valueOf(10),
+                        BigInteger.valueOf(20),
+                        BigInteger.valueOf(30),
+                        new BigInteger("123456789012345678901234567890") },
+                serials(snapshot).toArray());
+    }
+
+    @Test
+    public void testPutIfAbsent() throws Exception {
+
+        RevokedCertificate cert = createRevokedCert(1);
+        assertNull(index.putIfAbsent(BigInteger.ONE, cert));
+
+        // existing entry is kept
+        assertSame(cert, index.putIfAbsent(BigInteger.ONE, createRevokedCert(1)));
+        assertSame(cert, index.get(BigInteger.ONE));
+    }
+
+    @Test
+    public void testRemoveAndClear() throws Exception {
+
+        put(1);
+        put(2);
+
+        assertTrue(index.containsKey(BigInteger.ONE));
+        assertEquals(BigInteger.ONE, index.remove(BigInteger.ONE).getSerialNumber());
+        assertFalse(index.containsKey(BigInteger.ONE));
+        assertNull(index.remove(BigInteger.ONE));
+
+        index.clear();
+        assertTrue(index.isEmpty());
+    }
+
+    @Test
+    public void testSnapshotIsReadOnly() throws Exception {
+
+        put(1);
+
+        NavigableMap<BigInteger, RevokedCertificate> snapshot = index.snapshot();
+
+        assertThrows(UnsupportedOperationException.class,
+                () -> snapshot.put(BigInteger.TEN, createRevokedCert(10)));
+        assertThrows(UnsupportedOperationException.class,
+                () -> snapshot.remove(BigInteger.ONE));
+    }
+
+    @Test
+    public void testSnapshotIsStable() throws Exception {
+
+        put(1);
+        put(2);
+        put(3);
+
+        NavigableMap<BigInteger, RevokedCertificate> snapshot = index.snapshot();
+
+        // modifications after the snapshot don't change it
+        put(4);
+        index.remove(BigInteger.ONE);
+        index.putIfAbsent(BigInteger.valueOf(5), createRevokedCert(5));
+
+        assertArrayEquals(
+                new BigInteger[] { BigInteger.ONE, BigInteger.valueOf(2), BigInteger.valueOf(3) },
+                serials(snapshot).toArray());
+
+        assertArrayEquals(
+                new BigInteger[] { BigInteger.valueOf(2), BigInteger.valueOf(3),
+                        BigInteger.valueOf(4), BigInteger.valueOf(5) },
+                serials(index.snapshot()).toArray());
+
+        index.clear();
+        assertTrue(index.snapshot().isEmpty());
+        assertEquals(3, snapshot.size());
+    }
+
+    @Test
+    public void testSnapshotsShareEntries() throws Exception {
+
+        put(1);
+        put(2);
+
+        // unchanged index returns the same entries without copying
+        NavigableMap<BigInteger, RevokedCertificate> snapshot1 = index.snapshot();
+        NavigableMap<BigInteger, RevokedCertificate> snapshot2 = index.snapshot();
+
+        assertEquals(snapshot1, snapshot2);
+        assertSame(snapshot1.get(BigInteger.ONE), snapshot2.get(BigInteger.ONE));
+
+        // no-op updates don't affect the snapshots
+        assertNull(index.remove(BigInteger.TEN));
+        index.putIfAbsent(BigInteger.ONE, createRevokedCert(1));
+
+        put(3);
+
+        assertEquals(2, snapshot1.size());
+        assertEquals(2, snapshot2.size());
+        assertEquals(3, index.snapshot().size());
+    }
+
+    @Test
+    public void testView() throws Exception {
+
+        put(1);
+
+        NavigableMap<BigInteger, RevokedCertificate> view = index.view();
+
+        assertThrows(UnsupportedOperationException.class,
+                () -> view.put(BigInteger.TEN, createRevokedCert(10)));
+
+        // taking a view does not make the next update copy the entries,
+        // so the view still shows the current entries afterwards
+        put(2);
+        index.remove(BigInteger.ONE);
+
+        assertArrayEquals(
+                new BigInteger[] { BigInteger.valueOf(2) },
+                serials(view).toArray());
+
+        // a snapshot keeps the view's entries unchanged
+        index.snapshot();
+        put(3);
+
+        assertEquals(1, view.size());
+        assertEquals(2, index.view().size());
+    }
+
+    @Test
+    public void testToHashtable() throws Exception {
+
+        put(1);
+        put(2);
+
+        Map<BigInteger, RevokedCertificate> table = index.toHashtable();
+        put(3);
+
+        assertEquals(2, table.size());
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws Exception {
+
+        int threads = 4;
+        int count = 1000;
+        List<Thread> list = new ArrayList<>();
+        List<NavigableMap<BigInteger, RevokedCertificate>> snapshots = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            long offset = t * count;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < count; i++) {
+                    put(offset + i);
+                }
+            });
+            list.add(thread);
+            thread.start();
+        }
+
+        // snapshots taken during the updates are sorted and stable
+        for (int i = 0; i < 20; i++) {
+            snapshots.add(index.snapshot());
+        }
+
+        for (Thread thread : list) {
+            thread.join();
+        }
+
+        assertEquals(threads * count, index.size());
+        assertEquals(threads * count, index.snapshot().size());
+
+        for (NavigableMap<BigInteger, RevokedCertificate> snapshot : snapshots) {
+            int size = snapshot.size();
+            BigInteger previous = null;
+            for (BigInteger serial : snapshot.keySet()) {
+                assertTrue(previous == null || previous.compareTo(serial) < 0);
+                previous = serial;
+            }
+            assertEquals(size, snapshot.size());
+        }
+    }
+}
@@ -0,0 +1,121 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.dbs;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.junit.Test;
+
+public class CertStatusUpdateTaskTest {
+
+    /**
+     * Holds the write lock in a separate thread, the same way
+     * updateCertStatus() does, and checks whether the read lock
+     * can be acquired in the meantime.
+     */
+    boolean canReadWhileUpdating(CertStatusUpdateTask updater, Lock readLock) throws Exception {
+
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread thread = new Thread(() -> {
+            updater.lock.writeLock().lock();
+            try {
+                locked.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                updater.lock.writeLock().unlock();
+            }
+        });
+        thread.start();
+
+        try {
+            assertTrue(locked.await(10, TimeUnit.SECONDS));
+
+            boolean acquired = readLock.tryLock(100, TimeUnit.MILLISECONDS);
+            if (acquired) {
+                readLock.unlock();
+            }
+            return acquired;
+
+        } finally {
+            release.countDown();
+            thread.join();
+        }
+    }
+
+    @Test
+    public void testSharedLock() throws Exception {
+
+        ReadWriteLock lock = new ReentrantReadWriteLock();
+        CertStatusUpdateTask task = new CertStatusUpdateTask(null, 600, 200, 1000, lock);
+
+        assertFalse(canReadWhileUpdating(task, lock.readLock()));
+        assertFalse(canReadWhileUpdating(task, task.getReadLock()));
+    }
+
+    @Test
+    public void testSeparateLocks() throws Exception {
+
+        // tasks of different repositories don't block each other
+        CertStatusUpdateTask task1 = new CertStatusUpdateTask(null, 600, 200, 1000);
+        CertStatusUpdateTask task2 = new CertStatusUpdateTask(null, 600, 200, 1000);
+
+        assertFalse(canReadWhileUpdating(task1, task1.getReadLock()));
+        assertTrue(canReadWhileUpdating(task1, task2.getReadLock()));
+    }
+
+    @Test
+    public void testReadersShareLock() throws Exception {
+
+        CertStatusUpdateTask task = new CertStatusUpdateTask(null, 600, 200, 1000);
+
+        // multiple issuing points can process revoked certs concurrently
+        Lock readLock = task.getReadLock();
+        readLock.lock();
+        try {
+            Thread thread = new Thread(() -> {
+                Lock lock = task.getReadLock();
+                if (lock.tryLock()) {
+                    lock.unlock();
+                } else {
+                    throw new IllegalStateException("Read lock not shared");
+                }
+            });
+
+            boolean[] failed = new boolean[1];
+            thread.setUncaughtExceptionHandler((t, e) -> failed[0] = true);
+            thread.start();
+            thread.join();
+
+            assertFalse(failed[0]);
+
+        } finally {
+            readLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package org.dogtagpki.server.ca;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class CRLUpdateExecutorTest {
+
+    ScheduledThreadPoolExecutor executor;
+
+    @After
+    public void tearDown() throws Exception {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testNoExecutor() throws Exception {
+        assertEquals(0, CAEngine.getCRLUpdateQueueDepth(null));
+    }
+
+    @Test
+    public void testDaemonThreads() throws Exception {
+
+        executor = CAEngine.createCRLUpdateExecutor(2);
+
+        CountDownLatch done = new CountDownLatch(1);
+        boolean[] daemon = new boolean[1];
+        String[] name = new String[1];
+
+        executor.schedule(() -> {
+            daemon[0] = Thread.currentThread().isDaemon();
+            name[0] = Thread.currentThread().getName();
+            done.countDown();
+        }, 0, TimeUnit.MILLISECONDS);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(daemon[0]);
+        assertTrue(name[0].startsWith("CRLUpdate-"));
+    }
+
+    @Test
+    public void testQueueDepth() throws Exception {
+
+        executor = CAEngine.createCRLUpdateExecutor(1);
+
+        // occupy the only thread so that due updates have to wait
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        executor.schedule(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 0, TimeUnit.MILLISECONDS);
+
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // two updates due now, one scheduled in the future
+        AtomicInteger runs = new AtomicInteger();
+        executor.schedule(runs::incrementAndGet, 0, TimeUnit.MILLISECONDS);
+        executor.schedule(runs::incrementAndGet, 0, TimeUnit.MILLISECONDS);
+        executor.schedule(runs::incrementAndGet, 1, TimeUnit.HOURS);
+
+        assertEquals(3, executor.getQueue().size());
+        assertEquals(2, CAEngine.getCRLUpdateQueueDepth(executor));
+
+        release.countDown();
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (runs.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(2, runs.get());
+        assertEquals(0, CAEngine.getCRLUpdateQueueDepth(executor));
+        assertEquals(1, executor.getQueue().size());
+    }
+
+    @Test
+    public void testRescheduleImmediately() throws Exception {
+
+        executor = CAEngine.createCRLUpdateExecutor(1);
+
+        // pending update is cancelled and replaced with an immediate one
+        CountDownLatch done = new CountDownLatch(1);
+        ScheduledFuture<?> pending = executor.schedule(done::countDown, 1, TimeUnit.HOURS);
+
+        assertTrue(pending.cancel(false));
+
+        // cancelled update is removed from the queue
+        assertEquals(0, executor.getQueue().size());
+
+        executor.schedule(done::countDown, 0, TimeUnit.MILLISECONDS);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testShutdownDropsPendingUpdates() throws Exception {
+
+        executor = CAEngine.createCRLUpdateExecutor(1);
+
+        AtomicInteger runs = new AtomicInteger();
+        executor.schedule(runs::incrementAndGet, 1, TimeUnit.HOURS);
+
+        executor.shutdown();
+
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+        assertFalse(executor.getQueue().iterator().hasNext());
+    }
+}
@@ -17,6 +17,7 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cmsutil.http;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
@@ -31,8 +32,12 @@ import com.netscape.cmsutil.net.ISocketFactory;
 
 /**
  * basic http client.
- * not optimized for performance.
  * handles only string content.
+ * <P>
+ * By default the connection is closed after each response. If keep-alive
+ * is enabled, requests are sent with HTTP/1.1 and the connection stays open
+ * for further requests as long as the server allows it, so TLS connections
+ * do not need a new handshake for each request.
  */
 public class HttpClient {
     protected ISocketFactory mFactory = null;
@@ -46,6 +51,11 @@ public class HttpClient {
     protected BufferedReader mBufferedReader = null;
     protected SSLCertificateApprovalCallback mCertApprovalCallback = null;
     protected boolean mConnected = false;
+    protected BufferedInputStream mBufferedInputStream = null;
+
+    protected boolean mKeepAlive = false;
+    protected long mLastUsed; // milliseconds
+    protected int mRequests; // requests sent over the current connection
     // for auditing purposes
     protected String mHost;
     protected String mPort;
@@ -90,7 +100,10 @@ public class HttpClient {
         mInputStreamReader = new InputStreamReader(mInputStream, "UTF8");
         mBufferedReader = new BufferedReader(mInputStreamReader);
         mOutputStreamWriter = new OutputStreamWriter(mOutputStream, "UTF8");
+        mBufferedInputStream = new BufferedInputStream(mInputStream);
         mConnected = true;
+        mLastUsed = System.currentTimeMillis();
+        mRequests = 0;
     }
 
     public void connect(String host, int port) throws IOException {
@@ -101,9 +114,36 @@ public class HttpClient {
         return mConnected;
     }
 
+    public void setKeepAlive(boolean keepAlive) {
+        mKeepAlive = keepAlive;
+    }
+
+    public boolean isKeepAlive() {
+        return mKeepAlive;
+    }
+
+    /**
+     * Returns the time in milliseconds since the connection was
+     * established or since the last response was received.
+     */
+    public long getIdleTime() {
+        return System.currentTimeMillis() - mLastUsed;
+    }
+
+    /**
+     * Returns the number of requests sent over the current connection.
+     */
+    public int getRequestCount() {
+        return mRequests;
+    }
+
     /**
      * Sends a request to http server.
      * Returns a http response.
+     *
+     * @exception HttpNoResponseException the request could not be written
+     *            or the connection was closed without a response
+     * @exception IOException the response could not be read
      */
     public HttpResponse send(HttpRequest request)
             throws IOException {
@@ -111,24 +151,56 @@ public class HttpClient {
 
         if (mOutputStream == null)
             throw new IOException("Output stream not initialized");
-        request.write(mOutputStreamWriter);
+
+        if (mKeepAlive) {
+            request.setHttpVers(Http.Vers1_1);
+            if (request.getHeader("Host") == null) {
+                request.setHeader("Host", mHost + ":" + mPort);
+            }
+        }
+
         try {
-            resp.parse(mBufferedReader);
+            request.write(mOutputStreamWriter);
+        } catch (IOException e) {
+            disconnect();
+            throw new HttpNoResponseException("Unable to send request: " + e.getMessage(), e);
+        }
+
+        mRequests++;
+
+        try {
+            // check whether the server closed the connection without responding
+            mBufferedInputStream.mark(1);
+            if (mBufferedInputStream.read() < 0) {
+                throw new HttpNoResponseException("Connection closed without response");
+            }
+            mBufferedInputStream.reset();
+
+            resp.parse(mBufferedInputStream);
         } catch (IOException e) {
             // XXX should we disconnect in all cases ?
             disconnect();
             throw e;
         }
-        disconnect();
+
+        if (mKeepAlive && resp.isKeepAlive()) {
+            mLastUsed = System.currentTimeMillis();
+        } else {
+            disconnect();
+        }
+
         return resp;
     }
 
     public void disconnect()
             throws IOException {
-        mSocket.close();
+        mConnected = false;
         mInputStream = null;
         mOutputStream = null;
-        mConnected = false;
+        mBufferedInputStream = null;
+        if (mSocket != null) {
+            mSocket.close();
+        }
     }
 
     public InputStream getInputStream() {
@@ -18,9 +18,12 @@
 package com.netscape.cmsutil.http;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.Enumeration;
 import java.util.Hashtable;
 
@@ -34,6 +37,10 @@ public class HttpMessage {
     protected Hashtable<String, String> mHeaders = null;
     protected String mContent = null; // arbitrary content chars assumed.
 
+    // whether the end of the message body was determined by the end of
+    // the stream, in which case the connection cannot be reused
+    protected boolean mReadUntilEOF = false;
+
     /**
      * Instantiate a HttpResponse for write to http client.
      */
@@ -87,29 +94,77 @@ public class HttpMessage {
             throws IOException {
         mHeaders = new Hashtable<>();
 
-        int colon;
-        String line, key, value;
+        while (true) {
+            String line = reader.readLine();
+            if (line == null || line.equals(""))
+                break;
+            parseHeader(line);
+        }
+    }
+
+    /**
+     * read http headers from a byte stream.
+     */
+    public void readHeaders(InputStream is)
+            throws IOException {
+        mHeaders = new Hashtable<>();
 
         while (true) {
-            line = reader.readLine();
+            String line = readLine(is);
             if (line == null || line.equals(""))
                 break;
-            colon = line.indexOf(':');
-            if (colon == -1) {
-                mHeaders = null;
-                throw new HttpProtocolException("Bad Http header format");
+            parseHeader(line);
+        }
+    }
+
+    void parseHeader(String line) throws HttpProtocolException {
+
+        int colon = line.indexOf(':');
+        if (colon == -1) {
+            mHeaders = null;
+            throw new HttpProtocolException("Bad Http header format");
+        }
+
+        String key = line.substring(0, colon);
+        String value = line.substring(colon + 1);
+        mHeaders.put(key.toLowerCase(), value.trim());
+    }
+
+    /**
+     * Reads a line terminated by LF or CRLF from a byte stream.
+     *
+     * @return the line without the terminator, or null at the end of the stream
+     */
+    static String readLine(InputStream is) throws IOException {
+
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+
+        while ((b = is.read()) != -1) {
+            if (b == Http.LF) {
+                byte[] bytes = line.toByteArray();
+                int length = bytes.length;
+                if (length > 0 && bytes[length - 1] == Http.CR) {
+                    length--;
+                }
+                return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
             }
-            key = line.substring(0, colon);
-            value = line.substring(colon + 1);
-            mHeaders.put(key.toLowerCase(), value.trim());
+            line.write(b);
+        }
+
+        if (line.size() == 0) {
+            return null;
         }
+
+        return line.toString(StandardCharsets.ISO_8859_1.name());
     }
 
     public void write(OutputStreamWriter writer)
             throws IOException {
         writer.write(mLine + Http.CRLF);
         writeHeaders(writer);
-        writer.flush();
+        // send headers and content together to avoid a delayed
+        // acknowledgement of a partial request on persistent connections
         if (mContent != null) {
             writer.write(mContent);
         }
@@ -155,6 +210,133 @@ public class HttpMessage {
         }
     }
 
+    /**
+     * Parses a message from a byte stream. The message body is delimited
+     * by the Content-Length header or by chunked transfer coding, so
+     * the stream can be used for further messages. Otherwise the body
+     * extends to the end of the stream if the message can have a body
+     * without these headers.
+     */
+    public void parse(InputStream is)
+            throws IOException {
+        String line = readLine(is);
+
+        if (line == null) {
+            throw new HttpEofException("End of stream reached");
+        }
+        if (line.equals("")) {
+            throw new HttpProtocolException("Bad Http req/resp line " + line);
+        }
+        mLine = line;
+        mContent = null;
+        mReadUntilEOF = false;
+
+        readHeaders(is);
+
+        String encoding = mHeaders.get("transfer-encoding");
+        String lenstr = mHeaders.get("content-length");
+
+        if (encoding != null && encoding.toLowerCase().contains("chunked")) {
+            mContent = new String(readChunked(is), StandardCharsets.UTF_8);
+
+        } else if (lenstr != null) {
+            int len;
+            try {
+                len = Integer.parseInt(lenstr.trim());
+            } catch (NumberFormatException e) {
+                throw new HttpProtocolException("Bad Content-Length " + lenstr);
+            }
+            if (len < 0) {
+                throw new HttpProtocolException("Bad Content-Length " + lenstr);
+            }
+            mContent = new String(readFully(is, len), StandardCharsets.UTF_8);
+
+        } else if (hasBodyUntilEOF()) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = is.read(buffer)) != -1) {
+                os.write(buffer, 0, n);
+            }
+            if (os.size() > 0) mContent = os.toString(StandardCharsets.UTF_8.name());
+            mReadUntilEOF = true;
+        }
+    }
+
+    /**
+     * Returns whether a message without Content-Length and
+     * Transfer-Encoding headers has a body that extends to
+     * the end of the stream.
+     */
+    protected boolean hasBodyUntilEOF() {
+        return true;
+    }
+
+    static byte[] readFully(InputStream is, int len) throws IOException {
+
+        byte[] buffer = new byte[len];
+        int total = 0;
+
+        while (total < len) {
+            int n = is.read(buffer, total, len - total);
+            if (n < 0) {
+                throw new HttpEofException("End of stream reached after " + total + " of " + len + " bytes");
+            }
+            total += n;
+        }
+
+        return buffer;
+    }
+
+    static byte[] readChunked(InputStream is) throws IOException {
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        while (true) {
+            String line = readLine(is);
+            if (line == null) {
+                throw new HttpEofException("End of stream reached in chunked content");
+            }
+
+            // ignore chunk extensions
+            int semicolon = line.indexOf(';');
+            String size = semicolon < 0 ? line.trim() : line.substring(0, semicolon).trim();
+
+            int len;
+            try {
+                len = Integer.parseInt(size, 16);
+            } catch (NumberFormatException e) {
+                throw new HttpProtocolException("Bad chunk size " + line);
+            }
+            if (len < 0) {
+                throw new HttpProtocolException("Bad chunk size " + line);
+            }
+
+            if (len == 0) {
+                break;
+            }
+
+            os.write(readFully(is, len));
+
+            // CRLF after chunk data
+            readLine(is);
+        }
+
+        // skip trailer headers
+        String line;
+        while ((line = readLine(is)) != null && !line.equals("")) {
+        }
+
+        return os.toByteArray();
+    }
+
+    /**
+     * Returns whether the message body was terminated by the end of the stream.
+     */
+    public boolean isReadUntilEOF() {
+        return mReadUntilEOF;
+    }
+
     public void reset() {
         mLine = null;
         mHeaders = null;
@@ -0,0 +1,43 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmsutil.http;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a request could not be written or the connection was
+ * closed before any part of the response was received, e.g. when
+ * the server has closed an idle keep-alive connection. The request
+ * can be resent on a new connection.
+ *
+ * Errors after the server started to respond (e.g. a read timeout
+ * or a truncated response) are not reported with this exception
+ * since the server may already have processed the request.
+ */
+public class HttpNoResponseException extends IOException {
+
+    private static final long serialVersionUID = -2204934371412573641L;
+
+    public HttpNoResponseException(String msg) {
+        super(msg);
+    }
+
+    public HttpNoResponseException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
+}
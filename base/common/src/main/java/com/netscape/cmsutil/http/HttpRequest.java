@@ -19,6 +19,7 @@ package com.netscape.cmsutil.http;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
 
 /**
@@ -60,6 +61,13 @@ public class HttpRequest extends HttpMessage {
         mURI = uri;
     }
 
+    /**
+     * Sets the HTTP version of the request line. Defaults to {@link Http#HttpVers}.
+     */
+    public void setHttpVers(String httpVers) {
+        mHttpVers = httpVers;
+    }
+
     /**
      * write request to the http client
      */
@@ -74,7 +82,7 @@ public class HttpRequest extends HttpMessage {
             throw e;
         }
 
-        mLine = mMethod + " " + mURI + " " + Http.HttpVers;
+        mLine = mMethod + " " + mURI + " " + (mHttpVers == null ? Http.HttpVers : mHttpVers);
         super.write(writer);
     }
 
@@ -85,6 +93,25 @@ public class HttpRequest extends HttpMessage {
     public void parse(BufferedReader reader)
             throws IOException {
         super.parse(reader);
+        parseRequestLine();
+    }
+
+    @Override
+    public void parse(InputStream is)
+            throws IOException {
+        super.parse(is);
+        parseRequestLine();
+    }
+
+    /**
+     * A request without Content-Length or Transfer-Encoding has no body.
+     */
+    @Override
+    protected boolean hasBodyUntilEOF() {
+        return false;
+    }
+
+    void parseRequestLine() throws HttpProtocolException {
 
         int method = mLine.indexOf(Http.SP);
 
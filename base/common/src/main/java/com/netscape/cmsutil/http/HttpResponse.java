@@ -19,6 +19,7 @@ package com.netscape.cmsutil.http;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
 
 /**
@@ -94,6 +95,53 @@ public class HttpResponse extends HttpMessage {
         mReasonPhrase = null;
 
         super.parse(reader);
+        parseStatusLine();
+    }
+
+    @Override
+    public void parse(InputStream is)
+            throws IOException {
+        mHttpVers = null;
+        mStatusCode = null;
+        mReasonPhrase = null;
+
+        super.parse(is);
+        parseStatusLine();
+    }
+
+    /**
+     * Informational, 204 (No Content), and 304 (Not Modified)
+     * responses do not have a body.
+     */
+    @Override
+    protected boolean hasBodyUntilEOF() {
+        String[] parts = mLine.split(" ");
+        if (parts.length < 2) return true;
+
+        String code = parts[1];
+        return !code.startsWith("1") && !code.equals("204") && !code.equals("304");
+    }
+
+    /**
+     * Returns whether the connection can be used for further requests
+     * after this response, i.e. the server did not ask to close it and
+     * the end of the response was not determined by closing it.
+     */
+    public boolean isKeepAlive() {
+
+        if (mReadUntilEOF) return false;
+
+        String connection = getHeader("Connection");
+
+        if (Http.Vers1_1.equals(mHttpVers)) {
+            return connection == null || !connection.toLowerCase().contains("close");
+        }
+
+        // HTTP/1.0 connections are closed unless requested otherwise
+        return connection != null && connection.toLowerCase().contains("keep-alive");
+    }
+
+    void parseStatusLine() throws HttpProtocolException {
 
         int httpvers = mLine.indexOf(' ');
 
@@ -0,0 +1,305 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmsutil.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Sends requests to a loopback HTTP server to verify that
+ * persistent connections are reused.
+ */
+public class HttpClientTest {
+
+    ServerSocket serverSocket;
+    Thread serverThread;
+
+    AtomicInteger connections = new AtomicInteger();
+    AtomicInteger requests = new AtomicInteger();
+
+    // response options
+    volatile boolean chunked;
+    volatile boolean close;
+    volatile boolean noResponse;
+    volatile boolean truncate;
+
+    @Before
+    public void setUp() throws Exception {
+
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+
+        serverThread = new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+
+                    Thread handler = new Thread(() -> handle(socket));
+                    handler.setDaemon(true);
+                    handler.start();
+
+                } catch (IOException e) {
+                    // server closed
+                }
+            }
+        });
+
+        serverThread.setDaemon(true);
+        serverThread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        serverSocket.close();
+        serverThread.join(1000);
+    }
+
+    /**
+     * Echoes the request content until the client closes the connection.
+     */
+    void handle(Socket socket) {
+
+        try (Socket s = socket) {
+
+            InputStream is = new BufferedInputStream(s.getInputStream());
+            OutputStream os = s.getOutputStream();
+
+            while (true) {
+                HttpRequest request = new HttpRequest();
+                try {
+                    request.parse(is);
+                } catch (HttpEofException e) {
+                    return;
+                }
+
+                requests.incrementAndGet();
+
+                if (noResponse) {
+                    // close the connection without responding
+                    return;
+                }
+
+                String content = "echo:" + request.getContent();
+                byte[] body = content.getBytes(StandardCharsets.UTF_8);
+
+                StringBuilder sb = new StringBuilder();
+                sb.append(Http.Vers1_1 + " 200 OK\r\n");
+                sb.append("Content-Type: text/plain\r\n");
+
+                if (close) {
+                    sb.append("Connection: close\r\n");
+                }
+
+                if (chunked) {
+                    sb.append("Transfer-Encoding: chunked\r\n\r\n");
+                    os.write(sb.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+                    // send body in two chunks
+                    int half = body.length / 2;
+                    os.write((Integer.toHexString(half) + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                    os.write(body, 0, half);
+                    os.write(("\r\n" + Integer.toHexString(body.length - half) + ";ext=1\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                    os.write(body, half, body.length - half);
+                    os.write("\r\n0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+
+                } else if (truncate) {
+                    // drop the connection in the middle of the body
+                    sb.append("Content-Length: " + body.length + "\r\n\r\n");
+                    os.write(sb.toString().getBytes(StandardCharsets.ISO_8859_1));
+                    os.write(body, 0, body.length / 2);
+                    os.flush();
+                    return;
+
+                } else {
+                    sb.append("Content-Length: " + body.length + "\r\n\r\n");
+                    os.write(sb.toString().getBytes(StandardCharsets.ISO_8859_1));
+                    os.write(body);
+                }
+
+                os.flush();
+
+                if (close) {
+                    return;
+                }
+            }
+
+        } catch (IOException e) {
+            // connection closed
+        }
+    }
+
+    HttpResponse send(HttpClient client, String content) throws IOException {
+
+        if (!client.connected()) {
+            client.connect("127.0.0.1", serverSocket.getLocalPort(), 5000);
+        }
+
+        HttpRequest request = new HttpRequest();
+        request.setMethod(HttpRequest.POST);
+        request.setURI("/test");
+        request.setHeader("Content-Length",
+                Integer.toString(content.getBytes(StandardCharsets.UTF_8).length));
+        request.setContent(content);
+
+        return client.send(request);
+    }
+
+    @Test
+    public void testKeepAlive() throws Exception {
+
+        HttpClient client = new HttpClient();
+        client.setKeepAlive(true);
+
+        for (int i = 0; i < 10; i++) {
+            HttpResponse response = send(client, "request " + i);
+            assertEquals("200", response.getStatusCode());
+            assertEquals("echo:request " + i, response.getContent());
+            assertTrue(client.connected());
+        }
+
+        assertEquals(10, requests.get());
+        assertEquals(1, connections.get());
+        assertEquals(10, client.getRequestCount());
+
+        client.disconnect();
+    }
+
+    @Test
+    public void testChunkedResponse() throws Exception {
+
+        chunked = true;
+
+        HttpClient client = new HttpClient();
+        client.setKeepAlive(true);
+
+        for (int i = 0; i < 3; i++) {
+            HttpResponse response = send(client, "chunked request " + i);
+            assertEquals("echo:chunked request " + i, response.getContent());
+        }
+
+        assertEquals(1, connections.get());
+
+        client.disconnect();
+    }
+
+    @Test
+    public void testMultiByteContent() throws Exception {
+
+        HttpClient client = new HttpClient();
+        client.setKeepAlive(true);
+
+        // Content-Length counts bytes, not characters
+        String content = "\u00e9\u00e8\u4e2d\u6587";
+
+        for (int i = 0; i < 3; i++) {
+            HttpResponse response = send(client, content);
+            assertEquals("echo:" + content, response.getContent());
+        }
+
+        assertEquals(1, connections.get());
+
+        client.disconnect();
+    }
+
+    @Test
+    public void testConnectionClose() throws Exception {
+
+        close = true;
+
+        HttpClient client = new HttpClient();
+        client.setKeepAlive(true);
+
+        for (int i = 0; i < 3; i++) {
+            HttpResponse response = send(client, "request " + i);
+            assertEquals("echo:request " + i, response.getContent());
+            assertFalse(client.connected());
+        }
+
+        assertEquals(3, connections.get());
+    }
+
+    @Test
+    public void testWithoutKeepAlive() throws Exception {
+
+        HttpClient client = new HttpClient();
+
+        for (int i = 0; i < 3; i++) {
+            HttpResponse response = send(client, "request " + i);
+            assertEquals("echo:request " + i, response.getContent());
+            assertFalse(client.connected());
+        }
+
+        assertEquals(3, connections.get());
+    }
+
+    @Test
+    public void testNoResponse() throws Exception {
+
+        HttpClient client = new HttpClient();
+        client.setKeepAlive(true);
+
+        send(client, "request");
+
+        noResponse = true;
+
+        try {
+            send(client, "request");
+            fail("Expected HttpNoResponseException");
+        } catch (HttpNoResponseException e) {
+            // the request can be resent
+        }
+
+        assertFalse(client.connected());
+    }
+
+    @Test
+    public void testTruncatedResponse() throws Exception {
+
+        truncate = true;
+
+        HttpClient client = new HttpClient();
+        client.setKeepAlive(true);
+
+        try {
+            send(client, "request");
+            fail("Expected HttpEofException");
+        } catch (HttpNoResponseException e) {
+            fail("Truncated response reported as no response");
+        } catch (HttpEofException e) {
+            // the server may have processed the request
+        }
+
+        assertFalse(client.connected());
+    }
+}
@@ -0,0 +1,80 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmsutil.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Parses HTTP responses with Content-Length and chunked bodies.
+ */
+public class HttpMessageTest {
+
+    static InputStream createStream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static HttpResponse parse(String text) throws Exception {
+        HttpResponse response = new HttpResponse();
+        response.parse(createStream(text));
+        return response;
+    }
+
+    @Test
+    public void testContentLength() throws Exception {
+
+        HttpResponse response = parse("HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nhello");
+        assertEquals("hello", response.getContent());
+    }
+
+    @Test
+    public void testChunked() throws Exception {
+
+        HttpResponse response = parse("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "5\r\nhello\r\n6;ext=1\r\n world\r\n0\r\n\r\n");
+        assertEquals("hello world", response.getContent());
+    }
+
+    @Test
+    public void testNegativeContentLength() throws Exception {
+
+        try {
+            parse("HTTP/1.1 200 OK\r\nContent-Length: -1\r\n\r\nhello");
+            fail("Expected HttpProtocolException");
+        } catch (HttpProtocolException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNegativeChunkSize() throws Exception {
+
+        try {
+            parse("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n-5\r\nhello\r\n0\r\n\r\n");
+            fail("Expected HttpProtocolException");
+        } catch (HttpProtocolException e) {
+            // expected
+        }
+    }
+}
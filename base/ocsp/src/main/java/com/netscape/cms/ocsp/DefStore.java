@@ -20,13 +20,14 @@ package com.netscape.cms.ocsp;
 import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.cert.X509CRL;
-import java.security.cert.X509CRLEntry;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.mozilla.jss.asn1.GeneralizedTime;
 import org.mozilla.jss.asn1.INTEGER;
@@ -93,6 +94,21 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
     protected boolean mByName = true;
     protected boolean mIncludeNextUpdate = false;
     protected Hashtable<String, CRLIPContainer> mCacheCRLIssuingPoints = new Hashtable<>();
+
+    // revoked serial indexes by CRL issuing point ID
+    protected Map<String, RevokedSerialIndex> mRevokedSerialIndexes = new ConcurrentHashMap<>();
+
+    // attributes needed to match a request to a CRL issuing point
+    private static final String[] CRL_IP_HEADER_ATTRS = {
+            CRLIssuingPointRecord.ATTR_ID,
+            CRLIssuingPointRecord.ATTR_CA_CERT,
+            CRLIssuingPointRecord.ATTR_CRL_NUMBER,
+            CRLIssuingPointRecord.ATTR_CRL_SIZE,
+            CRLIssuingPointRecord.ATTR_THIS_UPDATE,
+            CRLIssuingPointRecord.ATTR_NEXT_UPDATE,
+            "objectclass"
+    };
+
     private ConfigStore mConfig;
     private String mId = null;
     private DBSubsystem dbSubsystem;
@@ -287,7 +303,7 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
                 DEF_REFRESH_IN_SEC);
         if (refresh > 0) {
             DefStoreCRLUpdater updater =
-                    new DefStoreCRLUpdater(mCacheCRLIssuingPoints, refresh);
+                    new DefStoreCRLUpdater(this, refresh);
             updater.start();
         }
     }
@@ -321,15 +337,14 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
 
         // cache result to speed up the performance
         X509CertImpl theCert = null;
-        X509CRLImpl theCRL = null;
+        RevokedSerialIndex theIndex = null;
         CRLIssuingPointRecord theRec = null;
         byte keyhsh[] = cid.getIssuerKeyHash().toByteArray();
         CRLIPContainer matched = mCacheCRLIssuingPoints.get(new String(keyhsh));
 
         if (matched == null) {
-            Enumeration<CRLIssuingPointRecord> recs = searchCRLIssuingPointRecord(
-                    "objectclass=" + CRLIssuingPointRecord.class.getName(),
-                    100);
+            // find the issuer without loading the CRLs
+            Enumeration<CRLIssuingPointRecord> recs = searchCRLIssuingPointHeaders();
 
             while (recs.hasMoreElements()) {
                 CRLIssuingPointRecord rec = recs.nextElement();
@@ -355,33 +370,16 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
                 theRec = rec;
                 incReqCount(theRec.getId());
 
-                byte crldata[] = rec.getCRL();
-
-                if (crldata == null) {
-                    throw new Exception("Missing CRL data");
-                }
-
-                if (rec.getCRLCache() == null) {
-                    logger.debug("DefStore: start building x509 crl impl");
-                    try {
-                        theCRL = new X509CRLImpl(crldata);
-                    } catch (Exception e) {
-                        logger.error(CMS.getLogMessage("OCSP_DECODE_CRL", e.toString()), e);
-                        throw e;
-                    }
-                    logger.debug("DefStore: done building x509 crl impl");
-                } else {
-                    logger.debug("DefStore: using crl cache");
-                }
+                theIndex = getRevokedSerialIndex(rec);
 
-                mCacheCRLIssuingPoints.put(new String(digest), new CRLIPContainer(theRec, theCert, theCRL));
+                mCacheCRLIssuingPoints.put(new String(digest), new CRLIPContainer(theRec, theCert, theIndex));
                 break;
             }
 
         } else {
             theCert = matched.getX509CertImpl();
             theRec = matched.getCRLIssuingPointRecord();
-            theCRL = matched.getX509CRLImpl();
+            theIndex = matched.getRevokedSerialIndex();
             incReqCount(theRec.getId());
         }
 
@@ -423,41 +421,15 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
 
         CertStatus certStatus;
 
-        if (theCRL == null) {
-
+        if (theIndex == null) {
             certStatus = new UnknownInfo();
-
-            if (theRec == null) {
-                return new SingleResponse(cid, certStatus, thisUpdate, nextUpdate);
-            }
-
-            // if crl is not available, we can try crl cache
-            logger.debug("DefStore: evaluating crl cache");
-            Hashtable<BigInteger, RevokedCertificate> cache = theRec.getCRLCacheNoClone();
-            if (cache != null) {
-                RevokedCertificate rc = cache.get(new BigInteger(serialNo.toString()));
-                if (rc == null) {
-                    if (isNotFoundGood()) {
-                        certStatus = new GoodInfo();
-                    } else {
-                        certStatus = new UnknownInfo();
-                    }
-                } else {
-
-                    certStatus = new RevokedInfo(
-                            new GeneralizedTime(
-                                    rc.getRevocationDate()));
-                }
-            }
-
-            return new SingleResponse(cid, certStatus, thisUpdate,
-                    nextUpdate);
+            return new SingleResponse(cid, certStatus, thisUpdate, nextUpdate);
         }
 
-        logger.debug("DefStore: evaluating x509 crl impl");
-        X509CRLEntry crlentry = theCRL.getRevokedCertificate(new BigInteger(serialNo.toString()));
+        logger.debug("DefStore: evaluating revoked serial index");
+        int index = theIndex.find(new BigInteger(serialNo.toString()));
 
-        if (crlentry == null) {
+        if (index < 0) {
             // good or unknown
             if (isNotFoundGood()) {
                 certStatus = new GoodInfo();
@@ -467,13 +439,117 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
 
         } else {
             certStatus = new RevokedInfo(new GeneralizedTime(
-                            crlentry.getRevocationDate()));
+                            theIndex.getRevocationDate(index)));
         }
 
         return new SingleResponse(cid, certStatus, thisUpdate,
                 nextUpdate);
     }
 
+    /**
+     * Searches CRL issuing point records without the CRL
+     * and CRL cache attributes.
+     */
+    public Enumeration<CRLIssuingPointRecord> searchCRLIssuingPointHeaders()
+            throws EBaseException {
+        DBSSession s = dbSubsystem.createSession();
+        Vector<CRLIssuingPointRecord> v = new Vector<>();
+
+        try {
+            IDBSearchResults sr = s.search(getBaseDN(),
+                    "objectclass=" + CRLIssuingPointRecord.class.getName(),
+                    CRL_IP_HEADER_ATTRS);
+            while (sr.hasMoreElements()) {
+                v.add((CRLIssuingPointRecord) sr.nextElement());
+            }
+        } finally {
+            if (s != null)
+                s.close();
+        }
+        return v.elements();
+    }
+
+    /**
+     * Returns the revoked serial index of the current CRL of a
+     * CRL issuing point. The index is built from the stored CRL
+     * or CRL cache only if the CRL has changed since the index
+     * was built.
+     *
+     * @param header CRL issuing point record without the CRL
+     * @return revoked serial index, or null if not available
+     */
+    public RevokedSerialIndex getRevokedSerialIndex(CRLIssuingPointRecord header)
+            throws Exception {
+
+        String id = header.getId();
+        RevokedSerialIndex index = mRevokedSerialIndexes.get(id);
+
+        if (index != null && index.isCurrent(header.getCRLNumber(), header.getThisUpdate())) {
+            return index;
+        }
+
+        CRLIssuingPointRecord rec = readCRLIssuingPoint(id);
+        if (rec == null) {
+            return null;
+        }
+
+        Hashtable<BigInteger, RevokedCertificate> certs = rec.getCRLCacheNoClone();
+
+        if (certs == null) {
+            byte crldata[] = rec.getCRL();
+
+            if (crldata == null) {
+                throw new Exception("Missing CRL data");
+            }
+
+            logger.debug("DefStore: start building x509 crl impl");
+            X509CRLImpl crl;
+            try {
+                crl = new X509CRLImpl(crldata);
+            } catch (Exception e) {
+                logger.error(CMS.getLogMessage("OCSP_DECODE_CRL", e.toString()), e);
+                throw e;
+            }
+            logger.debug("DefStore: done building x509 crl impl");
+
+            certs = crl.getListOfRevokedCertificates();
+
+        } else {
+            logger.debug("DefStore: using crl cache");
+        }
+
+        index = new RevokedSerialIndex(rec.getCRLNumber(), rec.getThisUpdate(), certs);
+        logger.debug("DefStore: built revoked serial index for " + id
+                + ": " + index.size() + " entries, " + index.getMemorySize() + " bytes");
+
+        mRevokedSerialIndexes.put(id, index);
+
+        return index;
+    }
+
+    /**
+     * Rebuilds the revoked serial indexes of CRL issuing points
+     * whose CRLs have been updated by another server, then drops
+     * the cached issuer records so they are reloaded with the new
+     * update times.
+     */
+    public void refreshCRLIssuingPoints() throws Exception {
+
+        Enumeration<CRLIssuingPointRecord> recs = searchCRLIssuingPointHeaders();
+
+        while (recs.hasMoreElements()) {
+            CRLIssuingPointRecord rec = recs.nextElement();
+
+            try {
+                getRevokedSerialIndex(rec);
+            } catch (Exception e) {
+                logger.warn("DefStore: Unable to refresh " + rec.getId() + ": " + e.getMessage(), e);
+            }
+        }
+
+        mCacheCRLIssuingPoints.clear();
+    }
+
     private String transformDN(String dn) {
         String newdn = dn;
 
@@ -800,6 +876,17 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
             logger.debug("DefStore: done CRL update " +
                     crl.getIssuerDN().getName());
 
+            // index the uploaded CRL once instead of reloading it
+            // from the database on the next request
+            Hashtable<BigInteger, RevokedCertificate> certs = ((X509CRLImpl) crl).getListOfRevokedCertificates();
+            if (certs == null) {
+                certs = new Hashtable<>();
+            }
+            mRevokedSerialIndexes.put(crl.getIssuerDN().getName(), new RevokedSerialIndex(
+                    crlNumber == null ? new BigInteger("-1") : crlNumber,
+                    crl.getThisUpdate(),
+                    certs));
+
             // update cache
             mCacheCRLIssuingPoints.clear();
 
@@ -838,12 +925,12 @@ class DeleteOldCRLsThread extends Thread {
 class CRLIPContainer {
     private CRLIssuingPointRecord mRec = null;
     private X509CertImpl mCert = null;
-    private X509CRLImpl mCRL = null;
+    private RevokedSerialIndex mIndex = null;
 
-    public CRLIPContainer(CRLIssuingPointRecord rec, X509CertImpl cert, X509CRLImpl crl) {
+    public CRLIPContainer(CRLIssuingPointRecord rec, X509CertImpl cert, RevokedSerialIndex index) {
         mRec = rec;
         mCert = cert;
-        mCRL = crl;
+        mIndex = index;
     }
 
     public CRLIssuingPointRecord getCRLIssuingPointRecord() {
@@ -854,8 +941,8 @@ class CRLIPContainer {
         return mCert;
     }
 
-    public X509CRLImpl getX509CRLImpl() {
-        return mCRL;
+    public RevokedSerialIndex getRevokedSerialIndex() {
+        return mIndex;
     }
 }
 
@@ -863,11 +950,11 @@ class DefStoreCRLUpdater extends Thread {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(DefStoreCRLUpdater.class);
 
-    private Hashtable<String, CRLIPContainer> mCache = null;
+    private DefStore mDefStore = null;
     private int mSec = 0;
 
-    public DefStoreCRLUpdater(Hashtable<String, CRLIPContainer> cache, int sec) {
-        mCache = cache;
+    public DefStoreCRLUpdater(DefStore defStore, int sec) {
+        mDefStore = defStore;
         mSec = sec;
     }
 
@@ -876,7 +963,7 @@ class DefStoreCRLUpdater extends Thread {
         while (true) {
             try {
                 logger.debug("DefStore: CRLUpdater invoked");
-                mCache.clear();
+                mDefStore.refreshCRLIssuingPoints();
                 sleep(mSec * 1000); // turn sec into millis-sec
             } catch (Exception e) {
                 // ignore
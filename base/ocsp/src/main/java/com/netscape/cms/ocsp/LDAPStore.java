@@ -22,14 +22,18 @@ import java.security.MessageDigest;
 import java.security.cert.X509CRL;
 import java.security.cert.X509CRLEntry;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Vector;
 
 import org.mozilla.jss.asn1.GeneralizedTime;
 import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.netscape.security.util.Utils;
 import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
 import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
@@ -86,6 +90,13 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
     private final static String PROP_INCLUDE_NEXT_UPDATE =
             "includeNextUpdate";
 
+    /**
+     * Digest algorithms for which issuer key hashes are precomputed.
+     */
+    private final static String[] INDEX_DIGESTS = {
+            "SHA-1", "SHA-224", "SHA-256", "SHA-384", "SHA-512"
+    };
+
     private ConfigStore mConfig;
     private String mId = null;
     private String mCRLAttr = null;
@@ -94,6 +105,13 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
     protected Hashtable<String, Long> mReqCounts = new Hashtable<>();
     private Hashtable<X509CertImpl, X509CRLImpl> mCRLs = new Hashtable<>();
 
+    /**
+     * Maps digest name and issuer key hash to the CA certificate and
+     * its CRL. The map is immutable and replaced as a whole whenever
+     * a CRL is updated.
+     */
+    private volatile Map<String, IssuerEntry> mIssuerIndex = Collections.emptyMap();
+
     /**
      * Constructs the default store.
      */
@@ -204,7 +222,7 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
         return null;
     }
 
-    public void updateCRLHash(X509CertImpl caCert, X509CRLImpl crl)
+    public synchronized void updateCRLHash(X509CertImpl caCert, X509CRLImpl crl)
             throws EBaseException {
         X509CRLImpl oldCRL = mCRLs.get(caCert);
 
@@ -216,6 +234,99 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
         }
         logger.debug("Added '" + caCert.getSubjectName() + "' into CRL hash");
         mCRLs.put(caCert, crl);
+
+        mIssuerIndex = createIssuerIndex(mCRLs);
+    }
+
+    /**
+     * Creates a new issuer index from CA certificates and CRLs.
+     */
+    static Map<String, IssuerEntry> createIssuerIndex(Map<X509CertImpl, X509CRLImpl> crls) {
+
+        Map<String, IssuerEntry> index = new HashMap<>();
+
+        for (Map.Entry<X509CertImpl, X509CRLImpl> e : crls.entrySet()) {
+            X509CertImpl caCert = e.getKey();
+            X509Key key = (X509Key) caCert.getPublicKey();
+
+            if (key == null) {
+                logger.warn("LDAPStore: Missing issuer key: " + caCert.getSubjectName());
+                continue;
+            }
+
+            IssuerEntry entry = new IssuerEntry(caCert, e.getValue());
+
+            for (String digestName : INDEX_DIGESTS) {
+                try {
+                    MessageDigest md = MessageDigest.getInstance(digestName);
+                    byte[] keyHash = md.digest(key.getKey());
+                    index.put(createIssuerKey(digestName, keyHash), entry);
+
+                } catch (Exception ex) {
+                    logger.warn("LDAPStore: Unable to index " + digestName + " key hash: " + ex.getMessage());
+                }
+            }
+        }
+
+        logger.debug("LDAPStore: Issuer index has " + index.size() + " entries");
+        return Collections.unmodifiableMap(index);
+    }
+
+    static String createIssuerKey(String digestName, byte[] keyHash) {
+        return digestName + ":" + Utils.HexEncode(keyHash);
+    }
+
+    /**
+     * Finds the CA certificate and CRL for the issuer of the given
+     * certificate ID.
+     */
+    private IssuerEntry findIssuer(CertID cid) throws Exception {
+        return findIssuer(
+                mIssuerIndex,
+                mCRLs,
+                cid.getDigestName(),
+                cid.getIssuerKeyHash().toByteArray());
+    }
+
+    /**
+     * Finds the CA certificate and CRL for the issuer key hash in the
+     * issuer index. Key hashes of digests that are not indexed are
+     * compared against each CA certificate.
+     */
+    static IssuerEntry findIssuer(
+            Map<String, IssuerEntry> index,
+            Map<X509CertImpl, X509CRLImpl> crls,
+            String digestName,
+            byte[] keyHash) throws Exception {
+
+        IssuerEntry entry = index.get(createIssuerKey(digestName, keyHash));
+        if (entry != null) {
+            return entry;
+        }
+
+        if (Arrays.asList(INDEX_DIGESTS).contains(digestName)) {
+            return null;
+        }
+
+        // digest not indexed, compare against each CA certificate
+        MessageDigest md = MessageDigest.getInstance(digestName);
+
+        for (Map.Entry<X509CertImpl, X509CRLImpl> e : crls.entrySet()) {
+            X509CertImpl caCert = e.getKey();
+            X509Key key = (X509Key) caCert.getPublicKey();
+
+            if (key == null) {
+                throw new Exception("Missing issuer key");
+            }
+
+            byte digest[] = md.digest(key.getKey());
+
+            if (Arrays.equals(digest, keyHash)) {
+                return new IssuerEntry(caCert, e.getValue());
+            }
+        }
+
+        return null;
     }
 
     @Override
@@ -375,37 +486,17 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
         logger.debug("LDAPStore: processing request for cert 0x" + serialNo.toString(16));
 
         // locate the right CRL
-        X509CertImpl theCert = null;
-        X509CRLImpl theCRL = null;
-
-        Enumeration<X509CertImpl> caCerts = mCRLs.keys();
-
-        while (caCerts.hasMoreElements()) {
-            X509CertImpl caCert = caCerts.nextElement();
-            MessageDigest md = MessageDigest.getInstance(cid.getDigestName());
-            X509Key key = (X509Key) caCert.getPublicKey();
+        IssuerEntry issuer = findIssuer(cid);
 
-            if (key == null) {
-                throw new Exception("Missing issuer key");
-            }
-
-            byte digest[] = md.digest(key.getKey());
-            byte keyhsh[] = cid.getIssuerKeyHash().toByteArray();
-
-            if (!Arrays.equals(digest, keyhsh)) {
-                continue;
-            }
-
-            theCert = caCert;
-            incReqCount(caCert.getSubjectName().toString());
-            theCRL = mCRLs.get(caCert);
-            break;
-        }
-
-        if (theCert == null) {
+        if (issuer == null) {
             throw new Exception("Missing issuer certificate");
         }
 
+        X509CertImpl theCert = issuer.caCert;
+        X509CRLImpl theCRL = issuer.crl;
+
+        incReqCount(theCert.getSubjectName().toString());
+
         if (theCRL == null) {
             throw new Exception("Missing CRL data");
         }
@@ -490,6 +581,17 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
     }
 }
 
+class IssuerEntry {
+
+    final X509CertImpl caCert;
+    final X509CRLImpl crl;
+
+    IssuerEntry(X509CertImpl caCert, X509CRLImpl crl) {
+        this.caCert = caCert;
+        this.crl = crl;
+    }
+}
+
 class CRLUpdater extends Thread {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CRLUpdater.class);
@@ -0,0 +1,236 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cms.ocsp;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.Map;
+
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.Extension;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+/**
+ * This class keeps the revoked serial numbers of a CRL in a sorted
+ * array outside of the Java heap and finds them with a binary search.
+ *
+ * Each entry is stored as a fixed-size record containing the serial
+ * number in two's complement form sign-extended to the size of the
+ * longest serial number, the revocation date in milliseconds, and
+ * the revocation reason code. The index is immutable once created,
+ * so it can be searched by any number of threads.
+ */
+public class RevokedSerialIndex {
+
+    public static final int NO_REASON = -1;
+
+    private final BigInteger crlNumber;
+    private final Date thisUpdate;
+
+    private final int size;
+    private final int serialLength;
+    private final int recordLength;
+    private final ByteBuffer records;
+
+    public RevokedSerialIndex(
+            BigInteger crlNumber,
+            Date thisUpdate,
+            Map<BigInteger, RevokedCertificate> certs) {
+
+        this.crlNumber = crlNumber;
+        this.thisUpdate = thisUpdate;
+
+        BigInteger[] serials = certs == null ? new BigInteger[0] : certs.keySet().toArray(new BigInteger[0]);
+        Arrays.sort(serials);
+
+        int length = 1;
+        for (BigInteger serial : serials) {
+            length = Math.max(length, serial.toByteArray().length);
+        }
+
+        size = serials.length;
+        serialLength = length;
+        recordLength = serialLength + 8 + 1;
+        records = ByteBuffer.allocateDirect(size * recordLength);
+
+        for (BigInteger serial : serials) {
+            RevokedCertificate cert = certs.get(serial);
+
+            putSerial(serial);
+            records.putLong(cert.getRevocationDate() == null ? 0 : cert.getRevocationDate().getTime());
+            records.put((byte) getReasonCode(cert));
+        }
+    }
+
+    static int getReasonCode(RevokedCertificate cert) {
+
+        if (!(cert instanceof RevokedCertImpl)) {
+            return NO_REASON;
+        }
+
+        CRLExtensions exts = ((RevokedCertImpl) cert).getExtensions();
+        if (exts == null) {
+            return NO_REASON;
+        }
+
+        for (Enumeration<Extension> e = exts.getElements(); e.hasMoreElements();) {
+            Extension ext = e.nextElement();
+            if (ext instanceof CRLReasonExtension) {
+                return ((CRLReasonExtension) ext).getReason().getCode();
+            }
+        }
+
+        return NO_REASON;
+    }
+
+    private void putSerial(BigInteger serial) {
+
+        byte[] bytes = serial.toByteArray();
+        byte pad = serial.signum() < 0 ? (byte) 0xff : 0;
+
+        for (int i = bytes.length; i < serialLength; i++) {
+            records.put(pad);
+        }
+
+        records.put(bytes);
+    }
+
+    public BigInteger getCRLNumber() {
+        return crlNumber;
+    }
+
+    public Date getThisUpdate() {
+        return thisUpdate;
+    }
+
+    /**
+     * Returns true if this index was built from the CRL with
+     * the given number and update time.
+     */
+    public boolean isCurrent(BigInteger crlNumber, Date thisUpdate) {
+
+        if (crlNumber == null || !crlNumber.equals(this.crlNumber)) {
+            return false;
+        }
+
+        if (thisUpdate == null || this.thisUpdate == null) {
+            return thisUpdate == this.thisUpdate;
+        }
+
+        // dates stored in the database have second precision
+        return thisUpdate.getTime() / 1000 == this.thisUpdate.getTime() / 1000;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the size of the index in bytes.
+     */
+    public long getMemorySize() {
+        return records.capacity();
+    }
+
+    /**
+     * Returns the position of a serial number in the index,
+     * or -1 if the serial number is not revoked.
+     */
+    public int find(BigInteger serialNumber) {
+
+        byte[] bytes = serialNumber.toByteArray();
+        if (bytes.length > serialLength) {
+            return -1;
+        }
+
+        // sign-extend the key to the record size
+        byte[] key = new byte[serialLength];
+        byte pad = serialNumber.signum() < 0 ? (byte) 0xff : 0;
+        int offset = serialLength - bytes.length;
+        Arrays.fill(key, 0, offset, pad);
+        System.arraycopy(bytes, 0, key, offset, bytes.length);
+
+        int low = 0;
+        int high = size - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(mid, key);
+
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -1;
+    }
+
+    private int compare(int index, byte[] key) {
+
+        int position = index * recordLength;
+
+        // the first byte carries the sign
+        int cmp = Byte.compare(records.get(position), key[0]);
+        if (cmp != 0) {
+            return cmp;
+        }
+
+        for (int i = 1; i < serialLength; i++) {
+            cmp = Integer.compare(records.get(position + i) & 0xff, key[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+
+        return 0;
+    }
+
+    public boolean contains(BigInteger serialNumber) {
+        return find(serialNumber) >= 0;
+    }
+
+    public BigInteger getSerialNumber(int index) {
+        byte[] bytes = new byte[serialLength];
+        int position = index * recordLength;
+        for (int i = 0; i < serialLength; i++) {
+            bytes[i] = records.get(position + i);
+        }
+        return new BigInteger(bytes);
+    }
+
+    public Date getRevocationDate(int index) {
+        return new Date(records.getLong(index * recordLength + serialLength));
+    }
+
+    /**
+     * Returns the revocation reason code, or NO_REASON if
+     * the CRL entry does not have a reason code.
+     */
+    public int getReasonCode(int index) {
+        return records.get(index * recordLength + serialLength + 8);
+    }
+}
@@ -17,12 +17,22 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cms.servlet.ocsp;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.security.cert.CRLException;
 import java.security.cert.X509CRL;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Date;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -56,6 +66,7 @@ import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.base.ArgBlock;
 import com.netscape.cmscore.dbs.CRLIssuingPointRecord;
 import com.netscape.cmscore.dbs.RepositoryRecord;
+import com.netscape.cmscore.ocsp.OCSPResponseCache;
 import com.netscape.cmsutil.crypto.CryptoUtil;
 import com.netscape.ocsp.OCSPAuthority;
 
@@ -74,10 +85,16 @@ public class AddCRLServlet extends CMSServlet {
     public static final String END_HEADER =
             "-----END CERTIFICATE REVOCATION LIST-----";
 
+    public static final String DER_CONTENT_TYPE = "application/pkix-crl";
+    public static final String PEM_CONTENT_TYPE = "application/x-pem-file";
+
     private final static String TPL_FILE = "addCRL.template";
     private String mFormPath = null;
     private OCSPAuthority mOCSPAuthority;
 
+    // CA certificates imported for CRL verification by issuing point
+    private Map<String, org.mozilla.jss.crypto.X509Certificate> mCACerts = new ConcurrentHashMap<>();
+
     public AddCRLServlet() {
         super();
     }
@@ -107,6 +124,8 @@ public class AddCRLServlet extends CMSServlet {
      * <ul>
      * <li>http.param crl certificate revocation list, base-64, DER encoded wrapped in -----BEGIN CERTIFICATE REVOCATION
      * LIST-----, -----END CERTIFICATE REVOCATION LIST----- strings
+     * <li>alternatively, the request entity can contain the CRL as application/pkix-crl (DER)
+     * or application/x-pem-file (PEM)
      * <li>http.param noui if true, use minimal hardcoded text response
      * <li>signed.audit LOGGING_SIGNED_AUDIT_CRL_RETRIEVAL used when CRLs are retrieved by the OCSP Responder ("agent"
      * or "EE")
@@ -176,10 +195,28 @@ public class AddCRLServlet extends CMSServlet {
                 }
             }
             logger.info("AddCRLServlet");
-            String b64 = cmsReq.getHttpReq().getParameter("crl");
-            logger.debug("AddCRLServlet: b64=" + b64);
 
-            if (b64 == null) {
+            byte[] crlData;
+            try {
+                crlData = readCRLEntity(req, cs.getOCSPConfig().getMaxCRLSize());
+
+            } catch (IOException e) {
+                logger.error("AddCRLServlet: Unable to read CRL: " + e.getMessage(), e);
+
+                // the CRL retrieval failure is audited below
+                throw new ECMSGWException(
+                        CMS.getUserMessage("CMS_GW_DECODING_CRL_ERROR") + " " + e.getMessage(), e);
+            }
+
+            String b64 = null;
+            if (crlData != null) {
+                logger.debug("AddCRLServlet: CRL size: " + crlData.length);
+            } else {
+                b64 = cmsReq.getHttpReq().getParameter("crl");
+                logger.debug("AddCRLServlet: b64 size: " + (b64 == null ? 0 : b64.length()));
+            }
+
+            if (crlData == null && b64 == null) {
                 // store a message in the signed audit log file
                 auditMessage = CMS.getLogMessage(
                         AuditEvent.CRL_RETRIEVAL,
@@ -230,7 +267,7 @@ public class AddCRLServlet extends CMSServlet {
             ArgBlock fixed = new ArgBlock();
             CMSTemplateParams argSet = new CMSTemplateParams(header, fixed);
 
-            if (b64.indexOf(BEGIN_HEADER) == -1) {
+            if (b64 != null && b64.indexOf(BEGIN_HEADER) == -1) {
                 logger.error(CMS.getLogMessage("CMSGW_MISSING_CRL_HEADER"));
 
                 // store a message in the signed audit log file
@@ -245,7 +282,7 @@ public class AddCRLServlet extends CMSServlet {
                 throw new ECMSGWException(CMS.getUserMessage(getLocale(req),
                                           "CMS_GW_MISSING_CRL_HEADER"));
             }
-            if (b64.indexOf(END_HEADER) == -1) {
+            if (b64 != null && b64.indexOf(END_HEADER) == -1) {
                 logger.error(CMS.getLogMessage("CMSGW_MISSING_CRL_FOOTER"));
 
                 // store a message in the signed audit log file
@@ -271,7 +308,15 @@ public class AddCRLServlet extends CMSServlet {
                 if (statsSub != null) {
                     statsSub.startTiming("decode_crl");
                 }
-                crl = mapCRL1(b64);
+                if (crlData != null) {
+                    // parse the header only, the entries are parsed
+                    // once when the CRL is stored
+                    crl = new X509CRLImpl(crlData, false);
+                    crlData = null;
+                } else {
+                    crl = mapCRL1(b64);
+                    b64 = null;
+                }
                 if (statsSub != null) {
                     statsSub.endTiming("decode_crl");
                 }
@@ -354,13 +399,17 @@ public class AddCRLServlet extends CMSServlet {
                         tokenSwitched = true;
                     }
 
-                    org.mozilla.jss.crypto.X509Certificate jssCert = null;
-                    try {
-                        jssCert = cmanager.importCACertPackage(
-                                caCert.getEncoded());
-                    } catch (Exception e2) {
-                        logger.error("AddCRLServlet: importCACertPackage: " + e2.getMessage(), e2);
-                        throw new EBaseException(e2.toString());
+                    // import the CA certificate only if it has changed
+                    org.mozilla.jss.crypto.X509Certificate jssCert = mCACerts.get(pt.getId());
+                    if (jssCert == null || !Arrays.equals(jssCert.getEncoded(), caCertData)) {
+                        try {
+                            jssCert = cmanager.importCACertPackage(
+                                    caCert.getEncoded());
+                        } catch (Exception e2) {
+                            logger.error("AddCRLServlet: importCACertPackage: " + e2.getMessage(), e2);
+                            throw new EBaseException(e2.toString());
+                        }
+                        mCACerts.put(pt.getId(), jssCert);
                     }
 
                     if (statsSub != null) {
@@ -485,10 +534,18 @@ public class AddCRLServlet extends CMSServlet {
 
             if (defStore.waitOnCRLUpdate()) {
                 defStore.updateCRL(crl);
+
+                // responses signed with the old CRL are no longer valid
+                OCSPResponseCache responseCache = mOCSPAuthority.getResponseCache();
+                if (responseCache != null) {
+                    responseCache.clear();
+                }
+
             } else {
                 // when the CRL large, the thread is terminiated by the
                 // servlet framework before it can finish its work
-                UpdateCRLThread uct = new UpdateCRLThread(defStore, crl);
+                UpdateCRLThread uct = new UpdateCRLThread(defStore, crl,
+                        mOCSPAuthority.getResponseCache());
 
                 uct.start();
             }
@@ -551,6 +608,131 @@ public class AddCRLServlet extends CMSServlet {
         }
     }
 
+    /**
+     * Reads a CRL sent as the request entity.
+     *
+     * @param maxSize maximum CRL size in bytes
+     * @return DER-encoded CRL, or null if the request does not
+     *         contain a DER or PEM entity
+     */
+    public byte[] readCRLEntity(HttpServletRequest req, int maxSize) throws IOException {
+
+        String contentType = req.getContentType();
+        if (contentType == null) {
+            return null;
+        }
+
+        int i = contentType.indexOf(';');
+        if (i >= 0) {
+            contentType = contentType.substring(0, i);
+        }
+        contentType = contentType.trim();
+
+        if (DER_CONTENT_TYPE.equalsIgnoreCase(contentType)) {
+            return readDER(req.getInputStream(), req.getContentLength(), maxSize);
+        }
+
+        if (PEM_CONTENT_TYPE.equalsIgnoreCase(contentType)) {
+            return readPEM(req.getInputStream(), maxSize);
+        }
+
+        return null;
+    }
+
+    /**
+     * Reads DER data. If the length is known the data is read
+     * directly into an array of that size. The length is checked
+     * against the maximum size before anything is allocated.
+     */
+    public static byte[] readDER(InputStream in, int length, int maxSize) throws IOException {
+
+        if (length > maxSize) {
+            throw new IOException("CRL too large: " + length + " bytes, maximum " + maxSize + " bytes");
+        }
+
+        if (length < 0) {
+            byte[] data = in.readNBytes(maxSize);
+            if (in.read() >= 0) {
+                throw new IOException("CRL too large: maximum " + maxSize + " bytes");
+            }
+            return data;
+        }
+
+        byte[] data = new byte[length];
+        int n = in.readNBytes(data, 0, length);
+
+        if (n < length) {
+            throw new EOFException("Incomplete CRL: " + n + " of " + length + " bytes");
+        }
+
+        return data;
+    }
+
+    /**
+     * Decodes a PEM CRL line by line without keeping the base-64 data.
+     */
+    public static byte[] readPEM(InputStream in, int maxSize) throws IOException {
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Base64.Decoder decoder = Base64.getDecoder();
+
+        // base-64 characters not yet decoded, always less than 4
+        StringBuilder pending = new StringBuilder();
+        boolean begin = false;
+        boolean end = false;
+
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+
+                if (!begin) {
+                    begin = line.equals(BEGIN_HEADER);
+                    continue;
+                }
+
+                if (line.equals(END_HEADER)) {
+                    end = true;
+                    break;
+                }
+
+                pending.append(line);
+
+                int length = pending.length() - pending.length() % 4;
+                if (length == 0) continue;
+
+                out.write(decoder.decode(pending.substring(0, length)));
+                pending.delete(0, length);
+
+                if (out.size() > maxSize) {
+                    throw new IOException("CRL too large: maximum " + maxSize + " bytes");
+                }
+            }
+
+            if (!begin) {
+                throw new IOException("Missing CRL header");
+            }
+
+            if (!end) {
+                throw new IOException("Missing CRL footer");
+            }
+
+            if (pending.length() > 0) {
+                out.write(decoder.decode(pending.toString()));
+            }
+
+            if (out.size() > maxSize) {
+                throw new IOException("CRL too large: maximum " + maxSize + " bytes");
+            }
+
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid CRL data: " + e.getMessage(), e);
+        }
+
+        return out.toByteArray();
+    }
+
     public X509CRLImpl mapCRL1(String mime64)
             throws IOException {
         mime64 = Cert.stripCRLBrackets(mime64.trim());
@@ -570,11 +752,13 @@ public class AddCRLServlet extends CMSServlet {
 class UpdateCRLThread extends Thread {
     private IDefStore mDefStore = null;
     private X509CRL mCRL = null;
+    private OCSPResponseCache mResponseCache = null;
 
     public UpdateCRLThread(
-            IDefStore defStore, X509CRL crl) {
+            IDefStore defStore, X509CRL crl, OCSPResponseCache responseCache) {
         mDefStore = defStore;
         mCRL = crl;
+        mResponseCache = responseCache;
     }
 
     @Override
@@ -583,6 +767,9 @@ class UpdateCRLThread extends Thread {
             if (!((X509CRLImpl) mCRL).areEntriesIncluded())
                 mCRL = new X509CRLImpl(((X509CRLImpl) mCRL).getEncoded());
             mDefStore.updateCRL(mCRL);
+            if (mResponseCache != null) {
+                mResponseCache.clear();
+            }
         } catch (CRLException e) {
         } catch (X509ExtensionException e) {
         } catch (EBaseException e) {
@@ -28,6 +28,7 @@ import java.security.cert.CertificateParsingException;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Vector;
 
 import org.dogtagpki.server.ocsp.OCSPConfig;
@@ -64,6 +65,10 @@ import com.netscape.cms.logging.SignedAuditLogger;
 import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.base.ConfigStore;
 import com.netscape.cmscore.dbs.DBSubsystem;
+import com.netscape.cmscore.ocsp.OCSPResponseCache;
+import com.netscape.cmscore.ocsp.OCSPResponseCacheConfig;
+import com.netscape.cmscore.ocsp.OCSPSigningBatcher;
+import com.netscape.cmscore.ocsp.OCSPSigningBatcherConfig;
 import com.netscape.cmsutil.crypto.CryptoUtil;
 import com.netscape.cmsutil.ocsp.BasicOCSPResponse;
 import com.netscape.cmsutil.ocsp.KeyHashID;
@@ -102,6 +107,8 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
 
     private String[] mOCSPSigningAlgorithms = null;
     private IOCSPStore mDefStore = null;
+    private OCSPResponseCache mResponseCache = null;
+    private OCSPSigningBatcher mSigningBatcher = null;
 
     public long mNumOCSPRequest = 0;
     public long mTotalTime = 0;
@@ -174,6 +181,34 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
                 logger.warn(CMS.getLogMessage("CMSCORE_OCSP_SIGNING_UNIT", e.toString()), e);
             }
 
+            OCSPResponseCacheConfig cacheConfig = mConfig.getResponseCacheConfig();
+            if (cacheConfig.getEnable()) {
+                logger.info("OCSPAuthority: Initializing OCSP response cache");
+                mResponseCache = new OCSPResponseCache();
+                mResponseCache.init(cacheConfig);
+            }
+
+            OCSPSigningBatcherConfig batcherConfig = mConfig.getSigningBatcherConfig();
+            if (batcherConfig.getEnable()) {
+                logger.info("OCSPAuthority: Initializing OCSP signing batcher");
+                mSigningBatcher = new OCSPSigningBatcher(new OCSPSigningBatcher.Signer() {
+
+                    @Override
+                    public byte[] sign(byte[] data, String algname) throws Exception {
+                        return mSigningUnit.sign(data, algname);
+                    }
+
+                    @Override
+                    public List<byte[]> sign(List<byte[]> data, String algname) throws Exception {
+                        return mSigningUnit.sign(data, algname);
+                    }
+                });
+                mSigningBatcher.init(batcherConfig);
+
+                // only the batcher threads sign, so each can reuse a context
+                mSigningUnit.setMinSignatureContexts(batcherConfig.getWorkers());
+            }
+
         } catch (EBaseException e) {
             logger.error("OCSPAuthority: " + e.getMessage(), e);
             throw e;
@@ -199,6 +234,13 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
         return mStores.get(id);
     }
 
+    /**
+     * Returns the OCSP response cache, or null if disabled.
+     */
+    public OCSPResponseCache getResponseCache() {
+        return mResponseCache;
+    }
+
     public ConfigStore getOCSPStoreConfig(String id) {
         return mConfig.getSubStore(PROP_STORE + "." + id, ConfigStore.class);
     }
@@ -328,6 +370,12 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
             if (mDefStore != null)
                 mDefStore.startup();
 
+            if (mResponseCache != null)
+                mResponseCache.startup();
+
+            if (mSigningBatcher != null)
+                mSigningBatcher.startup();
+
         } catch (EBaseException e) {
             logger.warn("OCSPAuthority: " + e.getMessage(), e);
             if (engine.isPreOpMode()) {
@@ -364,14 +412,56 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
             throw new EBaseException("OCSP request is empty");
         }
 
-        OCSPEngine engine = OCSPEngine.getInstance();
-        IStatsSubsystem statsSub = (IStatsSubsystem) engine.getSubsystem(IStatsSubsystem.ID);
-
         incNumOCSPRequest(1);
         long startTime = new Date().getTime();
 
         logger.info("OCSPAuthority: Start OCSP request");
 
+        String key = null;
+        long cacheVersion = 0;
+        OCSPResponse response = null;
+
+        if (mResponseCache != null) {
+            // read before signing so a new CRL in the meantime
+            // prevents the response from being cached
+            cacheVersion = mResponseCache.getVersion();
+            key = mResponseCache.createKey(request);
+            if (key != null) {
+                response = mResponseCache.get(key);
+            }
+        }
+
+        if (response != null) {
+            logger.info("OCSPAuthority: Using cached OCSP response");
+
+        } else {
+            response = createResponse(request);
+
+            if (key != null) {
+                mResponseCache.put(key, request, response, this::createResponse, cacheVersion);
+            }
+        }
+
+        logger.info("OCSPAuthority: Done validating OCSP request");
+
+        long endTime = new Date().getTime();
+        incTotalTime(endTime - startTime);
+
+        mServedTime = mServedTime + (endTime - startTime);
+
+        return response;
+    }
+
+    /**
+     * Looks up the certificate status and signs a new OCSP response.
+     */
+    private OCSPResponse createResponse(OCSPRequest request) throws EBaseException {
+
+        TBSRequest tbsReq = request.getTBSRequest();
+
+        OCSPEngine engine = OCSPEngine.getInstance();
+        IStatsSubsystem statsSub = (IStatsSubsystem) engine.getSubsystem(IStatsSubsystem.ID);
+
         OCSPResponse response;
 
         try {
@@ -459,13 +549,6 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
             throw new EBaseException(e);
         }
 
-        logger.info("OCSPAuthority: Done validating OCSP request");
-
-        long endTime = new Date().getTime();
-        incTotalTime(endTime - startTime);
-
-        mServedTime = mServedTime + (endTime - startTime);
-
         return response;
     }
 
@@ -476,6 +559,13 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
      */
     @Override
     public void shutdown() {
+        if (mResponseCache != null) {
+            mResponseCache.shutdown();
+        }
+
+        if (mSigningBatcher != null) {
+            mSigningBatcher.shutdown();
+        }
     }
 
     /**
@@ -517,31 +607,26 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
 
             String algname = mSigningUnit.getDefaultAlgorithm();
 
+            // encode the response data once for both signing and output
             byte rd_data[] = ASN1Util.encode(rd);
-            if (rd_data != null) {
-                mTotalData += rd_data.length;
-            }
+            mTotalData += rd_data.length;
 
-            rd.encode(tmp);
+            tmp.write(rd_data);
             AlgorithmId.get(algname).encode(tmp);
 
             logger.debug("OCSPAuthority: adding signature");
-            byte[] signature = mSigningUnit.sign(rd_data, algname);
+            byte[] signature;
+            if (mSigningBatcher != null) {
+                signature = mSigningBatcher.sign(rd_data, algname);
+            } else {
+                signature = mSigningUnit.sign(rd_data, algname);
+            }
 
             tmp.putBitString(signature);
             // XXX - optional, put the certificate chains in also
 
-            DerOutputStream tmpChain = new DerOutputStream();
-            DerOutputStream tmp1 = new DerOutputStream();
-            java.security.cert.X509Certificate chains[] = mSigningUnit.getCertChain().getChain();
-
-            for (int i = 0; i < chains.length; i++) {
-                tmpChain.putDerValue(new DerValue(chains[i].getEncoded()));
-            }
-
-            tmp1.write(DerValue.tag_Sequence, tmpChain);
             tmp.write(DerValue.createTag(DerValue.TAG_CONTEXT, true, (byte) 0),
-                    tmp1);
+                    mSigningUnit.getEncodedCertChain());
 
             out.write(DerValue.tag_Sequence, tmp);
 
@@ -728,4 +813,14 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
     public void incNumOCSPRequest(long inc) {
         mNumOCSPRequest += inc;
     }
+
+    @Override
+    public long getOCSPResponseCacheHits() {
+        return mResponseCache == null ? 0 : mResponseCache.getHits();
+    }
+
+    @Override
+    public long getOCSPResponseCacheMisses() {
+        return mResponseCache == null ? 0 : mResponseCache.getMisses();
+    }
 }
@@ -17,6 +17,9 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.ocsp;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.mozilla.jss.CryptoManager;
 import org.mozilla.jss.NoSuchTokenException;
 import org.mozilla.jss.NotInitializedException;
@@ -44,6 +47,9 @@ public final class OCSPSigningUnit extends SigningUnit {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(OCSPSigningUnit.class);
 
+    // signature contexts kept for reuse regardless of maxSignatureContexts
+    private int minSignatureContexts;
+
     public OCSPSigningUnit() {
     }
 
@@ -53,6 +59,16 @@ public final class OCSPSigningUnit extends SigningUnit {
         mConfig.setTokenName(tokenname);
     }
 
+    /**
+     * Keeps at least the given number of signature contexts for reuse
+     * even if maxSignatureContexts is lower, e.g. one for each thread
+     * of the OCSP signing batcher.
+     */
+    public void setMinSignatureContexts(int minSignatureContexts) throws EBaseException {
+        this.minSignatureContexts = minSignatureContexts;
+        resetSignatureContexts(Math.max(mConfig.getMaxSignatureContexts(), minSignatureContexts));
+    }
+
     public void init(SigningUnitConfig config) throws EBaseException {
 
         logger.debug("OCSPSigningUnit.init(" + config.getName() + ")");
@@ -93,6 +109,9 @@ public final class OCSPSigningUnit extends SigningUnit {
             mDefSigningAlgorithm = checkSigningAlgorithmFromName(mDefSigningAlgname);
             logger.debug("SigningUnit: signing algorithm: " + mDefSigningAlgorithm);
 
+            // discard contexts initialized with the previous key
+            resetSignatureContexts(Math.max(config.getMaxSignatureContexts(), minSignatureContexts));
+
             mInited = true;
 
         } catch (java.security.cert.CertificateException e) {
@@ -127,24 +146,51 @@ public final class OCSPSigningUnit extends SigningUnit {
             throw new EBaseException("OCSPSigningUnit not initialized!");
         }
 
-        // XXX for now do this mapping until James changes the names
-        // to match JCA names and provide a getAlgorithm method.
-        SignatureAlgorithm signAlg = mDefSigningAlgorithm;
+        Signature signer = getReusableSignatureContext(algname);
 
-        if (algname != null) {
-            signAlg = checkSigningAlgorithmFromName(algname);
+        try {
+            signer.update(data);
+
+            logger.info("OCSPSigningUnit: Signing OCSP response");
+            return signer.sign();
+
+        } catch (Exception e) {
+            discardSignatureContext(algname);
+            throw e;
         }
+    }
 
-        // XXX use a pool of signers based on alg ?
-        // XXX Map algor. name to id. hack: use hardcoded define for now.
-        logger.info("OCSPSigningUnit: Getting algorithm context for " + algname + " " + signAlg);
-        Signature signer = mToken.getSignatureContext(signAlg);
+    /**
+     * Signs multiple data with the same signature context.
+     *
+     * @param data list of data to sign
+     * @param algname signing algorithm
+     * @return signatures in the same order as the data
+     * @exception Exception failed to sign the data
+     */
+    public List<byte[]> sign(List<byte[]> data, String algname) throws Exception {
 
-        signer.initSign(mPrivk);
-        signer.update(data);
+        if (!mInited) {
+            throw new EBaseException("OCSPSigningUnit not initialized!");
+        }
+
+        Signature signer = getReusableSignatureContext(algname);
+        List<byte[]> signatures = new ArrayList<>(data.size());
 
-        logger.info("OCSPSigningUnit: Signing OCSP response");
-        return signer.sign();
+        try {
+            logger.info("OCSPSigningUnit: Signing " + data.size() + " OCSP response(s)");
+
+            for (byte[] d : data) {
+                signer.update(d);
+                signatures.add(signer.sign());
+            }
+
+            return signatures;
+
+        } catch (Exception e) {
+            discardSignatureContext(algname);
+            throw e;
+        }
     }
 
     @Override
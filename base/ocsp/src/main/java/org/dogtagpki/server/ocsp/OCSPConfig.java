@@ -5,16 +5,21 @@
 //
 package org.dogtagpki.server.ocsp;
 
+import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.security.SigningUnitConfig;
 import com.netscape.cmscore.base.ConfigStorage;
 import com.netscape.cmscore.base.ConfigStore;
 import com.netscape.cmscore.base.SimpleProperties;
+import com.netscape.cmscore.ocsp.OCSPResponseCacheConfig;
+import com.netscape.cmscore.ocsp.OCSPSigningBatcherConfig;
 
 /**
  * Provides ocsp.* parameters.
  */
 public class OCSPConfig extends ConfigStore {
 
+    public static final int DEFAULT_MAX_CRL_SIZE = 100 * 1024 * 1024;
+
     public OCSPConfig(ConfigStorage storage) {
         super(storage);
     }
@@ -29,4 +34,26 @@ public class OCSPConfig extends ConfigStore {
     public SigningUnitConfig getSigningUnitConfig() {
         return getSubStore("signing", SigningUnitConfig.class);
     }
+
+    /**
+     * Returns ocsp.responseCache.* parameters.
+     */
+    public OCSPResponseCacheConfig getResponseCacheConfig() {
+        return getSubStore("responseCache", OCSPResponseCacheConfig.class);
+    }
+
+    /**
+     * Returns ocsp.signingBatcher.* parameters.
+     */
+    public OCSPSigningBatcherConfig getSigningBatcherConfig() {
+        return getSubStore("signingBatcher", OCSPSigningBatcherConfig.class);
+    }
+
+    /**
+     * Returns ocsp.maxCRLSize parameter, the maximum size in bytes
+     * of a CRL submitted to the AddCRL servlet.
+     */
+    public int getMaxCRLSize() throws EBaseException {
+        return getInteger("maxCRLSize", DEFAULT_MAX_CRL_SIZE);
+    }
 }
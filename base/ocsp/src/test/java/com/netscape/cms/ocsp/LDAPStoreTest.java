@@ -0,0 +1,160 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cms.ocsp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
+import org.mozilla.jss.netscape.security.x509.X509CertImpl;
+import org.mozilla.jss.netscape.security.x509.X509Key;
+
+public class LDAPStoreTest {
+
+    static final String CA_CERT =
+            "MIIDRzCCAi+gAwIBAgIUTrxYofZBEkYDmZJTaV6sOz7aZ2IwDQYJKoZIhvcNAQEL"
+            + "BQAwMzEQMA4GA1UECgwHRVhBTVBMRTEfMB0GA1UEAwwWQ0EgU2lnbmluZyBDZXJ0"
+            + "aWZpY2F0ZTAeFw0yNjEwMTcwOTMwNDBaFw00NjEwMTIwOTMwNDBaMDMxEDAOBgNV"
+            + "BAoMB0VYQU1QTEUxHzAdBgNVBAMMFkNBIFNpZ25pbmcgQ2VydGlmaWNhdGUwggEi"
+            + "MA0GCSqGSIb3DQEBAQUAA4IBDwAwggEKAoIBAQC869njeSyl/ZMfkm+Zx3fa4rum"
+            + "Dm4xfxpESFIhzwlv1g/BOtRsdFwKdooYtQaDKzguIsujA/a2Fc7YsUV2a+yjmj/c"
+            + "kbFyODe+Cj0FJsgeQ9Ucjmc2Jen57sxqxessvUBWqMqMlFru+e+AKspr7a896UEl"
+            + "URRh3PJ+oK63WG+c7y2oEr0pej4mcIFVYjHLj346y+CnAsxdCSMCooMRGq05C/CY"
+            + "9PFjip1y6EW/mHf/0W6dknIxtlnI7mN+VFxFmwPI+mLPTbKc7mf03h0YMvmxLwQz"
+            + "YB6H8mf/QgmwDjfj/xBbuPVKAJeSEVyfQ21TUP0Nt5UjY5XsMfc/k1Q7k2KrAgMB"
+            + "AAGjUzBRMB0GA1UdDgQWBBQCcda/5H5NbeWDOV1WXKd7Iyd44TAfBgNVHSMEGDAW"
+            + "gBQCcda/5H5NbeWDOV1WXKd7Iyd44TAPBgNVHRMBAf8EBTADAQH/MA0GCSqGSIb3"
+            + "DQEBCwUAA4IBAQCgz+q0C74zD1enHqxB7RlWEskZCTYGa28KIyvV4N7NWnBkNwtY"
+            + "8MyT1Urql4HMU0YuK4OxwxvU+9pvsqQUQQVtFqD0KVm2U7i3KSOO48xvD04mGCoj"
+            + "B8V1mx3eWdStifXLpk9w8maPv+l0VYX7/ZuMV0qoSpCi2kiHcz7+KzPsEzfO/idi"
+            + "pJn4e4SVr8PBfLu44GhOQk/tfRrimKR0OdsENv9UWS/L6dw2sRDzaSUArI13cLdn"
+            + "jngvFEvYWrEzfpm/V0cW+48Kv564sgQeh16aL/WKXke1gDmQ3UJ1WS02puSiZ3ne"
+            + "KlFV57wGGVDZJBoCFUu2J4bN+uErObS6MCCC";
+
+    static final String SUBCA_CERT =
+            "MIIBwzCCAWmgAwIBAgIUUiRBwRhnoufW+6UotuGAph9M0powCgYIKoZIzj0EAwIw"
+            + "NzEQMA4GA1UECgwHRVhBTVBMRTEjMCEGA1UEAwwaU3ViIENBIFNpZ25pbmcgQ2Vy"
+            + "dGlmaWNhdGUwHhcNMjYxMDE3MDkzMDQwWhcNNDYxMDEyMDkzMDQwWjA3MRAwDgYD"
+            + "VQQKDAdFWEFNUExFMSMwIQYDVQQDDBpTdWIgQ0EgU2lnbmluZyBDZXJ0aWZpY2F0"
+            + "ZTBZMBMGByqGSM49AgEGCCqGSM49AwEHA0IABMZJo3x0SM7G/ZA8S4ANbyGEzRwk"
+            + "YmoQHNuAbkKUIuX4pIQUKI5MVS1WzSXO1O7Ov7n+Z8T87BWiDy+sCzL0qzSjUzBR"
+            + "MB0GA1UdDgQWBBRce4PNhoao7/7vO0uN53Ru06zp8zAfBgNVHSMEGDAWgBRce4PN"
+            + "hoao7/7vO0uN53Ru06zp8zAPBgNVHRMBAf8EBTADAQH/MAoGCCqGSM49BAMCA0gA"
+            + "MEUCIC4RYFbDsTiLnScOZrIZG1fvkNJkDziNl5vZv0dpqAHgAiEAuwFBUOMGtza9"
+            + "vuSWt0loG5bhbHzR8ya39LZoNW9HpSg=";
+
+    static X509CertImpl caCert;
+    static X509CertImpl subCACert;
+
+    static Map<X509CertImpl, X509CRLImpl> crls = new HashMap<>();
+    static Map<String, IssuerEntry> index;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+
+        caCert = new X509CertImpl(Base64.getDecoder().decode(CA_CERT));
+        subCACert = new X509CertImpl(Base64.getDecoder().decode(SUBCA_CERT));
+
+        // CRLs are not used by the index
+        crls.put(caCert, null);
+        crls.put(subCACert, null);
+
+        index = LDAPStore.createIssuerIndex(crls);
+    }
+
+    static byte[] getKeyHash(X509CertImpl cert, String digestName) throws Exception {
+        X509Key key = (X509Key) cert.getPublicKey();
+        return MessageDigest.getInstance(digestName).digest(key.getKey());
+    }
+
+    @Test
+    public void testIndexSize() throws Exception {
+
+        // each CA is indexed for each digest
+        assertEquals(2 * 5, index.size());
+    }
+
+    @Test
+    public void testEmptyIndex() throws Exception {
+
+        Map<X509CertImpl, X509CRLImpl> empty = new HashMap<>();
+        Map<String, IssuerEntry> emptyIndex = LDAPStore.createIssuerIndex(empty);
+
+        assertEquals(0, emptyIndex.size());
+        assertNull(LDAPStore.findIssuer(emptyIndex, empty, "SHA-1", getKeyHash(caCert, "SHA-1")));
+        assertNull(LDAPStore.findIssuer(emptyIndex, empty, "MD5", getKeyHash(caCert, "MD5")));
+    }
+
+    @Test
+    public void testIndexedDigests() throws Exception {
+
+        for (String digestName : new String[] { "SHA-1", "SHA-224", "SHA-256", "SHA-384", "SHA-512" }) {
+
+            IssuerEntry entry = LDAPStore.findIssuer(index, crls, digestName, getKeyHash(caCert, digestName));
+            assertNotNull(digestName, entry);
+            assertSame(caCert, entry.caCert);
+
+            entry = LDAPStore.findIssuer(index, crls, digestName, getKeyHash(subCACert, digestName));
+            assertNotNull(digestName, entry);
+            assertSame(subCACert, entry.caCert);
+        }
+    }
+
+    @Test
+    public void testSameEntryForAllDigests() throws Exception {
+
+        IssuerEntry entry = index.get(LDAPStore.createIssuerKey("SHA-1", getKeyHash(caCert, "SHA-1")));
+
+        assertSame(entry, index.get(LDAPStore.createIssuerKey("SHA-256", getKeyHash(caCert, "SHA-256"))));
+        assertSame(entry, index.get(LDAPStore.createIssuerKey("SHA-512", getKeyHash(caCert, "SHA-512"))));
+    }
+
+    @Test
+    public void testUnknownIssuer() throws Exception {
+
+        byte[] keyHash = getKeyHash(caCert, "SHA-1");
+        keyHash[0] ^= 0xff;
+
+        assertNull(LDAPStore.findIssuer(index, crls, "SHA-1", keyHash));
+
+        // hash of a different digest
+        assertNull(LDAPStore.findIssuer(index, crls, "SHA-256", getKeyHash(caCert, "SHA-1")));
+    }
+
+    @Test
+    public void testUnindexedDigest() throws Exception {
+
+        // digests that are not indexed fall back to comparing the CA keys
+        IssuerEntry entry = LDAPStore.findIssuer(index, crls, "MD5", getKeyHash(subCACert, "MD5"));
+        assertNotNull(entry);
+        assertSame(subCACert, entry.caCert);
+
+        byte[] keyHash = getKeyHash(subCACert, "MD5");
+        keyHash[0] ^= 0xff;
+        assertNull(LDAPStore.findIssuer(index, crls, "MD5", keyHash));
+    }
+}
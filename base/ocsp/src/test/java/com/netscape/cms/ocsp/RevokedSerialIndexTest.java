@@ -0,0 +1,246 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cms.ocsp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+public class RevokedSerialIndexTest {
+
+    static final long NOW = 1650000000000L;
+
+    Map<BigInteger, RevokedCertificate> certs = new HashMap<>();
+
+    void add(BigInteger serial, long date, RevocationReason reason) throws Exception {
+
+        CRLExtensions exts = null;
+
+        if (reason != null) {
+            exts = new CRLExtensions();
+            exts.set(CRLReasonExtension.NAME, new CRLReasonExtension(reason));
+        }
+
+        certs.put(serial, new RevokedCertImpl(serial, new Date(date), exts));
+    }
+
+    void add(long serial) throws Exception {
+        add(BigInteger.valueOf(serial), NOW + serial, RevocationReason.KEY_COMPROMISE);
+    }
+
+    RevokedSerialIndex createIndex() {
+        return new RevokedSerialIndex(BigInteger.TEN, new Date(NOW), certs);
+    }
+
+    /**
+     * Checks that every entry can be found and that the entries
+     * are stored in serial number order.
+     */
+    void assertIndex(RevokedSerialIndex index) {
+
+        assertEquals(certs.size(), index.size());
+
+        BigInteger previous = null;
+
+        for (int i = 0; i < index.size(); i++) {
+            BigInteger serial = index.getSerialNumber(i);
+
+            assertTrue(certs.containsKey(serial));
+            assertEquals(i, index.find(serial));
+
+            if (previous != null) {
+                assertTrue(previous.compareTo(serial) < 0);
+            }
+            previous = serial;
+
+            RevokedCertificate cert = certs.get(serial);
+            assertEquals(cert.getRevocationDate(), index.getRevocationDate(i));
+            assertEquals(RevokedSerialIndex.getReasonCode(cert), index.getReasonCode(i));
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+
+        RevokedSerialIndex index = createIndex();
+
+        assertEquals(0, index.size());
+        assertEquals(0, index.getMemorySize());
+        assertEquals(-1, index.find(BigInteger.ZERO));
+        assertEquals(-1, index.find(BigInteger.ONE));
+        assertEquals(-1, index.find(BigInteger.ONE.negate()));
+        assertFalse(index.contains(new BigInteger("123456789012345678901234567890")));
+
+        // null is treated as an empty CRL
+        index = new RevokedSerialIndex(BigInteger.TEN, new Date(NOW), null);
+        assertEquals(0, index.size());
+        assertFalse(index.contains(BigInteger.ONE));
+    }
+
+    @Test
+    public void testSingleEntry() throws Exception {
+
+        add(5);
+        RevokedSerialIndex index = createIndex();
+
+        assertIndex(index);
+        assertEquals(0, index.find(BigInteger.valueOf(5)));
+        assertEquals(-1, index.find(BigInteger.valueOf(4)));
+        assertEquals(-1, index.find(BigInteger.valueOf(6)));
+    }
+
+    @Test
+    public void testFirstAndLast() throws Exception {
+
+        for (long serial = 10; serial <= 1000; serial += 10) {
+            add(serial);
+        }
+
+        RevokedSerialIndex index = createIndex();
+        assertIndex(index);
+
+        assertEquals(0, index.find(BigInteger.valueOf(10)));
+        assertEquals(index.size() - 1, index.find(BigInteger.valueOf(1000)));
+
+        // just outside of the range
+        assertEquals(-1, index.find(BigInteger.valueOf(9)));
+        assertEquals(-1, index.find(BigInteger.valueOf(1001)));
+
+        // between entries
+        assertEquals(-1, index.find(BigInteger.valueOf(15)));
+        assertEquals(-1, index.find(BigInteger.valueOf(995)));
+    }
+
+    @Test
+    public void testHighBitSerials() throws Exception {
+
+        // serials with the high bit set need an extra zero byte
+        add(0x7f);
+        add(0x80);
+        add(0xff);
+        add(0x100);
+        add(0x7fff);
+        add(0x8000);
+        add(BigInteger.ONE.shiftLeft(63), NOW, null);
+        add(BigInteger.ONE.shiftLeft(127), NOW, null);
+        add(BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE), NOW, null);
+
+        RevokedSerialIndex index = createIndex();
+        assertIndex(index);
+
+        assertTrue(index.contains(BigInteger.valueOf(0x80)));
+        assertTrue(index.contains(BigInteger.ONE.shiftLeft(127)));
+        assertFalse(index.contains(BigInteger.valueOf(0x81)));
+        assertFalse(index.contains(BigInteger.ONE.shiftLeft(127).add(BigInteger.ONE)));
+
+        // longer than any serial in the index
+        assertFalse(index.contains(BigInteger.ONE.shiftLeft(128)));
+    }
+
+    @Test
+    public void testNegativeSerials() throws Exception {
+
+        add(-1);
+        add(-0x80);
+        add(-0x81);
+        add(-0x10000);
+        add(0);
+        add(1);
+        add(0x10000);
+
+        RevokedSerialIndex index = createIndex();
+        assertIndex(index);
+
+        // negative serials sort before positive ones
+        assertEquals(BigInteger.valueOf(-0x10000), index.getSerialNumber(0));
+        assertEquals(BigInteger.valueOf(0x10000), index.getSerialNumber(index.size() - 1));
+
+        assertFalse(index.contains(BigInteger.valueOf(-2)));
+        assertFalse(index.contains(BigInteger.valueOf(-0x7f)));
+        assertFalse(index.contains(BigInteger.valueOf(-0x10001)));
+
+        // same magnitude, different sign
+        assertFalse(index.contains(BigInteger.valueOf(0x80)));
+        assertFalse(index.contains(BigInteger.valueOf(0x81)));
+
+        // longer than any serial in the index
+        assertFalse(index.contains(BigInteger.ONE.shiftLeft(64).negate()));
+    }
+
+    @Test
+    public void testRandomSerials() throws Exception {
+
+        Random random = new Random(42);
+
+        for (int i = 0; i < 1000; i++) {
+            add(new BigInteger(1 + random.nextInt(128), random), NOW - random.nextInt(1000000), null);
+        }
+
+        RevokedSerialIndex index = createIndex();
+        assertIndex(index);
+
+        for (int i = 0; i < 1000; i++) {
+            BigInteger serial = new BigInteger(128, random);
+            assertEquals(certs.containsKey(serial), index.contains(serial));
+        }
+    }
+
+    @Test
+    public void testReasonCodes() throws Exception {
+
+        add(BigInteger.ONE, NOW, RevocationReason.KEY_COMPROMISE);
+        add(BigInteger.valueOf(2), NOW, RevocationReason.CERTIFICATE_HOLD);
+        add(BigInteger.valueOf(3), NOW, null);
+
+        RevokedSerialIndex index = createIndex();
+
+        assertEquals(RevocationReason.KEY_COMPROMISE.getCode(), index.getReasonCode(0));
+        assertEquals(RevocationReason.CERTIFICATE_HOLD.getCode(), index.getReasonCode(1));
+        assertEquals(RevokedSerialIndex.NO_REASON, index.getReasonCode(2));
+        assertEquals(new Date(NOW), index.getRevocationDate(2));
+    }
+
+    @Test
+    public void testIsCurrent() throws Exception {
+
+        RevokedSerialIndex index = createIndex();
+
+        assertTrue(index.isCurrent(BigInteger.TEN, new Date(NOW)));
+
+        // dates stored in the database have second precision
+        assertTrue(index.isCurrent(BigInteger.TEN, new Date(NOW + 999)));
+        assertFalse(index.isCurrent(BigInteger.TEN, new Date(NOW + 1000)));
+
+        assertFalse(index.isCurrent(BigInteger.ONE, new Date(NOW)));
+        assertFalse(index.isCurrent(null, new Date(NOW)));
+        assertFalse(index.isCurrent(BigInteger.TEN, null));
+    }
+}
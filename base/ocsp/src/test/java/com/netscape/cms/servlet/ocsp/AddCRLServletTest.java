@@ -0,0 +1,196 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cms.servlet.ocsp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AddCRLServletTest {
+
+    static final int MAX_SIZE = 10000;
+
+    static byte[] createData(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    static InputStream createStream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Wraps base-64 data into lines of the given length.
+     */
+    static String createPEM(byte[] data, int lineLength, String newline) {
+
+        String b64 = Base64.getEncoder().encodeToString(data);
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(AddCRLServlet.BEGIN_HEADER).append(newline);
+        for (int i = 0; i < b64.length(); i += lineLength) {
+            sb.append(b64, i, Math.min(b64.length(), i + lineLength)).append(newline);
+        }
+        sb.append(AddCRLServlet.END_HEADER).append(newline);
+
+        return sb.toString();
+    }
+
+    @Test
+    public void testReadDER() throws Exception {
+
+        byte[] data = createData(1000);
+
+        assertArrayEquals(data, AddCRLServlet.readDER(new ByteArrayInputStream(data), data.length, MAX_SIZE));
+
+        // unknown content length
+        assertArrayEquals(data, AddCRLServlet.readDER(new ByteArrayInputStream(data), -1, MAX_SIZE));
+    }
+
+    @Test
+    public void testReadTruncatedDER() throws Exception {
+
+        byte[] data = createData(1000);
+
+        try {
+            AddCRLServlet.readDER(new ByteArrayInputStream(data, 0, 600), data.length, MAX_SIZE);
+            fail("Expected EOFException");
+        } catch (EOFException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReadLargeDER() throws Exception {
+
+        byte[] data = createData(MAX_SIZE);
+
+        assertArrayEquals(data, AddCRLServlet.readDER(new ByteArrayInputStream(data), data.length, MAX_SIZE));
+        assertArrayEquals(data, AddCRLServlet.readDER(new ByteArrayInputStream(data), -1, MAX_SIZE));
+
+        // content length above the maximum is rejected before reading
+        try {
+            AddCRLServlet.readDER(new ByteArrayInputStream(data), Integer.MAX_VALUE, MAX_SIZE);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+
+        // unknown content length with more data than the maximum
+        try {
+            AddCRLServlet.readDER(new ByteArrayInputStream(createData(MAX_SIZE + 1)), -1, MAX_SIZE);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReadPEM() throws Exception {
+
+        // sizes with and without base-64 padding
+        for (int size : new int[] { 1, 2, 3, 100, 1000, 1001, 1002 }) {
+            byte[] data = createData(size);
+
+            assertArrayEquals(data, AddCRLServlet.readPEM(createStream(createPEM(data, 64, "\n")), MAX_SIZE));
+            assertArrayEquals(data, AddCRLServlet.readPEM(createStream(createPEM(data, 76, "\r\n")), MAX_SIZE));
+
+            // lines which are not a multiple of 4 characters
+            assertArrayEquals(data, AddCRLServlet.readPEM(createStream(createPEM(data, 17, "\n")), MAX_SIZE));
+        }
+    }
+
+    @Test
+    public void testReadLargePEM() throws Exception {
+
+        byte[] data = createData(MAX_SIZE);
+        assertArrayEquals(data, AddCRLServlet.readPEM(createStream(createPEM(data, 64, "\n")), MAX_SIZE));
+
+        // sizes with and without base-64 padding
+        for (int size : new int[] { MAX_SIZE + 1, MAX_SIZE + 2, MAX_SIZE + 3, 2 * MAX_SIZE }) {
+            try {
+                AddCRLServlet.readPEM(createStream(createPEM(createData(size), 64, "\n")), MAX_SIZE);
+                fail("Expected IOException");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testReadPEMWithText() throws Exception {
+
+        byte[] data = createData(500);
+        String pem = "Certificate Revocation List:\n  Issuer: CN=CA Signing Certificate\n"
+                + createPEM(data, 64, "\n")
+                + "trailing text\n";
+
+        assertArrayEquals(data, AddCRLServlet.readPEM(createStream(pem), MAX_SIZE));
+    }
+
+    @Test
+    public void testReadPEMWithoutHeader() throws Exception {
+
+        String pem = createPEM(createData(100), 64, "\n");
+        pem = pem.substring(pem.indexOf('\n') + 1);
+
+        try {
+            AddCRLServlet.readPEM(createStream(pem), MAX_SIZE);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReadPEMWithoutFooter() throws Exception {
+
+        String pem = createPEM(createData(100), 64, "\n");
+        pem = pem.substring(0, pem.indexOf(AddCRLServlet.END_HEADER));
+
+        try {
+            AddCRLServlet.readPEM(createStream(pem), MAX_SIZE);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReadInvalidPEM() throws Exception {
+
+        String pem = AddCRLServlet.BEGIN_HEADER + "\nAB$D\n" + AddCRLServlet.END_HEADER + "\n";
+
+        try {
+            AddCRLServlet.readPEM(createStream(pem), MAX_SIZE);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
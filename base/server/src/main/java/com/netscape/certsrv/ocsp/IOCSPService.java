@@ -74,4 +74,20 @@ public interface IOCSPService {
      * @return processed times for OCSP requests
      */
     public long getOCSPTotalData();
+
+    /**
+     * Returns the number of OCSP requests served
+     * from the OCSP response cache.
+     *
+     * @return number of cache hits
+     */
+    public long getOCSPResponseCacheHits();
+
+    /**
+     * Returns the number of cacheable OCSP requests
+     * not found in the OCSP response cache.
+     *
+     * @return number of cache misses
+     */
+    public long getOCSPResponseCacheMisses();
 }
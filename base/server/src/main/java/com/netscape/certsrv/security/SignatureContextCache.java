@@ -0,0 +1,105 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.certsrv.security;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class keeps signature contexts initialized with a signing key
+ * so that a thread can reuse them for subsequent signatures.
+ *
+ * Contexts are kept per thread since they are not thread-safe. Each
+ * context holds a session on the token, so the total number of cached
+ * contexts is limited. Once the limit is reached, new contexts are
+ * created for a single use and not cached.
+ *
+ * @param <T> signature context type
+ */
+public class SignatureContextCache<T> {
+
+    /**
+     * Creates a new signature context initialized with the signing key.
+     */
+    public interface Factory<T> {
+        T create(String algname) throws Exception;
+    }
+
+    private final int maxContexts;
+    private final AtomicInteger size = new AtomicInteger();
+    private final ThreadLocal<Map<String, T>> contexts = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * @param maxContexts maximum number of cached contexts, 0 to disable caching
+     */
+    public SignatureContextCache(int maxContexts) {
+        this.maxContexts = maxContexts;
+    }
+
+    /**
+     * Returns the context of the current thread for the algorithm,
+     * or creates a new one.
+     *
+     * @param algname signing algorithm, or null for the default algorithm
+     * @param factory factory to create a new context
+     * @return signature context
+     * @exception Exception failed to create the signature context
+     */
+    public T get(String algname, Factory<T> factory) throws Exception {
+
+        Map<String, T> map = contexts.get();
+
+        T context = map.get(algname);
+        if (context != null) {
+            return context;
+        }
+
+        context = factory.create(algname);
+
+        if (size.incrementAndGet() > maxContexts) {
+            size.decrementAndGet();
+            return context;
+        }
+
+        map.put(algname, context);
+        return context;
+    }
+
+    /**
+     * Removes the context of the current thread for the algorithm.
+     *
+     * @param algname signing algorithm, or null for the default algorithm
+     */
+    public void discard(String algname) {
+        if (contexts.get().remove(algname) != null) {
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of cached contexts of all threads.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    public int getMaxContexts() {
+        return maxContexts;
+    }
+}
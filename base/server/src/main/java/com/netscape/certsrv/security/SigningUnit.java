@@ -17,6 +17,7 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.certsrv.security;
 
+import java.io.IOException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
@@ -31,6 +32,8 @@ import org.mozilla.jss.crypto.SignatureAlgorithm;
 import org.mozilla.jss.crypto.TokenException;
 import org.mozilla.jss.crypto.X509Certificate;
 import org.mozilla.jss.netscape.security.util.Cert;
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+import org.mozilla.jss.netscape.security.util.DerValue;
 import org.mozilla.jss.netscape.security.x509.AlgorithmId;
 import org.mozilla.jss.netscape.security.x509.CertificateChain;
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
@@ -65,6 +68,12 @@ public abstract class SigningUnit {
     protected String mDefSigningAlgname;
     protected SignatureAlgorithm mDefSigningAlgorithm;
 
+    // DER-encoded SEQUENCE OF Certificate, built on first use
+    private volatile byte[] encodedCertChain;
+
+    // signature contexts initialized with the signing key
+    private volatile SignatureContextCache<Signature> signatureContexts = new SignatureContextCache<>(0);
+
     /**
      * Retrieves the nickname of the signing certificate.
      */
@@ -124,12 +133,94 @@ public abstract class SigningUnit {
         }
 
         certChain = new CertificateChain(certs);
+        encodedCertChain = null;
     }
 
     public CertificateChain getCertChain() {
         return certChain;
     }
 
+    /**
+     * Returns the signing certificate chain encoded as a DER
+     * SEQUENCE OF Certificate. The encoding is built once and
+     * shared, so the returned array must not be modified.
+     *
+     * @return encoded certificate chain
+     * @exception CertificateException failed to encode a certificate
+     * @exception IOException failed to encode the certificate chain
+     */
+    public byte[] getEncodedCertChain() throws CertificateException, IOException {
+
+        byte[] encoded = encodedCertChain;
+        if (encoded != null) {
+            return encoded;
+        }
+
+        try (DerOutputStream out = new DerOutputStream()) {
+            DerOutputStream tmp = new DerOutputStream();
+
+            for (java.security.cert.X509Certificate cert : certChain.getChain()) {
+                tmp.putDerValue(new DerValue(cert.getEncoded()));
+            }
+
+            out.write(DerValue.tag_Sequence, tmp);
+            encoded = out.toByteArray();
+        }
+
+        encodedCertChain = encoded;
+        return encoded;
+    }
+
+    /**
+     * Discards the signature contexts of all threads. This must be
+     * called after the signing key has been (re)loaded.
+     *
+     * @param maxContexts maximum number of cached contexts, 0 to disable reuse
+     */
+    protected void resetSignatureContexts(int maxContexts) {
+        logger.debug("SigningUnit: max signature contexts: " + maxContexts);
+        signatureContexts = new SignatureContextCache<>(maxContexts);
+    }
+
+    /**
+     * Returns a signature context initialized with the signing key.
+     * If the context is cached, the current thread reuses it for
+     * subsequent calls. Completing a signature returns the context
+     * to the initialized state, so it must be discarded with
+     * discardSignatureContext() if an operation fails before the
+     * signature is completed.
+     *
+     * @param algname signing algorithm, or null for the default algorithm
+     * @return signature context
+     * @exception Exception failed to create the signature context
+     */
+    protected Signature getReusableSignatureContext(String algname) throws Exception {
+
+        return signatureContexts.get(algname, name -> {
+
+            SignatureAlgorithm signAlg = mDefSigningAlgorithm;
+
+            if (name != null) {
+                signAlg = checkSigningAlgorithmFromName(name);
+            }
+
+            logger.debug("SigningUnit: Creating signature context for " + name + " " + signAlg);
+            Signature signer = mToken.getSignatureContext(signAlg);
+            signer.initSign(mPrivk);
+
+            return signer;
+        });
+    }
+
+    /**
+     * Removes the signature context of the current thread.
+     *
+     * @param algname signing algorithm, or null for the default algorithm
+     */
+    protected void discardSignatureContext(String algname) {
+        signatureContexts.discard(algname);
+    }
+
     /**
      * Signs the given data in specific algorithm.
      *
@@ -93,6 +93,14 @@ public class SigningUnitConfig extends ConfigStore {
         return getBoolean("testSignatureFailure", false);
     }
 
+    /**
+     * Returns the maximum number of signature contexts kept for reuse
+     * across all threads. By default contexts are not reused.
+     */
+    public int getMaxSignatureContexts() throws EBaseException {
+        return getInteger("maxSignatureContexts", 0);
+    }
+
     public String getDefaultSigningAlgorithm() throws EBaseException {
         return getString("defaultSigningAlgorithm");
     }
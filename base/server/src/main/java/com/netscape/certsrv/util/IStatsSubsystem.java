@@ -20,6 +20,7 @@ package com.netscape.certsrv.util;
 import java.util.Date;
 
 import com.netscape.certsrv.base.ISubsystem;
+import com.netscape.cmscore.metrics.MetricsRegistry;
 
 /**
  * A class represents a internal subsystem. This subsystem
@@ -56,7 +57,7 @@ public interface IStatsSubsystem extends ISubsystem {
     public void resetCounters();
 
     /**
-     * Resets all internal counters.
+     * Returns the registry containing the timers and counters.
      */
-    public StatsEvent getMainStatsEvent();
+    public MetricsRegistry getRegistry();
 }
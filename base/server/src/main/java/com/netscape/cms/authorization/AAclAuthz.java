@@ -17,10 +17,17 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cms.authorization;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.dogtagpki.server.authentication.AuthToken;
 import org.dogtagpki.server.authorization.AuthorizationConfig;
@@ -39,6 +46,7 @@ import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.apps.CMSEngine;
 import com.netscape.cmscore.apps.EngineConfig;
 import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.usrgrp.UGSubsystem;
 
 /**
  * An abstract class represents an authorization manager that governs the
@@ -71,6 +79,89 @@ public abstract class AAclAuthz implements IAuthzManager {
 
     public enum EvaluationOrder { DENY_ALLOW , ALLOW_DENY }
 
+    enum Decision { ALLOWED, DENIED, NOT_ALLOWED }
+
+    /**
+     * Allow and deny expressions that apply to an operation on
+     * a resource, collected from the resource and its parent nodes.
+     */
+    static class CompiledACL {
+
+        final List<ACLExpression> deny;
+        final List<ACLExpression> allow;
+        final boolean cacheable;
+
+        CompiledACL(List<ACLExpression> deny, List<ACLExpression> allow) {
+            this.deny = Collections.unmodifiableList(deny);
+            this.allow = Collections.unmodifiableList(allow);
+
+            boolean cacheable = true;
+            for (ACLExpression expression : deny) {
+                cacheable &= expression.isCacheable();
+            }
+            for (ACLExpression expression : allow) {
+                cacheable &= expression.isCacheable();
+            }
+            this.cacheable = cacheable;
+        }
+    }
+
+    /**
+     * Decisions made for principals, valid for a version of
+     * the group membership.
+     */
+    static class DecisionCache {
+
+        static class Entry {
+
+            final Decision decision;
+            final long time;
+
+            Entry(Decision decision, long time) {
+                this.decision = decision;
+                this.time = time;
+            }
+        }
+
+        final long membershipVersion;
+        final int size;
+        final long ttl; // milliseconds, 0 = no limit
+        final Map<String, Entry> decisions = new ConcurrentHashMap<>();
+
+        DecisionCache(long membershipVersion, int size, long ttl) {
+            this.membershipVersion = membershipVersion;
+            this.size = size;
+            this.ttl = ttl;
+        }
+
+        Decision get(String key, long now) {
+
+            Entry entry = decisions.get(key);
+            if (entry == null) return null;
+
+            if (ttl > 0 && now - entry.time >= ttl) {
+                decisions.remove(key, entry);
+                return null;
+            }
+
+            return entry.decision;
+        }
+
+        void put(String key, Decision decision, long now) {
+
+            if (size <= 0) return;
+
+            // evict arbitrary entries to keep the cache bounded
+            Iterator<String> keys = decisions.keySet().iterator();
+            while (decisions.size() >= size && keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+
+            decisions.put(key, new Entry(decision, now));
+        }
+    }
+
     protected static final String PROP_CLASS = "class";
     protected static final String PROP_IMPL = "impl";
     protected static final String PROP_EVAL = "accessEvaluator";
@@ -88,6 +179,14 @@ public abstract class AAclAuthz implements IAuthzManager {
     private Hashtable<String, ACL> mACLs = new Hashtable<>();
     private Hashtable<String, IAccessEvaluator> mEvaluators = new Hashtable<>();
 
+    // compiled ACLs and cached decisions are replaced (not modified)
+    // when the ACLs or evaluators change so that a check running
+    // concurrently with the change cannot store a stale result
+    private volatile Map<String, CompiledACL> mCompiledACLs = new ConcurrentHashMap<>();
+    private volatile DecisionCache mDecisionCache = new DecisionCache(0, 0, 0);
+    private int mDecisionCacheSize;
+    private long mDecisionCacheTTL; // milliseconds
+
     /* Vector of extendedPluginInfo strings */
     protected static Vector<String> mExtendedPluginInfo = null;
 
@@ -115,6 +214,14 @@ public abstract class AAclAuthz implements IAuthzManager {
 
         logger.debug("AAclAuthz: init begins");
 
+        mDecisionCacheSize = config.getDecisionCacheSize();
+        logger.debug("AAclAuthz: decision cache size: " + mDecisionCacheSize);
+
+        mDecisionCacheTTL = config.getDecisionCacheTTL() * 1000L;
+        logger.debug("AAclAuthz: decision cache TTL: " + config.getDecisionCacheTTL() + "s");
+
+        mDecisionCache = new DecisionCache(0, mDecisionCacheSize, mDecisionCacheTTL);
+
         // load access evaluators specified in the config file
         CMSEngine engine = CMS.getCMSEngine();
         EngineConfig mainConfig = engine.getConfig();
@@ -197,6 +304,7 @@ public abstract class AAclAuthz implements IAuthzManager {
             } else {
                 curACL.merge(acl);
             }
+            invalidateCache();
         } else {
             logger.warn("AAclAuthz: parseACL failed");
         }
@@ -252,9 +360,21 @@ public abstract class AAclAuthz implements IAuthzManager {
     @Override
     public void registerEvaluator(String type, IAccessEvaluator evaluator) {
         mEvaluators.put(type, evaluator);
+        invalidateCache();
         logger.info("AAclAuthz: " + type + " evaluator registered");
     }
 
+    /**
+     * Discards compiled ACLs and cached authorization decisions.
+     * This is called when the ACLs or evaluators change. Changes
+     * in group membership are detected with the membership version
+     * of the user/group subsystem.
+     */
+    public void invalidateCache() {
+        mCompiledACLs = new ConcurrentHashMap<>();
+        mDecisionCache = new DecisionCache(mDecisionCache.membershipVersion, mDecisionCacheSize, mDecisionCacheTTL);
+    }
+
     /*******************************************************
      * with session context
      *******************************************************/
@@ -283,7 +403,7 @@ public abstract class AAclAuthz implements IAuthzManager {
      * @param perm permission requested
      * @exception EACLsException access permission denied
      */
-    protected synchronized void checkPermission(String name, String perm)
+    protected void checkPermission(String name, String perm)
             throws EACLsException {
 
         String resource = "";
@@ -499,25 +619,49 @@ public abstract class AAclAuthz implements IAuthzManager {
      * @param perm permission requested
      * @exception EACLsException access permission denied
      */
-    public synchronized void checkPermission(AuthToken authToken, String name,
+    public void checkPermission(AuthToken authToken, String name,
             String perm)
             throws EACLsException {
 
         logger.debug("AAclAuthz.checkPermission(" + name + ", " + perm + ")");
 
-        Vector<String> nodes = getNodes(name);
-        EvaluationOrder order = getOrder();
+        UGSubsystem ug = CMS.getCMSEngine().getUGSubsystem();
+        long membershipVersion = ug == null ? 0 : ug.getMembershipVersion();
+        long lookupFailures = ug == null ? 0 : ug.getLookupFailures();
 
-        boolean permitted = false;
-        if (order == EvaluationOrder.DENY_ALLOW) {
-            checkDenyEntries(authToken, nodes, perm);
-            permitted = checkAllowEntries(authToken, nodes, perm);
-        } else if (order == EvaluationOrder.ALLOW_DENY) {
-            permitted = checkAllowEntries(authToken, nodes, perm);
-            checkDenyEntries(authToken, nodes, perm);
+        DecisionCache cache = getDecisionCache(membershipVersion);
+        CompiledACL acl = getCompiledACL(name, perm);
+
+        String key = null;
+        Decision decision = null;
+
+        if (acl.cacheable && cache.size > 0 && authToken != null) {
+            key = getDecisionKey(authToken, name, perm);
+            decision = cache.get(key, System.currentTimeMillis());
+            if (decision != null) {
+                logger.debug("AAclAuthz: Found cached decision: " + decision);
+            }
+        }
+
+        if (decision == null) {
+            decision = evaluate(authToken, acl);
+
+            // a failed lookup is evaluated as non-membership, so the
+            // decision is not cached if any lookup failed meanwhile
+            if (key != null && ug != null && ug.getLookupFailures() != lookupFailures) {
+                logger.debug("AAclAuthz: Not caching decision after failed user/group lookup");
+
+            } else if (key != null) {
+                cache.put(key, decision, System.currentTimeMillis());
+            }
+        }
+
+        if (decision == Decision.DENIED) {
+            logger.error("AAclAuthz: checkPermission(): permission denied");
+            throw new EACLsException(CMS.getUserMessage("CMS_ACL_PERMISSION_DENIED"));
         }
 
-        if (!permitted) {
+        if (decision == Decision.NOT_ALLOWED) {
             String[] params = new String[2];
             params[0] = name;
             params[1] = perm;
@@ -530,32 +674,99 @@ public abstract class AAclAuthz implements IAuthzManager {
         logger.info("AAclAuthz: Granting " + perm + " permission for " + name);
     }
 
-    protected boolean checkAllowEntries(
-            AuthToken authToken,
-            Iterable<String> nodes,
-            String perm) {
-        for (ACLEntry entry : getEntries(ACLEntry.Type.ALLOW, nodes, perm)) {
-            logger.debug("checkAllowEntries(): expressions: " + entry.getAttributeExpressions());
-            if (evaluateExpressions(authToken, entry.getAttributeExpressions())) {
+    /**
+     * Evaluates the compiled ACL in the configured order. A matching
+     * deny entry denies the access regardless of the order.
+     */
+    Decision evaluate(AuthToken authToken, CompiledACL acl) {
+
+        EvaluationOrder order = getOrder();
+
+        boolean permitted = false;
+        if (order == EvaluationOrder.DENY_ALLOW) {
+            if (matches(authToken, acl.deny)) return Decision.DENIED;
+            permitted = matches(authToken, acl.allow);
+
+        } else if (order == EvaluationOrder.ALLOW_DENY) {
+            permitted = matches(authToken, acl.allow);
+            if (matches(authToken, acl.deny)) return Decision.DENIED;
+        }
+
+        return permitted ? Decision.ALLOWED : Decision.NOT_ALLOWED;
+    }
+
+    boolean matches(AuthToken authToken, List<ACLExpression> expressions) {
+        for (ACLExpression expression : expressions) {
+            if (expression.evaluate(authToken)) {
                 return true;
             }
         }
         return false;
     }
 
-    /** throw EACLsException if a deny entry is matched */
-    protected void checkDenyEntries(
-            AuthToken authToken,
-            Iterable<String> nodes,
-            String perm)
-            throws EACLsException {
+    /**
+     * Returns the compiled allow and deny expressions for an
+     * operation on a resource, compiling them on first use.
+     */
+    CompiledACL getCompiledACL(String name, String perm) {
+
+        Map<String, CompiledACL> compiledACLs = mCompiledACLs;
+        String key = name + ":" + perm;
+
+        CompiledACL acl = compiledACLs.get(key);
+        if (acl != null) return acl;
+
+        Vector<String> nodes = getNodes(name);
+        List<ACLExpression> deny = new ArrayList<>();
+        List<ACLExpression> allow = new ArrayList<>();
+
         for (ACLEntry entry : getEntries(ACLEntry.Type.DENY, nodes, perm)) {
-            logger.debug("checkDenyEntries(): expressions: " + entry.getAttributeExpressions());
-            if (evaluateExpressions(authToken, entry.getAttributeExpressions())) {
-                logger.error("AAclAuthz: checkPermission(): permission denied");
-                throw new EACLsException(CMS.getUserMessage("CMS_ACL_PERMISSION_DENIED"));
-            }
+            deny.add(ACLExpression.parse(entry.getAttributeExpressions(), mEvaluators));
         }
+
+        for (ACLEntry entry : getEntries(ACLEntry.Type.ALLOW, nodes, perm)) {
+            allow.add(ACLExpression.parse(entry.getAttributeExpressions(), mEvaluators));
+        }
+
+        acl = new CompiledACL(deny, allow);
+        compiledACLs.put(key, acl);
+
+        return acl;
+    }
+
+    /**
+     * Returns the decision cache for the current group membership,
+     * discarding the decisions made for an older membership.
+     */
+    DecisionCache getDecisionCache(long membershipVersion) {
+
+        DecisionCache cache = mDecisionCache;
+        if (cache.membershipVersion == membershipVersion) return cache;
+
+        logger.debug("AAclAuthz: Group membership changed, discarding cached decisions");
+        cache = new DecisionCache(membershipVersion, mDecisionCacheSize, mDecisionCacheTTL);
+        mDecisionCache = cache;
+
+        return cache;
+    }
+
+    /**
+     * Returns the cache key of a decision. The key includes every
+     * attribute of the authentication token that the user and group
+     * evaluators use.
+     */
+    String getDecisionKey(AuthToken authToken, String name, String perm) {
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(name).append('\0');
+        sb.append(perm).append('\0');
+        sb.append(authToken.getInString(AuthToken.USER_ID)).append('\0');
+        sb.append(authToken.getInString(AuthToken.UID)).append('\0');
+
+        String[] groups = authToken.getInStringArray(AuthToken.GROUPS);
+        sb.append(groups == null ? null : Arrays.asList(groups));
+
+        return sb.toString();
     }
 
     protected Iterable<ACLEntry> getEntries(
@@ -590,68 +801,7 @@ public abstract class AAclAuthz implements IAuthzManager {
      * group="Administrators" || group="Operators"
      */
     private boolean evaluateExpressions(AuthToken authToken, String s) {
-        // XXX - just handle "||" (or) among multiple expressions for now
-        // XXX - could use some optimization ... later
-        logger.debug("evaluating expressions: " + s);
-
-        Vector<Object> v = new Vector<>();
-
-        while (s.length() > 0) {
-            int orIndex = s.indexOf("||");
-            int andIndex = s.indexOf("&&");
-
-            // this is the last expression
-            if (orIndex == -1 && andIndex == -1) {
-                boolean passed = evaluateExpression(authToken, s.trim());
-
-                logger.debug("evaluated expression: " + s.trim() + " to be " + passed);
-                v.addElement(Boolean.valueOf(passed));
-                break;
-
-                // || first
-            } else if (andIndex == -1 || (orIndex != -1 && orIndex < andIndex)) {
-                String s1 = s.substring(0, orIndex);
-                boolean passed = evaluateExpression(authToken, s1.trim());
-
-                logger.debug("evaluated expression: " + s1.trim() + " to be " + passed);
-                v.addElement(Boolean.valueOf(passed));
-                v.addElement("||");
-                s = s.substring(orIndex + 2);
-                // && first
-            } else {
-                String s1 = s.substring(0, andIndex);
-                boolean passed = evaluateExpression(authToken, s1.trim());
-
-                logger.debug("evaluated expression: " + s1.trim() + " to be " + passed);
-                v.addElement(Boolean.valueOf(passed));
-                v.addElement("&&");
-                s = s.substring(andIndex + 2);
-            }
-        }
-
-        if (v.isEmpty()) {
-            return false;
-        }
-
-        if (v.size() == 1) {
-            Boolean bool = (Boolean) v.remove(0);
-
-            return bool.booleanValue();
-        }
-
-        boolean left = false;
-        String op = "";
-        boolean right = false;
-
-        while (!v.isEmpty()) {
-            if (op.equals(""))
-                left = ((Boolean) v.remove(0)).booleanValue();
-            op = (String) v.remove(0);
-            right = ((Boolean) v.remove(0)).booleanValue();
-            left = evaluateExp(left, op, right);
-        }
-
-        return left;
+        return ACLExpression.parse(s, mEvaluators).evaluate(authToken);
     }
 
     public Vector<String> getNodes(String resourceID) {
@@ -674,57 +824,6 @@ public abstract class AAclAuthz implements IAuthzManager {
         return v;
     }
 
-    /**
-     * Resolves the given expression.
-     */
-    private boolean evaluateExpression(AuthToken authToken, String expression) {
-        String op = getOp(expression);
-        String type = "";
-        String value = "";
-
-        if (!op.equals("")) {
-            int len = op.length();
-            int i = expression.indexOf(op);
-
-            type = expression.substring(0, i).trim();
-            value = expression.substring(i + len).trim();
-        }
-        IAccessEvaluator evaluator = mEvaluators.get(type);
-
-        if (evaluator == null) {
-            logger.warn("AAclAuthz: " + CMS.getLogMessage("AUTHZ_EVALUATOR_NOT_FOUND", type));
-            return false;
-        }
-
-        return evaluator.evaluate(authToken, type, op, value);
-    }
-
-    private String getOp(String exp) {
-        int i = exp.indexOf("!=");
-
-        if (i == -1) {
-            i = exp.indexOf("=");
-            if (i == -1) {
-                i = exp.indexOf(">");
-                if (i == -1) {
-                    i = exp.indexOf("<");
-                    if (i == -1) {
-                        logger.warn("AAclAuthz: " + CMS.getLogMessage("AUTHZ_OP_NOT_SUPPORTED", exp));
-                    } else {
-                        return "<";
-                    }
-                } else {
-                    return ">";
-                }
-            } else {
-                return "=";
-            }
-        } else {
-            return "!=";
-        }
-        return "";
-    }
-
     private boolean evaluateExp(boolean left, String op, boolean right) {
         if (op.equals("||")) {
             return left || right;
@@ -760,6 +859,7 @@ public abstract class AAclAuthz implements IAuthzManager {
         }
 
         mACLs.put(ac.getName(), ac);
+        invalidateCache();
     }
 
     /**
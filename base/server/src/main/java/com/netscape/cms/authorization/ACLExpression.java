@@ -0,0 +1,211 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cms.authorization;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.dogtagpki.server.authentication.AuthToken;
+
+import com.netscape.certsrv.evaluators.IAccessEvaluator;
+import com.netscape.cms.evaluators.GroupAccessEvaluator;
+import com.netscape.cms.evaluators.UserAccessEvaluator;
+import com.netscape.cmscore.apps.CMS;
+
+/**
+ * This class represents the attribute expressions of an ACL entry
+ * (e.g. group="Administrators" || user="admin") parsed into terms
+ * and connectors with the evaluators already resolved, so they
+ * can be evaluated repeatedly without parsing the string again.
+ *
+ * The terms are combined from left to right without precedence
+ * just like the original string evaluation. Instances are
+ * immutable and can be shared between threads.
+ */
+public class ACLExpression {
+
+    public static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ACLExpression.class);
+
+    static class Term {
+
+        final String expression;
+        final String type;
+        final String op;
+        final String value;
+        final IAccessEvaluator evaluator;
+
+        Term(String expression, String type, String op, String value, IAccessEvaluator evaluator) {
+            this.expression = expression;
+            this.type = type;
+            this.op = op;
+            this.value = value;
+            this.evaluator = evaluator;
+        }
+
+        boolean evaluate(AuthToken authToken) {
+
+            if (evaluator == null) {
+                logger.warn("AAclAuthz: " + CMS.getLogMessage("AUTHZ_EVALUATOR_NOT_FOUND", type));
+                return false;
+            }
+
+            boolean passed = evaluator.evaluate(authToken, type, op, value);
+            logger.debug("evaluated expression: " + expression + " to be " + passed);
+
+            return passed;
+        }
+    }
+
+    private final String expressions;
+    private final Term[] terms;
+    private final boolean[] or; // connector before each term after the first
+
+    private ACLExpression(String expressions, Term[] terms, boolean[] or) {
+        this.expressions = expressions;
+        this.terms = terms;
+        this.or = or;
+    }
+
+    /**
+     * Parses attribute expressions and resolves their evaluators.
+     *
+     * @param s attribute expressions
+     * @param evaluators registered access evaluators
+     * @return compiled expressions
+     */
+    public static ACLExpression parse(String s, Map<String, IAccessEvaluator> evaluators) {
+
+        String expressions = s;
+        List<Term> terms = new ArrayList<>();
+        List<Boolean> connectors = new ArrayList<>();
+
+        while (s.length() > 0) {
+            int orIndex = s.indexOf("||");
+            int andIndex = s.indexOf("&&");
+
+            // this is the last expression
+            if (orIndex == -1 && andIndex == -1) {
+                terms.add(parseTerm(s.trim(), evaluators));
+                break;
+
+                // || first
+            } else if (andIndex == -1 || (orIndex != -1 && orIndex < andIndex)) {
+                terms.add(parseTerm(s.substring(0, orIndex).trim(), evaluators));
+                connectors.add(Boolean.TRUE);
+                s = s.substring(orIndex + 2);
+
+                // && first
+            } else {
+                terms.add(parseTerm(s.substring(0, andIndex).trim(), evaluators));
+                connectors.add(Boolean.FALSE);
+                s = s.substring(andIndex + 2);
+            }
+        }
+
+        // ignore a trailing connector without an expression
+        boolean[] or = new boolean[terms.size()];
+        for (int i = 1; i < or.length; i++) {
+            or[i] = connectors.get(i - 1);
+        }
+
+        return new ACLExpression(expressions, terms.toArray(new Term[terms.size()]), or);
+    }
+
+    static Term parseTerm(String expression, Map<String, IAccessEvaluator> evaluators) {
+
+        String op = getOp(expression);
+        String type = "";
+        String value = "";
+
+        if (!op.equals("")) {
+            int len = op.length();
+            int i = expression.indexOf(op);
+
+            type = expression.substring(0, i).trim();
+            value = expression.substring(i + len).trim();
+        }
+
+        return new Term(expression, type, op, value, evaluators.get(type));
+    }
+
+    static String getOp(String exp) {
+
+        if (exp.indexOf("!=") != -1) return "!=";
+        if (exp.indexOf("=") != -1) return "=";
+        if (exp.indexOf(">") != -1) return ">";
+        if (exp.indexOf("<") != -1) return "<";
+
+        logger.warn("AAclAuthz: " + CMS.getLogMessage("AUTHZ_OP_NOT_SUPPORTED", exp));
+        return "";
+    }
+
+    /**
+     * Evaluates the expressions from left to right. A term is not
+     * evaluated if the preceding connector already determines the
+     * result, which gives the same result as evaluating every term.
+     *
+     * @param authToken authentication token
+     * @return true if the expressions are satisfied
+     */
+    public boolean evaluate(AuthToken authToken) {
+
+        logger.debug("evaluating expressions: " + expressions);
+
+        if (terms.length == 0) {
+            return false;
+        }
+
+        boolean result = terms[0].evaluate(authToken);
+
+        for (int i = 1; i < terms.length; i++) {
+            if (or[i] ? !result : result) {
+                result = terms[i].evaluate(authToken);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns true if the result only depends on the user ID and
+     * the groups of the authentication token, i.e. all terms use
+     * the user or group evaluators, so it can be cached for the
+     * principal.
+     */
+    public boolean isCacheable() {
+
+        for (Term term : terms) {
+            if (term.evaluator == null) continue;
+            if (term.evaluator instanceof UserAccessEvaluator) continue;
+            if (term.evaluator instanceof GroupAccessEvaluator) continue;
+            return false;
+        }
+
+        return true;
+    }
+
+    public String getExpressions() {
+        return expressions;
+    }
+
+    @Override
+    public String toString() {
+        return expressions;
+    }
+}
@@ -0,0 +1,335 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cms.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded queue of log entries which are written to a log file
+ * by a dedicated thread.
+ *
+ * Entries are stored in a ring buffer. Producers claim a slot with
+ * a single compare-and-set and publish the entry by advancing the
+ * slot's sequence number, so adding an entry does not take a lock.
+ * Entries are consumed in the order their slots were claimed.
+ * Only one thread at a time may consume entries; LogFile ensures
+ * this by polling under its monitor.
+ *
+ * When the queue is full the caller waits until the writer has
+ * caught up, so entries are never dropped. If the queue has been
+ * stopped the entry is not queued and the caller is expected to
+ * write it directly.
+ *
+ * Each queued entry has a ticket which is completed when the writer
+ * commits the entry, or failed if the entry could not be written,
+ * so the caller can wait until its entry is actually in the log.
+ */
+public class AsyncLogQueue<T> {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(AsyncLogQueue.class);
+
+    /**
+     * Writes queued entries, polling them from the queue.
+     */
+    public interface Writer<T> {
+        void write(AsyncLogQueue<T> queue) throws Exception;
+    }
+
+    /**
+     * Tracks whether a queued entry has been written.
+     */
+    public static class Ticket {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Throwable error;
+
+        void complete(Throwable error) {
+            if (done.getCount() == 0) return;
+            this.error = error;
+            done.countDown();
+        }
+
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        /**
+         * Waits until the entry has been written.
+         *
+         * @exception InterruptedException interrupted while waiting
+         * @exception Exception the entry could not be written
+         */
+        public void await() throws Exception {
+
+            done.await();
+
+            if (error == null) return;
+
+            if (error instanceof Exception) {
+                throw (Exception) error;
+            }
+
+            throw new Exception(error.getMessage(), error);
+        }
+    }
+
+    private final Object[] buffer;
+    private final Ticket[] tickets;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    // next slot to be claimed by a producer
+    private final AtomicLong tail = new AtomicLong();
+
+    // next slot to be consumed
+    private final AtomicLong head = new AtomicLong();
+
+    // tickets of entries polled but not yet committed,
+    // only accessed by the consuming thread
+    private final List<Ticket> polled = new ArrayList<>();
+
+    private Thread thread;
+    private volatile boolean running;
+
+    /**
+     * @param size minimum capacity, rounded up to a power of two
+     */
+    public AsyncLogQueue(int size) {
+
+        int capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+
+        buffer = new Object[capacity];
+        tickets = new Ticket[capacity];
+        sequences = new AtomicLongArray(capacity);
+        mask = capacity - 1;
+
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public synchronized void start(String name, Writer<T> writer) {
+
+        if (running) return;
+        running = true;
+
+        thread = new Thread(() -> run(writer), name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the writer thread. Entries still in the queue should be
+     * written by the caller.
+     */
+    public synchronized void stop() {
+
+        if (!running) return;
+        running = false;
+
+        LockSupport.unpark(thread);
+        thread = null;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Adds an entry to the queue, waiting for space if necessary.
+     *
+     * @param entry log entry
+     * @return ticket to wait for the write, or null if the queue has
+     *         been stopped and the entry has to be written by the caller
+     * @exception InterruptedException interrupted while waiting for space
+     */
+    public Ticket put(T entry) throws InterruptedException {
+
+        if (!running) return null;
+
+        Ticket ticket = new Ticket();
+
+        if (!offer(entry, ticket)) {
+
+            logger.debug("AsyncLogQueue: Queue full, waiting");
+
+            do {
+                wakeUp();
+                LockSupport.parkNanos(this, TimeUnit.MICROSECONDS.toNanos(100));
+
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+
+                if (!running) return null;
+
+            } while (!offer(entry, ticket));
+        }
+
+        wakeUp();
+
+        return ticket;
+    }
+
+    /**
+     * Adds an entry to the queue if there is space.
+     *
+     * @return true if the entry was queued, false if the queue is full
+     */
+    boolean offer(T entry, Ticket ticket) {
+
+        long pos = tail.get();
+
+        while (true) {
+            int index = (int) (pos & mask);
+            long seq = sequences.get(index);
+            long diff = seq - pos;
+
+            if (diff == 0) {
+                // slot is free, try to claim it
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer[index] = entry;
+                    tickets[index] = ticket;
+                    // publish the entry
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+
+            } else if (diff < 0) {
+                // slot still holds an entry from the previous round
+                return false;
+
+            } else {
+                // another producer claimed the slot
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the next entry from the queue. The entry remains
+     * pending until commit() or abort() is called.
+     *
+     * @return log entry, or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+
+        long pos = head.get();
+        int index = (int) (pos & mask);
+
+        if (sequences.get(index) != pos + 1) {
+            // empty, or the producer has not published the entry yet
+            return null;
+        }
+
+        T entry = (T) buffer[index];
+        buffer[index] = null;
+
+        polled.add(tickets[index]);
+        tickets[index] = null;
+
+        head.set(pos + 1);
+
+        // release the slot for the next round
+        sequences.set(index, pos + mask + 1);
+
+        return entry;
+    }
+
+    /**
+     * Fails the entry most recently returned by poll().
+     *
+     * @param error the reason the entry could not be written
+     */
+    public void fail(Throwable error) {
+        if (polled.isEmpty()) return;
+        polled.get(polled.size() - 1).complete(error);
+    }
+
+    /**
+     * Completes the entries returned by poll() since the last commit,
+     * except those that have failed.
+     */
+    public void commit() {
+        for (Ticket ticket : polled) {
+            ticket.complete(null);
+        }
+        polled.clear();
+    }
+
+    /**
+     * Fails the entries returned by poll() since the last commit.
+     *
+     * @param error the reason the entries could not be written
+     */
+    public void abort(Throwable error) {
+        for (Ticket ticket : polled) {
+            ticket.complete(error);
+        }
+        polled.clear();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the number of queued (or claimed) entries.
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    public int getCapacity() {
+        return buffer.length;
+    }
+
+    void wakeUp() {
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    void run(Writer<T> writer) {
+
+        while (running) {
+
+            if (isEmpty()) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                continue;
+            }
+
+            try {
+                writer.write(this);
+
+            } catch (Throwable e) {
+                logger.error("AsyncLogQueue: Unable to write log entries: " + e.getMessage(), e);
+                abort(e);
+            }
+        }
+    }
+}
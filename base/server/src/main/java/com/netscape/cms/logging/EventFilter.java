@@ -0,0 +1,254 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cms.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.netscape.certsrv.logging.SignedAuditEvent;
+
+import netscape.ldap.client.JDAPAVA;
+import netscape.ldap.client.JDAPFilter;
+import netscape.ldap.client.JDAPFilterAnd;
+import netscape.ldap.client.JDAPFilterEqualityMatch;
+import netscape.ldap.client.JDAPFilterNot;
+import netscape.ldap.client.JDAPFilterOr;
+import netscape.ldap.client.JDAPFilterPresent;
+import netscape.ldap.client.JDAPFilterSubString;
+
+/**
+ * Audit event filter compiled from an LDAP filter.
+ *
+ * The filter tree is translated once into predicates over event
+ * attributes with the attribute names and lowercased values already
+ * extracted, so evaluating an event does not need to inspect the
+ * JDAPFilter classes or lowercase the filter values again. The
+ * predicates have the same semantics as LogFile.eval().
+ */
+public abstract class EventFilter {
+
+    public static final EventFilter NONE = new EventFilter() {
+        @Override
+        public boolean matches(SignedAuditEvent event) {
+            return false;
+        }
+    };
+
+    public abstract boolean matches(SignedAuditEvent event);
+
+    public static EventFilter compile(JDAPFilter filter) {
+
+        if (filter instanceof JDAPFilterPresent) {
+            return new Present(((JDAPFilterPresent) filter).getType());
+
+        } else if (filter instanceof JDAPFilterEqualityMatch) {
+            JDAPAVA ava = ((JDAPFilterEqualityMatch) filter).getAVA();
+            return new Equals(ava.getType(), ava.getValue());
+
+        } else if (filter instanceof JDAPFilterSubString) {
+            return new SubString((JDAPFilterSubString) filter);
+
+        } else if (filter instanceof JDAPFilterAnd) {
+            List<EventFilter> list = new ArrayList<>();
+            for (JDAPFilter f : ((JDAPFilterAnd) filter).getFilters()) {
+                list.add(compile(f));
+            }
+            return new And(list.toArray(new EventFilter[list.size()]));
+
+        } else if (filter instanceof JDAPFilterOr) {
+            List<EventFilter> list = new ArrayList<>();
+            for (JDAPFilter f : ((JDAPFilterOr) filter).getFilters()) {
+                list.add(compile(f));
+            }
+            return new Or(list.toArray(new EventFilter[list.size()]));
+
+        } else if (filter instanceof JDAPFilterNot) {
+            return new Not(compile(((JDAPFilterNot) filter).getFilter()));
+
+        } else {
+            return NONE;
+        }
+    }
+
+    /**
+     * Filter: (<name>=*)
+     */
+    static class Present extends EventFilter {
+
+        String name;
+
+        Present(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public boolean matches(SignedAuditEvent event) {
+            return event.getAttribute(name) != null;
+        }
+    }
+
+    /**
+     * Filter: (<name>=<value>)
+     */
+    static class Equals extends EventFilter {
+
+        String name;
+        String value;
+
+        Equals(String name, String value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public boolean matches(SignedAuditEvent event) {
+            Object attr = event.getAttribute(name);
+            if (!(attr instanceof String)) return false;
+            return value.equalsIgnoreCase((String) attr);
+        }
+    }
+
+    /**
+     * Filter: (<name>=<initial>*<any>*...*<any>*<final>)
+     */
+    static class SubString extends EventFilter {
+
+        String name;
+
+        // lowercased substrings and the lengths of the original
+        // substrings, which are used to skip past each match
+        String initialSubstring;
+        int initialLength;
+        String[] anySubstrings;
+        int[] anyLengths;
+        String finalSubstring;
+
+        SubString(JDAPFilterSubString filter) {
+
+            name = filter.getType();
+
+            String initial = filter.getInitialSubstring();
+            if (initial != null) {
+                initialSubstring = initial.toLowerCase();
+                initialLength = initial.length();
+            }
+
+            List<String> any = new ArrayList<>();
+            for (String s : filter.getAnySubstrings()) {
+                any.add(s);
+            }
+
+            anySubstrings = new String[any.size()];
+            anyLengths = new int[any.size()];
+            for (int i = 0; i < anySubstrings.length; i++) {
+                anySubstrings[i] = any.get(i).toLowerCase();
+                anyLengths[i] = any.get(i).length();
+            }
+
+            String fin = filter.getFinalSubstring();
+            if (fin != null) {
+                finalSubstring = fin.toLowerCase();
+            }
+        }
+
+        @Override
+        public boolean matches(SignedAuditEvent event) {
+
+            Object attr = event.getAttribute(name);
+            if (!(attr instanceof String)) return false;
+
+            String value = ((String) attr).toLowerCase();
+            int start = 0;
+
+            if (initialSubstring != null) {
+                if (!value.startsWith(initialSubstring)) return false;
+                start = initialLength;
+            }
+
+            for (int i = 0; i < anySubstrings.length; i++) {
+                int p = value.indexOf(anySubstrings[i], start);
+                if (p < 0) return false;
+                start = p + anyLengths[i];
+            }
+
+            if (finalSubstring != null) {
+                return value.endsWith(finalSubstring)
+                        && value.length() - finalSubstring.length() >= start;
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Filter: (&(filter1)(filter2)...(filterN))
+     */
+    static class And extends EventFilter {
+
+        EventFilter[] filters;
+
+        And(EventFilter[] filters) {
+            this.filters = filters;
+        }
+
+        @Override
+        public boolean matches(SignedAuditEvent event) {
+            for (EventFilter f : filters) {
+                if (!f.matches(event)) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Filter: (|(filter1)(filter2)...(filterN))
+     */
+    static class Or extends EventFilter {
+
+        EventFilter[] filters;
+
+        Or(EventFilter[] filters) {
+            this.filters = filters;
+        }
+
+        @Override
+        public boolean matches(SignedAuditEvent event) {
+            for (EventFilter f : filters) {
+                if (f.matches(event)) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Filter: (!(filter))
+     */
+    static class Not extends EventFilter {
+
+        EventFilter filter;
+
+        Not(EventFilter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean matches(SignedAuditEvent event) {
+            return !filter.matches(event);
+        }
+    }
+}
@@ -110,6 +110,11 @@ public class LogFile implements ILogEventListener, IExtendedPluginInfo {
     public static final String PROP_SIGNED_AUDIT_SELECTED_EVENTS = "events";
     public static final String PROP_SIGNED_AUDIT_MANDATORY_EVENTS = "mandatory.events";
     public static final String PROP_SIGNED_AUDIT_FILTERS = "filters";
+    public static final String PROP_ASYNC_ENABLE = "async.enable";
+    public static final String PROP_ASYNC_EVENTS = "async.events";
+    public static final String PROP_ASYNC_QUEUE_SIZE = "async.queueSize";
+    public static final String PROP_ASYNC_BATCH_SIZE = "async.batchSize";
+    public static final String PROP_ASYNC_COMMIT_DELAY = "async.commitDelay";
 
     public static final String PROP_LEVEL = "level";
     static final String PROP_FILE_NAME = "fileName";
@@ -210,6 +215,51 @@ public class LogFile implements ILogEventListener, IExtendedPluginInfo {
      */
     protected Map<String, JDAPFilter> filters = new HashMap<>();
 
+    /**
+     * The event filters compiled into predicates, keyed by event type
+     */
+    protected Map<String, EventFilter> compiledFilters = new HashMap<>();
+
+    /**
+     * A formatted log entry waiting to be written
+     */
+    protected static class QueuedEntry {
+
+        final String text;
+        final long timestamp;
+
+        QueuedEntry(String text, long timestamp) {
+            this.text = text;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * All events are written asynchronously with a group commit
+     */
+    protected boolean asyncAll;
+
+    /**
+     * The event types written asynchronously
+     */
+    protected Set<String> asyncEvents = new LinkedHashSet<>();
+
+    /**
+     * The queue of events to be written asynchronously
+     */
+    protected AsyncLogQueue<QueuedEntry> asyncQueue;
+
+    /**
+     * The maximum number of queued events written at once
+     */
+    protected int asyncBatchSize;
+
+    /**
+     * The time in milliseconds the writer waits for more events
+     * before committing a batch
+     */
+    protected int asyncCommitDelay;
+
     /**
      * The eventType that this log is triggered
      */
@@ -317,6 +367,13 @@ public class LogFile implements ILogEventListener, IExtendedPluginInfo {
             // parse filter
             JDAPFilter filter = JDAPFilter.getFilter(strFilter);
             filters.put(eventType, filter);
+            compiledFilters.put(eventType, EventFilter.compile(filter));
+        }
+
+        // asynchronous events
+        String asyncEventsList = config.getString(PROP_ASYNC_EVENTS, "");
+        for (String event : StringUtils.split(asyncEventsList, ", ")) {
+            asyncEvents.add(event);
         }
 
         try {
@@ -398,7 +455,7 @@ public class LogFile implements ILogEventListener, IExtendedPluginInfo {
         }
     }
 
-    private static boolean mInSignedAuditLogFailureMode = false;
+    private static volatile boolean mInSignedAuditLogFailureMode = false;
 
     private static synchronized void shutdownCMS() {
         if (mInSignedAuditLogFailureMode == false) {
@@ -490,6 +547,48 @@ public class LogFile implements ILogEventListener, IExtendedPluginInfo {
             init(fileName, config.getInteger(PROP_BUFFER_SIZE, BUFFER_SIZE),
                     config.getInteger(PROP_FLUSH_INTERVAL, FLUSH_INTERVAL));
         }
+
+        asyncAll = config.getBoolean(PROP_ASYNC_ENABLE, false);
+
+        // trace output shows the stack of the writing thread,
+        // so it is only meaningful for synchronous writes
+        if (mOn && (asyncAll || !asyncEvents.isEmpty()) && !mTrace && asyncQueue == null) {
+            int queueSize = config.getInteger(PROP_ASYNC_QUEUE_SIZE, 10000);
+            asyncBatchSize = config.getInteger(PROP_ASYNC_BATCH_SIZE, 100);
+            asyncCommitDelay = config.getInteger(PROP_ASYNC_COMMIT_DELAY, 0);
+
+            if (asyncAll) {
+                logger.debug("LogFile: asynchronous events: all");
+            } else {
+                logger.debug("LogFile: asynchronous events: " + asyncEvents);
+            }
+            logger.debug("LogFile: - queue size: " + queueSize);
+            logger.debug("LogFile: - batch size: " + asyncBatchSize);
+            logger.debug("LogFile: - commit delay: " + asyncCommitDelay + " ms");
+
+            startAsyncQueue(queueSize);
+        }
+    }
+
+    /**
+     * Starts the queue and the writer thread for asynchronous events.
+     *
+     * @param queueSize The maximum number of queued events
+     */
+    protected void startAsyncQueue(int queueSize) {
+
+        AsyncLogQueue<QueuedEntry> queue = new AsyncLogQueue<>(queueSize);
+        queue.start(mFileName + ".async", q -> {
+
+            if (asyncCommitDelay > 0 && q.size() < asyncBatchSize) {
+                // wait for more events to commit together
+                Thread.sleep(asyncCommitDelay);
+            }
+
+            writeQueuedEntries(q);
+        });
+
+        asyncQueue = queue;
     }
 
     /**
@@ -563,19 +662,7 @@ public class LogFile implements ILogEventListener, IExtendedPluginInfo {
                 cm.setThreadToken(savedToken);
             }
 
-            mSignature.initSign(mSigningKey);
-
-            // get the last signature from the currently-opened file
-            String entry = getLastSignature(mFile);
-            if (entry != null) {
-                mSignature.update(entry.getBytes("UTF-8"));
-                mSignature.update(LINE_SEP_BYTE);
-            }
-
-            // Always start off with a signature. That way, even if there
-            // were problems with the log file we inherited, we will
-            // get a fresh start with this instance.
-            pushSignature();
+            initSigning(mSigningKey, mSignature);
 
         } catch (NotInitializedException nie) {
             setupSigningFailure("BASE_CRYPTOMANAGER_UNINITIALIZED", nie);
@@ -600,6 +687,31 @@ public class LogFile implements ILogEventListener, IExtendedPluginInfo {
         }
     }
 
+    /**
+     * Starts the signature chain with the given key, continuing
+     * from the last signature in the current log file.
+     */
+    synchronized void initSigning(PrivateKey signingKey, Signature signature)
+            throws IOException, ELogException, GeneralSecurityException {
+
+        mSigningKey = signingKey;
+        mSignature = signature;
+
+        mSignature.initSign(mSigningKey);
+
+        // get the last signature from the currently-opened file
+        String entry = getLastSignature(mFile);
+        if (entry != null) {
+            mSignature.update(entry.getBytes("UTF-8"));
+            mSignature.update(LINE_SEP_BYTE);
+        }
+
+        // Always start off with a signature. That way, even if there
+        // were problems with the log file we inherited, we will
+        // get a fresh start with this instance.
+        pushSignature();
+    }
+
     private static void setupSigningFailure(String logMessageCode, Exception e)
             throws EBaseException {
         try {
@@ -796,6 +908,28 @@ public class LogFile implements ILogEventListener, IExtendedPluginInfo {
         mBytesUnflushed = 0;
     }
 
+    /**
+     * Flushes the output buffer without signing the log. The bytes
+     * remain unflushed for the signature, so the log is still signed
+     * at the flush interval.
+     */
+    protected synchronized void flushWriter() {
+        try {
+            if (mLogWriter != null) {
+                mLogWriter.flush();
+            }
+
+        } catch (IOException e) {
+            String message = CMS.getUserMessage("CMS_LOG_FLUSH_LOG_FAILED", mFileName, e.getMessage());
+            logger.error("LogFile: " + message, e);
+            System.err.println(message);
+            if (mLogSigning) {
+                e.printStackTrace();
+                shutdownCMS();
+            }
+        }
+    }
+
     /**
      * Close the log file
      *
@@ -825,6 +959,15 @@ public class LogFile implements ILogEventListener, IExtendedPluginInfo {
 
         logger.info("Destroying LogFile(" + mFileName + ")");
 
+        if (asyncQueue != null) {
+            // write remaining events, new events will be written directly
+            asyncQueue.stop();
+            while (!asyncQueue.isEmpty()) {
+                writeQueuedEntries(asyncQueue);
+            }
+            asyncQueue = null;
+        }
+
         String auditMessage = null;
 
         setFlushInterval(0);
@@ -924,6 +1067,17 @@ public class LogFile implements ILogEventListener, IExtendedPluginInfo {
             throws ELogException {
 
         String entry = logEvt2String(event);
+        mDate.setTime(event.getTimeStamp());
+
+        write(entry, noFlush);
+    }
+
+    /**
+     * Writes a formatted entry to the log file and adds it to the
+     * running log signature.
+     */
+    private synchronized void write(String entry, boolean noFlush)
+            throws ELogException {
 
         if (mLogWriter == null) {
             String[] params = { mFileName, entry };
@@ -1060,49 +1214,186 @@ public class LogFile implements ILogEventListener, IExtendedPluginInfo {
 
         // If no type specified in property file, then treated as selected
         String type = ev.getEventType();
-        if (type == null) {
-            doLog(ev);
-            return;
+
+        if (type != null) {
+
+            // If no selection specified in configuration, then all are selected
+            if (!selectedEvents.isEmpty()
+                    && !mandatoryEvents.contains(type)
+                    && !selectedEvents.contains(type)) {
+                logger.debug("LogFile: event type not selected: " + type);
+                return;
+            }
+
+            if (!accept((SignedAuditEvent) ev)) {
+                // event does not match filter, discard
+                return;
+            }
         }
 
-        // If no selection specified in configuration, then all are selected
-        if (selectedEvents.isEmpty()) {
-            filter((SignedAuditEvent)ev);
-            return;
+        AsyncLogQueue<QueuedEntry> queue = asyncQueue;
+        if (queue != null && (asyncAll || type != null && asyncEvents.contains(type))) {
+            if (enqueue(queue, ev)) {
+                return;
+            }
+
+            // queue stopped or log failed, write the event directly
         }
 
-        // Is the event type mandatory or selected?
-        if (mandatoryEvents.contains(type) || selectedEvents.contains(type)) {
-            filter((SignedAuditEvent)ev);
-            return;
+        doLog(ev);
+        written();
+    }
+
+    /**
+     * Formats an event in the calling thread, adds it to the queue
+     * and waits until the writer has committed it.
+     *
+     * @return true if the event was written by the writer, false if
+     *         it has to be written directly
+     * @exception ELogException the event could not be written
+     */
+    protected boolean enqueue(AsyncLogQueue<QueuedEntry> queue, ILogEvent ev) throws ELogException {
+
+        // once the log is closed or signed audit has failed, write
+        // synchronously so the caller sees the failure as before
+        if (mLogWriter == null || mLogSigning && mInSignedAuditLogFailureMode) {
+            return false;
+        }
+
+        // the writer needs the monitor to write the entry
+        if (Thread.holdsLock(this)) {
+            return false;
+        }
+
+        QueuedEntry entry = new QueuedEntry(logEvt2String(ev), ev.getTimeStamp());
+        AsyncLogQueue.Ticket ticket;
+
+        try {
+            ticket = queue.put(entry);
+            if (ticket == null) {
+                return false;
+            }
+
+            if (!queue.isRunning()) {
+                // stopped after the entry was queued, make sure it gets written
+                writeQueuedEntries(queue);
+            }
+
+            // like a synchronous write, return once the event is in the log
+            ticket.await();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ELogException("Unable to log event: " + ev.getEventType(), e);
+
+        } catch (ELogException e) {
+            throw e;
+
+        } catch (Exception e) {
+            throw new ELogException("Unable to log event: " + ev.getEventType() + ": " + e.getMessage(), e);
         }
 
-        logger.debug("LogFile: event type not selected: " + type);
+        return true;
+    }
+
+    /**
+     * Called after events have been written by log().
+     * Subclasses may override this to check the log file size.
+     */
+    protected void written() throws ELogException {
+    }
+
+    /**
+     * Writes a batch of queued entries under a single lock.
+     *
+     * The output buffer is checked once per batch, so the log is
+     * signed at the same points as with synchronous writes: when the
+     * buffer is full, at the flush interval, and when the log is
+     * closed. If all events are written asynchronously the batch is
+     * also flushed to the file without being signed.
+     *
+     * The callers waiting for the entries are released once the batch
+     * has been committed, or fail if the signed audit log has failed.
+     */
+    protected synchronized void writeQueuedEntries(AsyncLogQueue<QueuedEntry> queue) throws ELogException {
+
+        int count = 0;
+
+        try {
+            while (count < asyncBatchSize) {
+
+                QueuedEntry entry = queue.poll();
+                if (entry == null) {
+                    break;
+                }
+
+                count++;
+                mDate.setTime(entry.timestamp);
+
+                try {
+                    write(entry.text, true);
+
+                } catch (ELogException e) {
+                    logger.error("LogFile: Unable to write event: " + e.getMessage(), e);
+                    queue.fail(e);
+                }
+            }
+
+            if (count == 0) {
+                return;
+            }
+
+            if (mBufferSize > 0 && mBytesUnflushed > mBufferSize) {
+                // sign and flush the log like synchronous writes do
+                flush();
+
+            } else if (asyncAll) {
+                // commit the batch, the log is signed at the flush interval
+                flushWriter();
+            }
+
+            if (mLogSigning && mInSignedAuditLogFailureMode) {
+                // don't let the callers continue as if the events were logged
+                throw new ELogException("Unable to write signed audit log: " + mFileName);
+            }
+
+        } catch (Throwable e) {
+            queue.abort(e);
+            throw e;
+        }
+
+        queue.commit();
+
+        written();
     }
 
     public void filter(SignedAuditEvent ev) throws ELogException {
+        if (accept(ev)) {
+            doLog(ev);
+        }
+    }
+
+    /**
+     * Checks whether an event matches the filter defined for its type.
+     *
+     * @return true if the event should be logged
+     */
+    protected boolean accept(SignedAuditEvent ev) throws ELogException {
         String type = ev.getEventType();
-        JDAPFilter filter = filters.get(type);
+        EventFilter filter = compiledFilters.get(type);
 
         if (filter == null) {
             // filter not defined for this event type
-            doLog(ev);
-            return;
+            return true;
         }
 
         try {
-            boolean result = eval(ev, filter);
-            if (!result) {
-                // event does not match filter, discard
-                return;
-            }
+            // discard event if it does not match filter
+            return filter.matches(ev);
 
         } catch (Exception e) {
             throw new ELogException(e.getMessage(), e);
         }
-
-        // log event
-        doLog(ev);
     }
 
     public boolean eval(SignedAuditEvent event, JDAPFilter filter) {
@@ -1227,9 +1518,12 @@ public class LogFile implements ILogEventListener, IExtendedPluginInfo {
     public String logEvt2String(ILogEvent ev) {
         String entry = null;
 
-        // Hmm.. multiple threads could hit this and reset the time.
-        // Do we care?
-        mDate.setTime(ev.getTimeStamp());
+        // events may be formatted concurrently by the threads logging
+        // them, and SimpleDateFormat is not thread-safe
+        String date;
+        synchronized (mLogDateFormat) {
+            date = mLogDateFormat.format(new Date(ev.getTimeStamp()));
+        }
 
         CMSEngine engine = CMS.getCMSEngine();
 
@@ -1238,12 +1532,12 @@ public class LogFile implements ILogEventListener, IExtendedPluginInfo {
         // some work.
         if (ev.getMultiline() == ILogger.L_MULTILINE) {
             entry = engine.getPID() + "." + Thread.currentThread().getName() + " - ["
-                    + mLogDateFormat.format(mDate) + "] [" +
+                    + date + "] [" +
                     ev.getSource().value() + "] [" + Integer.toString(ev.getLevel())
                     + "] " + prepareMultiline(ev.toString());
         } else {
             entry = engine.getPID() + "." + Thread.currentThread().getName() + " - ["
-                    + mLogDateFormat.format(mDate) + "] [" +
+                    + date + "] [" +
                     ev.getSource().value() + "] [" + Integer.toString(ev.getLevel())
                     + "] " + ev.toString();
         }
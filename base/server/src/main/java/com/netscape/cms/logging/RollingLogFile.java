@@ -35,7 +35,6 @@ import com.netscape.certsrv.common.Constants;
 import com.netscape.certsrv.common.NameValuePairs;
 import com.netscape.certsrv.logging.AuditEvent;
 import com.netscape.certsrv.logging.ELogException;
-import com.netscape.certsrv.logging.ILogEvent;
 import com.netscape.certsrv.logging.ILogger;
 import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.base.ConfigStore;
@@ -487,15 +486,10 @@ public class RollingLogFile extends LogFile {
     }
 
     /**
-     * Write an event to the log file
-     *
-     * @param ev The event to be logged.
+     * Rotate the log file if it exceeds the maximum size.
      **/
     @Override
-    public synchronized void log(ILogEvent ev) throws ELogException {
-        //xxx, Shall we log first without checking if it exceed the maximum?
-        super.log(ev); // Will increment mBytesWritten
-
+    protected synchronized void written() throws ELogException {
         if ((0 != mMaxFileSize) && (mBytesWritten > mMaxFileSize)) {
             flush();
             try {
@@ -18,9 +18,12 @@
 package com.netscape.cms.servlet.base;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
-import java.util.Enumeration;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -34,7 +37,6 @@ import org.dogtagpki.server.authorization.AuthzToken;
 import com.netscape.certsrv.authorization.EAuthzAccessDenied;
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.util.IStatsSubsystem;
-import com.netscape.certsrv.util.StatsEvent;
 import com.netscape.cms.servlet.common.CMSRequest;
 import com.netscape.cms.servlet.common.CMSTemplate;
 import com.netscape.cms.servlet.common.CMSTemplateParams;
@@ -42,6 +44,9 @@ import com.netscape.cms.servlet.common.ECMSGWException;
 import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.apps.CMSEngine;
 import com.netscape.cmscore.base.ArgBlock;
+import com.netscape.cmscore.metrics.Histogram;
+import com.netscape.cmscore.metrics.MetricsRegistry;
+import com.netscape.cmscore.metrics.Timer;
 
 /**
  * Retrieve information.
@@ -126,7 +131,7 @@ public class GetStats extends CMSServlet {
         CMSTemplateParams argSet = new CMSTemplateParams(header, fixed);
 
         IStatsSubsystem statsSub = (IStatsSubsystem) engine.getSubsystem(IStatsSubsystem.ID);
-        StatsEvent st = statsSub.getMainStatsEvent();
+        MetricsRegistry registry = statsSub.getRegistry();
 
         String op = httpReq.getParameter("op");
         if (op != null && op.equals("clear")) {
@@ -135,7 +140,7 @@ public class GetStats extends CMSServlet {
 
         header.addStringValue("startTime", statsSub.getStartTime().toString());
         header.addStringValue("curTime", (new Date()).toString());
-        parse(argSet, st, 0);
+        parse(argSet, registry.getRootTimer(), 0);
 
         try {
             ServletOutputStream out = httpResp.getOutputStream();
@@ -161,24 +166,42 @@ public class GetStats extends CMSServlet {
         return s.toString();
     }
 
-    public void parse(CMSTemplateParams argSet, StatsEvent st, int level) {
-        Enumeration<String> names = st.getSubEventNames();
-        while (names.hasMoreElements()) {
-            String name = names.nextElement();
-            StatsEvent subSt = st.getSubEvent(name);
+    public void parse(CMSTemplateParams argSet, Timer timer, int level) {
+
+        List<Timer> children = new ArrayList<>(timer.getChildren());
+        children.sort(Comparator.comparing(Timer::getName));
+
+        long parentTime = timer.getParent() == null ? 0 : timer.getTotalTime();
+
+        for (Timer subTimer : children) {
+
+            Histogram histogram = subTimer.getHistogram();
+            long count = histogram.getCount();
+            long totalTime = histogram.getSum();
 
             ArgBlock rarg = new ArgBlock();
-            rarg.addStringValue("name", getSep(level) + " " + subSt.getName());
-            rarg.addLongValue("noOfOp", subSt.getNoOfOperations());
-            rarg.addLongValue("timeTaken", subSt.getTimeTaken());
-            rarg.addLongValue("max", subSt.getMax());
-            rarg.addLongValue("min", subSt.getMin());
-            rarg.addLongValue("percentage", subSt.getPercentage());
-            rarg.addLongValue("avg", subSt.getAvg());
-            rarg.addLongValue("stddev", subSt.getStdDev());
+            rarg.addStringValue("name", getSep(level) + " " + subTimer.getName());
+            rarg.addLongValue("noOfOp", count);
+            rarg.addLongValue("timeTaken", toMillis(totalTime));
+            rarg.addLongValue("max", count == 0 ? -1 : toMillis(histogram.getMax()));
+            rarg.addLongValue("min", count == 0 ? -1 : toMillis(histogram.getMin()));
+            rarg.addLongValue("percentage", parentTime == 0 ? 100 : totalTime * 100 / parentTime);
+            rarg.addLongValue("avg", count == 0 ? -1 : toMillis(totalTime / count));
+            rarg.addLongValue("stddev", toMillis((long) histogram.getStdDev()));
+            rarg.addStringValue("p50", formatMillis(histogram.getValueAtPercentile(50)));
+            rarg.addStringValue("p99", formatMillis(histogram.getValueAtPercentile(99)));
+            rarg.addStringValue("p999", formatMillis(histogram.getValueAtPercentile(99.9)));
             argSet.addRepeatRecord(rarg);
 
-            parse(argSet, subSt, level + 1);
+            parse(argSet, subTimer, level + 1);
         }
     }
+
+    long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    String formatMillis(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
 }
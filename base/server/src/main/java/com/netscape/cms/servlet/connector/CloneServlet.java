@@ -138,7 +138,8 @@ public class CloneServlet extends CMSServlet {
         // get content length
         len = req.getContentLength();
 
-        // get content, a base 64 encoded serialized request.
+        // get content, a base 64 encoded serialized or binary request.
+        // the reply is encoded in the same format.
         if (len > 0) {
             InputStream in = req.getInputStream();
             InputStreamReader inreader = new InputStreamReader(in, "UTF8");
@@ -249,7 +250,7 @@ public class CloneServlet extends CMSServlet {
         }
 
         // encode reply
-        String encodedrep = mReqEncoder.encode(replymsg);
+        String encodedrep = mReqEncoder.encode(replymsg, HttpRequestEncoder.getFormat(encodedreq));
 
         resp.setStatus(HttpServletResponse.SC_OK);
         resp.setContentType("text/html");
@@ -184,7 +184,8 @@ public class ConnectorServlet extends CMSServlet {
         // get content length
         len = request.getContentLength();
 
-        // get content, a base 64 encoded serialized request.
+        // get content, a base 64 encoded serialized or binary request.
+        // the reply is encoded in the same format.
         if (len > 0) {
             InputStream in = request.getInputStream();
             InputStreamReader inreader = new InputStreamReader(in, "UTF8");
@@ -306,7 +307,7 @@ public class ConnectorServlet extends CMSServlet {
 
         // encode reply
         try {
-            String encodedrep = mReqEncoder.encode(replymsg);
+            String encodedrep = mReqEncoder.encode(replymsg, HttpRequestEncoder.getFormat(encodedreq));
 
             resp.setStatus(HttpServletResponse.SC_OK);
             resp.setContentType("text/html");
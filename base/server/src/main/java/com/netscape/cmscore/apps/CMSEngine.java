@@ -674,6 +674,7 @@ public class CMSEngine {
         IPasswordStore passwordStore = getPasswordStore();
 
         ugSubsystem.init(ldapConfig, socketConfig, passwordStore);
+        ugSubsystem.initCache(ugConfig.getCacheConfig());
     }
 
     public void initOIDLoaderSubsystem() throws Exception {
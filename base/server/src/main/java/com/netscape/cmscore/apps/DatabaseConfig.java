@@ -118,6 +118,14 @@ public class DatabaseConfig extends ConfigStore {
         putString(DBSubsystem.PROP_SERIAL_INCREMENT, serialIncrement);
     }
 
+    public int getSerialBlockSize() throws EBaseException {
+        return getInteger("serialBlockSize", 0);
+    }
+
+    public void setSerialBlockSize(int serialBlockSize) {
+        putInteger("serialBlockSize", serialBlockSize);
+    }
+
     public String getRequestDN() throws EBaseException {
         return getString(DBSubsystem.PROP_REQUEST_BASEDN, "");
     }
@@ -182,6 +190,14 @@ public class DatabaseConfig extends ConfigStore {
         putString(DBSubsystem.PROP_REQUEST_INCREMENT, requestIncrement);
     }
 
+    public int getRequestBlockSize() throws EBaseException {
+        return getInteger("requestBlockSize", 0);
+    }
+
+    public void setRequestBlockSize(int requestBlockSize) {
+        putInteger("requestBlockSize", requestBlockSize);
+    }
+
     public String getReplicaDN() throws EBaseException {
         return getString(DBSubsystem.PROP_REPLICA_BASEDN, "");
     }
@@ -17,15 +17,26 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cmscore.connector;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.dogtagpki.server.PKIClientSocketListener;
 
 import com.netscape.certsrv.base.EBaseException;
-import com.netscape.certsrv.ldap.ELdapException;
 import com.netscape.cmsutil.http.JssSSLSocketFactory;
 import com.netscape.cmsutil.net.ISocketFactory;
 
 /**
  * Factory for getting HTTP Connections to a HTTPO server
+ * <P>
+ * Connections are kept open between requests and reused, most recently
+ * returned first. Borrowers acquire a permit from a fair semaphore
+ * bounded by the maximum number of connections, so waiting threads are
+ * served in order and can give up after the maximum wait time.
  */
 public class HttpConnFactory {
 
@@ -34,13 +45,18 @@ public class HttpConnFactory {
     protected int mMinConns = 1;
     protected int mMaxConns = 30;
 
-    private int mNumConns = 0; // number of available conns in array
-    private int mTotal = 0; // total num conns
-    private HttpConnection mConns[];
     private RemoteAuthority mDest;
     private String mNickname = "";
     private String mClientCiphers = null;
     private int mTimeout = 0;
+    private long mMaxWait = 0; // milliseconds, 0 = no limit
+    private int mKeepAliveTimeout = HttpConnection.DEFAULT_KEEP_ALIVE_TIMEOUT; // seconds
+    private String mWireFormat = HttpRequestEncoder.FORMAT_SERIALIZED;
+
+    private Semaphore mPermits;
+    private ConcurrentLinkedDeque<HttpConnection> mIdle = new ConcurrentLinkedDeque<>();
+    private Set<HttpConnection> mBorrowed = ConcurrentHashMap.newKeySet();
+    private AtomicInteger mTotal = new AtomicInteger(); // total num conns
 
     /**
      * Constructor for initializing from the config store.
@@ -64,8 +80,8 @@ public class HttpConnFactory {
             int timeout) throws EBaseException {
 
         logger.debug("In HttpConnFactory constructor mTimeout " + timeout);
-        if (mClientCiphers != null)
-            logger.debug("In HttpConnFactory constructor mClientCiphers: " + mClientCiphers);
+        if (clientCiphers != null)
+            logger.debug("In HttpConnFactory constructor mClientCiphers: " + clientCiphers);
         else
             logger.debug("In HttpConnFactory constructor mClientCiphers not specified, will take default ");
         mDest = dest;
@@ -82,9 +98,6 @@ public class HttpConnFactory {
      *
      * @param minConns minimum number of connection handles to have available.
      * @param maxConns maximum total number of connections to ever have.
-     * @param connInfo ldap connection info.
-     * @param authInfo ldap authentication info.
-     * @exception ELdapException if any error occurs.
      */
     private void init(int minConns, int maxConns
             )
@@ -100,24 +113,48 @@ public class HttpConnFactory {
             mMaxConns = maxConns;
         }
 
-        logger.debug("before creating httpconn array");
-
-        mConns = new HttpConnection[mMaxConns];
-
-        // Create connection handle and make initial connection
-
-        logger.debug("before makeConnection");
+        mPermits = new Semaphore(mMaxConns, true);
 
         logger.debug(
                 "initializing HttpConnFactory with mininum " + mMinConns + " and maximum " + mMaxConns +
                         " connections to ");
 
-        // initalize minimum number of connection handles available.
-        //makeMinimum();
-
         logger.debug("leaving HttpConnFactory init.");
     }
 
+    /**
+     * Sets the maximum time to wait for a connection.
+     *
+     * @param maxWait milliseconds, 0 = no limit
+     */
+    public void setMaxWait(long maxWait) {
+        mMaxWait = maxWait;
+    }
+
+    /**
+     * Sets the time after which an idle connection is reopened.
+     *
+     * @param keepAliveTimeout seconds, 0 = close connection after each request
+     */
+    public void setKeepAliveTimeout(int keepAliveTimeout) {
+        mKeepAliveTimeout = keepAliveTimeout;
+    }
+
+    /**
+     * Sets the format of the messages sent over the connections.
+     *
+     * @param wireFormat HttpRequestEncoder.FORMAT_SERIALIZED or HttpRequestEncoder.FORMAT_BINARY
+     */
+    public void setWireFormat(String wireFormat) throws EBaseException {
+
+        if (!HttpRequestEncoder.FORMAT_SERIALIZED.equals(wireFormat)
+                && !HttpRequestEncoder.FORMAT_BINARY.equals(wireFormat)) {
+            throw new EBaseException("Unsupported wire format: " + wireFormat);
+        }
+
+        mWireFormat = wireFormat;
+    }
+
     private HttpConnection createConnection() throws EBaseException {
 
         HttpConnection retConn = null;
@@ -130,11 +167,8 @@ public class HttpConnFactory {
             JssSSLSocketFactory factory = (JssSSLSocketFactory) tFactory;
             factory.addSocketListener(sockListener);
 
-            if (mTimeout == 0) {
-                retConn = new HttpConnection(mDest, tFactory);
-            } else {
-                retConn = new HttpConnection(mDest, tFactory, mTimeout);
-            }
+            retConn = new HttpConnection(mDest, tFactory, mTimeout, mKeepAliveTimeout);
+            retConn.setWireFormat(mWireFormat);
 
         } catch (Exception e) {
             String message = "Unable to create HTTP connection: " + e.getMessage();
@@ -145,32 +179,6 @@ public class HttpConnFactory {
         return retConn;
     }
 
-    /**
-     * makes the minumum number of connections
-     */
-    private void makeMinimum() throws EBaseException {
-
-        logger.debug("In HttpConnFactory.makeMinimum.");
-        int increment;
-
-        if (mNumConns < mMinConns && mTotal <= mMaxConns) {
-
-            increment = Math.min(mMinConns - mNumConns, mMaxConns - mTotal);
-
-            if (increment == 0)
-                return;
-
-            logger.debug("increasing minimum connections by " + increment);
-            for (int i = increment - 1; i >= 0; i--) {
-                mConns[i] = createConnection();
-            }
-            mTotal += increment;
-            mNumConns += increment;
-            logger.debug("new total available http connections " + mTotal);
-            logger.debug("new number of http connections " + mNumConns);
-        }
-    }
-
     /**
      * gets a conenction from this factory.
      * All connections obtained from the factory must be returned by
@@ -196,12 +204,13 @@ public class HttpConnFactory {
     }
 
     /**
-     * Returns a Http connection - a clone of the master connection.
+     * Returns a Http connection from the pool, creating a new one if
+     * no idle connection is available and the maximum number of
+     * connections has not been reached.
      * All connections should be returned to the factory using returnConn()
      * to recycle connection objects.
-     * If not returned the limited max number is affected but if that
-     * number is large not much harm is done.
-     * Returns null if maximum number of connections reached.
+     * Returns null if maximum number of connections reached and
+     * waitForConn is false.
      * The best thing to do is to put returnConn in a finally clause so it
      * always gets called. For example,
      *
@@ -216,38 +225,54 @@ public class HttpConnFactory {
      *     factory.returnConn(c);
      * }
      * </pre>
+     *
+     * @exception EBaseException if no connection became available within the maximum wait time
      */
-    public synchronized HttpConnection getConn(boolean waitForConn)
+    public HttpConnection getConn(boolean waitForConn)
             throws EBaseException {
-        boolean waited = false;
 
         logger.debug("In HttpConnFactory.getConn");
-        if (mNumConns == 0)
-            makeMinimum();
-        if (mNumConns == 0) {
+
+        if (!mPermits.tryAcquire()) {
+
             if (!waitForConn)
                 return null;
+
+            logger.warn("HttpConnFactory: Ran out of HTTP connections");
+
             try {
-                logger.warn("HttpConnFactory: Ran out of HTTP connections");
-                waited = true;
-                logger.debug("HttpConn:about to wait for a new http connection");
-                while (mNumConns == 0)
-                    wait();
+                if (mMaxWait > 0) {
+                    if (!mPermits.tryAcquire(mMaxWait, TimeUnit.MILLISECONDS)) {
+                        throw new EBaseException("Timed out waiting for HTTP connection after " + mMaxWait + " ms");
+                    }
+                } else {
+                    mPermits.acquire();
+                }
 
-                logger.debug("HttpConn:done waiting for new http connection");
             } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EBaseException("Interrupted while waiting for HTTP connection", e);
             }
+
+            logger.warn("Http connections are available again in http connection pool");
         }
-        mNumConns--;
-        HttpConnection conn = mConns[mNumConns];
 
-        mConns[mNumConns] = null;
+        HttpConnection conn = mIdle.pollFirst();
 
-        if (waited) {
-            logger.warn("HttpConn:had to wait for an available connection from pool");
-            logger.warn("Http connections are available again in http connection pool");
+        if (conn == null) {
+            try {
+                conn = createConnection();
+            } catch (EBaseException | RuntimeException e) {
+                mPermits.release();
+                throw e;
+            }
+
+            int total = mTotal.incrementAndGet();
+            logger.debug("HttpConnFactory: new total http connections " + total);
         }
-        logger.debug("HttpgetConn: mNumConns now " + mNumConns);
+
+        mBorrowed.add(conn);
+        logger.debug("HttpgetConn: idle connections now " + mIdle.size());
 
         return conn;
     }
@@ -270,22 +295,29 @@ public class HttpConnFactory {
      * }
      * </pre>
      */
-    public synchronized void returnConn(HttpConnection conn) {
+    public void returnConn(HttpConnection conn) {
 
         logger.debug("In HttpConnFactory.returnConn");
         if (conn == null) {
             return;
         }
-        HttpConnection boundconn = conn;
-
-        for (int i = 0; i < mNumConns; i++) {
-            if (mConns[i] == conn) {
-                logger.debug("returnConn: previously returned connection. " + conn);
 
-            }
+        if (!mBorrowed.remove(conn)) {
+            logger.warn("returnConn: previously returned connection. " + conn);
+            return;
         }
-        mConns[mNumConns++] = boundconn;
-        logger.debug("HttpreturnConn: mNumConns now " + mNumConns);
-        notify();
+
+        mIdle.offerFirst(conn);
+        mPermits.release();
+
+        logger.debug("HttpreturnConn: idle connections now " + mIdle.size());
+    }
+
+    public int getTotalCount() {
+        return mTotal.get();
+    }
+
+    public int getIdleCount() {
+        return mIdle.size();
     }
 }
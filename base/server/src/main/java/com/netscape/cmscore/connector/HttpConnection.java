@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -33,7 +34,9 @@ import com.netscape.certsrv.logging.SignedAuditEvent;
 import com.netscape.certsrv.logging.event.ClientAccessSessionEstablishEvent;
 import com.netscape.cms.logging.SignedAuditLogger;
 import com.netscape.cmscore.apps.CMS;
+import com.netscape.cmscore.metrics.MetricsRegistry;
 import com.netscape.cmsutil.http.HttpClient;
+import com.netscape.cmsutil.http.HttpNoResponseException;
 import com.netscape.cmsutil.http.HttpRequest;
 import com.netscape.cmsutil.http.HttpResponse;
 import com.netscape.cmsutil.net.ISocketFactory;
@@ -44,24 +47,40 @@ import com.netscape.cmsutil.net.ISocketFactory;
  * PKI messages to a remote authority. The remote authority
  * will reply with a PKI message as well. An example would
  * be the communication between a CA and a KRA.
+ * <P>
+ * The connection is kept open between requests (HTTP/1.1 keep-alive)
+ * so that consecutive requests do not need a new TLS handshake.
+ * A connection that has been idle for longer than the keep-alive
+ * timeout is reopened before the next request since the server
+ * may have closed it in the meantime.
  */
 public class HttpConnection {
 
     private static Logger logger = LoggerFactory.getLogger(HttpConnection.class);
     private static SignedAuditLogger signedAuditLogger = SignedAuditLogger.getLogger();
 
+    public static final int DEFAULT_KEEP_ALIVE_TIMEOUT = 15; // seconds
+
     protected RemoteAuthority mDest;
     protected HttpRequest mHttpreq = new HttpRequest();
     protected HttpRequestEncoder mReqEncoder;
     protected HttpClient mHttpClient = null;
 
     int timeout = 0;
+    int keepAliveTimeout = DEFAULT_KEEP_ALIVE_TIMEOUT; // seconds, 0 = close after each request
     List<InetSocketAddress> targets;
     String localIP = "localhost";
 
     public HttpConnection(RemoteAuthority dest, ISocketFactory factory,
             int timeout // seconds
             ) {
+        this(dest, factory, timeout, DEFAULT_KEEP_ALIVE_TIMEOUT);
+    }
+
+    public HttpConnection(RemoteAuthority dest, ISocketFactory factory,
+            int timeout, // seconds
+            int keepAliveTimeout // seconds
+            ) {
 
         logger.debug("HttpConnection: Creating HttpConnection with timeout=" + timeout);
         try {
@@ -73,8 +92,10 @@ public class HttpConnection {
         mDest = dest;
         mReqEncoder = new HttpRequestEncoder();
         mHttpClient = new HttpClient(factory);
+        mHttpClient.setKeepAlive(keepAliveTimeout > 0);
 
         this.timeout = timeout;
+        this.keepAliveTimeout = keepAliveTimeout;
 
         targets = parseTarget(dest.getHost(), dest.getPort());
 
@@ -106,6 +127,14 @@ public class HttpConnection {
         this(dest, factory, 0);
     }
 
+    /**
+     * Sets the format of the messages sent by send(IPKIMessage).
+     * Replies are accepted in either format.
+     */
+    public void setWireFormat(String wireFormat) {
+        mReqEncoder.setFormat(wireFormat);
+    }
+
     List<InetSocketAddress> parseTarget(String target, int port) {
 
         List<InetSocketAddress> results = new ArrayList<>();
@@ -150,6 +179,7 @@ public class HttpConnection {
                 logger.debug("HttpConnection: Connecting to " + hostname + ":" + port + " with timeout " + timeout + "s");
 
                 mHttpClient.connect(hostname, port, timeout * 1000);
+                MetricsRegistry.getInstance().getCounter("http_conn_connects").increment();
 
                 logger.debug("HttpConnection: Connected to " + hostname + ":" + port);
                 return;
@@ -284,11 +314,21 @@ public class HttpConnection {
             throw new EBaseException(CMS.getUserMessage("CMS_BASE_INVALID_ATTRIBUTE", "URI not set in HttpRequest"));
         }
 
-        mHttpreq.setHeader("Content-Length",
-                Integer.toString(content.length()));
-        logger.debug("HttpConnection.doSend: with String content length: " + Integer.toString(content.length()));
+        int length = content.getBytes(StandardCharsets.UTF_8).length;
+        mHttpreq.setHeader("Content-Length", Integer.toString(length));
+        logger.debug("HttpConnection.doSend: with String content length: " + length);
         mHttpreq.setContent(content);
 
+        if (mHttpClient.connected() && mHttpClient.getIdleTime() > keepAliveTimeout * 1000L) {
+            // the server may have closed the idle connection
+            logger.debug("HttpConnection.doSend: closing connection idle for " + mHttpClient.getIdleTime() + " ms");
+            try {
+                mHttpClient.disconnect();
+            } catch (IOException e) {
+                logger.debug("HttpConnection.doSend: unable to close idle connection: " + e.getMessage());
+            }
+        }
+
         try {
             if (!mHttpClient.connected()) {
                 connect();
@@ -309,7 +349,9 @@ public class HttpConnection {
             throw new EBaseException(CMS.getUserMessage("CMS_BASE_CONN_FAILED", "Couldn't reconnect " + e));
         }
 
-        // if remote closed connection want to reconnect and resend.
+        // If the server closed a reused connection before responding, reconnect
+        // and resend. Other errors are not retried since the server may have
+        // processed the request already (e.g. a read timeout).
         while (resp == null) {
             try {
                 logger.debug("HttpConnection.doSend: sending request");
@@ -326,6 +368,11 @@ public class HttpConnection {
                         "send:" +e.toString());
                 signedAuditLogger.log(auditEvent);
 
+                if (!(e instanceof HttpNoResponseException)) {
+                    throw new EBaseException(
+                            CMS.getUserMessage("CMS_BASE_CONN_FAILED", "send failed: " + e), e);
+                }
+
                 if (reconnected) {
                     logger.error("HttpConnection.doSend: resend failed again.");
                     throw new EBaseException(
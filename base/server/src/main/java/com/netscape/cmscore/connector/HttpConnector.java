@@ -70,8 +70,23 @@ public class HttpConnector extends Connector {
         logger.debug("HttpConn: min " + minConns);
         logger.debug("HttpConn: max " + maxConns);
 
+        // maximum time to wait for a connection in milliseconds (0 = no limit)
+        int maxWait = config.getInteger("maxWait", 0);
+
+        // time after which an idle connection is reopened in seconds
+        // (0 = close connection after each request)
+        int keepAliveTimeout = config.getInteger("keepAliveTimeout", HttpConnection.DEFAULT_KEEP_ALIVE_TIMEOUT);
+
+        // format of the messages sent to the remote authority
+        // (serialized or binary, binary requires an upgraded remote authority)
+        String wireFormat = config.getString("wireFormat", HttpRequestEncoder.FORMAT_SERIALIZED);
+        logger.debug("HttpConn: wire format " + wireFormat);
+
         try {
             mConnFactory = new HttpConnFactory(minConns, maxConns, dest, nickName, clientCiphers, 0);
+            mConnFactory.setMaxWait(maxWait);
+            mConnFactory.setKeepAliveTimeout(keepAliveTimeout);
+            mConnFactory.setWireFormat(wireFormat);
         } catch (EBaseException e) {
             logger.warn("HttpConn: can't create new HttpConnFactory: " + e.getMessage(), e);
         }
@@ -105,8 +120,23 @@ public class HttpConnector extends Connector {
         logger.debug("HttpConn: min " + minConns);
         logger.debug("HttpConn: max " + maxConns);
 
+        // maximum time to wait for a connection in milliseconds (0 = no limit)
+        int maxWait = config.getInteger("maxWait", 0);
+
+        // time after which an idle connection is reopened in seconds
+        // (0 = close connection after each request)
+        int keepAliveTimeout = config.getInteger("keepAliveTimeout", HttpConnection.DEFAULT_KEEP_ALIVE_TIMEOUT);
+
+        // format of the messages sent to the remote authority
+        // (serialized or binary, binary requires an upgraded remote authority)
+        String wireFormat = config.getString("wireFormat", HttpRequestEncoder.FORMAT_SERIALIZED);
+        logger.debug("HttpConn: wire format " + wireFormat);
+
         try {
             mConnFactory = new HttpConnFactory(minConns, maxConns, dest, nickName, clientCiphers, timeout);
+            mConnFactory.setMaxWait(maxWait);
+            mConnFactory.setKeepAliveTimeout(keepAliveTimeout);
+            mConnFactory.setWireFormat(wireFormat);
         } catch (EBaseException e) {
             logger.warn("HttpConn: can't create new HttpConnFactory: " + e.getMessage(), e);
         }
@@ -18,11 +18,15 @@
 package com.netscape.cmscore.connector;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.OptionalDataException;
+import java.nio.charset.StandardCharsets;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Vector;
 
@@ -38,6 +42,14 @@ public class HttpPKIMessage implements IHttpPKIMessage {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(HttpPKIMessage.class);
 
+    /**
+     * Version of the binary encoding written by writeTo().
+     */
+    public static final int BINARY_VERSION = 1;
+
+    static final int TYPE_STRING = 1;
+    static final int TYPE_HASHTABLE = 2;
+
     // initialized to "" because nulls don't serialize well.
     public String reqType = "";
     public String reqId = "";
@@ -233,4 +245,183 @@ public class HttpPKIMessage implements IHttpPKIMessage {
             }
         }
     }
+
+    /**
+     * Writes the message in the binary encoding:
+     *
+     * <pre>
+     * version     u8
+     * reqType     string
+     * reqId       string
+     * reqStatus   string
+     * reqRealm    string
+     * count       u32
+     * attribute   key string, type u8, value (count times)
+     * </pre>
+     *
+     * where a string is a u32 byte length (-1 for null) followed by
+     * UTF-8 bytes, and a value is either a string (TYPE_STRING) or
+     * a u32 entry count followed by key/value strings (TYPE_HASHTABLE).
+     * Attributes of any other type are skipped as in writeObject().
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+
+        out.writeByte(BINARY_VERSION);
+        writeString(out, reqType);
+        writeString(out, reqId);
+        writeString(out, reqStatus);
+        writeString(out, reqRealm);
+
+        Vector<Object> attrs = new Vector<>();
+        Enumeration<Object> enum1 = mNameVals.elements();
+
+        while (enum1.hasMoreElements()) {
+            Object key = enum1.nextElement();
+            Object val = enum1.hasMoreElements() ? enum1.nextElement() : null;
+
+            if (key instanceof String && (val instanceof String || isStringTable(val))) {
+                attrs.addElement(key);
+                attrs.addElement(val);
+                continue;
+            }
+
+            logger.warn("HttpPKIMessage: skipped key=" + key);
+            if (val == null) {
+                logger.warn("HttpPKIMessage: skipped val= null");
+            } else {
+                logger.warn("HttpPKIMessage: skipped val=" + val.getClass().getName());
+            }
+        }
+
+        out.writeInt(attrs.size() / 2);
+        enum1 = attrs.elements();
+
+        while (enum1.hasMoreElements()) {
+            writeString(out, (String) enum1.nextElement());
+            Object val = enum1.nextElement();
+
+            if (val instanceof String) {
+                out.writeByte(TYPE_STRING);
+                writeString(out, (String) val);
+                continue;
+            }
+
+            Hashtable<?, ?> table = (Hashtable<?, ?>) val;
+            out.writeByte(TYPE_HASHTABLE);
+            out.writeInt(table.size());
+
+            for (Map.Entry<?, ?> entry : table.entrySet()) {
+                writeString(out, (String) entry.getKey());
+                writeString(out, (String) entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Reads a message written by writeTo(). The input is not trusted:
+     * unknown versions, unknown attribute types, and lengths exceeding
+     * the remaining input are rejected, so the stream should be
+     * backed by the complete message in memory.
+     */
+    public void readFrom(DataInputStream in) throws IOException {
+
+        int version = in.readUnsignedByte();
+        if (version != BINARY_VERSION) {
+            throw new IOException("Unsupported message version: " + version);
+        }
+
+        reqType = readString(in);
+        reqId = readString(in);
+        reqStatus = readString(in);
+        reqRealm = readString(in);
+        mNameVals = new Vector<>();
+
+        int count = readLength(in);
+
+        for (int i = 0; i < count; i++) {
+            String key = readString(in);
+            int type = in.readUnsignedByte();
+
+            if (type == TYPE_STRING) {
+                mNameVals.addElement(key);
+                mNameVals.addElement(readString(in));
+
+            } else if (type == TYPE_HASHTABLE) {
+                int size = readLength(in);
+                Hashtable<String, String> table = new Hashtable<>();
+                for (int j = 0; j < size; j++) {
+                    String name = readString(in);
+                    String value = readString(in);
+                    if (name == null || value == null) {
+                        throw new IOException("Invalid null entry in attribute " + key);
+                    }
+                    table.put(name, value);
+                }
+                mNameVals.addElement(key);
+                mNameVals.addElement(table);
+
+            } else {
+                throw new IOException("Unsupported type " + type + " for attribute " + key);
+            }
+        }
+
+        if (in.read() != -1) {
+            throw new IOException("Unexpected data after message");
+        }
+    }
+
+    private static boolean isStringTable(Object val) {
+
+        if (!(val instanceof Hashtable)) {
+            return false;
+        }
+
+        for (Map.Entry<?, ?> entry : ((Hashtable<?, ?>) val).entrySet()) {
+            if (!(entry.getKey() instanceof String) || !(entry.getValue() instanceof String)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid string length: " + length);
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readLength(DataInputStream in) throws IOException {
+
+        int length = in.readInt();
+
+        // each entry takes at least 4 bytes
+        if (length < 0 || length > in.available() / 4) {
+            throw new IOException("Invalid count: " + length);
+        }
+
+        return length;
+    }
 }
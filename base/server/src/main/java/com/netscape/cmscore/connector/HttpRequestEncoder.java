@@ -19,10 +19,19 @@ package com.netscape.cmscore.connector;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
 import java.io.OptionalDataException;
+import java.util.Base64;
+import java.util.Hashtable;
+import java.util.Set;
+import java.util.Vector;
 
 import org.mozilla.jss.netscape.security.util.Utils;
 
@@ -30,11 +39,70 @@ import org.mozilla.jss.netscape.security.util.Utils;
  * This represents a rquest encoder that serializes and
  * deserializes a request to a Remote Authority so that it can be sent through
  * the connector.
+ *
+ * Two wire formats are supported:
+ * <ul>
+ * <li>serialized: Java serialization encoded in base64 (legacy)
+ * <li>binary: HttpPKIMessage binary encoding in base64 prefixed with
+ *     BINARY_PREFIX
+ * </ul>
+ *
+ * The format used for encoding is configured per connector, decoding
+ * accepts both formats so that the connector can be switched to the
+ * binary format once the remote authority has been upgraded.
  */
 public class HttpRequestEncoder {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(HttpRequestEncoder.class);
 
+    public static final String FORMAT_SERIALIZED = "serialized";
+    public static final String FORMAT_BINARY = "binary";
+
+    /**
+     * Prefix of binary encoded messages. The colon never appears in
+     * base64, so it distinguishes them from serialized messages.
+     */
+    public static final String BINARY_PREFIX = "PKIM:";
+
+    /**
+     * Classes allowed in serialized messages.
+     */
+    static final Set<String> SERIALIZED_CLASSES = Set.of(
+            HttpPKIMessage.class.getName(),
+            String.class.getName(),
+            Hashtable.class.getName(),
+            Vector.class.getName(),
+            Object[].class.getName());
+
+    protected String mFormat = FORMAT_SERIALIZED;
+
+    public HttpRequestEncoder() {
+    }
+
+    public HttpRequestEncoder(String format) {
+        setFormat(format);
+    }
+
+    public String getFormat() {
+        return mFormat;
+    }
+
+    public void setFormat(String format) {
+
+        if (!FORMAT_SERIALIZED.equals(format) && !FORMAT_BINARY.equals(format)) {
+            throw new IllegalArgumentException("Unsupported message format: " + format);
+        }
+
+        mFormat = format;
+    }
+
+    /**
+     * Returns the format of an encoded message.
+     */
+    public static String getFormat(String s) {
+        return s != null && s.startsWith(BINARY_PREFIX) ? FORMAT_BINARY : FORMAT_SERIALIZED;
+    }
+
     /**
      * Encodes a request object.
      *
@@ -44,6 +112,31 @@ public class HttpRequestEncoder {
      */
     public String encode(Object r)
             throws IOException {
+        return encode(r, mFormat);
+    }
+
+    /**
+     * Encodes a request object in the specified format. Objects other
+     * than HttpPKIMessage are always serialized.
+     *
+     * @param r Object to serve as the source of the message.
+     * @param format Message format.
+     * @return String containing encoded message.
+     * @exception IOException Failure of the encoding operation due to IO error.
+     */
+    public String encode(Object r, String format)
+            throws IOException {
+
+        if (FORMAT_BINARY.equals(format) && r instanceof HttpPKIMessage) {
+            ByteArrayOutputStream ba = new ByteArrayOutputStream();
+            DataOutputStream os = new DataOutputStream(ba);
+
+            ((HttpPKIMessage) r).writeTo(os);
+            os.flush();
+
+            return BINARY_PREFIX + Base64.getEncoder().encodeToString(ba.toByteArray());
+        }
+
         String s = null;
         byte[] serial;
         ByteArrayOutputStream ba = new ByteArrayOutputStream();
@@ -63,6 +156,21 @@ public class HttpRequestEncoder {
      */
     public Object decode(String s)
             throws IOException {
+
+        if (s != null && s.startsWith(BINARY_PREFIX)) {
+            byte[] bytes;
+
+            try {
+                bytes = Base64.getDecoder().decode(s.substring(BINARY_PREFIX.length()).trim());
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid message encoding: " + e.getMessage(), e);
+            }
+
+            HttpPKIMessage msg = new HttpPKIMessage();
+            msg.readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+            return msg;
+        }
+
         Object result = null;
         byte[] serial = null;
 
@@ -70,7 +178,7 @@ public class HttpRequestEncoder {
 
             serial = Utils.base64decode(s);
             ByteArrayInputStream ba = new ByteArrayInputStream(serial);
-            ObjectInputStream is = new ObjectInputStream(ba);
+            ObjectInputStream is = new RestrictedObjectInputStream(ba);
 
             result = is.readObject();
 
@@ -88,4 +196,27 @@ public class HttpRequestEncoder {
         }
         return result;
     }
+
+    /**
+     * Object input stream that only resolves the classes used
+     * by serialized HttpPKIMessage.
+     */
+    static class RestrictedObjectInputStream extends ObjectInputStream {
+
+        RestrictedObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc)
+                throws IOException, ClassNotFoundException {
+
+            if (!SERIALIZED_CLASSES.contains(desc.getName())) {
+                logger.warn("HttpRequestEncoder: Rejected class " + desc.getName());
+                throw new InvalidClassException(desc.getName(), "Class not allowed in message");
+            }
+
+            return super.resolveClass(desc);
+        }
+    }
 }
@@ -0,0 +1,117 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.dbs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Hashtable;
+
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+/**
+ * A class represents a single change of the CRL cache of a CRL
+ * issuing point (a revoked, unrevoked, or expired certificate)
+ * stored in the CRL cache journal of the issuing point record.
+ */
+public class CRLCacheJournalEntry implements Comparable<CRLCacheJournalEntry> {
+
+    public static final int VERSION = 1;
+
+    public static final int REVOKED_CERT = 1;
+    public static final int UNREVOKED_CERT = 2;
+    public static final int EXPIRED_CERT = 3;
+
+    private int type;
+    private long sequence;
+    private RevokedCertificate revokedCert;
+
+    public CRLCacheJournalEntry(int type, long sequence, RevokedCertificate revokedCert) {
+        this.type = type;
+        this.sequence = sequence;
+        this.revokedCert = revokedCert;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public BigInteger getSerialNumber() {
+        return revokedCert.getSerialNumber();
+    }
+
+    public RevokedCertificate getRevokedCert() {
+        return revokedCert;
+    }
+
+    @Override
+    public int compareTo(CRLCacheJournalEntry entry) {
+        return Long.compare(sequence, entry.sequence);
+    }
+
+    public byte[] encode() throws IOException {
+
+        Hashtable<BigInteger, RevokedCertificate> certs = new Hashtable<>();
+        certs.put(revokedCert.getSerialNumber(), revokedCert);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+
+        out.writeByte(VERSION);
+        out.writeByte(type);
+        out.writeLong(sequence);
+        out.write(RevokedCertsMapper.encode(certs));
+        out.flush();
+
+        return bos.toByteArray();
+    }
+
+    public static CRLCacheJournalEntry decode(byte[] data) throws IOException {
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported CRL cache journal version: " + version);
+        }
+
+        int type = in.readUnsignedByte();
+        if (type != REVOKED_CERT && type != UNREVOKED_CERT && type != EXPIRED_CERT) {
+            throw new IOException("Invalid CRL cache journal entry type: " + type);
+        }
+
+        long sequence = in.readLong();
+
+        byte[] bytes = new byte[in.available()];
+        in.readFully(bytes);
+
+        Hashtable<BigInteger, RevokedCertificate> certs = RevokedCertsMapper.decode(bytes);
+        if (certs == null || certs.size() != 1) {
+            throw new IOException("Invalid CRL cache journal entry");
+        }
+
+        return new CRLCacheJournalEntry(type, sequence, certs.values().iterator().next());
+    }
+}
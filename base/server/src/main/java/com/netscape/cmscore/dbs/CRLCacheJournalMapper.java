@@ -0,0 +1,138 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.dbs;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Vector;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.dbs.DBAttrMapper;
+import com.netscape.certsrv.dbs.EDBException;
+import com.netscape.certsrv.dbs.IDBObj;
+import com.netscape.cmscore.apps.CMS;
+
+import netscape.ldap.LDAPAttribute;
+import netscape.ldap.LDAPAttributeSet;
+
+/**
+ * A class represents an attribute mapper that maps CRL cache
+ * journal entries into values of a multi-valued LDAP attribute,
+ * and vice versa.
+ *
+ * A single CRLCacheJournalEntry is mapped into a single value so
+ * it can be appended with MOD_ADD. A Vector of entries is mapped
+ * into all values of the attribute, an empty Vector can be used
+ * with MOD_REPLACE to remove the journal.
+ */
+public class CRLCacheJournalMapper extends DBAttrMapper {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CRLCacheJournalMapper.class);
+
+    private String mLdapName;
+    private Vector<String> v = new Vector<>();
+
+    /**
+     * Constructs CRL cache journal mapper.
+     */
+    public CRLCacheJournalMapper(String ldapName) {
+        mLdapName = ldapName;
+        v.addElement(mLdapName);
+    }
+
+    /**
+     * Retrieves a list of supported ldap attributes.
+     */
+    @Override
+    public Enumeration<String> getSupportedLDAPAttributeNames() {
+        return v.elements();
+    }
+
+    /**
+     * Maps object to ldap attribute set.
+     */
+    @Override
+    public void mapObjectToLDAPAttributeSet(IDBObj parent, String name,
+            Object obj, LDAPAttributeSet attrs)
+            throws EBaseException {
+
+        try {
+            LDAPAttribute attr = new LDAPAttribute(mLdapName);
+
+            if (obj instanceof CRLCacheJournalEntry) {
+                attr.addValue(((CRLCacheJournalEntry) obj).encode());
+
+            } else {
+                @SuppressWarnings("unchecked")
+                Vector<CRLCacheJournalEntry> entries = (Vector<CRLCacheJournalEntry>) obj;
+                for (CRLCacheJournalEntry entry : entries) {
+                    attr.addValue(entry.encode());
+                }
+            }
+
+            logger.debug("CRLCacheJournalMapper: Mapping " + name + " to " + mLdapName);
+            attrs.add(attr);
+
+        } catch (IOException e) {
+            logger.error(CMS.getLogMessage("CMSCORE_DBS_OBJECTSTREAM_MAPPER_ERROR", e.toString()), e);
+            throw new EDBException(CMS.getUserMessage("CMS_DBS_SERIALIZE_FAILED", name), e);
+        }
+    }
+
+    /**
+     * Maps LDAP attributes into object, and put the object
+     * into 'parent'.
+     */
+    @Override
+    public void mapLDAPAttributeSetToObject(LDAPAttributeSet attrs,
+            String name, IDBObj parent) throws EBaseException {
+
+        LDAPAttribute attr = attrs.getAttribute(mLdapName);
+
+        if (attr == null) {
+            return;
+        }
+
+        Vector<CRLCacheJournalEntry> entries = new Vector<>();
+
+        try {
+            for (Enumeration<byte[]> e = attr.getByteValues(); e.hasMoreElements();) {
+                entries.addElement(CRLCacheJournalEntry.decode(e.nextElement()));
+            }
+
+        } catch (IOException e) {
+            logger.error("CRLCacheJournalMapper: Unable to decode " + name + ": " + e.getMessage(), e);
+            throw new EDBException(CMS.getUserMessage("CMS_DBS_DESERIALIZE_FAILED", name), e);
+        }
+
+        // LDAP does not preserve the order of the values
+        Collections.sort(entries);
+
+        parent.set(name, entries);
+    }
+
+    /**
+     * Maps search filters into LDAP search filter.
+     */
+    @Override
+    public String mapSearchFilter(String name, String op,
+            String value) throws EBaseException {
+        return mLdapName + op + value;
+    }
+}
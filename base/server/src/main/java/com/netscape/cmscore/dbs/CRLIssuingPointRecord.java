@@ -21,6 +21,7 @@ import java.math.BigInteger;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.Map;
 import java.util.Vector;
 
 import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
@@ -52,6 +53,7 @@ public class CRLIssuingPointRecord implements IDBObj {
     public static final String ATTR_REVOKED_CERTS = "revokedCerts";
     public static final String ATTR_UNREVOKED_CERTS = "unrevokedCerts";
     public static final String ATTR_EXPIRED_CERTS = "expiredCerts";
+    public static final String ATTR_CRL_CACHE_JOURNAL = "crlCacheJournal";
     public static final String ATTR_DELTA_CRL = "deltaRevocationList";
 
     public static final String CLEAN_CACHE = "-1";
@@ -68,9 +70,10 @@ public class CRLIssuingPointRecord implements IDBObj {
     protected byte mCRL[] = null;
     protected byte mCACert[] = null;
     protected Hashtable<BigInteger, RevokedCertificate> mCRLCache = null;
-    protected Hashtable<BigInteger, RevokedCertificate> mRevokedCerts = null;
-    protected Hashtable<BigInteger, RevokedCertificate> mUnrevokedCerts = null;
-    protected Hashtable<BigInteger, RevokedCertificate> mExpiredCerts = null;
+    protected Map<BigInteger, RevokedCertificate> mRevokedCerts = null;
+    protected Map<BigInteger, RevokedCertificate> mUnrevokedCerts = null;
+    protected Map<BigInteger, RevokedCertificate> mExpiredCerts = null;
+    protected Vector<CRLCacheJournalEntry> mCRLCacheJournal = null;
     protected byte mDeltaCRL[] = null;
     protected static Vector<String> mNames = new Vector<>();
     static {
@@ -88,6 +91,7 @@ public class CRLIssuingPointRecord implements IDBObj {
         mNames.addElement(ATTR_REVOKED_CERTS);
         mNames.addElement(ATTR_UNREVOKED_CERTS);
         mNames.addElement(ATTR_EXPIRED_CERTS);
+        mNames.addElement(ATTR_CRL_CACHE_JOURNAL);
         mNames.addElement(ATTR_DELTA_CRL);
     }
 
@@ -122,9 +126,9 @@ public class CRLIssuingPointRecord implements IDBObj {
      */
     public CRLIssuingPointRecord(String id, BigInteger crlNumber, Long crlSize,
             Date thisUpdate, Date nextUpdate, BigInteger deltaCRLNumber, Long deltaCRLSize,
-            Hashtable<BigInteger, RevokedCertificate> revokedCerts,
-            Hashtable<BigInteger, RevokedCertificate> unrevokedCerts,
-            Hashtable<BigInteger, RevokedCertificate> expiredCerts) {
+            Map<BigInteger, RevokedCertificate> revokedCerts,
+            Map<BigInteger, RevokedCertificate> unrevokedCerts,
+            Map<BigInteger, RevokedCertificate> expiredCerts) {
         mId = id;
         mCRLNumber = crlNumber;
         mCRLSize = crlSize;
@@ -165,11 +169,13 @@ public class CRLIssuingPointRecord implements IDBObj {
         } else if (name.equalsIgnoreCase(ATTR_CRL_CACHE)) {
             mCRLCache = (Hashtable<BigInteger, RevokedCertificate>) obj;
         } else if (name.equalsIgnoreCase(ATTR_REVOKED_CERTS)) {
-            mRevokedCerts = (Hashtable<BigInteger, RevokedCertificate>) obj;
+            mRevokedCerts = (Map<BigInteger, RevokedCertificate>) obj;
         } else if (name.equalsIgnoreCase(ATTR_UNREVOKED_CERTS)) {
-            mUnrevokedCerts = (Hashtable<BigInteger, RevokedCertificate>) obj;
+            mUnrevokedCerts = (Map<BigInteger, RevokedCertificate>) obj;
         } else if (name.equalsIgnoreCase(ATTR_EXPIRED_CERTS)) {
-            mExpiredCerts = (Hashtable<BigInteger, RevokedCertificate>) obj;
+            mExpiredCerts = (Map<BigInteger, RevokedCertificate>) obj;
+        } else if (name.equalsIgnoreCase(ATTR_CRL_CACHE_JOURNAL)) {
+            mCRLCacheJournal = (Vector<CRLCacheJournalEntry>) obj;
         } else if (name.equalsIgnoreCase(ATTR_DELTA_CRL)) {
             mDeltaCRL = (byte[]) obj;
         } else {
@@ -207,6 +213,8 @@ public class CRLIssuingPointRecord implements IDBObj {
             return mUnrevokedCerts;
         } else if (name.equalsIgnoreCase(ATTR_EXPIRED_CERTS)) {
             return mExpiredCerts;
+        } else if (name.equalsIgnoreCase(ATTR_CRL_CACHE_JOURNAL)) {
+            return mCRLCacheJournal;
         } else if (name.equalsIgnoreCase(ATTR_DELTA_CRL)) {
             return mDeltaCRL;
         } else {
@@ -353,12 +361,11 @@ public class CRLIssuingPointRecord implements IDBObj {
      *
      * @return list of recently revoked certificates
      */
-    @SuppressWarnings("unchecked")
     public Hashtable<BigInteger, RevokedCertificate> getRevokedCerts() {
         if (mRevokedCerts == null)
             return null;
         else
-            return (Hashtable<BigInteger, RevokedCertificate>) mRevokedCerts.clone();
+            return new Hashtable<>(mRevokedCerts);
     }
 
     /**
@@ -366,12 +373,11 @@ public class CRLIssuingPointRecord implements IDBObj {
      *
      * @return list of certificates recently released from hold
      */
-    @SuppressWarnings("unchecked")
     public Hashtable<BigInteger, RevokedCertificate> getUnrevokedCerts() {
         if (mUnrevokedCerts == null)
             return null;
         else
-            return (Hashtable<BigInteger, RevokedCertificate>) mUnrevokedCerts.clone();
+            return new Hashtable<>(mUnrevokedCerts);
     }
 
     /**
@@ -379,11 +385,20 @@ public class CRLIssuingPointRecord implements IDBObj {
      *
      * @return list of recently expired certificates
      */
-    @SuppressWarnings("unchecked")
     public Hashtable<BigInteger, RevokedCertificate> getExpiredCerts() {
         if (mExpiredCerts == null)
             return null;
         else
-            return (Hashtable<BigInteger, RevokedCertificate>) mExpiredCerts.clone();
+            return new Hashtable<>(mExpiredCerts);
+    }
+
+    /**
+     * Retrieves changes of the CRL cache recorded since the cache
+     * was last saved, ordered by sequence number.
+     *
+     * @return CRL cache journal
+     */
+    public Vector<CRLCacheJournalEntry> getCRLCacheJournal() {
+        return mCRLCacheJournal;
     }
 }
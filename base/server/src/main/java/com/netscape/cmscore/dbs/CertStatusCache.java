@@ -0,0 +1,280 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.dbs;
+
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mozilla.jss.netscape.security.x509.X500Name;
+import org.mozilla.jss.netscape.security.x509.X509CertImpl;
+
+import com.netscape.certsrv.base.EBaseException;
+
+/**
+ * This class keeps the status, revocation date and issuer of
+ * recently used certificates so that they can be answered
+ * without reading the certificate record from the database.
+ *
+ * Entries are loaded from the certificate repository on demand.
+ * The repository removes an entry whenever it modifies the
+ * record, and the persistent search in RetrieveModificationsTask
+ * updates entries modified on other clones.
+ *
+ * The entries are split into segments by serial number. Each
+ * segment is an access-ordered map with its own lock, so lookups
+ * of different certificates rarely contend, and the least recently
+ * used entry of a segment is evicted when the segment is full.
+ */
+public class CertStatusCache {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CertStatusCache.class);
+
+    // number of segments, must be a power of 2
+    static final int SEGMENTS = 16;
+
+    /**
+     * Certificate status entry.
+     */
+    public static class Entry {
+
+        private final BigInteger serialNumber;
+        private final String status;
+        private final Date revokedOn;
+        private final X500Name issuerDN;
+        private final long expirationTime;
+
+        Entry(BigInteger serialNumber, String status, Date revokedOn, X500Name issuerDN, long expirationTime) {
+            this.serialNumber = serialNumber;
+            this.status = status;
+            this.revokedOn = revokedOn;
+            this.issuerDN = issuerDN;
+            this.expirationTime = expirationTime;
+        }
+
+        public BigInteger getSerialNumber() {
+            return serialNumber;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public Date getRevokedOn() {
+            return revokedOn;
+        }
+
+        public X500Name getIssuerDN() {
+            return issuerDN;
+        }
+
+        boolean isExpired(long now) {
+            return expirationTime > 0 && now >= expirationTime;
+        }
+    }
+
+    static class Segment extends LinkedHashMap<BigInteger, Entry> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        // incremented whenever an entry is removed or updated so that
+        // a record read before the change will not be cached
+        long version;
+
+        Segment(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<BigInteger, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    private CertificateRepository repository;
+
+    private long maxAge; // milliseconds
+
+    private Segment[] segments;
+
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+
+    public CertStatusCache(CertificateRepository repository) {
+        this.repository = repository;
+    }
+
+    public void init(CertStatusCacheConfig config) throws EBaseException {
+        init(config.getMaxEntries(), config.getMaxAge());
+    }
+
+    /**
+     * @param maxEntries maximum number of cached statuses
+     * @param maxAge maximum time in seconds a status is kept, 0 = no limit
+     */
+    void init(int maxEntries, int maxAge) {
+
+        logger.info("CertStatusCache: - max entries: " + maxEntries);
+        this.maxAge = maxAge * 1000L;
+        logger.info("CertStatusCache: - max age: " + maxAge + "s");
+
+        // spread the capacity over the segments
+        int segmentSize = Math.max((maxEntries + SEGMENTS - 1) / SEGMENTS, 1);
+
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    Segment getSegment(BigInteger serialNumber) {
+        int hash = serialNumber.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    long getCurrentTime() {
+        return System.currentTimeMillis();
+    }
+
+    CertRecord readCertificateRecord(BigInteger serialNumber) throws EBaseException {
+        return repository.readCertificateRecord(serialNumber);
+    }
+
+    /**
+     * Creates a cache entry from a certificate record.
+     */
+    public Entry createEntry(CertRecord record) {
+
+        X509CertImpl cert = record.getCertificate();
+        X500Name issuerDN = cert == null ? null : cert.getIssuerName();
+        long expirationTime = maxAge > 0 ? getCurrentTime() + maxAge : 0;
+
+        return new Entry(
+                record.getSerialNumber(),
+                record.getStatus(),
+                record.getRevokedOn(),
+                issuerDN,
+                expirationTime);
+    }
+
+    /**
+     * Returns the status of a certificate, reading the certificate
+     * record if it is not cached.
+     *
+     * @param serialNumber certificate serial number
+     * @return certificate status entry, or null if not found
+     * @exception EBaseException failed to read the certificate record
+     */
+    public Entry get(BigInteger serialNumber) throws EBaseException {
+
+        Segment segment = getSegment(serialNumber);
+        long currentVersion;
+
+        synchronized (segment) {
+            Entry entry = segment.get(serialNumber);
+
+            if (entry != null && !entry.isExpired(getCurrentTime())) {
+                hits.incrementAndGet();
+                return entry;
+            }
+
+            currentVersion = segment.version;
+        }
+
+        misses.incrementAndGet();
+
+        CertRecord record = readCertificateRecord(serialNumber);
+        if (record == null) {
+            return null;
+        }
+
+        Entry entry = createEntry(record);
+
+        synchronized (segment) {
+            if (segment.version == currentVersion) {
+                segment.put(serialNumber, entry);
+            }
+        }
+
+        return entry;
+    }
+
+    /**
+     * Replaces the entry of a modified certificate record if
+     * the certificate is cached.
+     */
+    public void update(CertRecord record) {
+
+        BigInteger serialNumber = record.getSerialNumber();
+        Segment segment = getSegment(serialNumber);
+
+        synchronized (segment) {
+            segment.version++;
+
+            if (segment.containsKey(serialNumber)) {
+                logger.debug("CertStatusCache: Updating cert 0x" + serialNumber.toString(16));
+                segment.put(serialNumber, createEntry(record));
+            }
+        }
+    }
+
+    /**
+     * Removes the entry of a certificate.
+     */
+    public void remove(BigInteger serialNumber) {
+
+        Segment segment = getSegment(serialNumber);
+
+        synchronized (segment) {
+            segment.version++;
+            segment.remove(serialNumber);
+        }
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.version++;
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
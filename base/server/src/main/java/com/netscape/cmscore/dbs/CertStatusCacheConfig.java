@@ -0,0 +1,52 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.cmscore.base.ConfigStorage;
+import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.base.SimpleProperties;
+
+/**
+ * Provides certificate status cache parameters.
+ */
+public class CertStatusCacheConfig extends ConfigStore {
+
+    public CertStatusCacheConfig(ConfigStorage storage) {
+        super(storage);
+    }
+
+    public CertStatusCacheConfig(String name, SimpleProperties source) {
+        super(name, source);
+    }
+
+    public boolean getEnable() throws EBaseException {
+        return getBoolean("enable", false);
+    }
+
+    public void setEnable(boolean enable) {
+        putBoolean("enable", enable);
+    }
+
+    /**
+     * Returns the maximum number of cached certificate statuses.
+     */
+    public int getMaxEntries() throws EBaseException {
+        return getInteger("maxEntries", 100000);
+    }
+
+    /**
+     * Returns the maximum time in seconds a status will be kept
+     * in the cache. Changes made on this server are applied
+     * immediately, but changes made on other clones are only
+     * received if the persistent search is enabled, so this
+     * bounds how long such a change can go unnoticed.
+     * Zero means no limit.
+     */
+    public int getMaxAge() throws EBaseException {
+        return getInteger("maxAge", 300);
+    }
+}
@@ -19,11 +19,20 @@ package com.netscape.cmscore.dbs;
 
 import java.math.BigInteger;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.mozilla.jss.netscape.security.x509.CertificateValidity;
 import org.mozilla.jss.netscape.security.x509.X500Name;
@@ -41,10 +50,12 @@ import com.netscape.certsrv.dbs.ModificationSet;
 import com.netscape.certsrv.dbs.certdb.CertId;
 import com.netscape.certsrv.dbs.certdb.RenewableCertificateCollection;
 import com.netscape.certsrv.request.RequestId;
+import com.netscape.certsrv.util.IStatsSubsystem;
 import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.apps.CMSEngine;
 import com.netscape.cmscore.apps.DatabaseConfig;
 import com.netscape.cmscore.apps.EngineConfig;
+import com.netscape.cmscore.ocsp.OCSPResponseCache;
 import com.netscape.cmscore.security.JssSubsystem;
 
 import netscape.ldap.LDAPSearchResults;
@@ -68,6 +79,13 @@ public class CertificateRepository extends Repository {
     public final static String PROP_INCREMENT = "certdbInc";
     public final static String PROP_TRANS_MAXRECORDS = "transitMaxRecords";
     public final static String PROP_TRANS_PAGESIZE = "transitRecordPageSize";
+    public final static String PROP_TRANS_WINDOW = "transitWindow";
+
+    // number of certs updated between progress reports
+    private final static int TRANSIT_BATCH_SIZE = 1000;
+
+    // number of locks for cert record modifications, must be a power of 2
+    private final static int RECORD_LOCK_STRIPES = 256;
 
     public final String CERT_X509ATTRIBUTE = "x509signedcert";
     private static final String PROP_ENABLE_RANDOM_SERIAL_NUMBERS = "enableRandomSerialNumbers";
@@ -94,11 +112,28 @@ public class CertificateRepository extends Repository {
     private DatabaseConfig mDBConfig = null;
     private boolean mForceModeChange = false;
 
+    private CertStatusCache statusCache;
+    private OCSPResponseCache ocspResponseCache;
+
+    // random serial numbers in the most recently reserved block
+    private Set<BigInteger> reservedRandomSerialNumbers = new HashSet<>();
+
+    // maximum number of outstanding LDAP operations in bulk status updates
+    private int transitWindow = 64;
+
+    // modifications of the same cert record are serialized,
+    // modifications of different records can run concurrently
+    private final ReentrantLock[] recordLocks = new ReentrantLock[RECORD_LOCK_STRIPES];
+
     /**
      * Constructs a certificate repository.
      */
     public CertificateRepository(DBSubsystem dbSubsystem) {
         super(dbSubsystem, 16);
+
+        for (int i = 0; i < recordLocks.length; i++) {
+            recordLocks[i] = new ReentrantLock();
+        }
     }
 
     @Override
@@ -176,6 +211,9 @@ public class CertificateRepository extends Repository {
         if (incrementNo != null) {
             mIncrementNo = new BigInteger(incrementNo, mRadix);
         }
+
+        blockSize = mDBConfig.getSerialBlockSize();
+        logger.debug("CertificateRepository: - block size: " + blockSize);
     }
 
     /**
@@ -322,18 +360,17 @@ public class CertificateRepository extends Repository {
     }
 
     /**
-     * Retrieves the next certificate serial number, and also increases
-     * the serial number by one.
+     * Allocates the next certificate serial number.
      *
      * @return serial number
      * @exception EBaseException failed to retrieve next serial number
      */
     @Override
-    public synchronized BigInteger getNextSerialNumber()
+    protected synchronized BigInteger allocateSerialNumber()
             throws EBaseException {
 
         if (idGenerator == RANDOM) {
-            return super.getNextSerialNumber();
+            return super.allocateSerialNumber();
         }
 
         BigInteger nextSerialNumber = null;
@@ -371,12 +408,102 @@ public class CertificateRepository extends Repository {
 
             super.checkRange();
         } else {
-            nextSerialNumber = super.getNextSerialNumber();
+            nextSerialNumber = super.allocateSerialNumber();
         }
 
         return nextSerialNumber;
     }
 
+    /**
+     * Reserves a block of certificate serial numbers. With random
+     * serial numbers the candidates are checked for collisions with
+     * a single search instead of one lookup per candidate.
+     */
+    @Override
+    protected synchronized SerialNumberBlock allocateSerialNumbers(int size)
+            throws EBaseException {
+
+        if (!mEnableRandomSerialNumbers) {
+            return super.allocateSerialNumbers(size);
+        }
+
+        initCache();
+
+        Set<BigInteger> candidates = new LinkedHashSet<>();
+        int attempts = 0;
+
+        while (candidates.size() < size && attempts < mMaxCollisionRecoveryRegenerations) {
+
+            // generate the missing candidates, small ranges may not have enough
+            int needed = size - candidates.size();
+            Set<BigInteger> batch = new LinkedHashSet<>();
+            for (int i = 0; i < 2 * needed && batch.size() < needed; i++) {
+                BigInteger serialNumber = getRandomSerialNumber(getRandomNumber());
+                if (!reservedRandomSerialNumbers.contains(serialNumber) && !candidates.contains(serialNumber)) {
+                    batch.add(serialNumber);
+                }
+            }
+
+            Set<BigInteger> existing = findExistingSerialNumbers(batch);
+            if (!existing.isEmpty()) {
+                logger.debug("CertificateRepository: allocateSerialNumbers  collisions detected: " + existing);
+                batch.removeAll(existing);
+            }
+
+            candidates.addAll(batch);
+            attempts++;
+        }
+
+        if (candidates.isEmpty()) {
+            logger.error("CertificateRepository: in allocateSerialNumbers  no serial numbers available");
+            throw new EBaseException("nextSerialNumber is null");
+        }
+
+        for (BigInteger serialNumber : candidates) {
+            if (mCounter.compareTo(BigInteger.ZERO) >= 0 &&
+                mMinSerialNo != null && mMaxSerialNo != null &&
+                serialNumber.compareTo(mMinSerialNo) >= 0 &&
+                serialNumber.compareTo(mMaxSerialNo) <= 0) {
+                mCounter = mCounter.add(BigInteger.ONE);
+            }
+        }
+        logger.debug("CertificateRepository: allocateSerialNumbers  reserved " + candidates.size() +
+                " serial numbers  mCounter=" + mCounter);
+
+        // numbers that may not have been issued yet are excluded from the next block
+        reservedRandomSerialNumbers = candidates;
+
+        super.checkRange();
+
+        return new SerialNumberBlock(candidates.toArray(new BigInteger[candidates.size()]));
+    }
+
+    /**
+     * Returns the serial numbers in the given set that already exist
+     * in the repository using a single search.
+     */
+    private Set<BigInteger> findExistingSerialNumbers(Set<BigInteger> serialNumbers)
+            throws EBaseException {
+
+        StringBuilder filter = new StringBuilder("(|");
+        for (BigInteger serialNumber : serialNumbers) {
+            filter.append("(").append(CertRecord.ATTR_ID).append("=").append(serialNumber).append(")");
+        }
+        filter.append(")");
+
+        Set<BigInteger> existing = new HashSet<>();
+
+        Enumeration<Object> e = findCertRecs(filter.toString(), new String[] {CertRecord.ATTR_ID, "objectclass"});
+        while (e != null && e.hasMoreElements()) {
+            CertRecord rec = (CertRecord) e.nextElement();
+            if (rec != null) {
+                existing.add(rec.getSerialNumber());
+            }
+        }
+
+        return existing;
+    }
+
     @Override
     public BigInteger getRangeLength() {
         if (dbSubsystem.getEnableSerialMgmt() && mEnableRandomSerialNumbers) {
@@ -683,6 +810,103 @@ public class CertificateRepository extends Repository {
         }
     }
 
+    /**
+     * Returns the certificate status cache, or null if disabled.
+     */
+    public CertStatusCache getStatusCache() {
+        return statusCache;
+    }
+
+    public void setStatusCache(CertStatusCache statusCache) {
+        this.statusCache = statusCache;
+    }
+
+    /**
+     * Returns the OCSP response cache, or null if disabled.
+     */
+    public OCSPResponseCache getOCSPResponseCache() {
+        return ocspResponseCache;
+    }
+
+    /**
+     * Sets the OCSP response cache whose responses are removed
+     * whenever a certificate record is modified.
+     */
+    public void setOCSPResponseCache(OCSPResponseCache ocspResponseCache) {
+        this.ocspResponseCache = ocspResponseCache;
+    }
+
+    public int getTransitWindow() {
+        return transitWindow;
+    }
+
+    public void setTransitWindow(int transitWindow) {
+        this.transitWindow = transitWindow;
+    }
+
+    private int getRecordLockIndex(BigInteger serialNo) {
+        int h = serialNo.hashCode();
+        h ^= h >>> 16;
+        return h & (recordLocks.length - 1);
+    }
+
+    /**
+     * Returns the lock that serializes modifications of the cert record
+     * with the given serial number.
+     */
+    Lock getRecordLock(BigInteger serialNo) {
+        return recordLocks[getRecordLockIndex(serialNo)];
+    }
+
+    /**
+     * Locks the cert records with the given serial numbers. The locks
+     * are taken in stripe order, so callers locking overlapping sets
+     * of records cannot deadlock.
+     *
+     * @return locks to be released with unlockRecords()
+     */
+    List<Lock> lockRecords(Collection<BigInteger> serialNos) {
+
+        BitSet stripes = new BitSet(recordLocks.length);
+        for (BigInteger serialNo : serialNos) {
+            stripes.set(getRecordLockIndex(serialNo));
+        }
+
+        List<Lock> locks = new ArrayList<>(stripes.cardinality());
+        for (int i = stripes.nextSetBit(0); i >= 0; i = stripes.nextSetBit(i + 1)) {
+            recordLocks[i].lock();
+            locks.add(recordLocks[i]);
+        }
+
+        return locks;
+    }
+
+    void unlockRecords(List<Lock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    private void removeCachedStatus(BigInteger serialNo) {
+        if (statusCache != null) {
+            statusCache.remove(serialNo);
+        }
+        if (ocspResponseCache != null) {
+            ocspResponseCache.remove(serialNo);
+        }
+    }
+
+    private void removeCachedStatus(Collection<BigInteger> serialNos) {
+        if (statusCache != null) {
+            for (BigInteger serialNo : serialNos) {
+                statusCache.remove(serialNo);
+            }
+        }
+        if (ocspResponseCache != null) {
+            ocspResponseCache.remove(serialNos);
+        }
+    }
+
     public void setConsistencyCheck(boolean ConsistencyCheck) {
         mConsistencyCheck = ConsistencyCheck;
     }
@@ -752,6 +976,8 @@ public class CertificateRepository extends Repository {
         } catch (EBaseException e) {
             throw new EBaseException("Unable to add certificate record: " + e.getMessage(), e);
 
+        } finally {
+            removeCachedStatus(record.getSerialNumber());
         }
     }
 
@@ -771,19 +997,121 @@ public class CertificateRepository extends Repository {
             String name = "cn=" + record.getSerialNumber() + "," + mBaseDN;
 
             s.add(name, record);
+
+        } finally {
+            removeCachedStatus(record.getSerialNumber());
         }
     }
 
+    /**
+     * Updates the status of multiple certificates. The modifications
+     * are pipelined over a single database connection, and only the
+     * records of the modifications in transit are locked. Certificates
+     * that could not be updated are logged and removed from the list.
+     *
+     * @param list serial numbers
+     * @param status certificate status
+     * @exception EBaseException failed to update status
+     */
     public void updateStatus(Vector<BigInteger> list, String status) throws EBaseException {
 
-        logger.debug("transitCertList " + status);
+        logger.info("CertificateRepository: Updating the status of " + list.size() + " certs to " + status);
+
+        if (list.isEmpty()) {
+            return;
+        }
+
+        CMSEngine engine = CMS.getCMSEngine();
+        IStatsSubsystem statsSub = (IStatsSubsystem) engine.getSubsystem(IStatsSubsystem.ID);
+        if (statsSub != null) {
+            statsSub.startTiming("update_cert_status", true /* main action */);
+        }
+
+        long startTime = System.currentTimeMillis();
+        List<BigInteger> failed = new ArrayList<>();
+        int count = 0;
+
+        try (DBSSession s = dbSubsystem.createSession()) {
+
+            for (int i = 0; i < list.size(); i += TRANSIT_BATCH_SIZE) {
+
+                List<BigInteger> batch = list.subList(i, Math.min(i + TRANSIT_BATCH_SIZE, list.size()));
+
+                ModificationSet mods = new ModificationSet();
+                mods.add(CertRecord.ATTR_CERT_STATUS, Modification.MOD_REPLACE, status);
+                mods.add(CertRecord.ATTR_MODIFY_TIME, Modification.MOD_REPLACE, new Date());
+
+                // lock only as many records as can be in transit at once
+                // so that other modifications are not blocked for the
+                // whole batch
+                int window = Math.max(transitWindow, 1);
+
+                for (int j = 0; j < batch.size(); j += window) {
+                    List<BigInteger> serialNumbers = batch.subList(j, Math.min(j + window, batch.size()));
+                    failed.addAll(updateStatus(s, serialNumbers, mods));
+                }
 
-        for (int i = 0; i < list.size(); i++) {
-            BigInteger serialNumber = list.elementAt(i);
-            updateStatus(serialNumber, status);
+                count += batch.size();
+                long elapsed = Math.max(System.currentTimeMillis() - startTime, 1);
+
+                logger.info("CertificateRepository: Updated " + count + " of " + list.size() + " certs to " + status
+                        + " (" + (count * 1000L / elapsed) + " certs/s)");
+            }
+
+        } finally {
+            if (statsSub != null) {
+                statsSub.endTiming("update_cert_status");
+            }
+        }
+
+        if (!failed.isEmpty()) {
+            StringBuilder sb = new StringBuilder();
+            for (BigInteger serialNumber : failed) {
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append("0x").append(serialNumber.toString(16));
+            }
+            logger.warn("CertificateRepository: Unable to update the status of " + failed.size() + " certs to " + status
+                    + ": " + sb);
+            list.removeAll(new HashSet<>(failed));
         }
     }
 
+    /**
+     * Updates the status of certificates whose records are locked
+     * while the modifications are in transit.
+     *
+     * @return serial numbers of certificates that could not be updated
+     */
+    private List<BigInteger> updateStatus(
+            DBSSession s,
+            List<BigInteger> serialNumbers,
+            ModificationSet mods) throws EBaseException {
+
+        List<String> names = new ArrayList<>(serialNumbers.size());
+        for (BigInteger serialNumber : serialNumbers) {
+            names.add("cn=" + serialNumber + "," + mBaseDN);
+        }
+
+        List<BigInteger> failed = new ArrayList<>();
+
+        // serialize with modifyCertificateRecord() on the same records
+        List<Lock> locks = lockRecords(serialNumbers);
+
+        try {
+            for (int index : s.modify(names, mods, transitWindow)) {
+                failed.add(serialNumbers.get(index));
+            }
+
+        } finally {
+            removeCachedStatus(serialNumbers);
+            unlockRecords(locks);
+        }
+
+        return failed;
+    }
+
     /**
      * Reads the certificate identified by the given serial no.
      *
@@ -810,6 +1138,9 @@ public class CertificateRepository extends Repository {
         try (DBSSession s = dbSubsystem.createSession()) {
             String name = "cn=" + serialNo + "," + mBaseDN;
             s.delete(name);
+
+        } finally {
+            removeCachedStatus(serialNo);
         }
     }
 
@@ -877,15 +1208,22 @@ public class CertificateRepository extends Repository {
      * @param mods modifications
      * @exception EBaseException failed to modify
      */
-    public synchronized void modifyCertificateRecord(BigInteger serialNo,
+    public void modifyCertificateRecord(BigInteger serialNo,
             ModificationSet mods) throws EBaseException {
 
+        Lock lock = getRecordLock(serialNo);
+        lock.lock();
+
         try (DBSSession s = dbSubsystem.createSession()) {
             String name = "cn=" + serialNo + "," + mBaseDN;
 
             mods.add(CertRecord.ATTR_MODIFY_TIME, Modification.MOD_REPLACE,
                     new Date());
             s.modify(name, mods);
+
+        } finally {
+            removeCachedStatus(serialNo);
+            lock.unlock();
         }
     }
 
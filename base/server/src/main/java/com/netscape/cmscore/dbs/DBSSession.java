@@ -17,8 +17,12 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cmscore.dbs;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.dbs.EDBException;
+import com.netscape.certsrv.dbs.EDBRecordNotFoundException;
 import com.netscape.certsrv.dbs.IDBObj;
 import com.netscape.certsrv.dbs.IDBSearchResults;
 import com.netscape.certsrv.dbs.IDBVirtualList;
@@ -101,6 +105,30 @@ public class DBSSession implements AutoCloseable {
     public void modify(String name, ModificationSet mods) throws EBaseException {
     }
 
+    /**
+     * Applies the same modifications to multiple objects in the database.
+     *
+     * @param names names of the objects that are to be modified
+     * @param mods modifications
+     * @param window maximum number of outstanding modify operations
+     * @return indexes of the names of the objects that could not be modified
+     * @exception EBaseException failed to modify
+     */
+    public List<Integer> modify(List<String> names, ModificationSet mods, int window) throws EBaseException {
+
+        List<Integer> failed = new ArrayList<>();
+
+        for (int i = 0; i < names.size(); i++) {
+            try {
+                modify(names.get(i), mods);
+            } catch (EDBRecordNotFoundException e) {
+                failed.add(i);
+            }
+        }
+
+        return failed;
+    }
+
     /**
      * Searchs for a list of objects that match the
      * filter.
@@ -17,7 +17,10 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cmscore.dbs;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.dbs.EDBException;
@@ -29,6 +32,7 @@ import com.netscape.certsrv.dbs.IDBVirtualList;
 import com.netscape.certsrv.dbs.Modification;
 import com.netscape.certsrv.dbs.ModificationSet;
 import com.netscape.cmscore.apps.CMS;
+import com.netscape.cmscore.metrics.MetricsRegistry;
 
 import netscape.ldap.LDAPAttribute;
 import netscape.ldap.LDAPAttributeSet;
@@ -37,6 +41,8 @@ import netscape.ldap.LDAPEntry;
 import netscape.ldap.LDAPException;
 import netscape.ldap.LDAPModification;
 import netscape.ldap.LDAPModificationSet;
+import netscape.ldap.LDAPResponse;
+import netscape.ldap.LDAPResponseListener;
 import netscape.ldap.LDAPSearchConstraints;
 import netscape.ldap.LDAPSearchResults;
 import netscape.ldap.LDAPSortKey;
@@ -60,6 +66,7 @@ public class LDAPSession extends DBSSession {
 
     private DBSubsystem dbSubsystem;
     private LDAPConnection mConn = null;
+    private MetricsRegistry metrics = MetricsRegistry.getInstance();
 
     /**
      * Constructs a database session.
@@ -124,7 +131,12 @@ public class LDAPSession extends DBSSession {
              * @phase local ldap add
              * @message LDAPSession: begin LDAP add <entry>
              */
-            mConn.add(e);
+            metrics.startTiming("ldap_add", false);
+            try {
+                mConn.add(e);
+            } finally {
+                metrics.endTiming("ldap_add");
+            }
 
         } catch (LDAPException e) {
             if (e.getLDAPResultCode() == LDAPException.UNAVAILABLE) {
@@ -171,10 +183,17 @@ public class LDAPSession extends DBSSession {
              * @phase local ldap read
              * @message LDAPSession: begin LDAP read <entry>
              */
-            LDAPSearchResults res = mConn.search(name,
-                    LDAPv3.SCOPE_BASE, "(objectclass=*)",
-                    ldapattrs, false);
-            LDAPEntry entry = (LDAPEntry) res.nextElement();
+            LDAPEntry entry;
+            metrics.startTiming("ldap_read", false);
+            try {
+                LDAPSearchResults res = mConn.search(name,
+                        LDAPv3.SCOPE_BASE, "(objectclass=*)",
+                        ldapattrs, false);
+                entry = (LDAPEntry) res.nextElement();
+            } finally {
+                metrics.endTiming("ldap_read");
+            }
+
             LDAPAttributeSet attrSet = entry.getAttributeSet();
 
             for (Enumeration<LDAPAttribute> e = attrSet.getAttributes(); e.hasMoreElements(); ) {
@@ -209,7 +228,12 @@ public class LDAPSession extends DBSSession {
         logger.info("LDAPSession: Deleting " + name);
 
         try {
-            mConn.delete(name);
+            metrics.startTiming("ldap_delete", false);
+            try {
+                mConn.delete(name);
+            } finally {
+                metrics.endTiming("ldap_delete");
+            }
         } catch (LDAPException e) {
             if (e.getLDAPResultCode() == LDAPException.UNAVAILABLE)
                 throw new EDBNotAvailException(
@@ -227,42 +251,19 @@ public class LDAPSession extends DBSSession {
         logger.info("LDAPSession: Modifying " + name);
 
         try {
-            LDAPModificationSet ldapMods = new LDAPModificationSet();
-            Enumeration<?> e = mods.getModifications();
-
-            while (e.hasMoreElements()) {
-                Modification mod = (Modification) e.nextElement();
-                LDAPAttributeSet attrs = new LDAPAttributeSet();
-
-                dbSubsystem.getRegistry().mapObject(null, mod.getName(), mod.getValue(), attrs);
-                Enumeration<LDAPAttribute> e0 = attrs.getAttributes();
-
-                while (e0.hasMoreElements()) {
-                    int op = toLdapModOp(mod.getOp());
-                    LDAPAttribute attr = e0.nextElement();
-
-                    switch (op) {
-                    case LDAPModification.ADD:
-                        logger.debug("LDAPSession: - add: " + attr.getName());
-                        break;
-                    case LDAPModification.DELETE:
-                        logger.debug("LDAPSession: - delete: " + attr.getName());
-                        break;
-                    case LDAPModification.REPLACE:
-                        logger.debug("LDAPSession: - replace: " + attr.getName());
-                        break;
-                    }
-
-                    ldapMods.add(op, attr);
-                }
-            }
+            LDAPModificationSet ldapMods = createLDAPModificationSet(mods);
 
             /*LogDoc
              *
              * @phase local ldap add
              * @message LDAPSession: begin LDAP modify <entry>
              */
-            mConn.modify(name, ldapMods);
+            metrics.startTiming("ldap_modify", false);
+            try {
+                mConn.modify(name, ldapMods);
+            } finally {
+                metrics.endTiming("ldap_modify");
+            }
 
         } catch (LDAPException e) {
 
@@ -278,6 +279,190 @@ public class LDAPSession extends DBSSession {
         }
     }
 
+    /**
+     * An operation sent asynchronously to the LDAP server.
+     *
+     * @param <T> handle of a sent operation
+     */
+    interface AsyncOperation<T> {
+
+        /**
+         * Sends the operation for an entry without waiting for the response.
+         */
+        T send(String name) throws LDAPException;
+
+        /**
+         * Waits for the response of a sent operation.
+         *
+         * @return LDAP result code
+         */
+        int getResultCode(String name, T op) throws LDAPException;
+
+        /**
+         * Abandons a sent operation whose response will not be read.
+         */
+        void abandon(T op);
+    }
+
+    static class PendingOperation<T> {
+
+        final int index;
+        final T op;
+
+        PendingOperation(int index, T op) {
+            this.index = index;
+            this.op = op;
+        }
+    }
+
+    /**
+     * Applies the same modifications to multiple entries. The modify
+     * operations are sent asynchronously over this session's connection
+     * with up to the specified number of operations waiting for a response.
+     */
+    @Override
+    public List<Integer> modify(List<String> names, ModificationSet mods, int window) throws EBaseException {
+
+        logger.info("LDAPSession: Modifying " + names.size() + " entries");
+
+        try {
+            LDAPModificationSet ldapMods = createLDAPModificationSet(mods);
+
+            return pipeline(names, window, new AsyncOperation<LDAPResponseListener>() {
+
+                @Override
+                public LDAPResponseListener send(String name) throws LDAPException {
+                    logger.debug("LDAPSession: - modify: " + name);
+                    return mConn.modify(name, ldapMods, (LDAPResponseListener) null);
+                }
+
+                @Override
+                public int getResultCode(String name, LDAPResponseListener listener) throws LDAPException {
+                    LDAPResponse response = listener.getResponse();
+                    int resultCode = response.getResultCode();
+                    if (resultCode != LDAPException.SUCCESS) {
+                        logger.warn("LDAPSession: Unable to modify " + name + ": "
+                                + resultCode + " " + response.getErrorMessage());
+                    }
+                    return resultCode;
+                }
+
+                @Override
+                public void abandon(LDAPResponseListener listener) {
+                    for (int id : listener.getMessageIDs()) {
+                        try {
+                            mConn.abandon(id);
+                        } catch (LDAPException e) {
+                            logger.warn("LDAPSession: Unable to abandon operation " + id + ": " + e.getMessage(), e);
+                        }
+                    }
+                }
+            });
+
+        } catch (LDAPException e) {
+
+            if (e.getLDAPResultCode() == LDAPException.UNAVAILABLE) {
+                throw new EDBNotAvailException(CMS.getUserMessage("CMS_DBS_INTERNAL_DIR_UNAVAILABLE"));
+            }
+
+            throw new EDBException("Unable to modify LDAP records: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sends an operation for each entry with up to the specified number
+     * of operations waiting for a response. If an operation cannot be
+     * sent or the server becomes unavailable, the operations still
+     * waiting for a response are abandoned so that no response is left
+     * on the connection when it is returned to the pool.
+     *
+     * @return indexes of the entries whose operation failed
+     */
+    static <T> List<Integer> pipeline(
+            List<String> names,
+            int window,
+            AsyncOperation<T> operation) throws LDAPException, EBaseException {
+
+        List<Integer> failed = new ArrayList<>();
+        ArrayDeque<PendingOperation<T>> pending = new ArrayDeque<>();
+
+        try {
+            for (int i = 0; i < names.size(); i++) {
+
+                if (pending.size() >= Math.max(window, 1)) {
+                    checkResponse(names, pending.poll(), operation, failed);
+                }
+
+                pending.add(new PendingOperation<>(i, operation.send(names.get(i))));
+            }
+
+            while (!pending.isEmpty()) {
+                checkResponse(names, pending.poll(), operation, failed);
+            }
+
+        } finally {
+            for (PendingOperation<T> p : pending) {
+                operation.abandon(p.op);
+            }
+        }
+
+        return failed;
+    }
+
+    private static <T> void checkResponse(
+            List<String> names,
+            PendingOperation<T> pending,
+            AsyncOperation<T> operation,
+            List<Integer> failed) throws LDAPException, EBaseException {
+
+        int resultCode = operation.getResultCode(names.get(pending.index), pending.op);
+
+        if (resultCode == LDAPException.SUCCESS) {
+            return;
+        }
+
+        if (resultCode == LDAPException.UNAVAILABLE) {
+            throw new EDBNotAvailException(CMS.getUserMessage("CMS_DBS_INTERNAL_DIR_UNAVAILABLE"));
+        }
+
+        failed.add(pending.index);
+    }
+
+    private LDAPModificationSet createLDAPModificationSet(ModificationSet mods) throws EBaseException {
+
+        LDAPModificationSet ldapMods = new LDAPModificationSet();
+        Enumeration<?> e = mods.getModifications();
+
+        while (e.hasMoreElements()) {
+            Modification mod = (Modification) e.nextElement();
+            LDAPAttributeSet attrs = new LDAPAttributeSet();
+
+            dbSubsystem.getRegistry().mapObject(null, mod.getName(), mod.getValue(), attrs);
+            Enumeration<LDAPAttribute> e0 = attrs.getAttributes();
+
+            while (e0.hasMoreElements()) {
+                int op = toLdapModOp(mod.getOp());
+                LDAPAttribute attr = e0.nextElement();
+
+                switch (op) {
+                case LDAPModification.ADD:
+                    logger.debug("LDAPSession: - add: " + attr.getName());
+                    break;
+                case LDAPModification.DELETE:
+                    logger.debug("LDAPSession: - delete: " + attr.getName());
+                    break;
+                case LDAPModification.REPLACE:
+                    logger.debug("LDAPSession: - replace: " + attr.getName());
+                    break;
+                }
+
+                ldapMods.add(op, attr);
+            }
+        }
+
+        return ldapMods;
+    }
+
     private int toLdapModOp(int modOp) throws EBaseException {
         switch (modOp) {
         case Modification.MOD_ADD:
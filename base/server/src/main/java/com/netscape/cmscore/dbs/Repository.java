@@ -20,6 +20,9 @@ package com.netscape.cmscore.dbs;
 import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.util.Hashtable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.dbs.EDBException;
@@ -53,6 +56,13 @@ public abstract class Repository {
     public static final int LEGACY = 0;
     public static final int RANDOM = 1;
 
+    // serial number blocks for all repositories are prefetched in one thread
+    private static final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "SerialNumberPrefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     // (the next serialNo to be issued) - 1
     private BigInteger mSerialNo = null;
 
@@ -87,6 +97,17 @@ public abstract class Repository {
 
     protected SecureRandom secureRandom;
 
+    // number of serial numbers reserved at a time, 0 = no reservation
+    protected int blockSize;
+
+    private volatile SerialNumberBlock currentBlock;
+    private volatile SerialNumberBlock nextBlock;
+    private final Object blockLock = new Object();
+    private final AtomicBoolean prefetching = new AtomicBoolean();
+
+    // incremented under the repository lock when reserved blocks are released
+    private long blockGeneration;
+
     /**
      * Constructs a repository.
      * <P>
@@ -133,6 +154,7 @@ public abstract class Repository {
     public synchronized void setMaxSerial(BigInteger serial) throws EBaseException {
         logger.debug("Repository: Setting max serial to " + serial);
         mMaxSerialNo = serial;
+        releaseSerialNumbers();
     }
 
     /**
@@ -153,6 +175,7 @@ public abstract class Repository {
     public synchronized void setNextMaxSerial(BigInteger serial) throws EBaseException {
         logger.debug("Repository: Setting next max serial to " + serial);
         mNextMaxSerialNo = serial;
+        releaseSerialNumbers();
     }
 
     /**
@@ -281,14 +304,181 @@ public abstract class Repository {
         mSerialNo = num.subtract(BigInteger.ONE);
     }
 
+    public int getBlockSize() {
+        return blockSize;
+    }
+
     /**
      * Retrieves the next serial number, and also increase the
      * serial number by one.
      *
+     * If the block size is set, serial numbers are taken from a
+     * reserved block without locking. The next block is reserved
+     * in the background before the current block runs out.
+     *
+     * @return serial number
+     * @exception EBaseException failed to retrieve next serial number
+     */
+    public BigInteger getNextSerialNumber() throws EBaseException {
+
+        if (blockSize <= 0 || idGenerator == RANDOM) {
+            return allocateSerialNumber();
+        }
+
+        while (true) {
+            SerialNumberBlock block = currentBlock;
+
+            if (block != null) {
+                BigInteger serialNumber = block.take();
+
+                if (serialNumber != null) {
+                    if (block.remaining() <= blockSize / 4) {
+                        prefetchSerialNumbers();
+                    }
+                    return serialNumber;
+                }
+            }
+
+            switchBlock(block);
+        }
+    }
+
+    /**
+     * Replaces an exhausted block with the prefetched block, or
+     * reserves a new block if none has been prefetched.
+     *
+     * The block lock is always acquired before the repository lock.
+     */
+    private void switchBlock(SerialNumberBlock exhausted) throws EBaseException {
+
+        synchronized (blockLock) {
+
+            // another thread has already replaced the block
+            if (currentBlock != exhausted) return;
+
+            long generation;
+            SerialNumberBlock block;
+
+            synchronized (this) {
+                generation = blockGeneration;
+                block = nextBlock;
+                nextBlock = null;
+            }
+
+            if (block == null) {
+                logger.debug("Repository: Reserving " + blockSize + " serial numbers");
+                block = allocateSerialNumbers(blockSize);
+            }
+
+            synchronized (this) {
+
+                if (generation != blockGeneration) {
+                    // the range changed after the block was reserved,
+                    // the caller will reserve a new block
+                    logger.debug("Repository: Discarding released serial numbers");
+                    return;
+                }
+
+                currentBlock = block;
+            }
+        }
+    }
+
+    /**
+     * Reserves the next block in the background.
+     */
+    private void prefetchSerialNumbers() {
+
+        if (nextBlock != null || !prefetching.compareAndSet(false, true)) {
+            return;
+        }
+
+        prefetchExecutor.execute(() -> {
+            try {
+                long generation;
+
+                synchronized (this) {
+                    generation = blockGeneration;
+                }
+
+                logger.debug("Repository: Prefetching " + blockSize + " serial numbers");
+                SerialNumberBlock block = allocateSerialNumbers(blockSize);
+
+                synchronized (this) {
+                    if (generation == blockGeneration && nextBlock == null) {
+                        nextBlock = block;
+                    } else {
+                        logger.debug("Repository: Discarding prefetched serial numbers");
+                    }
+                }
+
+            } catch (Exception e) {
+                logger.warn("Repository: Unable to prefetch serial numbers: " + e.getMessage(), e);
+
+            } finally {
+                prefetching.set(false);
+            }
+        });
+    }
+
+    /**
+     * Releases the reserved blocks so that numbers outside of a
+     * changed range are not handed out, e.g. after part of the range
+     * has been transferred to a clone. Threads that still hold the
+     * current block will not get more numbers from it.
+     *
+     * Released sequential numbers are not used again until a restart,
+     * at which point the repository continues after the last issued
+     * serial number.
+     */
+    protected synchronized void releaseSerialNumbers() {
+
+        SerialNumberBlock block = currentBlock;
+        if (block != null) {
+            block.close();
+        }
+
+        currentBlock = null;
+        nextBlock = null;
+        blockGeneration++;
+    }
+
+    /**
+     * Reserves a block of consecutive serial numbers in the current
+     * range, switching to the next range if the current range is
+     * exhausted. The block may be smaller than requested at the end
+     * of a range.
+     *
+     * @param size maximum number of serial numbers
+     * @return serial number block
+     * @exception EBaseException failed to reserve serial numbers
+     */
+    protected synchronized SerialNumberBlock allocateSerialNumbers(int size) throws EBaseException {
+
+        // the first number goes through the normal range check
+        BigInteger first = allocateSerialNumber();
+        int count = size;
+
+        if (mMaxSerialNo != null) {
+            BigInteger available = mMaxSerialNo.subtract(first).add(BigInteger.ONE);
+            if (available.compareTo(BigInteger.valueOf(size)) < 0) {
+                count = Math.max(available.intValue(), 1);
+            }
+        }
+
+        mLastSerialNo = first.add(BigInteger.valueOf(count - 1));
+
+        logger.debug("Repository: Reserved serial numbers " + first + ".." + mLastSerialNo);
+        return new SerialNumberBlock(first, count);
+    }
+
+    /**
+     * Allocates a single serial number.
+     *
      * @return serial number
      * @exception EBaseException failed to retrieve next serial number
      */
-    public synchronized BigInteger getNextSerialNumber() throws
+    protected synchronized BigInteger allocateSerialNumber() throws
             EBaseException {
 
         if (idGenerator == RANDOM) {
@@ -367,7 +557,7 @@ public abstract class Repository {
 
         logger.debug("Repository: checkRange  mLastSerialNo="+mLastSerialNo);
         if (mLastSerialNo.compareTo( mMaxSerialNo ) > 0 ||
-            ((!engine.isPreOpMode()) && randomLimit != null && mCounter.compareTo(randomLimit) > 0)) {
+            (randomLimit != null && !engine.isPreOpMode() && mCounter.compareTo(randomLimit) > 0)) {
 
             if (dbSubsystem.getEnableSerialMgmt()) {
                 logger.debug("Reached the end of the range.  Attempting to move to next range");
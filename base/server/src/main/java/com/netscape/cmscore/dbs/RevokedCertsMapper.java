@@ -0,0 +1,442 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.dbs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.Vector;
+
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.Extension;
+import org.mozilla.jss.netscape.security.x509.InvalidityDateExtension;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.dbs.DBAttrMapper;
+import com.netscape.certsrv.dbs.EDBException;
+import com.netscape.certsrv.dbs.IDBObj;
+import com.netscape.cmscore.apps.CMS;
+
+import netscape.ldap.LDAPAttribute;
+import netscape.ldap.LDAPAttributeSet;
+
+/**
+ * A class represents an attribute mapper that maps a table of
+ * revoked certificates into a compact binary LDAP attribute,
+ * and vice versa.
+ *
+ * The entries are stored sorted by serial number. Each serial number
+ * and revocation date is stored as a delta from the previous entry,
+ * followed by a flag byte describing the entry extensions. The CRL
+ * reason and the invalidity date are packed into the entry, any other
+ * extension causes the entry extensions to be stored serialized.
+ *
+ * Values written by ObjectStreamMapper in the Java serialization
+ * format are still accepted.
+ */
+public class RevokedCertsMapper extends DBAttrMapper {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(RevokedCertsMapper.class);
+
+    public static final byte[] MAGIC = { 'R', 'C' };
+    public static final int VERSION = 1;
+
+    // first bytes of Java serialization stream
+    public static final byte[] STREAM_MAGIC = { (byte) 0xac, (byte) 0xed };
+
+    static final int FLAG_EXTENSIONS = 0x01;
+    static final int FLAG_REASON = 0x02;
+    static final int FLAG_REASON_CRITICAL = 0x04;
+    static final int FLAG_INVALIDITY_DATE = 0x08;
+    static final int FLAG_INVALIDITY_DATE_CRITICAL = 0x10;
+    static final int FLAG_INVALIDITY_DATE_FIRST = 0x20;
+    static final int FLAG_SERIALIZED = 0x40;
+
+    private String mLdapName;
+    private Vector<String> v = new Vector<>();
+
+    /**
+     * Constructs revoked certificates mapper.
+     */
+    public RevokedCertsMapper(String ldapName) {
+        mLdapName = ldapName;
+        v.addElement(mLdapName);
+    }
+
+    /**
+     * Retrieves a list of supported ldap attributes.
+     */
+    @Override
+    public Enumeration<String> getSupportedLDAPAttributeNames() {
+        return v.elements();
+    }
+
+    /**
+     * Maps object to ldap attribute set.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void mapObjectToLDAPAttributeSet(IDBObj parent, String name,
+            Object obj, LDAPAttributeSet attrs)
+            throws EBaseException {
+
+        try {
+            byte[] data = encode((Map<BigInteger, RevokedCertificate>) obj);
+
+            logger.debug("RevokedCertsMapper: Mapping " + name + " to " + mLdapName + " (" + data.length + " bytes)");
+            attrs.add(new LDAPAttribute(mLdapName, data));
+
+        } catch (IOException e) {
+            logger.error(CMS.getLogMessage("CMSCORE_DBS_OBJECTSTREAM_MAPPER_ERROR", e.toString()), e);
+            throw new EDBException(CMS.getUserMessage("CMS_DBS_SERIALIZE_FAILED", name), e);
+        }
+    }
+
+    /**
+     * Maps LDAP attributes into object, and put the object
+     * into 'parent'.
+     */
+    @Override
+    public void mapLDAPAttributeSetToObject(LDAPAttributeSet attrs,
+            String name, IDBObj parent) throws EBaseException {
+
+        LDAPAttribute attr = attrs.getAttribute(mLdapName);
+
+        if (attr == null) {
+            return;
+        }
+
+        try {
+            parent.set(name, decode(attr.getByteValues().nextElement()));
+
+        } catch (IOException e) {
+            logger.error("RevokedCertsMapper: Unable to decode " + name + ": " + e.getMessage(), e);
+            throw new EDBException(CMS.getUserMessage("CMS_DBS_DESERIALIZE_FAILED", name), e);
+        }
+    }
+
+    /**
+     * Maps search filters into LDAP search filter.
+     */
+    @Override
+    public String mapSearchFilter(String name, String op,
+            String value) throws EBaseException {
+        return mLdapName + op + value;
+    }
+
+    /**
+     * Encodes a table of revoked certificates in the compact format.
+     * Sorted maps are encoded in their own order without sorting.
+     *
+     * @param certs revoked certificates, may be null
+     * @return encoded revoked certificates
+     */
+    public static byte[] encode(Map<BigInteger, RevokedCertificate> certs) throws IOException {
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+
+        if (certs == null) {
+            writeVarLong(out, 0);
+            out.flush();
+            return bos.toByteArray();
+        }
+
+        Iterable<BigInteger> serials;
+
+        if (certs instanceof SortedMap && ((SortedMap<BigInteger, RevokedCertificate>) certs).comparator() == null) {
+            serials = certs.keySet();
+
+        } else {
+            BigInteger[] sortedSerials = certs.keySet().toArray(new BigInteger[0]);
+            Arrays.sort(sortedSerials);
+            serials = Arrays.asList(sortedSerials);
+        }
+
+        writeVarLong(out, certs.size() + 1L);
+
+        BigInteger lastSerial = BigInteger.ZERO;
+        long lastDate = 0;
+
+        for (BigInteger serial : serials) {
+
+            RevokedCertificate cert = certs.get(serial);
+
+            // first serial is stored as is, the following ones as
+            // a positive difference from the previous one
+            writeBytes(out, serial.subtract(lastSerial).toByteArray());
+            lastSerial = serial;
+
+            Date revocationDate = cert.getRevocationDate();
+            long date = revocationDate == null ? Long.MIN_VALUE : revocationDate.getTime();
+            writeVarLong(out, zigZag(date - lastDate));
+            lastDate = date;
+
+            CRLExtensions exts = getExtensions(cert);
+            writeExtensions(out, exts, date);
+        }
+
+        out.flush();
+        return bos.toByteArray();
+    }
+
+    /**
+     * Decodes a table of revoked certificates stored either in the
+     * compact format or in the Java serialization format.
+     *
+     * @param data encoded revoked certificates
+     * @return revoked certificates, may be null
+     */
+    @SuppressWarnings("unchecked")
+    public static Hashtable<BigInteger, RevokedCertificate> decode(byte[] data) throws IOException {
+
+        if (data.length >= 2 && data[0] == STREAM_MAGIC[0] && data[1] == STREAM_MAGIC[1]) {
+            logger.debug("RevokedCertsMapper: Reading serialized revoked certificates");
+
+            try (ObjectInputStream is = new ObjectInputStream(new ByteArrayInputStream(data))) {
+                return (Hashtable<BigInteger, RevokedCertificate>) is.readObject();
+
+            } catch (ClassNotFoundException | ClassCastException e) {
+                throw new IOException("Unable to read serialized revoked certificates: " + e.getMessage(), e);
+            }
+        }
+
+        if (data.length < 3 || data[0] != MAGIC[0] || data[1] != MAGIC[1]) {
+            throw new IOException("Unknown revoked certificates format");
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 2, data.length - 2));
+
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported revoked certificates version: " + version);
+        }
+
+        long count = readVarLong(in) - 1;
+        if (count < 0) {
+            return null;
+        }
+
+        if (count > data.length) {
+            throw new IOException("Invalid number of revoked certificates: " + count);
+        }
+
+        Hashtable<BigInteger, RevokedCertificate> certs = new Hashtable<>((int) (count * 4 / 3) + 1);
+
+        BigInteger serial = BigInteger.ZERO;
+        long date = 0;
+
+        for (long i = 0; i < count; i++) {
+
+            serial = serial.add(new BigInteger(readBytes(in)));
+
+            date += unZigZag(readVarLong(in));
+            Date revocationDate = date == Long.MIN_VALUE ? null : new Date(date);
+
+            CRLExtensions exts = readExtensions(in, date);
+
+            certs.put(serial, new RevokedCertImpl(serial, revocationDate, exts));
+        }
+
+        return certs;
+    }
+
+    static CRLExtensions getExtensions(RevokedCertificate cert) {
+
+        if (cert instanceof RevokedCertImpl) {
+            return ((RevokedCertImpl) cert).getExtensions();
+        }
+
+        return null;
+    }
+
+    static void writeExtensions(DataOutputStream out, CRLExtensions exts, long date) throws IOException {
+
+        if (exts == null) {
+            out.writeByte(0);
+            return;
+        }
+
+        int flags = FLAG_EXTENSIONS;
+        CRLReasonExtension reasonExt = null;
+        InvalidityDateExtension invalidityDateExt = null;
+        boolean serialize = false;
+
+        for (Enumeration<Extension> e = exts.getElements(); e.hasMoreElements();) {
+            Extension ext = e.nextElement();
+
+            if (ext.getClass() == CRLReasonExtension.class && reasonExt == null) {
+                reasonExt = (CRLReasonExtension) ext;
+                flags |= FLAG_REASON;
+                if (ext.isCritical()) {
+                    flags |= FLAG_REASON_CRITICAL;
+                }
+
+            } else if (ext.getClass() == InvalidityDateExtension.class && invalidityDateExt == null) {
+                invalidityDateExt = (InvalidityDateExtension) ext;
+                flags |= FLAG_INVALIDITY_DATE;
+                if (ext.isCritical()) {
+                    flags |= FLAG_INVALIDITY_DATE_CRITICAL;
+                }
+                if (reasonExt == null) {
+                    flags |= FLAG_INVALIDITY_DATE_FIRST;
+                }
+
+            } else {
+                serialize = true;
+                break;
+            }
+        }
+
+        if (serialize) {
+            // extensions that cannot be packed are kept in the
+            // serialized form to preserve them exactly
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try (ObjectOutputStream os = new ObjectOutputStream(bos)) {
+                os.writeObject(exts);
+            }
+
+            out.writeByte(FLAG_EXTENSIONS | FLAG_SERIALIZED);
+            writeBytes(out, bos.toByteArray());
+            return;
+        }
+
+        out.writeByte(flags);
+
+        if (reasonExt != null) {
+            out.writeByte(reasonExt.getReason().getCode());
+        }
+
+        if (invalidityDateExt != null) {
+            writeVarLong(out, zigZag(invalidityDateExt.getInvalidityDate().getTime() - date));
+        }
+    }
+
+    static CRLExtensions readExtensions(DataInputStream in, long date) throws IOException {
+
+        int flags = in.readUnsignedByte();
+
+        if ((flags & FLAG_EXTENSIONS) == 0) {
+            return null;
+        }
+
+        if ((flags & FLAG_SERIALIZED) != 0) {
+            byte[] bytes = readBytes(in);
+            try (ObjectInputStream is = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return (CRLExtensions) is.readObject();
+
+            } catch (ClassNotFoundException | ClassCastException e) {
+                throw new IOException("Unable to read CRL entry extensions: " + e.getMessage(), e);
+            }
+        }
+
+        CRLReasonExtension reasonExt = null;
+        InvalidityDateExtension invalidityDateExt = null;
+
+        if ((flags & FLAG_REASON) != 0) {
+            RevocationReason reason = RevocationReason.valueOf(in.readUnsignedByte());
+            reasonExt = new CRLReasonExtension((flags & FLAG_REASON_CRITICAL) != 0, reason);
+        }
+
+        if ((flags & FLAG_INVALIDITY_DATE) != 0) {
+            Date invalidityDate = new Date(date + unZigZag(readVarLong(in)));
+            invalidityDateExt = new InvalidityDateExtension(
+                    (flags & FLAG_INVALIDITY_DATE_CRITICAL) != 0, invalidityDate);
+        }
+
+        CRLExtensions exts = new CRLExtensions();
+
+        if ((flags & FLAG_INVALIDITY_DATE_FIRST) != 0) {
+            exts.set(InvalidityDateExtension.NAME, invalidityDateExt);
+            if (reasonExt != null) {
+                exts.set(CRLReasonExtension.NAME, reasonExt);
+            }
+
+        } else {
+            if (reasonExt != null) {
+                exts.set(CRLReasonExtension.NAME, reasonExt);
+            }
+            if (invalidityDateExt != null) {
+                exts.set(InvalidityDateExtension.NAME, invalidityDateExt);
+            }
+        }
+
+        return exts;
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid variable length integer");
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid length: " + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,80 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.dbs;
+
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A block of serial numbers reserved by a repository.
+ *
+ * Numbers are handed out with an atomic counter so multiple
+ * threads can take numbers from the block without locking.
+ */
+public class SerialNumberBlock {
+
+    private BigInteger[] serialNumbers;
+    private AtomicInteger next = new AtomicInteger();
+
+    public SerialNumberBlock(BigInteger[] serialNumbers) {
+        this.serialNumbers = serialNumbers;
+    }
+
+    /**
+     * Creates a block of consecutive serial numbers.
+     */
+    public SerialNumberBlock(BigInteger first, int size) {
+
+        serialNumbers = new BigInteger[size];
+        BigInteger serialNumber = first;
+
+        for (int i = 0; i < size; i++) {
+            serialNumbers[i] = serialNumber;
+            serialNumber = serialNumber.add(BigInteger.ONE);
+        }
+    }
+
+    /**
+     * Takes the next serial number from the block.
+     *
+     * @return serial number, or null if the block is exhausted
+     */
+    public BigInteger take() {
+        int i = next.getAndIncrement();
+        return i < serialNumbers.length ? serialNumbers[i] : null;
+    }
+
+    /**
+     * Returns the number of serial numbers left in the block.
+     */
+    public int remaining() {
+        return Math.max(serialNumbers.length - next.get(), 0);
+    }
+
+    /**
+     * Closes the block. Numbers that have not been taken yet
+     * will not be handed out.
+     */
+    public void close() {
+        next.set(serialNumbers.length);
+    }
+
+    public int size() {
+        return serialNumbers.length;
+    }
+}
@@ -43,17 +43,19 @@ public class LdapAnonConnFactory implements ILdapConnFactory {
     protected int mMinConns = 5;
     protected int mMaxConns = 1000;
     protected int mMaxResults = 0;
+    protected long mMaxWait = 0;
+    protected int mIdleTimeout = 300;
     protected LdapConnInfo mConnInfo = null;
 
     public static final String PROP_MINCONNS = "minConns";
     public static final String PROP_MAXCONNS = "maxConns";
     public static final String PROP_MAXRESULTS = "maxResults";
+    public static final String PROP_MAXWAIT = "maxWait";
+    public static final String PROP_IDLETIMEOUT = "idleTimeout";
 
     public static final String PROP_ERROR_IF_DOWN = "errorIfDown";
 
-    private int mNumConns = 0; // number of available conns in array
-    private int mTotal = 0; // total num conns
-    private AnonConnection mConns[] = null;
+    private LdapConnPool<AnonConnection> mPool;
 
     private boolean mInited = false;
 
@@ -131,12 +133,12 @@ public class LdapAnonConnFactory implements ILdapConnFactory {
 
     @Override
     public int totalConn() {
-        return mTotal;
+        return mPool == null ? 0 : mPool.getTotalCount();
     }
 
     @Override
     public int freeConn() {
-        return mNumConns;
+        return mPool == null ? 0 : mPool.getIdleCount();
     }
 
     @Override
@@ -162,6 +164,8 @@ public class LdapAnonConnFactory implements ILdapConnFactory {
         this.mMinConns = dbConfig.getInteger(PROP_MINCONNS, mMinConns);
         this.mMaxConns = dbConfig.getInteger(PROP_MAXCONNS, mMaxConns);
         this.mMaxResults = dbConfig.getInteger(PROP_MAXRESULTS, mMaxResults);
+        this.mMaxWait = dbConfig.getInteger(PROP_MAXWAIT, (int) mMaxWait);
+        this.mIdleTimeout = dbConfig.getInteger(PROP_IDLETIMEOUT, mIdleTimeout);
 
         this.mConnInfo = new LdapConnInfo(dbConfig.getConnectionConfig());
 
@@ -192,13 +196,35 @@ public class LdapAnonConnFactory implements ILdapConnFactory {
         if (mConnInfo == null)
             throw new IllegalArgumentException("Missing connection info");
 
-        mConns = new AnonConnection[mMaxConns];
-
         logger.debug("LdapAnonConnFactory: mininum: " + mMinConns);
         logger.debug("LdapAnonConnFactory: maximum: " + mMaxConns);
         logger.debug("LdapAnonConnFactory: host: " + mConnInfo.getHost());
         logger.debug("LdapAnonConnFactory: port: " + mConnInfo.getPort());
         logger.debug("LdapAnonConnFactory: secure: " + mConnInfo.getSecure());
+        logger.debug("LdapAnonConnFactory: max wait: " + mMaxWait);
+        logger.debug("LdapAnonConnFactory: idle timeout: " + mIdleTimeout);
+
+        mPool = new LdapConnPool<>(
+                id,
+                mMinConns,
+                mMaxConns,
+                mMaxWait,
+                mIdleTimeout * 1000L,
+                new LdapConnPool.Connector<>() {
+                    @Override
+                    public AnonConnection connect(boolean errorIfDown) throws ELdapException {
+                        return createConnection(errorIfDown);
+                    }
+
+                    @Override
+                    public void disconnect(AnonConnection conn) {
+                        try {
+                            conn.disconnect();
+                        } catch (LDAPException e) {
+                            logger.warn("LdapAnonConnFactory: Unable to disconnect: " + e.getMessage(), e);
+                        }
+                    }
+                });
 
         // initalize minimum number of connection handles available.
         makeMinimum(mErrorIfDown);
@@ -209,25 +235,22 @@ public class LdapAnonConnFactory implements ILdapConnFactory {
      * make the mininum configured connections
      */
     protected void makeMinimum(boolean errorIfDown) throws ELdapException {
+        mPool.fill(errorIfDown);
+    }
 
-        try {
-            if (mNumConns < mMinConns && mTotal < mMaxConns) {
-                int increment = Math.min(mMinConns - mNumConns, mMaxConns - mTotal);
-                logger.debug("LdapAnonConnFactory: increasing minimum connections by " + increment);
-
-                PKISocketFactory socketFactory = new PKISocketFactory(mConnInfo.getSecure());
-                socketFactory.init(config);
+    /**
+     * creates a new anonymous connection for the pool.
+     *
+     * @return connection, or null if the server is down and errorIfDown is false
+     */
+    protected AnonConnection createConnection(boolean errorIfDown) throws ELdapException {
 
-                for (int i = increment - 1; i >= 0; i--) {
-                    mConns[i] = new AnonConnection(socketFactory, mConnInfo);
-                }
+        try {
+            PKISocketFactory socketFactory = new PKISocketFactory(mConnInfo.getSecure());
+            socketFactory.init(config);
 
-                mTotal += increment;
-                mNumConns += increment;
+            return new AnonConnection(socketFactory, mConnInfo);
 
-                logger.debug("LdapAnonConnFactory: total connections: " + mTotal);
-                logger.debug("LdapAnonConnFactory: number of connections: " + mNumConns);
-            }
         } catch (LDAPException e) {
             // XXX errorCodeToString() used here so users won't see message.
             // though why are messages from exceptions being displayed to
@@ -240,16 +263,17 @@ public class LdapAnonConnFactory implements ILdapConnFactory {
                 if (errorIfDown) {
                     throw new ELdapServerDownException(message, e);
                 }
-            } else {
-                String errmsg = e.errorCodeToString();
-                if (errmsg == null)
-                    errmsg = e.getMessage();
+                return null;
+            }
 
-                String message = "Unable to connect to LDAP server: " + errmsg;
-                logger.error("LdapAnonConnFactory: " + message, e);
+            String errmsg = e.errorCodeToString();
+            if (errmsg == null)
+                errmsg = e.getMessage();
 
-                throw new ELdapException(message, e);
-            }
+            String message = "Unable to connect to LDAP server: " + errmsg;
+            logger.error("LdapAnonConnFactory: " + message, e);
+
+            throw new ELdapException(message, e);
         }
     }
 
@@ -300,61 +324,19 @@ public class LdapAnonConnFactory implements ILdapConnFactory {
      * }
      * </pre>
      */
-    public synchronized LDAPConnection getConn(boolean waitForConn)
+    public LDAPConnection getConn(boolean waitForConn)
             throws ELdapException {
-        boolean waited = false;
 
         logger.debug("LdapAnonConnFactory: getting a connection");
 
-        if (mNumConns == 0)
-            makeMinimum(true);
-
-        if (mNumConns == 0) {
-            if (!waitForConn)
-                return null;
-            try {
-                logger.warn("LdapAnonConnFactory: out of LDAP connections");
-                waited = true;
-                while (mNumConns == 0) {
-                    wait();
-                }
-            } catch (InterruptedException e) {
-            }
-        }
-
-        mNumConns--;
-        AnonConnection conn = mConns[mNumConns];
-
-        mConns[mNumConns] = null;
-        if (waited) {
-            logger.warn("LdapAnonConnFactory: connections are available for " + mConnInfo.getHost() + ":" + mConnInfo.getPort());
-        }
-        logger.debug("LdapAnonConnFactory: number of connections: " + mNumConns);
-
-        //Beginning of fix for Bugzilla #630176
-        boolean isConnected = false;
-        if (conn != null) {
-            isConnected = conn.isConnected();
+        // disconnected connections are replaced by the pool
+        // (fix for Bugzilla #630176)
+        AnonConnection conn = mPool.acquire(waitForConn);
+        if (conn == null) {
+            return null;
         }
 
-        if (!isConnected) {
-            logger.debug("LdapAnonConnFactory: reestablishing connection");
-
-            conn = null;
-            try {
-                PKISocketFactory socketFactory = new PKISocketFactory(mConnInfo.getSecure());
-                socketFactory.init(config);
-
-                conn = new AnonConnection(socketFactory, mConnInfo);
-
-            } catch (LDAPException e) {
-                String message = "Unable to reestablish LDAP connection: " + e.getMessage();
-                logger.error("LdapAnonConnFactory: " + message, e);
-
-                throw new ELdapException(message, e);
-            }
-        }
-        //This is the end of the fix for Bugzilla #630176
+        logger.debug("LdapAnonConnFactory: number of connections: " + mPool.getIdleCount());
 
         try {
             // Before returning the connection, set the SIZELIMIT option; this
@@ -363,6 +345,7 @@ public class LdapAnonConnFactory implements ILdapConnFactory {
             // always starts with the default.
             conn.setOption(LDAPv3.SIZELIMIT, mMaxResults);
         } catch (LDAPException e) {
+            mPool.release(conn);
             throw new ELdapException("Unable to set LDAP size limit: " + e.getMessage(), e);
         }
 
@@ -389,7 +372,7 @@ public class LdapAnonConnFactory implements ILdapConnFactory {
      * </pre>
      */
     @Override
-    public synchronized void returnConn(LDAPConnection conn) {
+    public void returnConn(LDAPConnection conn) {
         if (conn == null) {
             return;
         }
@@ -403,16 +386,10 @@ public class LdapAnonConnFactory implements ILdapConnFactory {
             return;
         }
 
-        if (anon.getFacId() != mConns) {
+        if (anon.getFacId() != this) {
             logger.warn("LdapAnonConnFactory: Unknown connection");
         }
 
-        for (int i = 0; i < mNumConns; i++) {
-            if (mConns[i] == anon) {
-                logger.warn("LdapAnonConnFactory: Connection already returned");
-            }
-        }
-
         // this returned connection might authenticate as someone other than
         // anonymonus. Reset it to anonymous first before it returns
         // to the pool.  Do this by calling connect() again on this connection
@@ -425,10 +402,8 @@ public class LdapAnonConnFactory implements ILdapConnFactory {
 
         // return the connection even if can't reauthentication anon.
         // most likely server was down.
-        mConns[mNumConns++] = anon;
-        logger.debug("LdapAnonConnFactory: number of connections: " + mNumConns);
-
-        notify();
+        mPool.release(anon);
+        logger.debug("LdapAnonConnFactory: number of connections: " + mPool.getIdleCount());
     }
 
     @Override
@@ -455,18 +430,7 @@ public class LdapAnonConnFactory implements ILdapConnFactory {
     public synchronized void reset()
             throws ELdapException {
         logger.debug("Destroying LdapAnonConnFactory(" + id + ")");
-        if (mNumConns == mTotal) {
-            for (int i = 0; i < mNumConns; i++) {
-                try {
-                    mConns[i].disconnect();
-                } catch (LDAPException e) {
-                    logger.warn("LdapAnonConnFactory: Unable to disconnect: " + e.getMessage(), e);
-                }
-                mConns[i] = null;
-            }
-            mTotal = 0;
-            mNumConns = 0;
-        } else {
+        if (mPool != null && !mPool.close(false)) {
             String message = "Unable to reset LDAP connection factory due to outstanding connections";
             logger.error("LdapAnonConnFactory: " + message);
             throw new ELdapException(message);
@@ -505,10 +469,9 @@ public class LdapAnonConnFactory implements ILdapConnFactory {
 
         /**
          * used only to identify the factory from which this came.
-         * mConns to identify factory.
          */
-        public AnonConnection[] getFacId() {
-            return mConns;
+        public LdapAnonConnFactory getFacId() {
+            return LdapAnonConnFactory.this;
         }
     }
 }
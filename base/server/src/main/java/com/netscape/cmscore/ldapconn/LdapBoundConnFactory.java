@@ -34,10 +34,12 @@ import netscape.ldap.LDAPv3;
  * Maintains a pool of connections to the LDAP server.
  * CMS requests are processed on a multi threaded basis.
  * A pool of connections then must be be maintained so this
- * access to the Ldap server can be easily managed. The min and
- * max size of this connection pool should be configurable. Once
- * the maximum limit of connections is exceeded, the factory
- * should provide proper synchronization to resolve contention issues.
+ * access to the Ldap server can be easily managed. The pool
+ * grows between the configured min and max size. Once the
+ * maximum limit of connections is exceeded, callers wait in
+ * order for a connection, optionally up to maxWait milliseconds.
+ * Connections idle for longer than idleTimeout seconds are
+ * closed down to the minimum size.
  *
  * XXX not sure how useful this is given that LDAPConnection itself can
  * be shared by multiple threads and cloned.
@@ -53,6 +55,8 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
     protected int mMinConns = 5;
     protected int mMaxConns = 1000;
     protected int mMaxResults = 0;
+    protected long mMaxWait = 0;
+    protected int mIdleTimeout = 300;
 
     protected LdapConnInfo mConnInfo = null;
     protected LdapAuthInfo mAuthInfo = null;
@@ -61,17 +65,16 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
     public static final String PROP_MINCONNS = "minConns";
     public static final String PROP_MAXCONNS = "maxConns";
     public static final String PROP_MAXRESULTS = "maxResults";
+    public static final String PROP_MAXWAIT = "maxWait";
+    public static final String PROP_IDLETIMEOUT = "idleTimeout";
     public static final String PROP_LDAPCONNINFO = "ldapconn";
     public static final String PROP_LDAPAUTHINFO = "ldapauth";
 
     public static final String PROP_ERROR_IF_DOWN = "errorIfDown";
 
-    private int mNumConns = 0; // number of available conns in array
-    private int mTotal = 0; // total num conns
-
     private boolean doCloning = true;
     private LdapBoundConnection mMasterConn = null; // master connection object.
-    private LdapBoundConnection[] mConns;
+    private LdapConnPool<LdapBoundConnection> mPool;
 
     /**
      * return error if server is down at creation time.
@@ -100,12 +103,12 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
 
     @Override
     public int totalConn() {
-        return mTotal;
+        return mPool == null ? 0 : mPool.getTotalCount();
     }
 
     @Override
-    public synchronized int freeConn() {
-        return mNumConns;
+    public int freeConn() {
+        return mPool == null ? 0 : mPool.getIdleCount();
     }
 
     @Override
@@ -204,6 +207,8 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
         this.mMinConns = dbConfig.getInteger(PROP_MINCONNS, mMinConns);
         this.mMaxConns = dbConfig.getInteger(PROP_MAXCONNS, mMaxConns);
         this.mMaxResults = dbConfig.getInteger(PROP_MAXRESULTS, mMaxResults);
+        this.mMaxWait = dbConfig.getInteger(PROP_MAXWAIT, (int) mMaxWait);
+        this.mIdleTimeout = dbConfig.getInteger(PROP_IDLETIMEOUT, mIdleTimeout);
 
         LDAPConnectionConfig connConfig = dbConfig.getConnectionConfig();
         this.mConnInfo = new LdapConnInfo(connConfig);
@@ -256,8 +261,30 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
         logger.debug("LdapBoundConnFactory: port: " + mConnInfo.getPort());
         logger.debug("LdapBoundConnFactory: secure: " + mConnInfo.getSecure());
         logger.debug("LdapBoundConnFactory: authentication: " + mAuthInfo.getAuthType());
-
-        mConns = new LdapBoundConnection[mMaxConns];
+        logger.debug("LdapBoundConnFactory: max wait: " + mMaxWait);
+        logger.debug("LdapBoundConnFactory: idle timeout: " + mIdleTimeout);
+
+        mPool = new LdapConnPool<>(
+                id,
+                mMinConns,
+                mMaxConns,
+                mMaxWait,
+                mIdleTimeout * 1000L,
+                new LdapConnPool.Connector<>() {
+                    @Override
+                    public LdapBoundConnection connect(boolean errorIfDown) throws ELdapException {
+                        return createConnection(errorIfDown);
+                    }
+
+                    @Override
+                    public void disconnect(LdapBoundConnection conn) {
+                        try {
+                            conn.disconnect();
+                        } catch (LDAPException e) {
+                            logger.warn("LdapBoundConnFactory: Unable to disconnect: " + e.getMessage(), e);
+                        }
+                    }
+                });
 
         // Create connection handle and make initial connection
         makeConnection(mErrorIfDown);
@@ -351,6 +378,35 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
         return conn;
     }
 
+    /**
+     * creates a connection for the pool, a clone of the master connection
+     * if cloning is used. It can also be used to create a connection that
+     * is not managed by the pool (e.g. for a persistent search), in which
+     * case the caller must disconnect it.
+     */
+    public synchronized LdapBoundConnection createConnection(boolean errorIfDown) throws ELdapException {
+
+        if (!doCloning) {
+            return makeNewConnection(errorIfDown);
+        }
+
+        if (mMasterConn == null || !mMasterConn.isConnected()) {
+            try {
+                makeConnection(errorIfDown);
+            } catch (ELdapException e) {
+                mMasterConn = null;
+                logger.error("LdapBoundConnFactory: Unable to create master connection: " + e.getMessage(), e);
+                throw e;
+            }
+        }
+
+        if (mMasterConn == null || !mMasterConn.isConnected()) {
+            return null;
+        }
+
+        return (LdapBoundConnection) mMasterConn.clone();
+    }
+
     /**
      * makes the minumum number of connections
      */
@@ -360,24 +416,8 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
             logger.debug(method + "master conn not available; returning");
             return;
         }
-        int increment;
-        logger.debug(method + "begins: total connections: " + mTotal);
-        logger.debug(method + "begins: available connections: " + mNumConns);
-
-        if (mNumConns < mMinConns && mTotal <= mMaxConns) {
-            increment = Math.min(mMinConns - mNumConns, mMaxConns - mTotal);
-            logger.debug(method + "increasing minimum connections by " + increment);
-
-            for (int i = increment - 1; i >= 0; i--) {
-                mConns[i] = doCloning ? (LdapBoundConnection) mMasterConn.clone() : makeNewConnection(true);
-            }
 
-            mTotal += increment;
-            mNumConns += increment;
-
-            logger.debug(method + "ends: total connections: " + mTotal);
-            logger.debug(method + "ends: number of connections: " + mNumConns);
-        }
+        mPool.fill(true);
     }
 
     /**
@@ -427,77 +467,17 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
      * }
      * </pre>
      */
-    public synchronized LdapBoundConnection getConn(boolean waitForConn)
+    public LdapBoundConnection getConn(boolean waitForConn)
             throws ELdapException {
-        boolean waited = false;
 
         logger.debug("LdapBoundConnFactory: getting a connection");
 
-        if (mMasterConn != null)
-            logger.debug("LdapBoundConnFactory: master connection is connected: " + mMasterConn.isConnected());
-        else
-            logger.debug("LdapBoundConnFactory: master connection is null");
-
-        if (mMasterConn == null || !mMasterConn.isConnected()) {
-            try {
-                makeConnection(true);
-            } catch (ELdapException e) {
-                mMasterConn = null;
-                logger.error("LdapBoundConnFactory: Unable to create master connection: " + e.getMessage(), e);
-                throw e;
-            }
-        }
-
-        if (mNumConns == 0)
-            makeMinimum();
-
-        if (mNumConns == 0) {
-            if (!waitForConn)
-                return null;
-            try {
-                logger.warn("LdapBoundConnFactory: out of LDAP connections");
-                waited = true;
-                while (mNumConns == 0)
-                    wait();
-            } catch (InterruptedException e) {
-            }
-        }
-        mNumConns--;
-        LdapBoundConnection conn = mConns[mNumConns];
-
-        boolean isConnected = false;
-        if (conn != null) {
-            isConnected = conn.isConnected();
-        }
-
-        logger.debug("LdapBoundConnFactory: connection already connected: " + isConnected);
-
-        //If masterConn is still alive, lets try to bring this one
-        //back to life
-
-        if (!isConnected && mMasterConn != null && mMasterConn.isConnected()) {
-            logger.debug("LdapBoundConnFactory: reestablishing connection");
-
-            if (doCloning) {
-                mConns[mNumConns] = (LdapBoundConnection) mMasterConn.clone();
-            } else {
-                try {
-                    mConns[mNumConns] = makeNewConnection(true);
-                } catch (ELdapException e) {
-                    mConns[mNumConns] = null;
-                }
-            }
-            conn = mConns[mNumConns];
-
-            logger.debug("LdapBoundConnFactory: connection reestablished");
+        LdapBoundConnection conn = mPool.acquire(waitForConn);
+        if (conn == null) {
+            return null;
         }
 
-        mConns[mNumConns] = null;
-
-        if (waited) {
-            logger.warn("LdapBoundConnFactory: connections are available for " + mConnInfo.getHost() + ":" + mConnInfo.getPort());
-        }
-        logger.debug("LdapBoundConnFactory: number of connections: " + mNumConns);
+        logger.debug("LdapBoundConnFactory: number of connections: " + mPool.getIdleCount());
 
         try {
             // Before returning the connection, set the SIZELIMIT option; this
@@ -506,6 +486,7 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
             // always starts with the default.
             conn.setOption(LDAPv3.SIZELIMIT, mMaxResults);
         } catch (LDAPException e) {
+            mPool.release(conn);
             throw new ELdapException("Unable to set LDAP size limit: " + e.getMessage(), e);
         }
 
@@ -531,7 +512,7 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
      * </pre>
      */
     @Override
-    public synchronized void returnConn(LDAPConnection conn) {
+    public void returnConn(LDAPConnection conn) {
         if (conn == null) {
             return;
         }
@@ -548,16 +529,8 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
             logger.warn("LdapBoundConnFactory: Unknown connection");
         }
 
-        for (int i = 0; i < mNumConns; i++) {
-            if (mConns[i] == conn) {
-                logger.warn("LdapBoundConnFactory: Connection already returned");
-            }
-        }
-
-        mConns[mNumConns++] = boundconn;
-        logger.debug("LdapBoundConnFactory: number of connections: " + mNumConns);
-
-        notify();
+        mPool.release(boundconn);
+        logger.debug("LdapBoundConnFactory: number of connections: " + mPool.getIdleCount());
     }
 
     @Override
@@ -576,15 +549,7 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
     public synchronized void reset()
             throws ELdapException {
         logger.debug("Destroying LdapBoundConnFactory(" + id + ")");
-        if (mNumConns == mTotal) {
-            for (int i = 0; i < mNumConns; i++) {
-                try {
-                    mConns[i].disconnect();
-                } catch (LDAPException e) {
-                    logger.warn("LdapBoundConnFactory: Unable to disconnect: " + e.getMessage(), e);
-                }
-                mConns[i] = null;
-            }
+        if (mPool == null || mPool.close(false)) {
             if (mMasterConn != null) {
                 try {
                     logger.debug("LdapBoundConnFactory: disconnecting master connection");
@@ -595,8 +560,6 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
                 }
             }
             mMasterConn = null;
-            mTotal = 0;
-            mNumConns = 0;
         } else {
             String message = "Unable to reset LDAP connection factory due to outstanding connections";
             logger.error("LdapBoundConnFactory: " + message);
@@ -612,11 +575,8 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
 
         logger.debug("Destroying LdapBoundConnFactory(" + id + ")");
 
-        for (int i = 0; i < mNumConns; i++) {
-            if (mConns[i] != null) {
-                mConns[i].close();
-                mConns[i] = null;
-            }
+        if (mPool != null) {
+            mPool.close(true);
         }
 
         if (mMasterConn != null) {
@@ -625,9 +585,6 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
             mMasterConn = null;
         }
 
-        mTotal = 0;
-        mNumConns = 0;
-
         if (mAuthInfo != null) {
             mAuthInfo.reset();
         }
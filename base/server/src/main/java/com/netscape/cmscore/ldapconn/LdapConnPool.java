@@ -0,0 +1,408 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.ldapconn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.netscape.certsrv.ldap.ELdapException;
+import com.netscape.cmscore.metrics.Counter;
+import com.netscape.cmscore.metrics.Gauge;
+import com.netscape.cmscore.metrics.MetricsRegistry;
+import com.netscape.cmscore.metrics.Timer;
+
+import netscape.ldap.LDAPConnection;
+
+/**
+ * Concurrent pool of LDAP connections.
+ *
+ * Borrowers acquire a permit from a fair semaphore, so waiting
+ * threads are served in order and only contend on the pool
+ * while waiting for a connection. Idle connections are kept in
+ * a LIFO deque so recently used connections are reused first and
+ * connections idle for longer than the idle timeout are closed,
+ * down to the minimum number of connections.
+ *
+ * The connection counts are published in MetricsRegistry as gauges
+ * labeled with the pool name until the pool is closed.
+ */
+public class LdapConnPool<T extends LDAPConnection> {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(LdapConnPool.class);
+
+    /**
+     * Creates and disposes connections for the pool.
+     */
+    public interface Connector<T> {
+
+        /**
+         * Creates a new connection.
+         *
+         * @return new connection, or null if the server is unavailable
+         *         and errorIfDown is false
+         */
+        T connect(boolean errorIfDown) throws ELdapException;
+
+        void disconnect(T conn);
+    }
+
+    static class Entry<T> {
+
+        T conn;
+        long lastUsed;
+
+        Entry(T conn) {
+            this.conn = conn;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    private String name;
+    private Connector<T> connector;
+
+    private int minConns;
+    private int maxConns;
+    private long maxWait; // milliseconds, 0 = no limit
+    private long idleTimeout; // milliseconds, 0 = never evict
+
+    private Semaphore permits;
+    private ConcurrentLinkedDeque<Entry<T>> idle = new ConcurrentLinkedDeque<>();
+    // LDAPConnection does not override equals(), so connections
+    // are compared by identity
+    private Set<T> borrowed = ConcurrentHashMap.newKeySet();
+
+    private AtomicInteger total = new AtomicInteger();
+    private AtomicInteger idleCount = new AtomicInteger();
+
+    private LongAdder acquisitions = new LongAdder();
+    private LongAdder timeouts = new LongAdder();
+    private LongAdder created = new LongAdder();
+    private LongAdder evicted = new LongAdder();
+    private LongAdder invalid = new LongAdder();
+
+    // acquire-wait times, shared with other pools of the same name
+    private Timer waitTimer;
+    private Counter timeoutCounter;
+    private List<Gauge> gauges = new ArrayList<>();
+
+    public LdapConnPool(
+            String name,
+            int minConns,
+            int maxConns,
+            long maxWait,
+            long idleTimeout,
+            Connector<T> connector) {
+
+        this.name = name;
+        this.minConns = minConns;
+        this.maxConns = maxConns;
+        this.maxWait = maxWait;
+        this.idleTimeout = idleTimeout;
+        this.connector = connector;
+
+        permits = new Semaphore(maxConns, true);
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        waitTimer = registry.getTimer("ldap_conn_wait/" + name);
+        timeoutCounter = registry.getCounter("ldap_conn_timeouts");
+
+        Map<String, String> labels = Collections.singletonMap("pool", name);
+        gauges.add(registry.registerGauge("ldap_conn_total", labels, this::getTotalCount));
+        gauges.add(registry.registerGauge("ldap_conn_active", labels, this::getActiveCount));
+        gauges.add(registry.registerGauge("ldap_conn_idle", labels, this::getIdleCount));
+        gauges.add(registry.registerGauge("ldap_conn_waiting", labels, this::getWaitingCount));
+        gauges.add(registry.registerGauge("ldap_conn_evicted", labels, this::getEvicted));
+        gauges.add(registry.registerGauge("ldap_conn_invalid", labels, this::getInvalid));
+    }
+
+    /**
+     * Creates idle connections up to the minimum number of connections.
+     */
+    public void fill(boolean errorIfDown) throws ELdapException {
+
+        int increment = Math.min(minConns - idleCount.get(), maxConns - total.get());
+        if (increment <= 0) return;
+
+        logger.debug("LdapConnPool: " + name + ": increasing minimum connections by " + increment);
+
+        for (int i = 0; i < increment; i++) {
+
+            T conn = connector.connect(errorIfDown);
+            if (conn == null) break;
+
+            total.incrementAndGet();
+            created.increment();
+
+            idle.offerLast(new Entry<>(conn));
+            idleCount.incrementAndGet();
+        }
+
+        logger.debug("LdapConnPool: " + name + ": total connections: " + total.get());
+        logger.debug("LdapConnPool: " + name + ": idle connections: " + idleCount.get());
+    }
+
+    /**
+     * Borrows a connection from the pool. A connection that is no
+     * longer connected is discarded and replaced with a new one.
+     *
+     * @param waitForConn wait for a connection if none is available
+     * @return connection, or null if none is available and waitForConn is false
+     */
+    public T acquire(boolean waitForConn) throws ELdapException {
+
+        long start = System.nanoTime();
+
+        try {
+            // unlike tryAcquire(), a zero timeout does not take
+            // a permit ahead of the threads already waiting
+            if (!permits.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+
+                if (!waitForConn) {
+                    return null;
+                }
+
+                logger.warn("LdapConnPool: " + name + ": out of LDAP connections");
+
+                if (maxWait > 0) {
+                    if (!permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+                        timeouts.increment();
+                        timeoutCounter.increment();
+                        throw new ELdapException("Timed out waiting for LDAP connection after " + maxWait + " ms");
+                    }
+                } else {
+                    permits.acquire();
+                }
+
+                logger.info("LdapConnPool: " + name + ": LDAP connections are available");
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ELdapException("Interrupted while waiting for LDAP connection", e);
+        }
+
+        waitTimer.record(System.nanoTime() - start);
+
+        T conn = null;
+        try {
+            conn = borrowIdle();
+
+            if (conn == null) {
+                conn = connector.connect(true);
+                if (conn == null) {
+                    throw new ELdapException("Unable to create LDAP connection");
+                }
+                total.incrementAndGet();
+                created.increment();
+            }
+
+        } catch (ELdapException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+
+        borrowed.add(conn);
+        acquisitions.increment();
+
+        return conn;
+    }
+
+    /**
+     * Returns the first idle connection that is still connected.
+     */
+    T borrowIdle() {
+
+        Entry<T> entry;
+        while ((entry = idle.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+
+            if (entry.conn.isConnected()) {
+                return entry.conn;
+            }
+
+            logger.debug("LdapConnPool: " + name + ": discarding disconnected connection");
+            invalid.increment();
+            discard(entry.conn);
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns a borrowed connection to the pool. A connection that
+     * was not borrowed from the pool (e.g. one that was outstanding
+     * when the pool was closed) is disconnected.
+     */
+    public void release(T conn) {
+
+        if (!borrowed.remove(conn)) {
+
+            if (isIdle(conn)) {
+                logger.warn("LdapConnPool: " + name + ": Connection already returned");
+                return;
+            }
+
+            logger.warn("LdapConnPool: " + name + ": Disconnecting unknown connection");
+            connector.disconnect(conn);
+            return;
+        }
+
+        if (total.get() > maxConns) {
+            // created concurrently with a release, do not keep it
+            discard(conn);
+
+        } else {
+            idle.offerFirst(new Entry<>(conn));
+            idleCount.incrementAndGet();
+        }
+
+        permits.release();
+
+        evictIdle();
+    }
+
+    boolean isIdle(T conn) {
+        for (Entry<T> entry : idle) {
+            if (entry.conn == conn) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Closes connections that have been idle for longer than the
+     * idle timeout while there are more than the minimum number
+     * of connections.
+     */
+    public void evictIdle() {
+
+        if (idleTimeout <= 0) return;
+
+        long limit = System.currentTimeMillis() - idleTimeout;
+
+        while (total.get() > minConns) {
+
+            Entry<T> entry = idle.peekLast();
+            if (entry == null || entry.lastUsed > limit) return;
+
+            // another thread may have borrowed the entry
+            if (!idle.removeLastOccurrence(entry)) continue;
+            idleCount.decrementAndGet();
+
+            logger.debug("LdapConnPool: " + name + ": closing idle connection");
+            evicted.increment();
+            discard(entry.conn);
+        }
+    }
+
+    void discard(T conn) {
+        total.decrementAndGet();
+        connector.disconnect(conn);
+    }
+
+    /**
+     * Disconnects all idle connections.
+     *
+     * @param force disconnect even if connections are outstanding
+     * @return false if there are outstanding connections and force is false
+     */
+    public boolean close(boolean force) {
+
+        if (!force && !borrowed.isEmpty()) {
+            return false;
+        }
+
+        Entry<T> entry;
+        while ((entry = idle.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            discard(entry.conn);
+        }
+
+        if (force) {
+            borrowed.clear();
+            total.set(0);
+            permits.drainPermits();
+            permits.release(maxConns);
+        }
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        for (Gauge gauge : gauges) {
+            registry.removeGauge(gauge);
+        }
+
+        return true;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMinConns() {
+        return minConns;
+    }
+
+    public int getMaxConns() {
+        return maxConns;
+    }
+
+    public int getTotalCount() {
+        return total.get();
+    }
+
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    public int getWaitingCount() {
+        return permits.getQueueLength();
+    }
+
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getCreated() {
+        return created.sum();
+    }
+
+    public long getEvicted() {
+        return evicted.sum();
+    }
+
+    public long getInvalid() {
+        return invalid.sum();
+    }
+}
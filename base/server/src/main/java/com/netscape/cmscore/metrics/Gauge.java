@@ -0,0 +1,67 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Gauge whose value is read from its source when the
+ * metrics are exported, e.g. the size of a queue.
+ */
+public class Gauge {
+
+    private String name;
+    private Map<String, String> labels;
+    private LongSupplier source;
+
+    /**
+     * @param name gauge name
+     * @param labels labels distinguishing gauges with the same name
+     * @param source supplies the current value
+     */
+    public Gauge(String name, Map<String, String> labels, LongSupplier source) {
+        this.name = name;
+        this.labels = Collections.unmodifiableMap(new TreeMap<>(labels));
+        this.source = source;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the labels sorted by name.
+     */
+    public Map<String, String> getLabels() {
+        return labels;
+    }
+
+    public long getValue() {
+        return source.getAsLong();
+    }
+
+    /**
+     * Returns the name and labels which identify the gauge.
+     */
+    public String getKey() {
+        return labels.isEmpty() ? name : name + labels;
+    }
+}
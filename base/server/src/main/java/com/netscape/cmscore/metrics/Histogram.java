@@ -0,0 +1,208 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative long values (e.g. nanoseconds).
+ *
+ * Values are counted in log-linear buckets similar to HdrHistogram:
+ * values below 128 have their own bucket, and every power-of-two range
+ * above that is divided into 64 buckets, so a reported percentile is
+ * within 1/64 (about 1.6%) of the recorded value. Values larger than
+ * {@link #MAX_VALUE} are counted in the last bucket. Recording a value
+ * does not allocate or take a lock.
+ */
+public class Histogram {
+
+    static final int SUB_BUCKET_BITS = 6;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS; // 64
+    static final int LINEAR_LIMIT = SUB_BUCKET_COUNT << 1; // 128
+
+    /**
+     * Largest value that is distinguished from larger values,
+     * about 18 minutes in nanoseconds.
+     */
+    public static final long MAX_VALUE = (1L << 40) - 1;
+
+    static final int BUCKET_COUNT = getIndex(MAX_VALUE) + 1;
+
+    private AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private LongAdder count = new LongAdder();
+    private LongAdder sum = new LongAdder();
+    private LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+    static int getIndex(long value) {
+
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+
+        if (value > MAX_VALUE) {
+            value = MAX_VALUE;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift); // 64..127
+
+        return shift * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Returns the lowest value counted in a bucket.
+     */
+    static long getLowestValue(int index) {
+
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+
+        return subBucket << shift;
+    }
+
+    /**
+     * Returns the highest value counted in a bucket.
+     */
+    static long getHighestValue(int index) {
+        return getLowestValue(index + 1) - 1;
+    }
+
+    public void record(long value) {
+
+        if (value < 0) {
+            value = 0;
+        }
+
+        counts.incrementAndGet(getIndex(value));
+        count.increment();
+        sum.add(value);
+        min.accumulate(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Returns the smallest recorded value, or 0 if nothing was recorded.
+     */
+    public long getMin() {
+        long value = min.get();
+        return value == Long.MAX_VALUE ? 0 : value;
+    }
+
+    /**
+     * Returns the largest recorded value, or 0 if nothing was recorded.
+     */
+    public long getMax() {
+        long value = max.get();
+        return value == Long.MIN_VALUE ? 0 : value;
+    }
+
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Returns the standard deviation estimated from the buckets.
+     */
+    public double getStdDev() {
+
+        long n = 0;
+        double mean = getMean();
+        double squares = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long c = counts.get(i);
+            if (c == 0) continue;
+
+            double value = (getLowestValue(i) + getHighestValue(i)) / 2.0;
+            double delta = value - mean;
+
+            squares += delta * delta * c;
+            n += c;
+        }
+
+        return n == 0 ? 0 : Math.sqrt(squares / n);
+    }
+
+    /**
+     * Returns the value at a percentile, i.e. the highest value in the
+     * bucket that contains the given fraction of the recorded values,
+     * limited to the largest recorded value.
+     *
+     * @param percentile percentile between 0 and 100
+     */
+    public long getValueAtPercentile(double percentile) {
+
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total);
+        if (target < 1) {
+            target = 1;
+        }
+
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= target) {
+                return Math.min(getHighestValue(i), getMax());
+            }
+        }
+
+        return getMax();
+    }
+
+    /**
+     * Clears the histogram. Values recorded concurrently
+     * may be partially cleared.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        min.reset();
+        max.reset();
+    }
+}
@@ -0,0 +1,342 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.metrics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of latency timers, counters, and gauges.
+ *
+ * Operations are timed with {@link #startTiming(String, boolean)} and
+ * {@link #endTiming(String)}. The operations in progress are kept in
+ * a per-thread stack that is reused, and timers are looked up without
+ * locking, so timing an operation does not allocate once the timers
+ * for the operation exist.
+ *
+ * The metrics can be exported in the Prometheus text format with
+ * {@link #writePrometheus(Appendable)}.
+ */
+public class MetricsRegistry {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(MetricsRegistry.class);
+
+    public static final String PREFIX = "pki_";
+
+    public static final double[] PERCENTILES = { 50, 99, 99.9 };
+
+    // Prometheus quantile labels for the percentiles
+    static final String[] QUANTILES = { "0.5", "0.99", "0.999" };
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    /**
+     * Operations in progress on a thread.
+     */
+    static class Milestones {
+
+        Timer[] timers = new Timer[16];
+        long[] startTimes = new long[16];
+        int depth;
+
+        void push(Timer timer, long startTime) {
+
+            if (depth == timers.length) {
+                int size = depth * 2;
+
+                Timer[] newTimers = new Timer[size];
+                System.arraycopy(timers, 0, newTimers, 0, depth);
+                timers = newTimers;
+
+                long[] newStartTimes = new long[size];
+                System.arraycopy(startTimes, 0, newStartTimes, 0, depth);
+                startTimes = newStartTimes;
+            }
+
+            timers[depth] = timer;
+            startTimes[depth] = startTime;
+            depth++;
+        }
+    }
+
+    private Timer root = new Timer(null, null);
+    private ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private ConcurrentHashMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private ThreadLocal<Milestones> milestones = ThreadLocal.withInitial(Milestones::new);
+
+    private volatile long startTime = System.currentTimeMillis();
+
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the time (in milliseconds since the epoch)
+     * when the metrics were created or last reset.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Starts timing an operation on the current thread. If another operation
+     * is in progress on the thread, the operation is timed as part of it.
+     * Otherwise the operation is only timed if it is a main action.
+     *
+     * @param id operation name
+     * @param mainAction whether the operation can be timed on its own
+     */
+    public void startTiming(String id, boolean mainAction) {
+
+        long now = System.nanoTime();
+        Milestones m = milestones.get();
+
+        Timer timer;
+        if (m.depth > 0) {
+            timer = m.timers[m.depth - 1].getChild(id);
+
+        } else if (mainAction) {
+            timer = root.getChild(id);
+
+        } else {
+            return; // ignore operation outside of main action
+        }
+
+        m.push(timer, now);
+    }
+
+    /**
+     * Stops timing the last operation started on the current thread.
+     */
+    public void endTiming(String id) {
+
+        long now = System.nanoTime();
+        Milestones m = milestones.get();
+
+        if (m.depth == 0) {
+            return; // no operation in progress
+        }
+
+        m.depth--;
+        Timer timer = m.timers[m.depth];
+        m.timers[m.depth] = null;
+
+        timer.record(now - m.startTimes[m.depth]);
+    }
+
+    /**
+     * Returns a top-level timer that is not tied to the operations
+     * in progress, creating it if necessary.
+     *
+     * @param path timer names separated by slashes
+     */
+    public Timer getTimer(String path) {
+
+        Timer timer = root;
+        for (String name : path.split("/")) {
+            timer = timer.getChild(name);
+        }
+
+        return timer;
+    }
+
+    public Timer getRootTimer() {
+        return root;
+    }
+
+    /**
+     * Returns all timers in depth-first order sorted by name.
+     */
+    public List<Timer> getTimers() {
+        List<Timer> timers = new ArrayList<>();
+        collectTimers(root.getChildren(), timers);
+        return timers;
+    }
+
+    void collectTimers(Collection<Timer> children, List<Timer> timers) {
+
+        List<Timer> list = new ArrayList<>(children);
+        list.sort(Comparator.comparing(Timer::getName));
+
+        for (Timer timer : list) {
+            timers.add(timer);
+            collectTimers(timer.getChildren(), timers);
+        }
+    }
+
+    public Counter getCounter(String name) {
+
+        Counter counter = counters.get(name);
+        if (counter != null) {
+            return counter;
+        }
+
+        counter = new Counter(name);
+        Counter current = counters.putIfAbsent(name, counter);
+
+        return current == null ? counter : current;
+    }
+
+    /**
+     * Returns all counters sorted by name.
+     */
+    public List<Counter> getCounters() {
+        List<Counter> list = new ArrayList<>(counters.values());
+        list.sort(Comparator.comparing(Counter::getName));
+        return list;
+    }
+
+    /**
+     * Registers a gauge without labels.
+     *
+     * @see #registerGauge(String, Map, LongSupplier)
+     */
+    public Gauge registerGauge(String name, LongSupplier source) {
+        return registerGauge(name, Collections.emptyMap(), source);
+    }
+
+    /**
+     * Registers a gauge, replacing a gauge with the same name and labels.
+     * The value is read from the source when the metrics are exported.
+     *
+     * @param name gauge name
+     * @param labels labels distinguishing gauges with the same name
+     * @param source supplies the current value
+     * @return the registered gauge
+     */
+    public Gauge registerGauge(String name, Map<String, String> labels, LongSupplier source) {
+        Gauge gauge = new Gauge(name, labels, source);
+        gauges.put(gauge.getKey(), gauge);
+        return gauge;
+    }
+
+    /**
+     * Removes a gauge unless it has been replaced by another gauge.
+     */
+    public void removeGauge(Gauge gauge) {
+        gauges.remove(gauge.getKey(), gauge);
+    }
+
+    /**
+     * Returns all gauges sorted by name and labels.
+     */
+    public List<Gauge> getGauges() {
+        List<Gauge> list = new ArrayList<>(gauges.values());
+        list.sort(Comparator.comparing(Gauge::getName).thenComparing(Gauge::getKey));
+        return list;
+    }
+
+    /**
+     * Resets the timers and counters. Gauges reflect
+     * the current state and are not affected.
+     */
+    public void reset() {
+
+        logger.info("MetricsRegistry: Resetting metrics");
+
+        startTime = System.currentTimeMillis();
+        root.reset();
+
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text exposition format.
+     * Timers are exported as a summary with the operation path as a label
+     * and the durations in seconds.
+     */
+    public void writePrometheus(Appendable out) throws IOException {
+
+        String name = PREFIX + "operation_duration_seconds";
+
+        List<Timer> timers = getTimers();
+
+        out.append("# HELP " + name + " Duration of PKI operations.\n");
+        out.append("# TYPE " + name + " summary\n");
+
+        for (Timer timer : timers) {
+
+            Histogram histogram = timer.getHistogram();
+            String label = "operation=\"" + escape(timer.getPath()) + "\"";
+
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                out.append(name + "{" + label + ",quantile=\"" + QUANTILES[i] + "\"} ");
+                out.append(toSeconds(histogram.getValueAtPercentile(PERCENTILES[i])) + "\n");
+            }
+
+            out.append(name + "_sum{" + label + "} " + toSeconds(histogram.getSum()) + "\n");
+            out.append(name + "_count{" + label + "} " + histogram.getCount() + "\n");
+        }
+
+        out.append("# HELP " + name + "_max Longest duration of PKI operations.\n");
+        out.append("# TYPE " + name + "_max gauge\n");
+
+        for (Timer timer : timers) {
+            String label = "operation=\"" + escape(timer.getPath()) + "\"";
+            out.append(name + "_max{" + label + "} " + toSeconds(timer.getHistogram().getMax()) + "\n");
+        }
+
+        for (Counter counter : getCounters()) {
+            String counterName = PREFIX + counter.getName() + "_total";
+            out.append("# TYPE " + counterName + " counter\n");
+            out.append(counterName + " " + counter.getValue() + "\n");
+        }
+
+        String gaugeName = null;
+
+        for (Gauge gauge : getGauges()) {
+
+            if (!gauge.getName().equals(gaugeName)) {
+                gaugeName = gauge.getName();
+                out.append("# TYPE " + PREFIX + gaugeName + " gauge\n");
+            }
+
+            out.append(PREFIX + gaugeName);
+
+            if (!gauge.getLabels().isEmpty()) {
+                StringBuilder sb = new StringBuilder();
+                for (Map.Entry<String, String> label : gauge.getLabels().entrySet()) {
+                    if (sb.length() > 0) {
+                        sb.append(",");
+                    }
+                    sb.append(label.getKey() + "=\"" + escape(label.getValue()) + "\"");
+                }
+                out.append("{" + sb + "}");
+            }
+
+            out.append(" " + gauge.getValue() + "\n");
+        }
+    }
+
+    static double toSeconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,110 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.metrics;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latency timer for an operation. Durations are recorded in nanoseconds
+ * into a {@link Histogram}.
+ *
+ * Timers form a tree: an operation that is timed while another
+ * operation is in progress on the same thread (e.g. signing during
+ * enrollment) is recorded in a child timer of the enclosing operation.
+ * The path of a timer consists of the names of its ancestors and its
+ * own name separated by slashes (e.g. enrollment/signing).
+ */
+public class Timer {
+
+    private String name;
+    private String path;
+    private Timer parent;
+
+    private Histogram histogram = new Histogram();
+    private ConcurrentHashMap<String, Timer> children = new ConcurrentHashMap<>();
+
+    Timer(Timer parent, String name) {
+        this.parent = parent;
+        this.name = name;
+
+        if (parent == null || parent.path == null) {
+            path = name;
+        } else {
+            path = parent.path + "/" + name;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Timer getParent() {
+        return parent;
+    }
+
+    public Histogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Returns the child timer with the given name, creating it if necessary.
+     */
+    public Timer getChild(String name) {
+
+        Timer child = children.get(name);
+        if (child != null) {
+            return child;
+        }
+
+        child = new Timer(this, name);
+        Timer current = children.putIfAbsent(name, child);
+
+        return current == null ? child : current;
+    }
+
+    public Collection<Timer> getChildren() {
+        return children.values();
+    }
+
+    public void record(long nanos) {
+        histogram.record(nanos);
+    }
+
+    public long getCount() {
+        return histogram.getCount();
+    }
+
+    /**
+     * Returns the total time in nanoseconds.
+     */
+    public long getTotalTime() {
+        return histogram.getSum();
+    }
+
+    public void reset() {
+        histogram.reset();
+        for (Timer child : children.values()) {
+            child.reset();
+        }
+    }
+}
@@ -0,0 +1,424 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.ocsp;
+
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mozilla.jss.asn1.GeneralizedTime;
+import org.mozilla.jss.netscape.security.util.Utils;
+import org.mozilla.jss.pkix.cert.Extension;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.ocsp.IOCSPAuthority;
+import com.netscape.cmsutil.ocsp.BasicOCSPResponse;
+import com.netscape.cmsutil.ocsp.CertID;
+import com.netscape.cmsutil.ocsp.OCSPRequest;
+import com.netscape.cmsutil.ocsp.OCSPResponse;
+import com.netscape.cmsutil.ocsp.OCSPResponseStatus;
+import com.netscape.cmsutil.ocsp.ResponseBytes;
+import com.netscape.cmsutil.ocsp.ResponseData;
+import com.netscape.cmsutil.ocsp.TBSRequest;
+
+/**
+ * This class keeps signed OCSP responses for requests without a nonce
+ * so repeated requests for the same certificate do not need to be
+ * signed again.
+ *
+ * Responses are keyed by the CertID of the request (hash algorithm,
+ * issuer name hash, issuer key hash, and serial number) and are served
+ * until a configurable percentage of their validity period has passed.
+ * A background thread signs frequently requested responses again
+ * before they expire and removes expired responses.
+ *
+ * A version number is incremented whenever responses are removed so
+ * that a response signed before the removal is not stored afterwards.
+ *
+ * In the CA the certificate repository removes the responses for a
+ * certificate whenever its record is modified, and the persistent
+ * search in RetrieveModificationsTask does the same for records
+ * modified on other clones.
+ */
+public class OCSPResponseCache {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(OCSPResponseCache.class);
+
+    /**
+     * Creates a new signed response for a request.
+     */
+    public interface Generator {
+        OCSPResponse generate(OCSPRequest request) throws EBaseException;
+    }
+
+    static class Entry {
+
+        final BigInteger serialNumber;
+        final OCSPRequest request;
+        final OCSPResponse response;
+        final Generator generator;
+        final long expirationTime;
+
+        // hits since the response was signed
+        final AtomicLong hits = new AtomicLong();
+
+        Entry(BigInteger serialNumber,
+                OCSPRequest request,
+                OCSPResponse response,
+                Generator generator,
+                long expirationTime) {
+            this.serialNumber = serialNumber;
+            this.request = request;
+            this.response = response;
+            this.generator = generator;
+            this.expirationTime = expirationTime;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private int maxEntries;
+    private int validityPercent;
+    private long maxAge;
+    private int refreshInterval;
+    private int refreshThreshold;
+
+    private ScheduledExecutorService executor;
+
+    // incremented when responses are removed
+    private long version;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+
+    public void init(OCSPResponseCacheConfig config) throws EBaseException {
+        init(config.getMaxEntries(),
+                config.getValidityPercent(),
+                config.getMaxAge(),
+                config.getRefreshInterval(),
+                config.getRefreshThreshold());
+    }
+
+    /**
+     * @param maxEntries maximum number of cached responses
+     * @param validityPercent percentage of the validity period a response is served
+     * @param maxAge maximum lifetime of a response in seconds
+     * @param refreshInterval refresh interval in seconds
+     * @param refreshThreshold minimum hits to sign a response again
+     */
+    public void init(
+            int maxEntries,
+            int validityPercent,
+            int maxAge,
+            int refreshInterval,
+            int refreshThreshold) {
+
+        this.maxEntries = maxEntries;
+        this.validityPercent = validityPercent;
+        this.maxAge = maxAge * 1000L;
+        this.refreshInterval = refreshInterval;
+        this.refreshThreshold = refreshThreshold;
+
+        logger.info("OCSPResponseCache: - max entries: " + maxEntries);
+        logger.info("OCSPResponseCache: - validity percent: " + validityPercent);
+        logger.info("OCSPResponseCache: - max age: " + maxAge);
+        logger.info("OCSPResponseCache: - refresh interval: " + refreshInterval);
+        logger.info("OCSPResponseCache: - refresh threshold: " + refreshThreshold);
+    }
+
+    public void startup() {
+
+        if (refreshInterval <= 0) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "OCSPResponseCache");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        executor.scheduleWithFixedDelay(
+                this::refresh,
+                refreshInterval,
+                refreshInterval,
+                TimeUnit.SECONDS);
+    }
+
+    public void shutdown() {
+
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+
+        entries.clear();
+    }
+
+    /**
+     * Returns the cache key of a request, or null if the
+     * response to the request cannot be cached.
+     */
+    public String createKey(OCSPRequest request) {
+
+        TBSRequest tbsReq = request.getTBSRequest();
+
+        // responses for multiple certificates are not cached
+        if (tbsReq.getRequestCount() != 1) {
+            return null;
+        }
+
+        // responses containing a nonce are unique
+        for (int i = 0; i < tbsReq.getExtensionsCount(); i++) {
+            Extension ext = tbsReq.getRequestExtensionAt(i);
+            if (ext.getExtnId().equals(IOCSPAuthority.OCSP_NONCE)) {
+                return null;
+            }
+        }
+
+        CertID cid = tbsReq.getRequestAt(0).getCertID();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(cid.getHashAlgorithm().getOID());
+        sb.append(":");
+        sb.append(Utils.HexEncode(cid.getIssuerNameHash().toByteArray()));
+        sb.append(":");
+        sb.append(Utils.HexEncode(cid.getIssuerKeyHash().toByteArray()));
+        sb.append(":");
+        sb.append(cid.getSerialNumber().toString(16));
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns the cached response for the given key, or null.
+     */
+    public OCSPResponse get(String key) {
+
+        Entry entry = entries.get(key);
+
+        if (entry == null || entry.expirationTime <= System.currentTimeMillis()) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        entry.hits.incrementAndGet();
+        hits.incrementAndGet();
+
+        return entry.response;
+    }
+
+    /**
+     * Returns the current version. The version should be read
+     * before the response is signed and passed to put().
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Stores a signed response unless responses have been
+     * removed since the given version.
+     *
+     * @param key cache key created by createKey()
+     * @param request OCSP request
+     * @param response signed OCSP response
+     * @param generator generator to sign the response again
+     * @param version version returned by getVersion() before signing
+     */
+    public void put(String key, OCSPRequest request, OCSPResponse response, Generator generator, long version) {
+
+        Entry entry = createEntry(request, response, generator);
+        if (entry == null) {
+            return;
+        }
+
+        put(key, entry, version);
+    }
+
+    synchronized void put(String key, Entry entry, long version) {
+
+        if (this.version != version) {
+            logger.debug("OCSPResponseCache: Response for cert 0x" + entry.serialNumber.toString(16) + " is outdated");
+            return;
+        }
+
+        if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+            removeExpiredEntries();
+            if (entries.size() >= maxEntries) {
+                logger.debug("OCSPResponseCache: Cache is full");
+                return;
+            }
+        }
+
+        entries.put(key, entry);
+    }
+
+    /**
+     * Returns how long a response can be served in milliseconds.
+     *
+     * @param nextUpdate next update time of the response, or null
+     * @param now current time in milliseconds
+     */
+    long getLifetime(Date nextUpdate, long now) {
+
+        if (nextUpdate == null) {
+            return maxAge;
+        }
+
+        return Math.min(maxAge, (nextUpdate.getTime() - now) * validityPercent / 100);
+    }
+
+    Entry createEntry(OCSPRequest request, OCSPResponse response, Generator generator) {
+
+        if (response.getResponseStatus().getValue() != OCSPResponseStatus.SUCCESSFUL.getValue()) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        long lifetime;
+
+        try {
+            ResponseBytes rb = response.getResponseBytes();
+            BasicOCSPResponse basicRes = new BasicOCSPResponse(rb.getResponse());
+            ResponseData rd = basicRes.getResponseData();
+
+            GeneralizedTime nextUpdate = rd.getResponseAt(0).getNextUpdate();
+            lifetime = getLifetime(nextUpdate == null ? null : nextUpdate.toDate(), now);
+
+        } catch (Exception e) {
+            logger.warn("OCSPResponseCache: Unable to parse OCSP response: " + e.getMessage(), e);
+            return null;
+        }
+
+        if (lifetime <= 0) {
+            return null;
+        }
+
+        BigInteger serialNumber = new BigInteger(
+                request.getTBSRequest().getRequestAt(0).getCertID().getSerialNumber().toString());
+
+        return new Entry(serialNumber, request, response, generator, now + lifetime);
+    }
+
+    /**
+     * Removes cached responses for a certificate, for example
+     * after the certificate has been revoked.
+     */
+    public synchronized void remove(BigInteger serialNumber) {
+        version++;
+        entries.values().removeIf(entry -> entry.serialNumber.equals(serialNumber));
+    }
+
+    /**
+     * Removes cached responses for multiple certificates, for example
+     * after their status has been updated.
+     */
+    public synchronized void remove(Collection<BigInteger> serialNumbers) {
+        version++;
+        Set<BigInteger> set = new HashSet<>(serialNumbers);
+        entries.values().removeIf(entry -> set.contains(entry.serialNumber));
+    }
+
+    /**
+     * Removes all cached responses, for example after a new CRL
+     * has been received.
+     */
+    public synchronized void clear() {
+        logger.info("OCSPResponseCache: Removing all cached responses");
+        version++;
+        entries.clear();
+    }
+
+    private void removeExpiredEntries() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expirationTime <= now);
+    }
+
+    /**
+     * Signs hot responses that will expire before the next run
+     * again and removes the other expiring responses.
+     */
+    void refresh() {
+
+        long deadline = System.currentTimeMillis() + refreshInterval * 1000L;
+
+        for (Iterator<Map.Entry<String, Entry>> i = entries.entrySet().iterator(); i.hasNext();) {
+            Map.Entry<String, Entry> e = i.next();
+            String key = e.getKey();
+            Entry entry = e.getValue();
+
+            if (entry.expirationTime > deadline) {
+                continue;
+            }
+
+            if (entry.hits.get() < refreshThreshold) {
+                entries.remove(key, entry);
+                continue;
+            }
+
+            try {
+                logger.debug("OCSPResponseCache: Refreshing response for cert 0x" + entry.serialNumber.toString(16));
+                OCSPResponse response = entry.generator.generate(entry.request);
+
+                Entry newEntry = createEntry(entry.request, response, entry.generator);
+
+                // do not overwrite an entry removed in the meantime
+                if (newEntry == null) {
+                    entries.remove(key, entry);
+                } else if (replace(key, entry, newEntry)) {
+                    refreshes.incrementAndGet();
+                }
+
+            } catch (Throwable t) {
+                logger.warn("OCSPResponseCache: Unable to refresh response: " + t.getMessage(), t);
+                entries.remove(key, entry);
+            }
+        }
+    }
+
+    private synchronized boolean replace(String key, Entry entry, Entry newEntry) {
+        return entries.replace(key, entry, newEntry);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getRefreshes() {
+        return refreshes.get();
+    }
+}
@@ -0,0 +1,74 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.ocsp;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.cmscore.base.ConfigStorage;
+import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.base.SimpleProperties;
+
+/**
+ * Provides OCSP response cache parameters.
+ */
+public class OCSPResponseCacheConfig extends ConfigStore {
+
+    public OCSPResponseCacheConfig(ConfigStorage storage) {
+        super(storage);
+    }
+
+    public OCSPResponseCacheConfig(String name, SimpleProperties source) {
+        super(name, source);
+    }
+
+    public boolean getEnable() throws EBaseException {
+        return getBoolean("enable", false);
+    }
+
+    public void setEnable(boolean enable) {
+        putBoolean("enable", enable);
+    }
+
+    /**
+     * Returns the maximum number of cached responses.
+     */
+    public int getMaxEntries() throws EBaseException {
+        return getInteger("maxEntries", 10000);
+    }
+
+    /**
+     * Returns the percentage of the validity period of a response
+     * (from its creation to the next update) during which the
+     * response will be served from the cache.
+     */
+    public int getValidityPercent() throws EBaseException {
+        return getInteger("validityPercent", 50);
+    }
+
+    /**
+     * Returns the maximum time in seconds a response will be
+     * served from the cache. This also applies to responses
+     * without next update.
+     */
+    public int getMaxAge() throws EBaseException {
+        return getInteger("maxAge", 600);
+    }
+
+    /**
+     * Returns the interval in seconds between checks for
+     * responses to be refreshed or removed.
+     */
+    public int getRefreshInterval() throws EBaseException {
+        return getInteger("refreshInterval", 30);
+    }
+
+    /**
+     * Returns the number of hits after which a response is
+     * considered hot and will be signed again before it expires.
+     */
+    public int getRefreshThreshold() throws EBaseException {
+        return getInteger("refreshThreshold", 10);
+    }
+}
@@ -0,0 +1,309 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.ocsp;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.netscape.certsrv.base.EBaseException;
+
+/**
+ * This class coalesces concurrent OCSP response signing requests
+ * into batches which are signed by a small, fixed set of threads.
+ *
+ * The requests in a batch are grouped by signing algorithm and
+ * each group is passed to the signer in a single call, so the
+ * signer can sign the whole group with one signature context (see
+ * OCSPSigningUnit). The number of token sessions in use is bounded
+ * by the number of threads rather than by the number of concurrent
+ * OCSP requests.
+ */
+public class OCSPSigningBatcher {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(OCSPSigningBatcher.class);
+
+    /**
+     * Signs data with the specified algorithm.
+     */
+    public interface Signer {
+
+        byte[] sign(byte[] data, String algname) throws Exception;
+
+        /**
+         * Signs multiple data with the same algorithm. By default
+         * each data is signed separately.
+         *
+         * @param data list of data to sign
+         * @param algname signing algorithm
+         * @return signatures in the same order as the data
+         * @exception Exception failed to sign the data
+         */
+        default List<byte[]> sign(List<byte[]> data, String algname) throws Exception {
+            List<byte[]> signatures = new ArrayList<>(data.size());
+            for (byte[] d : data) {
+                signatures.add(sign(d, algname));
+            }
+            return signatures;
+        }
+    }
+
+    static class Job {
+
+        final byte[] data;
+        final String algname;
+        final CompletableFuture<byte[]> result = new CompletableFuture<>();
+
+        Job(byte[] data, String algname) {
+            this.data = data;
+            this.algname = algname;
+        }
+    }
+
+    private Signer signer;
+
+    private int workers;
+    private int maxBatchSize;
+    private long window; // nanoseconds
+    private long timeout; // milliseconds
+
+    private BlockingQueue<Job> queue = new LinkedBlockingQueue<>();
+    private List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    private AtomicLong signatures = new AtomicLong();
+    private AtomicLong batches = new AtomicLong();
+
+    public OCSPSigningBatcher(Signer signer) {
+        this.signer = signer;
+    }
+
+    public void init(OCSPSigningBatcherConfig config) throws EBaseException {
+
+        workers = config.getWorkers();
+        logger.info("OCSPSigningBatcher: - workers: " + workers);
+
+        maxBatchSize = config.getMaxBatchSize();
+        logger.info("OCSPSigningBatcher: - max batch size: " + maxBatchSize);
+
+        window = TimeUnit.MICROSECONDS.toNanos(config.getWindow());
+        logger.info("OCSPSigningBatcher: - window: " + config.getWindow() + "us");
+
+        timeout = config.getTimeout();
+        logger.info("OCSPSigningBatcher: - timeout: " + timeout + "ms");
+    }
+
+    public synchronized void startup() {
+
+        if (running) return;
+        running = true;
+
+        for (int i = 0; i < workers; i++) {
+            Thread thread = new Thread(this::run, "OCSPSigningBatcher-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+    }
+
+    public synchronized void shutdown() {
+
+        if (!running) return;
+        running = false;
+
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+
+        for (Thread thread : threads) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        threads.clear();
+
+        // fail requests that were not signed
+        List<Job> jobs = new ArrayList<>();
+        queue.drainTo(jobs);
+
+        for (Job job : jobs) {
+            job.result.completeExceptionally(new EBaseException("OCSP signing batcher stopped"));
+        }
+    }
+
+    /**
+     * Signs data in a signing thread and waits for the signature.
+     * If the batcher is not running the data is signed in the
+     * calling thread.
+     *
+     * @param data data to sign
+     * @param algname signing algorithm
+     * @return signature
+     * @exception Exception failed to sign the data
+     */
+    public byte[] sign(byte[] data, String algname) throws Exception {
+
+        if (!running) {
+            return signer.sign(data, algname);
+        }
+
+        Job job = new Job(data, algname);
+        queue.add(job);
+
+        if (!running && queue.remove(job)) {
+            // stopped before the request was picked up
+            return signer.sign(data, algname);
+        }
+
+        try {
+            return job.result.get(timeout, TimeUnit.MILLISECONDS);
+
+        } catch (TimeoutException e) {
+            queue.remove(job);
+            job.result.cancel(false);
+            throw new EBaseException("OCSP signing timed out after " + timeout + "ms", e);
+
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw new EBaseException(cause);
+        }
+    }
+
+    void run() {
+
+        List<Job> batch = new ArrayList<>(maxBatchSize);
+
+        while (running) {
+            try {
+                batch.add(queue.take());
+                collect(batch);
+
+            } catch (InterruptedException e) {
+                // shutting down, sign the collected requests first
+            }
+
+            if (batch.isEmpty()) continue;
+
+            try {
+                sign(batch);
+
+            } catch (Throwable e) {
+                logger.error("OCSPSigningBatcher: Unable to sign batch: " + e.getMessage(), e);
+                for (Job job : batch) {
+                    job.result.completeExceptionally(e);
+                }
+            }
+
+            signatures.addAndGet(batch.size());
+            batches.incrementAndGet();
+            batch.clear();
+        }
+    }
+
+    /**
+     * Signs the requests in the batch, one signer call per algorithm.
+     * If a call fails, all requests in that call fail.
+     */
+    void sign(List<Job> batch) {
+
+        Map<String, List<Job>> groups = new LinkedHashMap<>();
+        for (Job job : batch) {
+            groups.computeIfAbsent(job.algname, k -> new ArrayList<>()).add(job);
+        }
+
+        for (Map.Entry<String, List<Job>> group : groups.entrySet()) {
+
+            List<Job> jobs = group.getValue();
+            List<byte[]> data = new ArrayList<>(jobs.size());
+            for (Job job : jobs) {
+                data.add(job.data);
+            }
+
+            try {
+                List<byte[]> results = signer.sign(data, group.getKey());
+
+                if (results.size() != jobs.size()) {
+                    throw new EBaseException("Expected " + jobs.size() + " signatures, got " + results.size());
+                }
+
+                for (int i = 0; i < jobs.size(); i++) {
+                    jobs.get(i).result.complete(results.get(i));
+                }
+
+            } catch (Throwable e) {
+                for (Job job : jobs) {
+                    job.result.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds queued requests to the batch until it is full or the
+     * window has passed.
+     */
+    void collect(List<Job> batch) throws InterruptedException {
+
+        queue.drainTo(batch, maxBatchSize - batch.size());
+
+        long deadline = System.nanoTime() + window;
+
+        while (batch.size() < maxBatchSize) {
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) break;
+
+            Job job = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (job == null) break;
+
+            batch.add(job);
+            queue.drainTo(batch, maxBatchSize - batch.size());
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public long getSignatures() {
+        return signatures.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+}
@@ -0,0 +1,64 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.ocsp;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.cmscore.base.ConfigStorage;
+import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.base.SimpleProperties;
+
+/**
+ * Provides OCSP signing batcher parameters.
+ */
+public class OCSPSigningBatcherConfig extends ConfigStore {
+
+    public OCSPSigningBatcherConfig(ConfigStorage storage) {
+        super(storage);
+    }
+
+    public OCSPSigningBatcherConfig(String name, SimpleProperties source) {
+        super(name, source);
+    }
+
+    public boolean getEnable() throws EBaseException {
+        return getBoolean("enable", false);
+    }
+
+    public void setEnable(boolean enable) {
+        putBoolean("enable", enable);
+    }
+
+    /**
+     * Returns the number of signing threads. Each thread keeps
+     * its own signature context on the token.
+     */
+    public int getWorkers() throws EBaseException {
+        return getInteger("workers", 4);
+    }
+
+    /**
+     * Returns the maximum number of signatures created in a batch.
+     */
+    public int getMaxBatchSize() throws EBaseException {
+        return getInteger("maxBatchSize", 32);
+    }
+
+    /**
+     * Returns the time in microseconds a signing thread will wait
+     * for more requests before signing a batch that is not full.
+     */
+    public int getWindow() throws EBaseException {
+        return getInteger("window", 100);
+    }
+
+    /**
+     * Returns the time in milliseconds a request will wait for
+     * its signature before it fails.
+     */
+    public int getTimeout() throws EBaseException {
+        return getInteger("timeout", 30000);
+    }
+}
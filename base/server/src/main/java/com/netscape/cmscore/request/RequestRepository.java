@@ -153,6 +153,9 @@ public class RequestRepository extends Repository {
         if (incrementNo != null) {
             mIncrementNo = new BigInteger(incrementNo, mRadix);
         }
+
+        blockSize = dbConfig.getRequestBlockSize();
+        logger.debug("RequestRepository: - block size: " + blockSize);
     }
 
     public void init(Hashtable<String, String> repositoryConfig) throws Exception {
@@ -0,0 +1,287 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.usrgrp;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.netscape.certsrv.base.EBaseException;
+
+/**
+ * This class keeps recently used users, certificate-to-user
+ * mappings, and group memberships so that authentication and
+ * authorization do not need to search the directory on every
+ * request.
+ *
+ * Entries expire after the configured TTL. UGSubsystem removes
+ * the entries affected by changes it makes, and UGMonitor removes
+ * the entries affected by changes made elsewhere (e.g. on other
+ * clones).
+ *
+ * A version number is incremented on every invalidation so that
+ * a result read from the directory before an invalidation will
+ * not be stored afterwards.
+ */
+public class UGCache {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(UGCache.class);
+
+    static class Entry<T> {
+
+        final T value;
+        final long created;
+
+        Entry(T value, long created) {
+            this.value = value;
+            this.created = created;
+        }
+    }
+
+    static class LRUMap<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        LRUMap(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    private long ttl; // milliseconds, 0 = no limit
+
+    // user ID or DN (lowercase) -> user
+    private Map<String, Entry<User>> users;
+
+    // certificate string -> user
+    private Map<String, Entry<User>> certUsers;
+
+    // user DN (lowercase) + "\n" + group name (lowercase) -> membership
+    private Map<String, Entry<Boolean>> memberships;
+
+    private long version;
+
+    private LongAdder hits = new LongAdder();
+    private LongAdder misses = new LongAdder();
+    private LongAdder expired = new LongAdder();
+    private LongAdder invalidations = new LongAdder();
+    private LongAdder hitAge = new LongAdder(); // milliseconds
+
+    public void init(UGCacheConfig config) throws EBaseException {
+
+        int maxEntries = config.getMaxEntries();
+        logger.info("UGCache: - max entries: " + maxEntries);
+
+        ttl = config.getTTL() * 1000L;
+        logger.info("UGCache: - TTL: " + config.getTTL() + "s");
+
+        users = new LRUMap<>(maxEntries);
+        certUsers = new LRUMap<>(maxEntries);
+        memberships = new LRUMap<>(maxEntries);
+    }
+
+    /**
+     * Returns the current version. The version should be read
+     * before reading from the directory and passed to the put
+     * methods.
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    long getCurrentTime() {
+        return System.currentTimeMillis();
+    }
+
+    <T> T get(Map<String, Entry<T>> map, String key) {
+
+        long now = getCurrentTime();
+        Entry<T> entry = map.get(key);
+
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+
+        long age = now - entry.created;
+
+        if (ttl > 0 && age >= ttl) {
+            map.remove(key);
+            expired.increment();
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        hitAge.add(age);
+
+        return entry.value;
+    }
+
+    <T> void put(Map<String, Entry<T>> map, String key, T value, long version) {
+
+        if (this.version != version) {
+            // invalidated while the value was being read
+            return;
+        }
+
+        map.put(key, new Entry<>(value, getCurrentTime()));
+    }
+
+    static String getMembershipKey(String userDN, String groupName) {
+        return userDN.toLowerCase() + "\n" + groupName.toLowerCase();
+    }
+
+    /**
+     * Returns a copy of a cached user, or null if not cached.
+     */
+    public synchronized User getUser(String userID) {
+        User user = get(users, userID.toLowerCase());
+        return user == null ? null : new User(user);
+    }
+
+    public synchronized void putUser(String userID, User user, long version) {
+        put(users, userID.toLowerCase(), new User(user), version);
+    }
+
+    /**
+     * Returns a copy of the cached user of a certificate, or null
+     * if not cached.
+     */
+    public synchronized User getCertUser(String certString) {
+        User user = get(certUsers, certString);
+        return user == null ? null : new User(user);
+    }
+
+    public synchronized void putCertUser(String certString, User user, long version) {
+        put(certUsers, certString, new User(user), version);
+    }
+
+    public synchronized Boolean getMembership(String userDN, String groupName) {
+        return get(memberships, getMembershipKey(userDN, groupName));
+    }
+
+    public synchronized void putMembership(String userDN, String groupName, boolean member, long version) {
+        put(memberships, getMembershipKey(userDN, groupName), member, version);
+    }
+
+    /**
+     * Removes the entries of a user, i.e. the user itself, its
+     * certificate mappings, and its group memberships.
+     *
+     * @param userID user ID
+     * @param userDN user DN
+     */
+    public synchronized void invalidateUser(String userID, String userDN) {
+
+        logger.debug("UGCache: Invalidating user " + userID);
+
+        version++;
+        invalidations.increment();
+
+        String id = userID.toLowerCase();
+        String dn = userDN.toLowerCase();
+
+        // the user may be cached under its ID or DN
+        users.values().removeIf(entry -> id.equalsIgnoreCase(entry.value.getUserID()));
+        users.remove(dn);
+
+        certUsers.values().removeIf(entry -> id.equalsIgnoreCase(entry.value.getUserID()));
+
+        String prefix = dn + "\n";
+        memberships.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Removes the memberships of a group.
+     *
+     * @param groupName group name
+     */
+    public synchronized void invalidateGroup(String groupName) {
+
+        logger.debug("UGCache: Invalidating group " + groupName);
+
+        version++;
+        invalidations.increment();
+
+        String suffix = "\n" + groupName.toLowerCase();
+        memberships.keySet().removeIf(key -> key.endsWith(suffix));
+    }
+
+    public synchronized void clear() {
+
+        logger.debug("UGCache: Clearing cache");
+
+        version++;
+        invalidations.increment();
+
+        users.clear();
+        certUsers.clear();
+        memberships.clear();
+    }
+
+    public synchronized int getSize() {
+        return users.size() + certUsers.size() + memberships.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of entries that were found after
+     * their TTL had passed.
+     */
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    /**
+     * Returns the average age in milliseconds of the entries
+     * returned from the cache, i.e. how stale the cached data
+     * is on average when it is used.
+     */
+    public long getAverageHitAge() {
+        long count = hits.sum();
+        return count == 0 ? 0 : hitAge.sum() / count;
+    }
+
+    @Override
+    public String toString() {
+        return "hits: " + getHits()
+                + ", misses: " + getMisses()
+                + ", expired: " + getExpired()
+                + ", invalidations: " + getInvalidations()
+                + ", average hit age: " + getAverageHitAge() + " ms";
+    }
+}
@@ -0,0 +1,61 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.usrgrp;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.cmscore.base.ConfigStorage;
+import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.base.SimpleProperties;
+
+/**
+ * Provides user/group cache parameters.
+ */
+public class UGCacheConfig extends ConfigStore {
+
+    public UGCacheConfig(ConfigStorage storage) {
+        super(storage);
+    }
+
+    public UGCacheConfig(String name, SimpleProperties source) {
+        super(name, source);
+    }
+
+    public boolean getEnable() throws EBaseException {
+        return getBoolean("enable", false);
+    }
+
+    public void setEnable(boolean enable) {
+        putBoolean("enable", enable);
+    }
+
+    /**
+     * Returns the maximum number of cached users, certificate
+     * mappings, and group memberships (each).
+     */
+    public int getMaxEntries() throws EBaseException {
+        return getInteger("maxEntries", 10000);
+    }
+
+    /**
+     * Returns the time in seconds an entry will be kept in the
+     * cache. Changes made on this server are applied immediately,
+     * and changes made on other clones are received through the
+     * persistent search if it is enabled, so this bounds how long
+     * a change can go unnoticed if the search is disabled or
+     * disconnected. Zero means no limit.
+     */
+    public int getTTL() throws EBaseException {
+        return getInteger("ttl", 300);
+    }
+
+    /**
+     * Returns true if a persistent search should be used to
+     * invalidate entries modified in the directory.
+     */
+    public boolean getPersistentSearch() throws EBaseException {
+        return getBoolean("persistentSearch", true);
+    }
+}
@@ -0,0 +1,190 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.usrgrp;
+
+import com.netscape.certsrv.ldap.ELdapException;
+import com.netscape.cmscore.ldapconn.LdapBoundConnFactory;
+import com.netscape.cmsutil.ldap.LDAPUtil;
+
+import netscape.ldap.LDAPConnection;
+import netscape.ldap.LDAPEntry;
+import netscape.ldap.LDAPException;
+import netscape.ldap.LDAPSearchConstraints;
+import netscape.ldap.LDAPSearchResults;
+import netscape.ldap.controls.LDAPEntryChangeControl;
+import netscape.ldap.controls.LDAPPersistSearchControl;
+
+/**
+ * This class runs a persistent search on a user or group subtree
+ * and passes the changed entries to UGSubsystem so that the
+ * affected cache entries are removed.
+ *
+ * The search uses a dedicated connection so it does not hold a
+ * connection from the pool. Changes made while the search is not
+ * running cannot be received, so the cache is cleared every time
+ * the search is (re)started.
+ */
+public class UGMonitor implements Runnable {
+
+    public final static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(UGMonitor.class);
+
+    private UGSubsystem ugSubsystem;
+    private LdapBoundConnFactory connFactory;
+    private String baseDN;
+
+    private volatile boolean running = true;
+    private volatile LDAPConnection conn;
+
+    public UGMonitor(UGSubsystem ugSubsystem, LdapBoundConnFactory connFactory, String baseDN) {
+        this.ugSubsystem = ugSubsystem;
+        this.connFactory = connFactory;
+        this.baseDN = baseDN;
+    }
+
+    @Override
+    public void run() {
+
+        int op = LDAPPersistSearchControl.ADD
+            | LDAPPersistSearchControl.MODIFY
+            | LDAPPersistSearchControl.DELETE
+            | LDAPPersistSearchControl.MODDN;
+
+        LDAPPersistSearchControl persistCtrl =
+            new LDAPPersistSearchControl(op, true, true, true);
+
+        logger.info("UGMonitor: Monitoring " + baseDN);
+
+        while (running) {
+
+            try {
+                // shutdown() may reset the field at any time
+                LDAPConnection conn = connFactory.createConnection(true);
+
+                if (conn == null) {
+                    logger.warn("UGMonitor: Unable to connect to " + baseDN + ": No connection available");
+                    logger.warn("UGMonitor: Retrying in 1 second.");
+                    sleep();
+                    continue;
+                }
+
+                this.conn = conn;
+                if (!running) break;
+
+                LDAPSearchConstraints cons = conn.getSearchConstraints();
+                cons.setServerControls(persistCtrl);
+                cons.setBatchSize(1);
+                cons.setServerTimeLimit(0 /* seconds */);
+                String[] attrs = { "1.1" };
+
+                LDAPSearchResults results = conn.search(
+                    baseDN, LDAPConnection.SCOPE_SUB,
+                    "(objectclass=*)", attrs, false, cons);
+
+                // changes made before the search started were missed
+                ugSubsystem.getCache().clear();
+
+                while (running && results.hasMoreElements()) {
+
+                    LDAPEntry entry = results.next();
+
+                    LDAPEntryChangeControl changeControl = (LDAPEntryChangeControl)
+                        LDAPUtil.getControl(
+                            LDAPEntryChangeControl.class, results.getResponseControls());
+
+                    String previousDN = null;
+                    if (changeControl != null
+                            && changeControl.getChangeType() == LDAPPersistSearchControl.MODDN) {
+                        previousDN = changeControl.getPreviousDN();
+                    }
+
+                    logger.debug("UGMonitor: Entry changed: " + entry.getDN());
+                    ugSubsystem.entryChanged(entry.getDN());
+
+                    if (previousDN != null) {
+                        ugSubsystem.entryChanged(previousDN);
+                    }
+                }
+
+            } catch (ELdapException e) {
+
+                logger.warn("UGMonitor: Unable to connect to " + baseDN + ": " + e.getMessage(), e);
+                logger.warn("UGMonitor: Retrying in 1 second.");
+                sleep();
+
+            } catch (LDAPException e) {
+
+                if (running) {
+                    logger.warn("UGMonitor: Unable to monitor " + baseDN + ": " + e.getMessage(), e);
+                    logger.warn("UGMonitor: Retrying in 1 second.");
+                    sleep();
+                } else {
+                    logger.info("UGMonitor: Shutting down: " + e.getMessage());
+                }
+
+            } catch (RuntimeException e) {
+
+                // restart the search, which also clears the cache
+                // in case the failed change was not applied
+                if (running) {
+                    logger.warn("UGMonitor: Unable to process changes in " + baseDN + ": " + e.getMessage(), e);
+                    logger.warn("UGMonitor: Retrying in 1 second.");
+                    sleep();
+                } else {
+                    logger.info("UGMonitor: Shutting down: " + e.getMessage());
+                }
+
+            } finally {
+                disconnect();
+            }
+        }
+
+        logger.info("UGMonitor: Stopped monitoring " + baseDN);
+    }
+
+    void sleep() {
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    void disconnect() {
+
+        LDAPConnection conn = this.conn;
+        this.conn = null;
+
+        if (conn == null) return;
+
+        try {
+            conn.disconnect();
+        } catch (LDAPException e) {
+            logger.warn("UGMonitor: Unable to disconnect: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stops the monitor. Disconnecting the connection causes
+     * the search to throw an exception and the thread to exit.
+     */
+    public void shutdown() {
+        running = false;
+        disconnect();
+    }
+}
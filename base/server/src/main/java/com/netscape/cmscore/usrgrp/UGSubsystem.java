@@ -25,6 +25,7 @@ import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.StringUtils;
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
@@ -39,6 +40,8 @@ import com.netscape.certsrv.usrgrp.EUsrGrpException;
 import com.netscape.cmscore.ldapconn.LDAPConfig;
 import com.netscape.cmscore.ldapconn.LdapBoundConnFactory;
 import com.netscape.cmscore.ldapconn.PKISocketConfig;
+import com.netscape.cmscore.metrics.Gauge;
+import com.netscape.cmscore.metrics.MetricsRegistry;
 import com.netscape.cmsutil.ldap.LDAPUtil;
 import com.netscape.cmsutil.password.IPasswordStore;
 
@@ -81,6 +84,16 @@ public class UGSubsystem {
     protected transient LdapBoundConnFactory mLdapConnFactory = null;
     protected String mBaseDN = null;
 
+    protected UGCache cache;
+    protected List<UGMonitor> monitors = new ArrayList<>();
+    protected List<Gauge> cacheGauges = new ArrayList<>();
+
+    // incremented whenever group membership changes
+    private AtomicLong membershipVersion = new AtomicLong();
+
+    // incremented whenever a user or group lookup fails
+    private AtomicLong lookupFailures = new AtomicLong();
+
     /**
      * Constructs LDAP based usr/grp management
      */
@@ -98,10 +111,140 @@ public class UGSubsystem {
         mLdapConnFactory.init(socketConfig, ldapConfig, passwordStore);
     }
 
+    /**
+     * Enables the user/group cache if configured, and starts
+     * monitoring the user and group subtrees for changes.
+     */
+    public void initCache(UGCacheConfig config) throws EBaseException {
+
+        if (!config.getEnable()) {
+            logger.info("UGSubsystem: User/group cache disabled");
+            return;
+        }
+
+        logger.info("UGSubsystem: Initializing user/group cache");
+
+        UGCache cache = new UGCache();
+        cache.init(config);
+        this.cache = cache;
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        cacheGauges.add(registry.registerGauge("usrgrp_cache_entries", cache::getSize));
+        cacheGauges.add(registry.registerGauge("usrgrp_cache_hits", cache::getHits));
+        cacheGauges.add(registry.registerGauge("usrgrp_cache_misses", cache::getMisses));
+        cacheGauges.add(registry.registerGauge("usrgrp_cache_expired", cache::getExpired));
+        cacheGauges.add(registry.registerGauge("usrgrp_cache_invalidations", cache::getInvalidations));
+        cacheGauges.add(registry.registerGauge("usrgrp_cache_average_hit_age_ms", cache::getAverageHitAge));
+
+        if (!config.getPersistentSearch()) {
+            return;
+        }
+
+        for (String baseDN : new String[] { getUserBaseDN(), getGroupBaseDN() }) {
+            UGMonitor monitor = new UGMonitor(this, mLdapConnFactory, baseDN);
+            monitors.add(monitor);
+
+            Thread thread = new Thread(monitor, "UGMonitor-" + LDAPDN.explodeDN(baseDN, true)[0]);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public UGCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Removes the cache entries affected by a change to a user
+     * or group entry in the directory.
+     *
+     * @param dn DN of the changed entry
+     */
+    public void entryChanged(String dn) {
+
+        if (cache == null) return;
+
+        String[] rdns = LDAPDN.explodeDN(dn, false);
+        if (rdns == null || rdns.length < 2) return;
+
+        String parentDN = String.join(",", Arrays.copyOfRange(rdns, 1, rdns.length));
+        String value = LDAPDN.explodeDN(dn, true)[0];
+
+        if (LDAPDN.equals(parentDN, getGroupBaseDN())) {
+            cache.invalidateGroup(value);
+            membershipChanged();
+
+        } else if (LDAPDN.equals(parentDN, getUserBaseDN())) {
+            cache.invalidateUser(value, dn);
+        }
+    }
+
+    /**
+     * Called after a user entry is modified or removed.
+     */
+    protected void userChanged(String userID) {
+        if (cache != null && userID != null) {
+            cache.invalidateUser(userID, getUserDN(userID));
+        }
+    }
+
+    /**
+     * Called after a group entry or its membership is modified.
+     */
+    protected void groupChanged(String groupName) {
+        if (cache != null && groupName != null) {
+            cache.invalidateGroup(groupName);
+        }
+        membershipChanged();
+    }
+
+    /**
+     * Returns a number that changes whenever group membership is
+     * changed through this subsystem, so that information derived
+     * from the membership (e.g. authorization decisions) can be
+     * invalidated.
+     */
+    public long getMembershipVersion() {
+        return membershipVersion.get();
+    }
+
+    protected void membershipChanged() {
+        membershipVersion.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of failed user and group lookups. Lookups
+     * that fail are reported as non-membership, so information
+     * derived from them must not be cached.
+     */
+    public long getLookupFailures() {
+        return lookupFailures.get();
+    }
+
+    protected void lookupFailed() {
+        lookupFailures.incrementAndGet();
+    }
+
     /**
      * Disconnects usr/grp manager from the LDAP
      */
     public void shutdown() {
+
+        for (UGMonitor monitor : monitors) {
+            monitor.shutdown();
+        }
+        monitors.clear();
+
+        if (cache != null) {
+            logger.info("UGSubsystem: User/group cache: " + cache);
+        }
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        for (Gauge gauge : cacheGauges) {
+            registry.removeGauge(gauge);
+        }
+        cacheGauges.clear();
+
         try {
             if (mLdapConnFactory != null) {
                 mLdapConnFactory.reset();
@@ -140,6 +283,17 @@ public class UGSubsystem {
             userDN = userID;
         }
 
+        long version = 0;
+
+        if (cache != null) {
+            User user = cache.getUser(userID);
+            if (user != null) {
+                logger.debug("UGSubsystem: Found cached user " + userID);
+                return user;
+            }
+            version = cache.getVersion();
+        }
+
         LDAPConnection ldapconn = null;
 
         try {
@@ -158,9 +312,16 @@ public class UGSubsystem {
             Enumeration<User> e = buildUsers(res);
 
             // user found
-            return e.nextElement();
+            User user = e.nextElement();
+
+            if (cache != null) {
+                cache.putUser(userID, user, version);
+            }
+
+            return user;
 
         } catch (ELdapException e) {
+            lookupFailed();
             throw new EUsrGrpException("Unable to retrieve user: " + userID + ": " + e.getMessage(), e);
 
         } catch (LDAPException e) {
@@ -169,6 +330,7 @@ public class UGSubsystem {
                 return null;
 
             } else {
+                lookupFailed();
                 throw new EUsrGrpException("Unable to retrieve user: " + userID + ": " + e.getMessage(), e);
             }
 
@@ -185,17 +347,35 @@ public class UGSubsystem {
             return null;
         }
 
+        String certString = getCertificateString(cert);
+        long version = 0;
+
+        if (cache != null) {
+            User user = cache.getCertUser(certString);
+            if (user != null) {
+                logger.debug("UGSubsystem: Found cached user " + user.getUserID() + " for certificate");
+                return user;
+            }
+            version = cache.getVersion();
+        }
+
         LDAPConnection ldapconn = null;
 
         try {
             ldapconn = getConn();
-            String filter = LDAP_ATTR_USER_CERT_STRING + "=" + LDAPUtil.escapeFilter(getCertificateString(cert));
+            String filter = LDAP_ATTR_USER_CERT_STRING + "=" + LDAPUtil.escapeFilter(certString);
             LDAPSearchResults res =
                     ldapconn.search(getUserBaseDN(),
                             LDAPConnection.SCOPE_SUB, filter, null, false);
             Enumeration<User> e = buildUsers(res);
 
-            return e.nextElement();
+            User user = e.nextElement();
+
+            if (cache != null) {
+                cache.putCertUser(certString, user, version);
+            }
+
+            return user;
 
         } catch (LDAPException e) {
             logger.warn("Unable to find user: " + e.getMessage(), e);
@@ -773,6 +953,7 @@ public class UGSubsystem {
             throw new EUsrGrpException("Unable to add user certificate: " + e.getMessage(), e);
 
         } finally {
+            userChanged(userID);
             if (ldapconn != null) {
                 returnConn(ldapconn);
             }
@@ -815,6 +996,7 @@ public class UGSubsystem {
             throw new EUsrGrpException("Unable to add seeAlso: " + e.getMessage(), e);
 
         } finally {
+            userChanged(userID);
             if (ldapconn != null) {
                 returnConn(ldapconn);
             }
@@ -857,6 +1039,7 @@ public class UGSubsystem {
             throw new EUsrGrpException("Unable to remove seeAlso: " + e.getMessage(), e);
 
         } finally {
+            userChanged(userID);
             if (ldapconn != null) {
                 returnConn(ldapconn);
             }
@@ -969,6 +1152,7 @@ public class UGSubsystem {
                 throw new EUsrGrpException("Unable to remove user certificate: " + e.getMessage(), e);
 
             } finally {
+                userChanged(user.getUserID());
                 if (ldapconn != null)
                     returnConn(ldapconn);
             }
@@ -994,6 +1178,7 @@ public class UGSubsystem {
                     LDAPModification.ADD, memberAttr);
 
             ldapconn.modify(groupDN, singleChange);
+            groupChanged(grp.getGroupID());
 
         } catch (LDAPException e) {
             throw LDAPExceptionConverter.toPKIException(e);
@@ -1022,6 +1207,7 @@ public class UGSubsystem {
                     LDAPModification.DELETE, memberAttr);
 
             ldapconn.modify(groupDN, singleChange);
+            groupChanged(grp.getGroupID());
 
         } catch (LDAPException e) {
             throw LDAPExceptionConverter.toPKIException(e);
@@ -1048,6 +1234,8 @@ public class UGSubsystem {
         try {
             ldapconn = getConn();
             ldapconn.delete("uid=" + LDAPUtil.escapeRDNValue(userid) + "," + getUserBaseDN());
+            userChanged(userid);
+            membershipChanged();
             // for audit log
             SessionContext sessionContext = SessionContext.getContext();
             String adminId = (String) sessionContext.get(SessionContext.USER_ID);
@@ -1201,6 +1389,7 @@ public class UGSubsystem {
             throw new EUsrGrpException("Unable to modify user: " + e.getMessage(), e);
 
         } finally {
+            userChanged(user.getUserID());
             if (ldapconn != null)
                 returnConn(ldapconn);
         }
@@ -1552,6 +1741,18 @@ public class UGSubsystem {
      */
     protected boolean isMemberOfLdapGroup(String userid, String groupname) {
         String basedn = "cn=" + LDAPUtil.escapeRDNValue(groupname) + ",ou=groups," + mBaseDN;
+        UGCache cache = userid == null ? null : this.cache;
+        long version = 0;
+
+        if (cache != null) {
+            Boolean member = cache.getMembership(userid, groupname);
+            if (member != null) {
+                logger.trace("authorization result (cached): " + member);
+                return member;
+            }
+            version = cache.getVersion();
+        }
+
         LDAPConnection ldapconn = null;
         boolean founduser = false;
         try {
@@ -1579,6 +1780,11 @@ public class UGSubsystem {
                 founduser = true;
             }
             logger.trace("authorization result: " + founduser);
+
+            if (cache != null) {
+                cache.putMembership(userid, groupname, founduser, version);
+            }
+
         } catch (LDAPException e) {
             String errMsg =
                     "isMemberOfLdapGroup: could not find group " + groupname + ". Error " + e;
@@ -1587,10 +1793,16 @@ public class UGSubsystem {
             }
             logger.warn("UGSubsystem: authorization exception: " + errMsg);
 
+            // a missing group is not a failure
+            if (e.getLDAPResultCode() != LDAPException.NO_SUCH_OBJECT) {
+                lookupFailed();
+            }
+
         } catch (ELdapException e) {
             String errMsg =
                     "isMemberOfLdapGroup: Could not get connection to internaldb. Error " + e;
             logger.warn("UGSubsystem: authorization exception: " + errMsg);
+            lookupFailed();
 
         } finally {
             if (ldapconn != null)
@@ -1650,6 +1862,7 @@ public class UGSubsystem {
 
             ldapconn = getConn();
             ldapconn.add(entry);
+            groupChanged(grp.getGroupID());
 
         } catch (LDAPException e) {
             throw LDAPExceptionConverter.toPKIException(e);
@@ -1678,6 +1891,7 @@ public class UGSubsystem {
         try {
             ldapconn = getConn();
             ldapconn.delete("cn=" + LDAPUtil.escapeRDNValue(name) + "," + getGroupBaseDN());
+            groupChanged(name);
 
         } catch (LDAPException e) {
             throw LDAPExceptionConverter.toPKIException(e);
@@ -1738,6 +1952,7 @@ public class UGSubsystem {
 
             ldapconn = getConn();
             ldapconn.modify(dn, mod);
+            groupChanged(grp.getGroupID());
 
         } catch (LDAPException e) {
             throw LDAPExceptionConverter.toPKIException(e);
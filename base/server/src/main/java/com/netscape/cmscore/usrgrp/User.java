@@ -157,6 +157,23 @@ public class User implements JSONSerializer {
     public User() {
     }
 
+    /**
+     * Constructs a copy of a user.
+     */
+    public User(User user) {
+        mUserid = user.mUserid;
+        mUserDN = user.mUserDN;
+        mFullName = user.mFullName;
+        mPassword = user.mPassword;
+        mEmail = user.mEmail;
+        mPhone = user.mPhone;
+        mState = user.mState;
+        mCertDN = user.mCertDN;
+        mUserType = user.mUserType;
+        mx509Certs = user.mx509Certs == null ? null : user.mx509Certs.clone();
+        tpsProfiles = user.tpsProfiles == null ? null : new ArrayList<>(user.tpsProfiles);
+    }
+
     @Deprecated
     public User(String userid) {
         mUserid = userid;
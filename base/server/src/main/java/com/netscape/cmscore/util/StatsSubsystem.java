@@ -18,28 +18,26 @@
 package com.netscape.cmscore.util;
 
 import java.util.Date;
-import java.util.Hashtable;
-import java.util.Vector;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.util.IStatsSubsystem;
-import com.netscape.certsrv.util.StatsEvent;
 import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.metrics.MetricsRegistry;
 
 /**
  * A class represents a internal subsystem. This subsystem
  * can be loaded into cert server kernel to perform
  * statistics collection.
  * <P>
+ * The timings are recorded in nanoseconds into the latency
+ * histograms of the {@link MetricsRegistry}.
  *
  * @author thomask
  * @version $Revision$, $Date$
  */
 public class StatsSubsystem implements IStatsSubsystem {
     private String mId = null;
-    private StatsEvent mAllTrans = new StatsEvent(null);
-    private Date mStartTime = new Date();
-    private Hashtable<String, Vector<StatsMilestone>> mHashtable = new Hashtable<>();
+    private MetricsRegistry mRegistry = MetricsRegistry.getInstance();
 
     /**
      * Constructs a certificate server.
@@ -80,7 +78,7 @@ public class StatsSubsystem implements IStatsSubsystem {
 
     @Override
     public Date getStartTime() {
-        return mStartTime;
+        return new Date(mRegistry.getStartTime());
     }
 
     @Override
@@ -90,68 +88,22 @@ public class StatsSubsystem implements IStatsSubsystem {
 
     @Override
     public void startTiming(String id, boolean mainAction) {
-        Thread t = Thread.currentThread();
-        Vector<StatsMilestone> milestones = null;
-        if (mHashtable.containsKey(t.toString())) {
-            milestones = mHashtable.get(t.toString());
-        } else {
-            milestones = new Vector<>();
-            mHashtable.put(t.toString(), milestones);
-        }
-        long startTime = new Date().getTime();
-        StatsEvent currentST = null;
-        for (int i = 0; i < milestones.size(); i++) {
-            StatsMilestone se = milestones.elementAt(i);
-            if (currentST == null) {
-                currentST = mAllTrans.getSubEvent(se.getId());
-            } else {
-                currentST = currentST.getSubEvent(se.getId());
-            }
-        }
-        if (currentST == null) {
-            if (!mainAction) {
-                return; /* ignore none main action */
-            }
-            currentST = mAllTrans;
-        }
-        StatsEvent newST = currentST.getSubEvent(id);
-        if (newST == null) {
-            newST = new StatsEvent(currentST);
-            newST.setName(id);
-            currentST.addSubEvent(newST);
-        }
-        milestones.addElement(new StatsMilestone(id, startTime, newST));
+        mRegistry.startTiming(id, mainAction);
     }
 
     @Override
     public void endTiming(String id) {
-        long endTime = new Date().getTime();
-        Thread t = Thread.currentThread();
-        if (!mHashtable.containsKey(t.toString())) {
-            return; /* error */
-        }
-        Vector<StatsMilestone> milestones = mHashtable.get(t.toString());
-        if (milestones.size() == 0) {
-            return; /* error */
-        }
-        StatsMilestone last = milestones.remove(milestones.size() - 1);
-        StatsEvent st = last.getStatsEvent();
-        st.incNoOfOperations(1);
-        st.incTimeTaken(endTime - last.getStartTime());
-        if (milestones.size() == 0) {
-            mHashtable.remove(t.toString());
-        }
+        mRegistry.endTiming(id);
     }
 
     @Override
     public void resetCounters() {
-        mStartTime = new Date();
-        mAllTrans.resetCounters();
+        mRegistry.reset();
     }
 
     @Override
-    public StatsEvent getMainStatsEvent() {
-        return mAllTrans;
+    public MetricsRegistry getRegistry() {
+        return mRegistry;
     }
 
     @Override
@@ -176,27 +128,3 @@ public class StatsSubsystem implements IStatsSubsystem {
         return null;
     }
 }
-
-class StatsMilestone {
-    private String mId = null;
-    private long mStartTime = 0;
-    private StatsEvent mST = null;
-
-    public StatsMilestone(String id, long startTime, StatsEvent st) {
-        mId = id;
-        mStartTime = startTime;
-        mST = st;
-    }
-
-    public String getId() {
-        return mId;
-    }
-
-    public long getStartTime() {
-        return mStartTime;
-    }
-
-    public StatsEvent getStatsEvent() {
-        return mST;
-    }
-}
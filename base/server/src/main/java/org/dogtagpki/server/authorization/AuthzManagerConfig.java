@@ -5,6 +5,7 @@
 //
 package org.dogtagpki.server.authorization;
 
+import com.netscape.certsrv.base.EBaseException;
 import com.netscape.cmscore.base.ConfigStorage;
 import com.netscape.cmscore.base.ConfigStore;
 import com.netscape.cmscore.base.SimpleProperties;
@@ -23,4 +24,21 @@ public class AuthzManagerConfig extends ConfigStore {
     public LDAPConfig getLDAPConfig() {
         return getSubStore("ldap", LDAPConfig.class);
     }
+
+    /**
+     * Returns the maximum number of cached authorization decisions.
+     * A value of 0 disables the cache.
+     */
+    public int getDecisionCacheSize() throws EBaseException {
+        return getInteger("decisionCacheSize", 1000);
+    }
+
+    /**
+     * Returns the number of seconds an authorization decision is
+     * cached. A value of 0 keeps decisions until the ACLs or the
+     * group membership change.
+     */
+    public int getDecisionCacheTTL() throws EBaseException {
+        return getInteger("decisionCacheTTL", 300);
+    }
 }
@@ -0,0 +1,109 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package org.dogtagpki.server.rest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import com.netscape.certsrv.base.PKIException;
+import com.netscape.certsrv.system.Metric;
+import com.netscape.certsrv.system.MetricsResource;
+import com.netscape.cms.servlet.base.PKIService;
+import com.netscape.cmscore.metrics.Counter;
+import com.netscape.cmscore.metrics.Gauge;
+import com.netscape.cmscore.metrics.Histogram;
+import com.netscape.cmscore.metrics.MetricsRegistry;
+import com.netscape.cmscore.metrics.Timer;
+
+public class MetricsService extends PKIService implements MetricsResource {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(MetricsService.class);
+
+    @Override
+    public Response getMetrics() {
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        List<Metric> metrics = new ArrayList<>();
+
+        for (Timer timer : registry.getTimers()) {
+
+            Histogram histogram = timer.getHistogram();
+
+            Metric metric = new Metric();
+            metric.setName(timer.getPath());
+            metric.setType(Metric.TIMER);
+            metric.setCount(histogram.getCount());
+            metric.setSum(histogram.getSum());
+            metric.setMin(histogram.getMin());
+            metric.setMax(histogram.getMax());
+            metric.setMean((long) histogram.getMean());
+            metric.setP50(histogram.getValueAtPercentile(50));
+            metric.setP99(histogram.getValueAtPercentile(99));
+            metric.setP999(histogram.getValueAtPercentile(99.9));
+            metrics.add(metric);
+        }
+
+        for (Counter counter : registry.getCounters()) {
+
+            Metric metric = new Metric();
+            metric.setName(counter.getName());
+            metric.setType(Metric.COUNTER);
+            metric.setValue(counter.getValue());
+            metrics.add(metric);
+        }
+
+        for (Gauge gauge : registry.getGauges()) {
+
+            Metric metric = new Metric();
+            metric.setName(gauge.getName());
+            metric.setType(Metric.GAUGE);
+            if (!gauge.getLabels().isEmpty()) {
+                metric.setLabels(gauge.getLabels());
+            }
+            metric.setValue(gauge.getValue());
+            metrics.add(metric);
+        }
+
+        GenericEntity<List<Metric>> entity = new GenericEntity<>(metrics) {};
+        return createOKResponse(entity);
+    }
+
+    @Override
+    public Response getPrometheusMetrics() {
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        StringBuilder sb = new StringBuilder();
+
+        try {
+            registry.writePrometheus(sb);
+        } catch (IOException e) {
+            logger.error("MetricsService: Unable to export metrics: " + e.getMessage(), e);
+            throw new PKIException("Unable to export metrics: " + e.getMessage(), e);
+        }
+
+        return Response
+                .ok(sb.toString())
+                .type(MediaType.TEXT_PLAIN + "; version=0.0.4")
+                .build();
+    }
+}
@@ -0,0 +1,130 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.certsrv.security;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SignatureContextCacheTest {
+
+    AtomicInteger created = new AtomicInteger();
+
+    SignatureContextCache.Factory<Object> factory = algname -> {
+        created.incrementAndGet();
+        return new Object();
+    };
+
+    @Test
+    public void testReuse() throws Exception {
+
+        SignatureContextCache<Object> cache = new SignatureContextCache<>(10);
+
+        Object context = cache.get(null, factory);
+        Assert.assertSame(context, cache.get(null, factory));
+        Assert.assertNotSame(context, cache.get("SHA256withRSA", factory));
+
+        Assert.assertEquals(2, created.get());
+        Assert.assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testThreads() throws Exception {
+
+        SignatureContextCache<Object> cache = new SignatureContextCache<>(10);
+        Object context = cache.get(null, factory);
+
+        AtomicReference<Object> other = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                other.set(cache.get(null, factory));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        Assert.assertNotNull(other.get());
+        Assert.assertNotSame(context, other.get());
+        Assert.assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+
+        SignatureContextCache<Object> cache = new SignatureContextCache<>(0);
+
+        Assert.assertNotSame(cache.get(null, factory), cache.get(null, factory));
+        Assert.assertEquals(2, created.get());
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLimit() throws Exception {
+
+        SignatureContextCache<Object> cache = new SignatureContextCache<>(1);
+
+        Object context = cache.get("SHA256withRSA", factory);
+        Object uncached = cache.get("SHA512withRSA", factory);
+
+        Assert.assertSame(context, cache.get("SHA256withRSA", factory));
+        Assert.assertNotSame(uncached, cache.get("SHA512withRSA", factory));
+        Assert.assertEquals(1, cache.size());
+
+        // discarding a context frees its slot
+        cache.discard("SHA256withRSA");
+        Assert.assertEquals(0, cache.size());
+
+        Object context2 = cache.get("SHA512withRSA", factory);
+        Assert.assertSame(context2, cache.get("SHA512withRSA", factory));
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testDiscardUncached() throws Exception {
+
+        SignatureContextCache<Object> cache = new SignatureContextCache<>(1);
+
+        cache.get("SHA256withRSA", factory);
+        cache.discard("SHA512withRSA");
+
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testFactoryFailure() throws Exception {
+
+        SignatureContextCache<Object> cache = new SignatureContextCache<>(1);
+
+        try {
+            cache.get(null, algname -> {
+                throw new Exception("token error");
+            });
+            Assert.fail("Expected exception");
+        } catch (Exception e) {
+            Assert.assertEquals("token error", e.getMessage());
+        }
+
+        Assert.assertEquals(0, cache.size());
+        Assert.assertNotNull(cache.get(null, factory));
+        Assert.assertEquals(1, cache.size());
+    }
+}
@@ -0,0 +1,79 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cms.authorization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.netscape.cms.authorization.AAclAuthz.Decision;
+import com.netscape.cms.authorization.AAclAuthz.DecisionCache;
+
+public class AAclAuthzTest {
+
+    @Test
+    public void testDecisionCache() throws Exception {
+
+        DecisionCache cache = new DecisionCache(1, 10, 0);
+        assertNull(cache.get("key", 0));
+
+        cache.put("key", Decision.ALLOWED, 0);
+        assertEquals(Decision.ALLOWED, cache.get("key", 0));
+        assertEquals(Decision.ALLOWED, cache.get("key", Long.MAX_VALUE));
+
+        cache.put("key", Decision.DENIED, 0);
+        assertEquals(Decision.DENIED, cache.get("key", 0));
+    }
+
+    @Test
+    public void testDecisionCacheTTL() throws Exception {
+
+        DecisionCache cache = new DecisionCache(1, 10, 1000);
+
+        cache.put("key", Decision.NOT_ALLOWED, 5000);
+        assertEquals(Decision.NOT_ALLOWED, cache.get("key", 5000));
+        assertEquals(Decision.NOT_ALLOWED, cache.get("key", 5999));
+
+        // expired decisions are removed
+        assertNull(cache.get("key", 6000));
+        assertEquals(0, cache.decisions.size());
+    }
+
+    @Test
+    public void testDecisionCacheSize() throws Exception {
+
+        DecisionCache cache = new DecisionCache(1, 3, 0);
+
+        for (int i = 0; i < 10; i++) {
+            cache.put("key" + i, Decision.ALLOWED, 0);
+            assertEquals(Decision.ALLOWED, cache.get("key" + i, 0));
+        }
+
+        assertEquals(3, cache.decisions.size());
+    }
+
+    @Test
+    public void testDisabledDecisionCache() throws Exception {
+
+        DecisionCache cache = new DecisionCache(1, 0, 0);
+
+        cache.put("key", Decision.ALLOWED, 0);
+        assertNull(cache.get("key", 0));
+    }
+}
@@ -0,0 +1,169 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cms.authorization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.dogtagpki.server.authentication.AuthToken;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.netscape.certsrv.evaluators.IAccessEvaluator;
+import com.netscape.cms.evaluators.UserAccessEvaluator;
+
+public class ACLExpressionTest {
+
+    /**
+     * Evaluates "value=true" to true and "value=false" to false,
+     * and counts the evaluations.
+     */
+    static class TestEvaluator implements IAccessEvaluator {
+
+        int count;
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public String getType() {
+            return "value";
+        }
+
+        @Override
+        public String getDescription() {
+            return "test evaluator";
+        }
+
+        @Override
+        public boolean evaluate(String type, String op, String value) {
+            return evaluate(null, type, op, value);
+        }
+
+        @Override
+        public boolean evaluate(AuthToken authToken, String type, String op, String value) {
+            count++;
+            boolean matched = "true".equals(value);
+            return op.equals("=") ? matched : !matched;
+        }
+
+        @Override
+        public String[] getSupportedOperators() {
+            return new String[] { "=", "!=" };
+        }
+    }
+
+    TestEvaluator evaluator;
+    Map<String, IAccessEvaluator> evaluators;
+    AuthToken authToken;
+
+    @Before
+    public void setUp() {
+        evaluator = new TestEvaluator();
+        evaluators = new HashMap<>();
+        evaluators.put("value", evaluator);
+        authToken = new AuthToken(null);
+    }
+
+    boolean evaluate(String expressions) {
+        return ACLExpression.parse(expressions, evaluators).evaluate(authToken);
+    }
+
+    @Test
+    public void testSingleTerm() throws Exception {
+        assertTrue(evaluate("value=true"));
+        assertFalse(evaluate("value=false"));
+        assertTrue(evaluate(" value != false "));
+        assertFalse(evaluate("value!=true"));
+    }
+
+    @Test
+    public void testConnectors() throws Exception {
+        assertTrue(evaluate("value=false || value=true"));
+        assertFalse(evaluate("value=false || value=false"));
+        assertTrue(evaluate("value=true && value=true"));
+        assertFalse(evaluate("value=true && value=false"));
+    }
+
+    @Test
+    public void testLeftToRight() throws Exception {
+
+        // terms are combined from left to right without precedence
+        assertFalse(evaluate("value=true || value=false && value=false"));
+        assertTrue(evaluate("value=false && value=false || value=true"));
+        assertTrue(evaluate("value=false || value=true && value=true || value=false"));
+    }
+
+    @Test
+    public void testShortCircuit() throws Exception {
+
+        assertTrue(evaluate("value=true || value=true || value=true"));
+        assertEquals(1, evaluator.count);
+
+        evaluator.count = 0;
+        assertFalse(evaluate("value=false && value=true"));
+        assertEquals(1, evaluator.count);
+
+        // a later connector may still need the next term
+        evaluator.count = 0;
+        assertTrue(evaluate("value=false && value=true || value=true"));
+        assertEquals(2, evaluator.count);
+    }
+
+    @Test
+    public void testParseOnce() throws Exception {
+
+        ACLExpression expression = ACLExpression.parse("value=true && value!=false", evaluators);
+        assertEquals("value=true && value!=false", expression.getExpressions());
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(expression.evaluate(authToken));
+        }
+        assertEquals(6, evaluator.count);
+    }
+
+    @Test
+    public void testTrailingConnector() throws Exception {
+        assertTrue(evaluate("value=true ||"));
+        assertFalse(evaluate("value=false &&"));
+    }
+
+    @Test
+    public void testUnknownEvaluator() throws Exception {
+        assertFalse(evaluate("unknown=true"));
+        assertTrue(evaluate("unknown=true || value=true"));
+    }
+
+    @Test
+    public void testCacheable() throws Exception {
+
+        evaluators.put("user", new UserAccessEvaluator());
+
+        assertTrue(ACLExpression.parse("user=\"admin\"", evaluators).isCacheable());
+        assertTrue(ACLExpression.parse("unknown=true", evaluators).isCacheable());
+
+        // the result may depend on the request
+        assertFalse(ACLExpression.parse("value=true", evaluators).isCacheable());
+        assertFalse(ACLExpression.parse("user=\"admin\" || value=true", evaluators).isCacheable());
+    }
+}
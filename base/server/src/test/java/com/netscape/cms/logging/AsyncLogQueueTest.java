@@ -0,0 +1,359 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cms.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AsyncLogQueueTest {
+
+    @Test
+    public void testCommit() throws Exception {
+
+        AsyncLogQueue<String> queue = new AsyncLogQueue<>(4);
+        queue.start("test", q -> {});
+        queue.stop();
+
+        // stopped queue does not accept entries
+        assertNull(queue.put("a"));
+
+        queue = new AsyncLogQueue<>(4);
+        queue.start("test", q -> {});
+
+        try {
+            AsyncLogQueue.Ticket ticket = queue.put("a");
+            assertNotNull(ticket);
+
+            // written but not committed
+            assertEquals("a", queue.poll());
+            assertFalse(ticket.isDone());
+
+            queue.commit();
+            assertTrue(ticket.isDone());
+            ticket.await();
+
+        } finally {
+            queue.stop();
+        }
+    }
+
+    @Test
+    public void testFail() throws Exception {
+
+        AsyncLogQueue<String> queue = new AsyncLogQueue<>(4);
+        queue.start("test", q -> {});
+
+        try {
+            AsyncLogQueue.Ticket t1 = queue.put("a");
+            AsyncLogQueue.Ticket t2 = queue.put("b");
+
+            IOException error = new IOException("disk full");
+
+            queue.poll();
+            queue.fail(error);
+            queue.poll();
+            queue.commit();
+
+            try {
+                t1.await();
+                fail("Expected IOException");
+            } catch (IOException e) {
+                assertSame(error, e);
+            }
+
+            t2.await();
+
+        } finally {
+            queue.stop();
+        }
+    }
+
+    @Test
+    public void testWriterException() throws Exception {
+
+        RuntimeException error = new RuntimeException("writer failed");
+
+        AsyncLogQueue<String> queue = new AsyncLogQueue<>(4);
+        queue.start("test", q -> {
+            q.poll();
+            throw error;
+        });
+
+        try {
+            AsyncLogQueue.Ticket ticket = queue.put("a");
+
+            try {
+                ticket.await();
+                fail("Expected RuntimeException");
+            } catch (RuntimeException e) {
+                assertSame(error, e);
+            }
+
+        } finally {
+            queue.stop();
+        }
+    }
+
+    @Test
+    public void testWriterError() throws Exception {
+
+        AsyncLogQueue<String> queue = new AsyncLogQueue<>(4);
+        queue.start("test", q -> {
+            q.poll();
+            throw new OutOfMemoryError("no memory");
+        });
+
+        try {
+            AsyncLogQueue.Ticket ticket = queue.put("a");
+
+            try {
+                ticket.await();
+                fail("Expected Exception");
+            } catch (Exception e) {
+                assertTrue(e.getCause() instanceof OutOfMemoryError);
+            }
+
+        } finally {
+            queue.stop();
+        }
+    }
+
+    @Test
+    public void testWaitForWrite() throws Exception {
+
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = new CountDownLatch(1);
+
+        AsyncLogQueue<String> queue = new AsyncLogQueue<>(4);
+        queue.start("test", q -> {
+            release.await();
+            String entry;
+            while ((entry = q.poll()) != null) {
+                log.add(entry);
+            }
+            q.commit();
+        });
+
+        try {
+            AsyncLogQueue.Ticket ticket = queue.put("a");
+
+            // the writer has not written the entry yet
+            Thread.sleep(50);
+            assertFalse(ticket.isDone());
+
+            release.countDown();
+            ticket.await();
+
+            assertEquals(Collections.singletonList("a"), log);
+
+        } finally {
+            queue.stop();
+        }
+    }
+
+    @Test
+    public void testInterruptedWait() throws Exception {
+
+        AsyncLogQueue<String> queue = new AsyncLogQueue<>(4);
+        queue.start("test", q -> {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+        });
+
+        try {
+            AsyncLogQueue.Ticket ticket = queue.put("a");
+
+            Thread.currentThread().interrupt();
+
+            try {
+                ticket.await();
+                fail("Expected InterruptedException");
+            } catch (InterruptedException e) {
+                // expected
+            }
+
+        } finally {
+            queue.stop();
+        }
+    }
+
+    @Test
+    public void testWrapAround() throws Exception {
+
+        AsyncLogQueue<String> queue = new AsyncLogQueue<>(4);
+        assertEquals(4, queue.getCapacity());
+
+        // reuse each slot several times
+        for (int i = 0; i < 10; i++) {
+
+            for (int j = 0; j < 3; j++) {
+                assertTrue(queue.offer(i + "-" + j, new AsyncLogQueue.Ticket()));
+            }
+
+            assertEquals(3, queue.size());
+
+            for (int j = 0; j < 3; j++) {
+                assertEquals(i + "-" + j, queue.poll());
+            }
+
+            assertNull(queue.poll());
+            assertTrue(queue.isEmpty());
+            queue.commit();
+        }
+    }
+
+    @Test
+    public void testQueueFull() throws Exception {
+
+        AsyncLogQueue<String> queue = new AsyncLogQueue<>(4);
+        queue.start("test", q -> {});
+
+        try {
+            for (int i = 0; i < 4; i++) {
+                assertNotNull(queue.put("" + i));
+            }
+
+            assertFalse(queue.offer("x", new AsyncLogQueue.Ticket()));
+
+            CountDownLatch queued = new CountDownLatch(1);
+
+            Thread producer = new Thread(() -> {
+                try {
+                    queue.put("4");
+                    queued.countDown();
+                } catch (InterruptedException e) {
+                    // test will fail
+                }
+            });
+            producer.start();
+
+            // the producer waits for space
+            assertFalse(queued.await(50, TimeUnit.MILLISECONDS));
+
+            assertEquals("0", queue.poll());
+            assertTrue(queued.await(5, TimeUnit.SECONDS));
+            producer.join();
+
+            for (int i = 1; i <= 4; i++) {
+                assertEquals("" + i, queue.poll());
+            }
+
+            assertNull(queue.poll());
+
+        } finally {
+            queue.stop();
+        }
+    }
+
+    @Test
+    public void testStopWithQueuedEntries() throws Exception {
+
+        AsyncLogQueue<String> queue = new AsyncLogQueue<>(4);
+        queue.start("test", q -> {});
+
+        AsyncLogQueue.Ticket t1 = queue.put("a");
+        AsyncLogQueue.Ticket t2 = queue.put("b");
+
+        queue.stop();
+
+        // new entries have to be written by the caller
+        assertNull(queue.put("c"));
+
+        // queued entries can still be written
+        assertEquals("a", queue.poll());
+        assertEquals("b", queue.poll());
+        assertNull(queue.poll());
+
+        queue.commit();
+        t1.await();
+        t2.await();
+    }
+
+    @Test
+    public void testMultipleProducers() throws Exception {
+
+        int producers = 4;
+        int entries = 1000;
+
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+
+        AsyncLogQueue<String> queue = new AsyncLogQueue<>(8);
+        queue.start("test", q -> {
+            String entry;
+            while ((entry = q.poll()) != null) {
+                log.add(entry);
+            }
+            q.commit();
+        });
+
+        try {
+            List<Thread> threads = new ArrayList<>();
+            List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+
+            for (int i = 0; i < producers; i++) {
+                int producer = i;
+                Thread thread = new Thread(() -> {
+                    try {
+                        List<AsyncLogQueue.Ticket> tickets = new ArrayList<>();
+                        for (int j = 0; j < entries; j++) {
+                            tickets.add(queue.put(producer + ":" + j));
+                        }
+                        for (AsyncLogQueue.Ticket ticket : tickets) {
+                            ticket.await();
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(Collections.emptyList(), errors);
+            assertEquals(producers * entries, log.size());
+
+            // each producer's entries are written once, in order
+            int[] next = new int[producers];
+            for (String entry : log) {
+                String[] parts = entry.split(":");
+                int producer = Integer.parseInt(parts[0]);
+                assertEquals(next[producer]++, Integer.parseInt(parts[1]));
+            }
+
+        } finally {
+            queue.stop();
+        }
+    }
+}
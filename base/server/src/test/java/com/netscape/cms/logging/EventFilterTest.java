@@ -0,0 +1,149 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cms.logging;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.netscape.certsrv.logging.SignedAuditEvent;
+
+import netscape.ldap.client.JDAPFilter;
+
+/**
+ * Verifies that compiled event filters give the same results as
+ * the filter evaluation in LogFile.
+ */
+public class EventFilterTest {
+
+    static final String[] FILTERS = {
+
+        // present
+        "(Outcome=*)",
+        "(InfoName=*)",
+
+        // equality
+        "(Outcome=Failure)",
+        "(Outcome=failure)",
+        "(SubjectID=admin)",
+        "(CertSerialNum=12345)",
+
+        // substring
+        "(SubjectID=adm*)",
+        "(SubjectID=*min)",
+        "(SubjectID=*dm*)",
+        "(SubjectID=a*n)",
+        "(SubjectID=a*m*n)",
+        "(SubjectID=ad*dm*in)",
+        "(SubjectID=adm*min)",
+        "(SubjectID=ab*ab)",
+        "(InfoName=*Reason*)",
+        "(InfoName=revoke*reason)",
+        "(InfoValue=*1*2*3*)",
+        "(CertSerialNum=1*)",
+
+        // and, or, not
+        "(&(Outcome=Failure)(SubjectID=admin))",
+        "(|(InfoName=revokeReason)(InfoName=holdInstruction))",
+        "(!(Outcome=Success))",
+        "(!(InfoName=*))",
+        "(&(Outcome=*)(|(SubjectID=adm*)(!(ReqID=*))))",
+        "(|(&(Outcome=Success)(InfoValue=*3))(!(|(SubjectID=agent*)(SubjectID=*admin))))"
+    };
+
+    static List<SignedAuditEvent> createEvents() {
+
+        List<SignedAuditEvent> events = new ArrayList<>();
+
+        // no attributes
+        events.add(new SignedAuditEvent());
+
+        String[] subjectIDs = { "admin", "ADMIN", "agentadmin", "adm", "ab", "aba", "abab", "adminx", "" };
+        String[] outcomes = { "Success", "Failure", "FAILURE", null };
+        String[] infoNames = { "revokeReason", "holdInstruction", "RevokeReason", null };
+        String[] infoValues = { "1-2-3", "321", "0", null };
+
+        for (String subjectID : subjectIDs) {
+            for (String outcome : outcomes) {
+                for (int i = 0; i < infoNames.length; i++) {
+                    SignedAuditEvent event = new SignedAuditEvent();
+                    event.setAttribute("SubjectID", subjectID);
+                    if (outcome != null) event.setAttribute("Outcome", outcome);
+                    if (infoNames[i] != null) event.setAttribute("InfoName", infoNames[i]);
+                    if (infoValues[i] != null) event.setAttribute("InfoValue", infoValues[i]);
+                    if (i % 2 == 0) event.setAttribute("ReqID", "" + i);
+                    events.add(event);
+                }
+            }
+        }
+
+        // non-string attributes never match equality or substring filters
+        SignedAuditEvent event = new SignedAuditEvent();
+        event.setAttribute("CertSerialNum", new BigInteger("12345"));
+        event.setAttribute("Outcome", "Failure");
+        events.add(event);
+
+        event = new SignedAuditEvent();
+        event.setAttribute("CertSerialNum", "12345");
+        events.add(event);
+
+        return events;
+    }
+
+    @Test
+    public void testFilters() throws Exception {
+
+        LogFile logFile = new LogFile();
+        List<SignedAuditEvent> events = createEvents();
+
+        for (String strFilter : FILTERS) {
+
+            JDAPFilter filter = JDAPFilter.getFilter(strFilter);
+            EventFilter compiledFilter = EventFilter.compile(filter);
+
+            for (SignedAuditEvent event : events) {
+                boolean expected = logFile.eval(event, filter);
+                boolean actual = compiledFilter.matches(event);
+                assertEquals(strFilter + " " + event.getAttributes(), expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testMatches() throws Exception {
+
+        SignedAuditEvent event = new SignedAuditEvent();
+        event.setAttribute("SubjectID", "caadmin");
+        event.setAttribute("Outcome", "Failure");
+
+        assertEquals(true, compile("(Outcome=failure)").matches(event));
+        assertEquals(true, compile("(SubjectID=ca*admin)").matches(event));
+        assertEquals(false, compile("(SubjectID=caad*admin)").matches(event));
+        assertEquals(false, compile("(InfoName=*)").matches(event));
+        assertEquals(true, compile("(!(InfoName=*))").matches(event));
+        assertEquals(false, compile("(&(Outcome=Failure)(SubjectID=agent))").matches(event));
+    }
+
+    EventFilter compile(String filter) {
+        return EventFilter.compile(JDAPFilter.getFilter(filter));
+    }
+}
@@ -0,0 +1,163 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cms.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.netscape.certsrv.logging.ILogEvent;
+import com.netscape.certsrv.logging.ILogger;
+import com.netscape.cmscore.apps.CMSEngine;
+
+public class LogFileTest {
+
+    File file;
+    KeyPair keyPair;
+    LogFile logFile;
+
+    @Before
+    public void setUp() throws Exception {
+
+        new CMSEngine("CA");
+
+        file = File.createTempFile("signedAudit", ".log");
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+
+        logFile = new LogFile();
+        logFile.init(file.getAbsolutePath(), 8192, 0);
+        logFile.mLogSigning = true;
+        logFile.initSigning(keyPair.getPrivate(), Signature.getInstance("SHA256withRSA"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (logFile.asyncQueue != null) {
+            logFile.asyncQueue.stop();
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testAsyncSignedLog() throws Exception {
+
+        int threads = 4;
+        int events = 200;
+
+        logFile.asyncAll = true;
+        logFile.asyncBatchSize = 16;
+        logFile.startAsyncQueue(64);
+
+        List<Thread> producers = new ArrayList<>();
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+
+        for (int i = 0; i < threads; i++) {
+            int producer = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int j = 0; j < events; j++) {
+                        ILogEvent ev = SignedAuditLogger.getLogger().create(
+                                ILogger.LL_SECURITY,
+                                "[AuditEvent=TEST][Event=" + producer + ":" + j + "] test event",
+                                null,
+                                ILogger.L_SINGLELINE);
+                        assertTrue(logFile.enqueue(logFile.asyncQueue, ev));
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+            producers.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : producers) {
+            thread.join();
+        }
+
+        assertEquals(Collections.emptyList(), errors);
+
+        logFile.asyncQueue.stop();
+        while (!logFile.asyncQueue.isEmpty()) {
+            logFile.writeQueuedEntries(logFile.asyncQueue);
+        }
+        logFile.close();
+
+        // verify the log the way AuditVerify does
+        PublicKey publicKey = keyPair.getPublic();
+        Signature verifier = Signature.getInstance("SHA256withRSA");
+
+        int eventCount = 0;
+        int signatureCount = 0;
+        boolean verifySignature = false;
+
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+
+                if (line.contains("AUDIT_LOG_SIGNING")) {
+
+                    if (verifySignature) {
+                        String signature = line.substring(line.indexOf("sig: ") + 5);
+                        assertTrue("Invalid signature: " + line,
+                                verifier.verify(Base64.getMimeDecoder().decode(signature)));
+                        signatureCount++;
+                    }
+
+                    // the first signature signs data before this log
+                    verifySignature = true;
+                    verifier.initVerify(publicKey);
+                }
+
+                if (line.contains("[AuditEvent=TEST]")) {
+                    eventCount++;
+                }
+
+                if (verifySignature) {
+                    verifier.update(line.getBytes(StandardCharsets.UTF_8));
+                    verifier.update((byte) '\n');
+                }
+            }
+        }
+
+        assertEquals(threads * events, eventCount);
+
+        // signed at the buffer threshold, not once per batch
+        assertTrue(signatureCount > 1);
+        assertTrue(signatureCount < threads * events / logFile.asyncBatchSize);
+    }
+}
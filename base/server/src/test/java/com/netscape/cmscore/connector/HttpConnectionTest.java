@@ -0,0 +1,301 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.connector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.jss.ssl.SSLCertificateApprovalCallback;
+import org.mozilla.jss.ssl.SSLClientCertificateSelectionCallback;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.cmsutil.http.Http;
+import com.netscape.cmsutil.http.HttpEofException;
+import com.netscape.cmsutil.http.HttpRequest;
+import com.netscape.cmsutil.http.HttpResponse;
+import com.netscape.cmsutil.net.ISocketFactory;
+
+/**
+ * Sends requests over a loopback connection that the server drops
+ * at various points to verify that a request is only resent if the
+ * server could not have processed it.
+ */
+public class HttpConnectionTest {
+
+    enum Action {
+        RESPOND,
+        RESPOND_AND_CLOSE, // respond, then close the connection as if idle
+        DROP,              // close the connection without responding
+        TRUNCATE,          // close the connection in the middle of the response
+        STALL              // don't respond
+    }
+
+    static class PlainSocketFactory implements ISocketFactory {
+
+        @Override
+        public Socket makeSocket(String host, int port) throws IOException {
+            return makeSocket(host, port, 0);
+        }
+
+        @Override
+        public Socket makeSocket(String host, int port, int timeout) throws IOException {
+            Socket socket = new Socket();
+            socket.connect(new InetSocketAddress(host, port), timeout);
+            socket.setSoTimeout(timeout);
+            return socket;
+        }
+
+        @Override
+        public Socket makeSocket(String host, int port,
+                SSLCertificateApprovalCallback certApprovalCallback,
+                SSLClientCertificateSelectionCallback clientCertCallback,
+                int timeout) throws IOException {
+            return makeSocket(host, port, timeout);
+        }
+    }
+
+    ServerSocket serverSocket;
+    Thread serverThread;
+
+    AtomicInteger connections = new AtomicInteger();
+    AtomicInteger requests = new AtomicInteger();
+
+    // actions for the next requests, RESPOND by default
+    ConcurrentLinkedQueue<Action> actions = new ConcurrentLinkedQueue<>();
+
+    // released when the server closes a connection
+    Semaphore closed = new Semaphore(0);
+
+    @Before
+    public void setUp() throws Exception {
+
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+
+        serverThread = new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+
+                    Thread handler = new Thread(() -> handle(socket));
+                    handler.setDaemon(true);
+                    handler.start();
+
+                } catch (IOException e) {
+                    // server closed
+                }
+            }
+        });
+
+        serverThread.setDaemon(true);
+        serverThread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        serverSocket.close();
+        serverThread.join(1000);
+    }
+
+    void handle(Socket socket) {
+
+        try (Socket s = socket) {
+
+            InputStream is = new BufferedInputStream(s.getInputStream());
+            OutputStream os = s.getOutputStream();
+
+            while (true) {
+                HttpRequest request = new HttpRequest();
+                try {
+                    request.parse(is);
+                } catch (HttpEofException e) {
+                    return;
+                }
+
+                requests.incrementAndGet();
+
+                Action action = actions.poll();
+                if (action == null) {
+                    action = Action.RESPOND;
+                }
+
+                if (action == Action.DROP) {
+                    return;
+                }
+
+                if (action == Action.STALL) {
+                    // keep the connection open until the client gives up
+                    while (is.read() >= 0) {
+                        // discard
+                    }
+                    return;
+                }
+
+                byte[] body = ("echo:" + request.getContent()).getBytes(StandardCharsets.UTF_8);
+
+                String header = Http.Vers1_1 + " 200 OK\r\n"
+                        + "Content-Type: text/plain\r\n"
+                        + "Content-Length: " + body.length + "\r\n\r\n";
+
+                os.write(header.getBytes(StandardCharsets.ISO_8859_1));
+
+                if (action == Action.TRUNCATE) {
+                    os.write(body, 0, body.length / 2);
+                    os.flush();
+                    return;
+                }
+
+                os.write(body);
+                os.flush();
+
+                if (action == Action.RESPOND_AND_CLOSE) {
+                    return;
+                }
+            }
+
+        } catch (IOException e) {
+            // connection closed
+
+        } finally {
+            closed.release();
+        }
+    }
+
+    HttpConnection createConnection(int timeout) {
+
+        RemoteAuthority dest = new RemoteAuthority(
+                "127.0.0.1", serverSocket.getLocalPort(), "/test", timeout);
+
+        return new HttpConnection(dest, new PlainSocketFactory(), timeout);
+    }
+
+    @Test
+    public void testKeepAlive() throws Exception {
+
+        HttpConnection conn = createConnection(5);
+
+        for (int i = 0; i < 3; i++) {
+            HttpResponse response = conn.send("request " + i);
+            assertEquals("echo:request " + i, response.getContent());
+        }
+
+        assertEquals(3, requests.get());
+        assertEquals(1, connections.get());
+    }
+
+    @Test
+    public void testStaleConnection() throws Exception {
+
+        actions.addAll(Arrays.asList(Action.RESPOND_AND_CLOSE, Action.RESPOND));
+
+        HttpConnection conn = createConnection(5);
+        conn.send("request 1");
+
+        // the server closes the connection while it is idle
+        closed.tryAcquire(5, TimeUnit.SECONDS);
+
+        // the request is resent over a new connection
+        HttpResponse response = conn.send("request 2");
+        assertEquals("echo:request 2", response.getContent());
+
+        assertEquals(2, requests.get());
+        assertEquals(2, connections.get());
+    }
+
+    @Test
+    public void testResendOnce() throws Exception {
+
+        actions.addAll(Arrays.asList(Action.RESPOND_AND_CLOSE, Action.DROP));
+
+        HttpConnection conn = createConnection(5);
+        conn.send("request 1");
+        closed.tryAcquire(5, TimeUnit.SECONDS);
+
+        // the resent request gets no response either
+        try {
+            conn.send("request 2");
+            fail("Expected EBaseException");
+        } catch (EBaseException e) {
+            // resent only once
+        }
+
+        assertEquals(2, requests.get());
+        assertEquals(2, connections.get());
+    }
+
+    @Test
+    public void testTruncatedResponse() throws Exception {
+
+        actions.addAll(Arrays.asList(Action.RESPOND, Action.TRUNCATE));
+
+        HttpConnection conn = createConnection(5);
+        conn.send("request 1");
+
+        try {
+            conn.send("request 2");
+            fail("Expected EBaseException");
+        } catch (EBaseException e) {
+            // the server has processed the request, don't resend
+        }
+
+        assertEquals(2, requests.get());
+        assertEquals(1, connections.get());
+
+        // the next request uses a new connection
+        HttpResponse response = conn.send("request 3");
+        assertEquals("echo:request 3", response.getContent());
+        assertEquals(2, connections.get());
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception {
+
+        actions.addAll(Arrays.asList(Action.RESPOND, Action.STALL));
+
+        HttpConnection conn = createConnection(1);
+        conn.send("request 1");
+
+        try {
+            conn.send("request 2");
+            fail("Expected EBaseException");
+        } catch (EBaseException e) {
+            // the server may still process the request, don't resend
+        }
+
+        assertEquals(2, requests.get());
+        assertEquals(1, connections.get());
+    }
+}
@@ -0,0 +1,167 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.connector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Hashtable;
+
+import org.junit.Test;
+import org.mozilla.jss.netscape.security.util.Utils;
+
+public class HttpRequestEncoderTest {
+
+    HttpPKIMessage createMessage() {
+
+        HttpPKIMessage msg = new HttpPKIMessage();
+        msg.reqType = "enrollment";
+        msg.reqId = "12345";
+        msg.reqStatus = "pending";
+        msg.reqRealm = null;
+
+        Hashtable<String, String> table = new Hashtable<>();
+        table.put("name", "caf\u00e9 \u4e2d\u6587");
+        table.put("empty", "");
+
+        msg.mNameVals.addElement("cert_request");
+        msg.mNameVals.addElement("MIIBIjANBgkqhkiG9w0BAQEFAAOCAQ8AMIIBCgKCAQEA");
+        msg.mNameVals.addElement("attributes");
+        msg.mNameVals.addElement(table);
+
+        return msg;
+    }
+
+    void assertMessageEquals(HttpPKIMessage expected, HttpPKIMessage actual) {
+        assertEquals(expected.reqType, actual.reqType);
+        assertEquals(expected.reqId, actual.reqId);
+        assertEquals(expected.reqStatus, actual.reqStatus);
+        assertEquals(expected.reqRealm, actual.reqRealm);
+        assertEquals(expected.mNameVals, actual.mNameVals);
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws Exception {
+
+        HttpPKIMessage msg = createMessage();
+        HttpRequestEncoder encoder = new HttpRequestEncoder(HttpRequestEncoder.FORMAT_BINARY);
+
+        String encoded = encoder.encode(msg);
+        assertTrue(encoded.startsWith(HttpRequestEncoder.BINARY_PREFIX));
+        assertEquals(HttpRequestEncoder.FORMAT_BINARY, HttpRequestEncoder.getFormat(encoded));
+
+        assertMessageEquals(msg, (HttpPKIMessage) encoder.decode(encoded));
+    }
+
+    @Test
+    public void testSerializedRoundTrip() throws Exception {
+
+        HttpPKIMessage msg = createMessage();
+        msg.reqRealm = "";
+
+        HttpRequestEncoder encoder = new HttpRequestEncoder();
+        String encoded = encoder.encode(msg);
+        assertEquals(HttpRequestEncoder.FORMAT_SERIALIZED, HttpRequestEncoder.getFormat(encoded));
+
+        // binary decoder still accepts the serialized format
+        HttpRequestEncoder decoder = new HttpRequestEncoder(HttpRequestEncoder.FORMAT_BINARY);
+        assertMessageEquals(msg, (HttpPKIMessage) decoder.decode(encoded));
+    }
+
+    @Test
+    public void testBinaryIsSmaller() throws Exception {
+
+        HttpPKIMessage msg = createMessage();
+        HttpRequestEncoder encoder = new HttpRequestEncoder();
+
+        String serialized = encoder.encode(msg, HttpRequestEncoder.FORMAT_SERIALIZED);
+        String binary = encoder.encode(msg, HttpRequestEncoder.FORMAT_BINARY);
+
+        assertTrue(binary.length() < serialized.length());
+    }
+
+    @Test
+    public void testSkipUnsupportedValue() throws Exception {
+
+        HttpPKIMessage msg = createMessage();
+        msg.mNameVals.addElement("date");
+        msg.mNameVals.addElement(new Date());
+
+        HttpRequestEncoder encoder = new HttpRequestEncoder(HttpRequestEncoder.FORMAT_BINARY);
+        HttpPKIMessage decoded = (HttpPKIMessage) encoder.decode(encoder.encode(msg));
+
+        assertMessageEquals(createMessage(), decoded);
+    }
+
+    @Test
+    public void testRejectUnknownVersion() throws Exception {
+
+        HttpRequestEncoder encoder = new HttpRequestEncoder(HttpRequestEncoder.FORMAT_BINARY);
+        byte[] bytes = Base64.getDecoder().decode(
+                encoder.encode(createMessage()).substring(HttpRequestEncoder.BINARY_PREFIX.length()));
+        bytes[0] = (byte) (HttpPKIMessage.BINARY_VERSION + 1);
+
+        try {
+            encoder.decode(HttpRequestEncoder.BINARY_PREFIX + Base64.getEncoder().encodeToString(bytes));
+            fail("Unknown version accepted");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testRejectInvalidLength() throws Exception {
+
+        HttpRequestEncoder encoder = new HttpRequestEncoder(HttpRequestEncoder.FORMAT_BINARY);
+        byte[] bytes = Base64.getDecoder().decode(
+                encoder.encode(createMessage()).substring(HttpRequestEncoder.BINARY_PREFIX.length()));
+
+        // set the reqType length beyond the end of the message
+        bytes[1] = 0x7f;
+
+        try {
+            encoder.decode(HttpRequestEncoder.BINARY_PREFIX + Base64.getEncoder().encodeToString(bytes));
+            fail("Invalid length accepted");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testRejectSerializedClass() throws Exception {
+
+        ByteArrayOutputStream ba = new ByteArrayOutputStream();
+        ObjectOutputStream os = new ObjectOutputStream(ba);
+        os.writeObject(new Date());
+
+        HttpRequestEncoder encoder = new HttpRequestEncoder();
+
+        try {
+            encoder.decode(Utils.base64encode(ba.toByteArray(), true));
+            fail("Unexpected class accepted");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
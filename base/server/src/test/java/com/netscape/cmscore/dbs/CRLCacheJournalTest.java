@@ -0,0 +1,168 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.dbs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.Vector;
+
+import org.junit.Test;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+
+import netscape.ldap.LDAPAttribute;
+import netscape.ldap.LDAPAttributeSet;
+
+public class CRLCacheJournalTest {
+
+    static final long NOW = 1650000000000L;
+
+    CRLCacheJournalEntry createEntry(int type, long sequence, long serial) throws Exception {
+
+        RevokedCertImpl revokedCert;
+
+        if (type == CRLCacheJournalEntry.REVOKED_CERT) {
+            revokedCert = RevokedCertsMapperTest.createRevokedCert(
+                    BigInteger.valueOf(serial), new Date(NOW + sequence),
+                    RevocationReason.KEY_COMPROMISE, null);
+
+        } else {
+            CRLExtensions exts = new CRLExtensions();
+            exts.set(CRLReasonExtension.REMOVE_FROM_CRL.getName(), CRLReasonExtension.REMOVE_FROM_CRL);
+            revokedCert = new RevokedCertImpl(BigInteger.valueOf(serial), new Date(NOW + sequence), exts);
+        }
+
+        return new CRLCacheJournalEntry(type, sequence, revokedCert);
+    }
+
+    void assertSameEntry(CRLCacheJournalEntry expected, CRLCacheJournalEntry actual) throws Exception {
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getSequence(), actual.getSequence());
+        assertEquals(expected.getSerialNumber(), actual.getSerialNumber());
+        assertEquals(expected.getRevokedCert().getRevocationDate(), actual.getRevokedCert().getRevocationDate());
+        assertArrayEquals(expected.getRevokedCert().getEncoded(), actual.getRevokedCert().getEncoded());
+    }
+
+    @Test
+    public void testEntryRoundTrip() throws Exception {
+
+        CRLCacheJournalEntry[] entries = {
+                createEntry(CRLCacheJournalEntry.REVOKED_CERT, 0, 1),
+                createEntry(CRLCacheJournalEntry.UNREVOKED_CERT, 1, 0x80),
+                createEntry(CRLCacheJournalEntry.EXPIRED_CERT, Long.MAX_VALUE, 0x7fffffffffffffffL)
+        };
+
+        for (CRLCacheJournalEntry entry : entries) {
+            assertSameEntry(entry, CRLCacheJournalEntry.decode(entry.encode()));
+        }
+    }
+
+    @Test
+    public void testInvalidEntry() throws Exception {
+
+        byte[] data = createEntry(CRLCacheJournalEntry.REVOKED_CERT, 5, 10).encode();
+
+        byte[] version = data.clone();
+        version[0] = (byte) (CRLCacheJournalEntry.VERSION + 1);
+        assertThrows(IOException.class, () -> CRLCacheJournalEntry.decode(version));
+
+        byte[] type = data.clone();
+        type[1] = 0;
+        assertThrows(IOException.class, () -> CRLCacheJournalEntry.decode(type));
+
+        byte[] truncated = new byte[data.length - 2];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        assertThrows(IOException.class, () -> CRLCacheJournalEntry.decode(truncated));
+    }
+
+    @Test
+    public void testMapperRoundTrip() throws Exception {
+
+        CRLCacheJournalMapper mapper = new CRLCacheJournalMapper(CRLDBSchema.LDAP_ATTR_CRL_CACHE_JOURNAL);
+
+        // LDAP does not preserve the order of the values
+        Vector<CRLCacheJournalEntry> entries = new Vector<>();
+        entries.add(createEntry(CRLCacheJournalEntry.UNREVOKED_CERT, 2, 1));
+        entries.add(createEntry(CRLCacheJournalEntry.REVOKED_CERT, 0, 1));
+        entries.add(createEntry(CRLCacheJournalEntry.EXPIRED_CERT, 3, 2));
+        entries.add(createEntry(CRLCacheJournalEntry.REVOKED_CERT, 1, 2));
+
+        CRLIssuingPointRecord record = new CRLIssuingPointRecord();
+        LDAPAttributeSet attrs = new LDAPAttributeSet();
+        mapper.mapObjectToLDAPAttributeSet(record, CRLIssuingPointRecord.ATTR_CRL_CACHE_JOURNAL, entries, attrs);
+
+        LDAPAttribute attr = attrs.getAttribute(CRLDBSchema.LDAP_ATTR_CRL_CACHE_JOURNAL);
+        assertEquals(entries.size(), attr.size());
+
+        mapper.mapLDAPAttributeSetToObject(attrs, CRLIssuingPointRecord.ATTR_CRL_CACHE_JOURNAL, record);
+
+        Vector<CRLCacheJournalEntry> result = record.getCRLCacheJournal();
+        assertEquals(entries.size(), result.size());
+
+        // entries are returned in sequence order
+        for (int i = 0; i < result.size(); i++) {
+            assertEquals(i, result.get(i).getSequence());
+        }
+
+        assertSameEntry(entries.get(1), result.get(0));
+        assertSameEntry(entries.get(3), result.get(1));
+        assertSameEntry(entries.get(0), result.get(2));
+        assertSameEntry(entries.get(2), result.get(3));
+    }
+
+    @Test
+    public void testMapperSingleEntry() throws Exception {
+
+        CRLCacheJournalMapper mapper = new CRLCacheJournalMapper(CRLDBSchema.LDAP_ATTR_CRL_CACHE_JOURNAL);
+        CRLCacheJournalEntry entry = createEntry(CRLCacheJournalEntry.REVOKED_CERT, 7, 42);
+
+        LDAPAttributeSet attrs = new LDAPAttributeSet();
+        mapper.mapObjectToLDAPAttributeSet(null, CRLIssuingPointRecord.ATTR_CRL_CACHE_JOURNAL, entry, attrs);
+
+        LDAPAttribute attr = attrs.getAttribute(CRLDBSchema.LDAP_ATTR_CRL_CACHE_JOURNAL);
+        Enumeration<byte[]> values = attr.getByteValues();
+        assertSameEntry(entry, CRLCacheJournalEntry.decode(values.nextElement()));
+    }
+
+    @Test
+    public void testMapperEmpty() throws Exception {
+
+        CRLCacheJournalMapper mapper = new CRLCacheJournalMapper(CRLDBSchema.LDAP_ATTR_CRL_CACHE_JOURNAL);
+        CRLIssuingPointRecord record = new CRLIssuingPointRecord();
+
+        // missing attribute
+        mapper.mapLDAPAttributeSetToObject(new LDAPAttributeSet(),
+                CRLIssuingPointRecord.ATTR_CRL_CACHE_JOURNAL, record);
+        assertNull(record.getCRLCacheJournal());
+
+        // empty journal used to remove the attribute values
+        LDAPAttributeSet attrs = new LDAPAttributeSet();
+        mapper.mapObjectToLDAPAttributeSet(record, CRLIssuingPointRecord.ATTR_CRL_CACHE_JOURNAL,
+                new Vector<CRLCacheJournalEntry>(), attrs);
+        assertEquals(0, attrs.getAttribute(CRLDBSchema.LDAP_ATTR_CRL_CACHE_JOURNAL).size());
+    }
+}
@@ -0,0 +1,356 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.dbs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class CertStatusCacheTest {
+
+    static final long NOW = 1650000000000L;
+
+    static class TestCache extends CertStatusCache {
+
+        Map<BigInteger, CertRecord> records = new ConcurrentHashMap<>();
+        AtomicInteger reads = new AtomicInteger();
+        long now = NOW;
+
+        // runs while a record is being read
+        Runnable reading;
+
+        TestCache(int maxEntries, int maxAge) {
+            super(null);
+            init(maxEntries, maxAge);
+        }
+
+        @Override
+        long getCurrentTime() {
+            return now;
+        }
+
+        @Override
+        CertRecord readCertificateRecord(BigInteger serialNumber) {
+            reads.incrementAndGet();
+            CertRecord record = records.get(serialNumber);
+            if (reading != null) {
+                reading.run();
+            }
+            return record;
+        }
+
+        void setStatus(long serialNumber, String status) throws Exception {
+            BigInteger serial = BigInteger.valueOf(serialNumber);
+            CertRecord record = new CertRecord(serial, null, null);
+            record.set(CertRecord.ATTR_CERT_STATUS, status);
+            records.put(serial, record);
+        }
+
+        String getStatus(long serialNumber) throws Exception {
+            Entry entry = get(BigInteger.valueOf(serialNumber));
+            return entry == null ? null : entry.getStatus();
+        }
+    }
+
+    /**
+     * Returns serial numbers stored in the same segment.
+     */
+    static List<Long> getSerialNumbersInSegment(CertStatusCache cache, int count) {
+
+        List<Long> serialNumbers = new ArrayList<>();
+        CertStatusCache.Segment segment = cache.getSegment(BigInteger.ONE);
+
+        for (long serialNumber = 1; serialNumbers.size() < count; serialNumber++) {
+            if (cache.getSegment(BigInteger.valueOf(serialNumber)) == segment) {
+                serialNumbers.add(serialNumber);
+            }
+        }
+
+        return serialNumbers;
+    }
+
+    @Test
+    public void testGet() throws Exception {
+
+        TestCache cache = new TestCache(100, 0);
+        cache.setStatus(1, CertRecord.STATUS_VALID);
+
+        assertEquals(CertRecord.STATUS_VALID, cache.getStatus(1));
+        assertEquals(1, cache.getMisses());
+
+        CertStatusCache.Entry entry = cache.get(BigInteger.ONE);
+        assertSame(entry, cache.get(BigInteger.ONE));
+        assertEquals(1, cache.reads.get());
+        assertEquals(2, cache.getHits());
+
+        // unknown certs are not cached
+        assertNull(cache.getStatus(2));
+        assertNull(cache.getStatus(2));
+        assertEquals(3, cache.reads.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+
+        TestCache cache = new TestCache(100, 10);
+        cache.setStatus(1, CertRecord.STATUS_VALID);
+
+        assertEquals(CertRecord.STATUS_VALID, cache.getStatus(1));
+
+        // changed on another clone without notification
+        cache.setStatus(1, CertRecord.STATUS_REVOKED);
+
+        cache.now += 9999;
+        assertEquals(CertRecord.STATUS_VALID, cache.getStatus(1));
+
+        cache.now += 1;
+        assertEquals(CertRecord.STATUS_REVOKED, cache.getStatus(1));
+        assertEquals(2, cache.reads.get());
+    }
+
+    @Test
+    public void testNoMaxAge() throws Exception {
+
+        TestCache cache = new TestCache(100, 0);
+        cache.setStatus(1, CertRecord.STATUS_VALID);
+
+        assertEquals(CertRecord.STATUS_VALID, cache.getStatus(1));
+
+        cache.now += 365L * 24 * 60 * 60 * 1000;
+        assertEquals(CertRecord.STATUS_VALID, cache.getStatus(1));
+        assertEquals(1, cache.reads.get());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+
+        // two entries per segment
+        TestCache cache = new TestCache(2 * CertStatusCache.SEGMENTS, 0);
+
+        List<Long> serialNumbers = getSerialNumbersInSegment(cache, 3);
+        long serial1 = serialNumbers.get(0);
+        long serial2 = serialNumbers.get(1);
+        long serial3 = serialNumbers.get(2);
+
+        for (long serialNumber : serialNumbers) {
+            cache.setStatus(serialNumber, CertRecord.STATUS_VALID);
+        }
+
+        cache.getStatus(serial1);
+        cache.getStatus(serial2);
+
+        // serial2 becomes the least recently used entry
+        cache.getStatus(serial1);
+
+        cache.getStatus(serial3);
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.reads.get());
+
+        cache.getStatus(serial1);
+        cache.getStatus(serial3);
+        assertEquals(3, cache.reads.get());
+
+        cache.getStatus(serial2);
+        assertEquals(4, cache.reads.get());
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+
+        TestCache cache = new TestCache(100, 0);
+        cache.setStatus(1, CertRecord.STATUS_VALID);
+        cache.setStatus(2, CertRecord.STATUS_VALID);
+
+        cache.getStatus(1);
+        cache.getStatus(2);
+
+        cache.setStatus(1, CertRecord.STATUS_REVOKED);
+        cache.remove(BigInteger.ONE);
+
+        assertEquals(1, cache.size());
+        assertEquals(CertRecord.STATUS_REVOKED, cache.getStatus(1));
+        assertEquals(CertRecord.STATUS_VALID, cache.getStatus(2));
+        assertEquals(3, cache.reads.get());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+
+        TestCache cache = new TestCache(100, 0);
+        cache.setStatus(1, CertRecord.STATUS_VALID);
+        cache.setStatus(2, CertRecord.STATUS_VALID);
+
+        CertStatusCache.Entry entry = cache.get(BigInteger.ONE);
+
+        // modified on another clone
+        cache.setStatus(1, CertRecord.STATUS_REVOKED);
+        cache.update(cache.records.get(BigInteger.ONE));
+
+        CertStatusCache.Entry updated = cache.get(BigInteger.ONE);
+        assertNotSame(entry, updated);
+        assertEquals(CertRecord.STATUS_REVOKED, updated.getStatus());
+        assertEquals(1, cache.reads.get());
+
+        // certs that are not cached are not added
+        cache.update(cache.records.get(BigInteger.valueOf(2)));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testRemoveWhileReading() throws Exception {
+
+        TestCache cache = new TestCache(100, 0);
+        cache.setStatus(1, CertRecord.STATUS_VALID);
+
+        // the cert is revoked after the record has been read
+        // but before the entry is stored
+        cache.reading = () -> {
+            try {
+                cache.setStatus(1, CertRecord.STATUS_REVOKED);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            cache.remove(BigInteger.ONE);
+        };
+
+        assertEquals(CertRecord.STATUS_VALID, cache.getStatus(1));
+        assertEquals(0, cache.size());
+
+        cache.reading = null;
+        assertEquals(CertRecord.STATUS_REVOKED, cache.getStatus(1));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testUpdateWhileReading() throws Exception {
+
+        TestCache cache = new TestCache(100, 0);
+        cache.setStatus(1, CertRecord.STATUS_VALID);
+
+        cache.reading = () -> {
+            try {
+                cache.setStatus(1, CertRecord.STATUS_REVOKED);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            cache.update(cache.records.get(BigInteger.ONE));
+        };
+
+        // the outdated record is not stored
+        assertEquals(CertRecord.STATUS_VALID, cache.getStatus(1));
+        assertEquals(0, cache.size());
+
+        cache.reading = null;
+        assertEquals(CertRecord.STATUS_REVOKED, cache.getStatus(1));
+    }
+
+    @Test
+    public void testRemoveInOtherSegmentWhileReading() throws Exception {
+
+        TestCache cache = new TestCache(100, 0);
+        cache.setStatus(1, CertRecord.STATUS_VALID);
+
+        BigInteger other = BigInteger.valueOf(2);
+        while (cache.getSegment(other) == cache.getSegment(BigInteger.ONE)) {
+            other = other.add(BigInteger.ONE);
+        }
+
+        BigInteger serialNumber = other;
+        cache.reading = () -> cache.remove(serialNumber);
+
+        // changes to certs in other segments do not prevent caching
+        cache.getStatus(1);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+
+        TestCache cache = new TestCache(64, 0);
+
+        int certs = 256;
+        for (int i = 0; i < certs; i++) {
+            cache.setStatus(i, "0");
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+
+            // modify the records like the repository does
+            for (int t = 0; t < 2; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 5000; i++) {
+                        int serialNumber = (i * 7 + offset) % certs;
+                        synchronized (cache) {
+                            String status = cache.records.get(BigInteger.valueOf(serialNumber)).getStatus();
+                            cache.setStatus(serialNumber, Integer.toString(Integer.parseInt(status) + 1));
+                        }
+                        cache.remove(BigInteger.valueOf(serialNumber));
+                    }
+                    return null;
+                }));
+            }
+
+            for (int t = 0; t < 6; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 20000; i++) {
+                        cache.get(BigInteger.valueOf((i * 13 + offset) % certs));
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // no outdated status was left in the cache
+        for (int i = 0; i < certs; i++) {
+            BigInteger serialNumber = BigInteger.valueOf(i);
+            assertEquals(cache.records.get(serialNumber).getStatus(), cache.get(serialNumber).getStatus());
+        }
+
+        assertTrue(cache.size() <= 64);
+    }
+}
@@ -0,0 +1,159 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.dbs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.Test;
+
+public class CertificateRepositoryTest {
+
+    static List<BigInteger> createSerialNumbers(int start, int count) {
+        List<BigInteger> serialNumbers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            serialNumbers.add(BigInteger.valueOf(start + i));
+        }
+        return serialNumbers;
+    }
+
+    @Test
+    public void testRecordLock() throws Exception {
+
+        CertificateRepository repository = new CertificateRepository(null);
+
+        BigInteger serialNumber = new BigInteger("123456789abcdef", 16);
+        assertSame(repository.getRecordLock(serialNumber), repository.getRecordLock(new BigInteger("123456789abcdef", 16)));
+    }
+
+    @Test
+    public void testLockRecords() throws Exception {
+
+        CertificateRepository repository = new CertificateRepository(null);
+        List<BigInteger> serialNumbers = createSerialNumbers(1, 1000);
+
+        List<Lock> locks = repository.lockRecords(serialNumbers);
+
+        try {
+            // each stripe is locked once
+            assertEquals(locks.size(), locks.stream().distinct().count());
+
+            for (BigInteger serialNumber : serialNumbers) {
+                ReentrantLock lock = (ReentrantLock) repository.getRecordLock(serialNumber);
+                assertTrue(lock.isHeldByCurrentThread());
+                assertEquals(1, lock.getHoldCount());
+            }
+
+        } finally {
+            repository.unlockRecords(locks);
+        }
+
+        for (BigInteger serialNumber : serialNumbers) {
+            ReentrantLock lock = (ReentrantLock) repository.getRecordLock(serialNumber);
+            assertFalse(lock.isLocked());
+        }
+    }
+
+    @Test
+    public void testLockRecordsBlocksModification() throws Exception {
+
+        CertificateRepository repository = new CertificateRepository(null);
+        BigInteger serialNumber = BigInteger.valueOf(42);
+
+        List<Lock> locks = repository.lockRecords(Collections.singletonList(serialNumber));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<Boolean> locked = executor.submit(() -> {
+                Lock lock = repository.getRecordLock(serialNumber);
+                if (!lock.tryLock()) return false;
+                lock.unlock();
+                return true;
+            });
+            assertFalse(locked.get(10, TimeUnit.SECONDS));
+
+            repository.unlockRecords(locks);
+            locks = Collections.emptyList();
+
+            locked = executor.submit(() -> {
+                Lock lock = repository.getRecordLock(serialNumber);
+                if (!lock.tryLock()) return false;
+                lock.unlock();
+                return true;
+            });
+            assertTrue(locked.get(10, TimeUnit.SECONDS));
+
+        } finally {
+            repository.unlockRecords(locks);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testOverlappingBatches() throws Exception {
+
+        CertificateRepository repository = new CertificateRepository(null);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+
+            for (int t = 0; t < 4; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        List<BigInteger> batch = createSerialNumbers(thread * 100 + i, 300);
+                        if (thread % 2 == 1) {
+                            // lock in a different order
+                            Collections.reverse(batch);
+                        }
+
+                        List<Lock> locks = repository.lockRecords(batch);
+                        repository.unlockRecords(locks);
+
+                        Lock lock = repository.getRecordLock(batch.get(0));
+                        lock.lock();
+                        lock.unlock();
+                    }
+                    return null;
+                }));
+            }
+
+            // completes without deadlock
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
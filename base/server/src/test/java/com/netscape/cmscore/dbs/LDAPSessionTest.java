@@ -0,0 +1,191 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.dbs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.netscape.certsrv.dbs.EDBNotAvailException;
+
+import netscape.ldap.LDAPException;
+
+/**
+ * Tests the pipelining used by LDAPSession.modify(List, ModificationSet, int)
+ * with operations that complete with preset result codes.
+ */
+public class LDAPSessionTest {
+
+    static class TestOperation implements LDAPSession.AsyncOperation<Integer> {
+
+        Map<String, Integer> resultCodes = new HashMap<>();
+        String sendFailure;
+
+        List<String> sent = new ArrayList<>();
+        List<Integer> received = new ArrayList<>();
+        List<Integer> abandoned = new ArrayList<>();
+
+        int outstanding;
+        int maxOutstanding;
+
+        @Override
+        public Integer send(String name) throws LDAPException {
+
+            if (name.equals(sendFailure)) {
+                throw new LDAPException("Unable to send", LDAPException.SERVER_DOWN);
+            }
+
+            sent.add(name);
+            outstanding++;
+            maxOutstanding = Math.max(maxOutstanding, outstanding);
+
+            return sent.size() - 1;
+        }
+
+        @Override
+        public int getResultCode(String name, Integer op) throws LDAPException {
+            assertEquals(sent.get(op), name);
+            outstanding--;
+            received.add(op);
+            return resultCodes.getOrDefault(name, LDAPException.SUCCESS);
+        }
+
+        @Override
+        public void abandon(Integer op) {
+            outstanding--;
+            abandoned.add(op);
+        }
+    }
+
+    static List<String> createNames(int count) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            names.add("cn=" + i + ",ou=certificateRepository,ou=ca,dc=example,dc=com");
+        }
+        return names;
+    }
+
+    @Test
+    public void testWindow() throws Exception {
+
+        List<String> names = createNames(10);
+        TestOperation operation = new TestOperation();
+
+        List<Integer> failed = LDAPSession.pipeline(names, 3, operation);
+
+        assertTrue(failed.isEmpty());
+        assertEquals(names, operation.sent);
+        assertEquals(3, operation.maxOutstanding);
+        assertEquals(0, operation.outstanding);
+
+        // responses are read in order
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), operation.received);
+        assertTrue(operation.abandoned.isEmpty());
+    }
+
+    @Test
+    public void testZeroWindow() throws Exception {
+
+        TestOperation operation = new TestOperation();
+
+        LDAPSession.pipeline(createNames(5), 0, operation);
+
+        assertEquals(5, operation.sent.size());
+        assertEquals(1, operation.maxOutstanding);
+    }
+
+    @Test
+    public void testFailedEntries() throws Exception {
+
+        List<String> names = createNames(10);
+
+        // the same entry twice
+        names.set(8, names.get(2));
+
+        TestOperation operation = new TestOperation();
+        operation.resultCodes.put(names.get(2), LDAPException.NO_SUCH_OBJECT);
+        operation.resultCodes.put(names.get(5), LDAPException.INSUFFICIENT_ACCESS_RIGHTS);
+
+        List<Integer> failed = LDAPSession.pipeline(names, 4, operation);
+
+        assertEquals(Arrays.asList(2, 5, 8), failed);
+        assertEquals(10, operation.received.size());
+    }
+
+    @Test
+    public void testUnavailable() throws Exception {
+
+        List<String> names = createNames(10);
+
+        TestOperation operation = new TestOperation();
+        operation.resultCodes.put(names.get(4), LDAPException.UNAVAILABLE);
+
+        try {
+            LDAPSession.pipeline(names, 3, operation);
+            fail("Expected EDBNotAvailException");
+        } catch (EDBNotAvailException e) {
+            // expected
+        }
+
+        // the response of entry 4 is read after entry 6 is sent,
+        // the pending operations of entries 5 and 6 are abandoned
+        assertEquals(names.subList(0, 7), operation.sent);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), operation.received);
+        assertEquals(Arrays.asList(5, 6), operation.abandoned);
+        assertEquals(0, operation.outstanding);
+    }
+
+    @Test
+    public void testSendFailure() throws Exception {
+
+        List<String> names = createNames(10);
+
+        TestOperation operation = new TestOperation();
+        operation.sendFailure = names.get(5);
+
+        try {
+            LDAPSession.pipeline(names, 3, operation);
+            fail("Expected LDAPException");
+        } catch (LDAPException e) {
+            assertEquals(LDAPException.SERVER_DOWN, e.getLDAPResultCode());
+        }
+
+        assertEquals(names.subList(0, 5), operation.sent);
+        assertEquals(Arrays.asList(0, 1, 2), operation.received);
+        assertEquals(Arrays.asList(3, 4), operation.abandoned);
+        assertEquals(0, operation.outstanding);
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+
+        TestOperation operation = new TestOperation();
+
+        assertEquals(Collections.emptyList(), LDAPSession.pipeline(new ArrayList<>(), 3, operation));
+        assertTrue(operation.sent.isEmpty());
+    }
+}
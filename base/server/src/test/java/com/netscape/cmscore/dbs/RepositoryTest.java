@@ -0,0 +1,174 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.dbs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.netscape.certsrv.base.EBaseException;
+
+public class RepositoryTest {
+
+    static class TestRepository extends Repository {
+
+        TestRepository(int blockSize, long min, long max) {
+            super(null, 10);
+            this.blockSize = blockSize;
+            mMinSerialNo = BigInteger.valueOf(min);
+            mMaxSerialNo = BigInteger.valueOf(max);
+            setLastSerialNo(BigInteger.valueOf(min - 1));
+        }
+
+        @Override
+        public BigInteger getLastSerialNumberInRange(BigInteger low, BigInteger high) throws EBaseException {
+            return low.subtract(BigInteger.ONE);
+        }
+    }
+
+    @Test
+    public void testAllocateSerialNumbers() throws Exception {
+
+        TestRepository repository = new TestRepository(10, 1, 100);
+
+        SerialNumberBlock block = repository.allocateSerialNumbers(10);
+        assertEquals(10, block.size());
+        assertEquals(BigInteger.valueOf(1), block.take());
+
+        // reserved numbers are not offered to clones
+        assertEquals(BigInteger.valueOf(11), repository.peekNextSerialNumber());
+
+        block = repository.allocateSerialNumbers(10);
+        assertEquals(BigInteger.valueOf(11), block.take());
+    }
+
+    @Test
+    public void testAllocateSerialNumbersAtEndOfRange() throws Exception {
+
+        TestRepository repository = new TestRepository(10, 1, 15);
+
+        repository.allocateSerialNumbers(10);
+
+        // the block is cut at the end of the range
+        SerialNumberBlock block = repository.allocateSerialNumbers(10);
+        assertEquals(5, block.size());
+        assertEquals(BigInteger.valueOf(11), block.take());
+    }
+
+    @Test
+    public void testGetNextSerialNumber() throws Exception {
+
+        TestRepository repository = new TestRepository(10, 1, 1000);
+
+        // the first block is reserved in the foreground
+        for (int i = 1; i <= 5; i++) {
+            assertEquals(BigInteger.valueOf(i), repository.getNextSerialNumber());
+        }
+
+        // later blocks may be prefetched in the background, so numbers
+        // are unique but not necessarily handed out in order
+        Set<BigInteger> serialNumbers = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            serialNumbers.add(repository.getNextSerialNumber());
+        }
+        assertEquals(100, serialNumbers.size());
+
+        BigInteger next = repository.peekNextSerialNumber();
+        for (BigInteger serialNumber : serialNumbers) {
+            assertTrue(serialNumber.compareTo(BigInteger.valueOf(5)) > 0);
+            assertTrue(serialNumber.compareTo(next) < 0);
+        }
+    }
+
+    @Test
+    public void testReleaseOnRangeTransfer() throws Exception {
+
+        TestRepository repository = new TestRepository(10, 1, 100);
+
+        // reserves 1..10
+        assertEquals(BigInteger.valueOf(1), repository.getNextSerialNumber());
+
+        // transfer the end of the range to a clone
+        repository.setMaxSerial(BigInteger.valueOf(50));
+
+        // the reserved block is released
+        assertEquals(BigInteger.valueOf(11), repository.getNextSerialNumber());
+        assertEquals(BigInteger.valueOf(12), repository.getNextSerialNumber());
+    }
+
+    @Test
+    public void testReleaseSerialNumbers() throws Exception {
+
+        TestRepository repository = new TestRepository(10, 1, 100);
+        repository.getNextSerialNumber();
+
+        repository.releaseSerialNumbers();
+
+        assertEquals(BigInteger.valueOf(11), repository.getNextSerialNumber());
+    }
+
+    @Test
+    public void testConcurrentAllocation() throws Exception {
+
+        int threads = 8;
+        int count = 500;
+
+        TestRepository repository = new TestRepository(16, 1, 100000);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<List<BigInteger>>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    List<BigInteger> serialNumbers = new ArrayList<>();
+                    for (int j = 0; j < count; j++) {
+                        serialNumbers.add(repository.getNextSerialNumber());
+                    }
+                    return serialNumbers;
+                }));
+            }
+
+            Set<BigInteger> serialNumbers = new HashSet<>();
+            for (Future<List<BigInteger>> future : futures) {
+                serialNumbers.addAll(future.get());
+            }
+
+            // no number is handed out twice
+            assertEquals(threads * count, serialNumbers.size());
+
+            // no number handed out can be offered to a clone
+            BigInteger next = repository.peekNextSerialNumber();
+            for (BigInteger serialNumber : serialNumbers) {
+                assertTrue(serialNumber.compareTo(next) < 0);
+            }
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
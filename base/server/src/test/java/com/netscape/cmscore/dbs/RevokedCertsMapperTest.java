@@ -0,0 +1,243 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.dbs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Hashtable;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.InvalidityDateExtension;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+public class RevokedCertsMapperTest {
+
+    static final long NOW = 1650000000000L;
+
+    public static RevokedCertImpl createRevokedCert(
+            BigInteger serial,
+            Date date,
+            RevocationReason reason,
+            Date invalidityDate) throws Exception {
+
+        CRLExtensions exts = new CRLExtensions();
+
+        if (reason != null) {
+            exts.set(CRLReasonExtension.NAME, new CRLReasonExtension(reason));
+        }
+
+        if (invalidityDate != null) {
+            exts.set(InvalidityDateExtension.NAME, new InvalidityDateExtension(invalidityDate));
+        }
+
+        return new RevokedCertImpl(serial, date, exts);
+    }
+
+    public static void assertSameCerts(
+            Hashtable<BigInteger, RevokedCertificate> expected,
+            Hashtable<BigInteger, RevokedCertificate> actual) throws Exception {
+
+        assertEquals(expected.size(), actual.size());
+
+        for (BigInteger serial : expected.keySet()) {
+            RevokedCertificate expectedCert = expected.get(serial);
+            RevokedCertificate actualCert = actual.get(serial);
+
+            assertNotNull("Missing " + serial, actualCert);
+            assertEquals(serial, actualCert.getSerialNumber());
+            assertEquals(expectedCert.getRevocationDate(), actualCert.getRevocationDate());
+            assertEquals(expectedCert.hasExtensions(), actualCert.hasExtensions());
+            assertArrayEquals(expectedCert.getEncoded(), actualCert.getEncoded());
+        }
+    }
+
+    public static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream os = new ObjectOutputStream(bos)) {
+            os.writeObject(object);
+        }
+        return bos.toByteArray();
+    }
+
+    @Test
+    public void testNull() throws Exception {
+        byte[] data = RevokedCertsMapper.encode(null);
+        assertNull(RevokedCertsMapper.decode(data));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        Hashtable<BigInteger, RevokedCertificate> certs = new Hashtable<>();
+
+        Hashtable<BigInteger, RevokedCertificate> result =
+                RevokedCertsMapper.decode(RevokedCertsMapper.encode(certs));
+
+        assertNotNull(result);
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void testSequentialSerials() throws Exception {
+        Hashtable<BigInteger, RevokedCertificate> certs = new Hashtable<>();
+
+        for (int i = 1; i <= 1000; i++) {
+            BigInteger serial = BigInteger.valueOf(i);
+            RevocationReason reason = RevocationReason.valueOf(i % 6);
+            certs.put(serial, createRevokedCert(serial, new Date(NOW + i * 1000L), reason, null));
+        }
+
+        byte[] data = RevokedCertsMapper.encode(certs);
+        assertSameCerts(certs, RevokedCertsMapper.decode(data));
+
+        // the compact format should be much smaller than the serialized one
+        assertTrue(data.length * 4 < serialize(certs).length);
+    }
+
+    @Test
+    public void testRandomSerials() throws Exception {
+        Hashtable<BigInteger, RevokedCertificate> certs = new Hashtable<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 500; i++) {
+            BigInteger serial = new BigInteger(128, random);
+            Date date = new Date(NOW - random.nextInt(1000000000));
+            certs.put(serial, createRevokedCert(serial, date, RevocationReason.KEY_COMPROMISE, null));
+        }
+
+        assertSameCerts(certs, RevokedCertsMapper.decode(RevokedCertsMapper.encode(certs)));
+    }
+
+    @Test
+    public void testSortedMap() throws Exception {
+        Hashtable<BigInteger, RevokedCertificate> certs = new Hashtable<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 500; i++) {
+            BigInteger serial = new BigInteger(128, random);
+            Date date = new Date(NOW - random.nextInt(1000000000));
+            certs.put(serial, createRevokedCert(serial, date, RevocationReason.KEY_COMPROMISE, null));
+        }
+
+        // sorted maps are encoded the same way without sorting
+        byte[] data = RevokedCertsMapper.encode(new TreeMap<>(certs));
+        assertArrayEquals(RevokedCertsMapper.encode(certs), data);
+
+        // maps with a custom order are sorted by serial number
+        TreeMap<BigInteger, RevokedCertificate> reversed = new TreeMap<>(Collections.reverseOrder());
+        reversed.putAll(certs);
+        assertArrayEquals(data, RevokedCertsMapper.encode(reversed));
+    }
+
+    @Test
+    public void testExtensions() throws Exception {
+        Hashtable<BigInteger, RevokedCertificate> certs = new Hashtable<>();
+
+        // no extensions
+        BigInteger serial = BigInteger.valueOf(10);
+        certs.put(serial, new RevokedCertImpl(serial, new Date(NOW), null));
+
+        // empty extensions
+        serial = BigInteger.valueOf(11);
+        certs.put(serial, new RevokedCertImpl(serial, new Date(NOW), new CRLExtensions()));
+
+        // reason and invalidity date
+        serial = BigInteger.valueOf(12);
+        certs.put(serial, createRevokedCert(serial, new Date(NOW),
+                RevocationReason.CERTIFICATE_HOLD, new Date(NOW - 3600000L)));
+
+        // invalidity date before reason
+        serial = BigInteger.valueOf(13);
+        CRLExtensions exts = new CRLExtensions();
+        exts.set(InvalidityDateExtension.NAME, new InvalidityDateExtension(new Date(NOW - 7200000L)));
+        exts.set(CRLReasonExtension.NAME, new CRLReasonExtension(RevocationReason.SUPERSEDED));
+        certs.put(serial, new RevokedCertImpl(serial, new Date(NOW), exts));
+
+        // critical reason
+        serial = BigInteger.valueOf(14);
+        exts = new CRLExtensions();
+        exts.set(CRLReasonExtension.NAME, new CRLReasonExtension(true, RevocationReason.KEY_COMPROMISE));
+        certs.put(serial, new RevokedCertImpl(serial, new Date(NOW), exts));
+
+        // released from hold
+        serial = BigInteger.valueOf(15);
+        exts = new CRLExtensions();
+        exts.set(CRLReasonExtension.REMOVE_FROM_CRL.getName(), CRLReasonExtension.REMOVE_FROM_CRL);
+        certs.put(serial, new RevokedCertImpl(serial, new Date(NOW), exts));
+
+        assertSameCerts(certs, RevokedCertsMapper.decode(RevokedCertsMapper.encode(certs)));
+    }
+
+    @Test
+    public void testSerializedFormat() throws Exception {
+        Hashtable<BigInteger, RevokedCertificate> certs = new Hashtable<>();
+
+        for (int i = 1; i <= 100; i++) {
+            BigInteger serial = BigInteger.valueOf(i * 7);
+            certs.put(serial, createRevokedCert(serial, new Date(NOW + i),
+                    RevocationReason.AFFILIATION_CHANGED, new Date(NOW)));
+        }
+
+        // values written by ObjectStreamMapper
+        assertSameCerts(certs, RevokedCertsMapper.decode(serialize(certs)));
+        assertNull(RevokedCertsMapper.decode(serialize(null)));
+    }
+
+    @Test
+    public void testInvalidData() throws Exception {
+        assertThrows(IOException.class, () -> RevokedCertsMapper.decode(new byte[] { 1, 2, 3 }));
+
+        byte[] data = RevokedCertsMapper.encode(new Hashtable<>());
+        data[2] = (byte) (RevokedCertsMapper.VERSION + 1);
+        assertThrows(IOException.class, () -> RevokedCertsMapper.decode(data));
+
+        Hashtable<BigInteger, RevokedCertificate> certs = new Hashtable<>();
+        BigInteger serial = BigInteger.ONE;
+        certs.put(serial, createRevokedCert(serial, new Date(NOW), RevocationReason.UNSPECIFIED, null));
+        byte[] encoded = RevokedCertsMapper.encode(certs);
+
+        byte[] truncated = new byte[encoded.length - 2];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+        assertThrows(IOException.class, () -> RevokedCertsMapper.decode(truncated));
+    }
+
+    @Test
+    public void testVarLong() throws Exception {
+        long[] values = { 0, 1, -1, 127, 128, -128, Long.MAX_VALUE, Long.MIN_VALUE, NOW, -NOW };
+
+        for (long value : values) {
+            assertEquals(value, RevokedCertsMapper.unZigZag(RevokedCertsMapper.zigZag(value)));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.dbs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class SerialNumberBlockTest {
+
+    @Test
+    public void testConsecutiveBlock() throws Exception {
+
+        SerialNumberBlock block = new SerialNumberBlock(BigInteger.valueOf(10), 3);
+        assertEquals(3, block.size());
+        assertEquals(3, block.remaining());
+
+        assertEquals(BigInteger.valueOf(10), block.take());
+        assertEquals(BigInteger.valueOf(11), block.take());
+        assertEquals(1, block.remaining());
+
+        assertEquals(BigInteger.valueOf(12), block.take());
+        assertEquals(0, block.remaining());
+
+        assertNull(block.take());
+        assertNull(block.take());
+        assertEquals(0, block.remaining());
+    }
+
+    @Test
+    public void testRandomBlock() throws Exception {
+
+        BigInteger[] serialNumbers = {
+                BigInteger.valueOf(7), BigInteger.valueOf(3), BigInteger.valueOf(5)
+        };
+
+        SerialNumberBlock block = new SerialNumberBlock(serialNumbers);
+        assertEquals(3, block.size());
+
+        // numbers are handed out in the reserved order
+        assertEquals(BigInteger.valueOf(7), block.take());
+        assertEquals(BigInteger.valueOf(3), block.take());
+        assertEquals(BigInteger.valueOf(5), block.take());
+        assertNull(block.take());
+    }
+
+    @Test
+    public void testClose() throws Exception {
+
+        SerialNumberBlock block = new SerialNumberBlock(BigInteger.ONE, 10);
+        assertEquals(BigInteger.ONE, block.take());
+
+        block.close();
+        assertEquals(0, block.remaining());
+        assertNull(block.take());
+    }
+
+    @Test
+    public void testConcurrentTakes() throws Exception {
+
+        int size = 10000;
+        int threads = 8;
+
+        SerialNumberBlock block = new SerialNumberBlock(BigInteger.ONE, size);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<List<BigInteger>>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    List<BigInteger> taken = new ArrayList<>();
+                    BigInteger serialNumber;
+                    while ((serialNumber = block.take()) != null) {
+                        taken.add(serialNumber);
+                    }
+                    return taken;
+                }));
+            }
+
+            Set<BigInteger> serialNumbers = new HashSet<>();
+            int count = 0;
+            for (Future<List<BigInteger>> future : futures) {
+                List<BigInteger> taken = future.get();
+                serialNumbers.addAll(taken);
+                count += taken.size();
+            }
+
+            // every number is taken exactly once
+            assertEquals(size, count);
+            assertEquals(size, serialNumbers.size());
+            assertEquals(0, block.remaining());
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,378 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.ldapconn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.netscape.certsrv.ldap.ELdapException;
+import com.netscape.cmscore.metrics.Gauge;
+import com.netscape.cmscore.metrics.MetricsRegistry;
+
+import netscape.ldap.LDAPConnection;
+
+public class LdapConnPoolTest {
+
+    static class TestConnection extends LDAPConnection {
+
+        volatile boolean connected = true;
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+    }
+
+    static class TestConnector implements LdapConnPool.Connector<TestConnection> {
+
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger disconnected = new AtomicInteger();
+
+        @Override
+        public TestConnection connect(boolean errorIfDown) throws ELdapException {
+            created.incrementAndGet();
+            return new TestConnection();
+        }
+
+        @Override
+        public void disconnect(TestConnection conn) {
+            conn.connected = false;
+            disconnected.incrementAndGet();
+        }
+    }
+
+    TestConnector connector = new TestConnector();
+
+    LdapConnPool<TestConnection> createPool(int minConns, int maxConns, long maxWait, long idleTimeout) {
+        return new LdapConnPool<>("test", minConns, maxConns, maxWait, idleTimeout, connector);
+    }
+
+    @Test
+    public void testFill() throws Exception {
+
+        LdapConnPool<TestConnection> pool = createPool(2, 4, 0, 0);
+        pool.fill(true);
+
+        assertEquals(2, pool.getTotalCount());
+        assertEquals(2, pool.getIdleCount());
+        assertEquals(0, pool.getActiveCount());
+
+        // already at the minimum
+        pool.fill(true);
+        assertEquals(2, connector.created.get());
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+
+        LdapConnPool<TestConnection> pool = createPool(1, 4, 0, 0);
+        pool.fill(true);
+
+        TestConnection conn = pool.acquire(true);
+        assertEquals(1, pool.getActiveCount());
+        assertEquals(0, pool.getIdleCount());
+
+        pool.release(conn);
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+
+        assertSame(conn, pool.acquire(true));
+        assertEquals(1, connector.created.get());
+        assertEquals(2, pool.getAcquisitions());
+    }
+
+    @Test
+    public void testGrow() throws Exception {
+
+        LdapConnPool<TestConnection> pool = createPool(0, 2, 0, 0);
+
+        TestConnection c1 = pool.acquire(true);
+        TestConnection c2 = pool.acquire(true);
+        assertNotSame(c1, c2);
+        assertEquals(2, pool.getTotalCount());
+        assertEquals(2, pool.getCreated());
+
+        // pool exhausted
+        assertNull(pool.acquire(false));
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+
+        LdapConnPool<TestConnection> pool = createPool(0, 1, 50, 0);
+        pool.acquire(true);
+
+        try {
+            pool.acquire(true);
+            fail("Expected ELdapException");
+        } catch (ELdapException e) {
+            // expected
+        }
+
+        assertEquals(1, pool.getTimeouts());
+        assertEquals(1, pool.getActiveCount());
+    }
+
+    @Test
+    public void testWaitForRelease() throws Exception {
+
+        LdapConnPool<TestConnection> pool = createPool(0, 1, 0, 0);
+        TestConnection conn = pool.acquire(true);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<TestConnection> future = executor.submit(() -> pool.acquire(true));
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (pool.getWaitingCount() == 0) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(1);
+            }
+            assertFalse(future.isDone());
+
+            pool.release(conn);
+            assertSame(conn, future.get(10, TimeUnit.SECONDS));
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testNoWaitDoesNotBarge() throws Exception {
+
+        LdapConnPool<TestConnection> pool = createPool(0, 1, 0, 0);
+        TestConnection conn = pool.acquire(true);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<TestConnection> future = executor.submit(() -> pool.acquire(true));
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (pool.getWaitingCount() == 0) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(1);
+            }
+
+            // the released connection goes to the waiting thread
+            // even if another thread asks for it first
+            pool.release(conn);
+            assertNull(pool.acquire(false));
+
+            assertSame(conn, future.get(10, TimeUnit.SECONDS));
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testInvalidConnection() throws Exception {
+
+        LdapConnPool<TestConnection> pool = createPool(1, 4, 0, 0);
+        pool.fill(true);
+
+        TestConnection conn = pool.acquire(true);
+        pool.release(conn);
+
+        // server closed the connection
+        conn.connected = false;
+
+        TestConnection replacement = pool.acquire(true);
+        assertNotSame(conn, replacement);
+        assertTrue(replacement.isConnected());
+
+        assertEquals(1, pool.getInvalid());
+        assertEquals(1, pool.getTotalCount());
+    }
+
+    @Test
+    public void testReleaseTwice() throws Exception {
+
+        LdapConnPool<TestConnection> pool = createPool(0, 4, 0, 0);
+
+        TestConnection conn = pool.acquire(true);
+        pool.release(conn);
+        pool.release(conn);
+
+        // the idle connection is kept
+        assertTrue(conn.isConnected());
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(0, connector.disconnected.get());
+    }
+
+    @Test
+    public void testReleaseUnknown() throws Exception {
+
+        LdapConnPool<TestConnection> pool = createPool(1, 4, 0, 0);
+        pool.fill(true);
+
+        TestConnection conn = new TestConnection();
+        pool.release(conn);
+
+        assertFalse(conn.isConnected());
+        assertEquals(1, pool.getTotalCount());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void testEvictIdle() throws Exception {
+
+        LdapConnPool<TestConnection> pool = createPool(1, 4, 0, 1);
+
+        List<TestConnection> conns = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            conns.add(pool.acquire(true));
+        }
+
+        Thread.sleep(10);
+        for (TestConnection conn : conns) {
+            pool.release(conn);
+        }
+
+        Thread.sleep(10);
+        pool.evictIdle();
+
+        assertEquals(1, pool.getTotalCount());
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(2, pool.getEvicted());
+        assertEquals(2, connector.disconnected.get());
+    }
+
+    @Test
+    public void testClose() throws Exception {
+
+        LdapConnPool<TestConnection> pool = createPool(2, 4, 0, 0);
+        pool.fill(true);
+
+        TestConnection conn = pool.acquire(true);
+
+        // outstanding connection
+        assertFalse(pool.close(false));
+        assertEquals(2, pool.getTotalCount());
+
+        assertTrue(pool.close(true));
+        assertEquals(0, pool.getTotalCount());
+        assertEquals(0, pool.getIdleCount());
+        assertTrue(conn.isConnected());
+
+        // returned after the pool was closed
+        pool.release(conn);
+        assertFalse(conn.isConnected());
+        assertEquals(0, pool.getIdleCount());
+
+        // all permits are available again
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(pool.acquire(false));
+        }
+    }
+
+    long getGauge(String name, String pool) {
+        for (Gauge gauge : MetricsRegistry.getInstance().getGauges()) {
+            if (gauge.getName().equals(name) && pool.equals(gauge.getLabels().get("pool"))) {
+                return gauge.getValue();
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+
+        LdapConnPool<TestConnection> pool = new LdapConnPool<>("metrics", 2, 4, 0, 0, connector);
+        pool.fill(true);
+
+        TestConnection conn = pool.acquire(true);
+        conn.connected = false;
+        pool.release(conn);
+
+        // the disconnected connection is discarded
+        assertNotNull(pool.acquire(true));
+
+        assertEquals(1, getGauge("ldap_conn_total", "metrics"));
+        assertEquals(1, getGauge("ldap_conn_active", "metrics"));
+        assertEquals(0, getGauge("ldap_conn_idle", "metrics"));
+        assertEquals(0, getGauge("ldap_conn_waiting", "metrics"));
+        assertEquals(0, getGauge("ldap_conn_evicted", "metrics"));
+        assertEquals(1, getGauge("ldap_conn_invalid", "metrics"));
+
+        // the gauges are removed when the pool is closed
+        assertTrue(pool.close(true));
+        assertEquals(-1, getGauge("ldap_conn_active", "metrics"));
+    }
+
+    @Test
+    public void testConcurrentBorrowers() throws Exception {
+
+        int maxConns = 4;
+        LdapConnPool<TestConnection> pool = createPool(0, maxConns, 0, 0);
+
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+
+            for (int t = 0; t < 16; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        TestConnection conn = pool.acquire(true);
+
+                        int n = active.incrementAndGet();
+                        maxActive.accumulateAndGet(n, Math::max);
+                        assertTrue(conn.isConnected());
+                        active.decrementAndGet();
+
+                        pool.release(conn);
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(maxActive.get() <= maxConns);
+        assertTrue(pool.getTotalCount() <= maxConns);
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(pool.getTotalCount(), pool.getIdleCount());
+        assertEquals(16 * 200, pool.getAcquisitions());
+    }
+}
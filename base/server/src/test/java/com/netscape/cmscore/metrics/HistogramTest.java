@@ -0,0 +1,248 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+    @Test
+    public void testLinearBuckets() throws Exception {
+
+        for (long value = 0; value < Histogram.LINEAR_LIMIT; value++) {
+            int index = Histogram.getIndex(value);
+            assertEquals(value, index);
+            assertEquals(value, Histogram.getLowestValue(index));
+            assertEquals(value, Histogram.getHighestValue(index));
+        }
+    }
+
+    @Test
+    public void testBucketBoundaries() throws Exception {
+
+        assertEquals(Histogram.BUCKET_COUNT - 1, Histogram.getIndex(Histogram.MAX_VALUE));
+
+        for (int index = 0; index < Histogram.BUCKET_COUNT; index++) {
+
+            long lowest = Histogram.getLowestValue(index);
+            long highest = Histogram.getHighestValue(index);
+
+            // both ends of a bucket map back to the bucket
+            assertEquals(index, Histogram.getIndex(lowest));
+            assertEquals(index, Histogram.getIndex(highest));
+
+            // buckets are contiguous
+            if (index > 0) {
+                assertEquals(Histogram.getHighestValue(index - 1) + 1, lowest);
+            }
+
+            // buckets are at most 1/64 of their values wide
+            if (lowest >= Histogram.LINEAR_LIMIT) {
+                assertTrue(highest - lowest + 1 <= lowest / Histogram.SUB_BUCKET_COUNT);
+            }
+        }
+
+        assertEquals(Histogram.MAX_VALUE, Histogram.getHighestValue(Histogram.BUCKET_COUNT - 1));
+    }
+
+    @Test
+    public void testBucketValues() throws Exception {
+
+        Random random = new Random(0);
+
+        for (int i = 0; i < 100000; i++) {
+
+            long value = random.nextLong() >>> (1 + random.nextInt(63));
+            int index = Histogram.getIndex(value);
+
+            if (value > Histogram.MAX_VALUE) {
+                // large values are counted in the last bucket
+                assertEquals(Histogram.BUCKET_COUNT - 1, index);
+                continue;
+            }
+
+            assertTrue(Histogram.getLowestValue(index) <= value);
+            assertTrue(value <= Histogram.getHighestValue(index));
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+
+        Histogram histogram = new Histogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getSum());
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getMean(), 0);
+        assertEquals(0, histogram.getStdDev(), 0);
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+
+        Histogram histogram = new Histogram();
+        histogram.record(10);
+        histogram.record(20);
+        histogram.record(30);
+
+        // negative values are counted as 0
+        histogram.record(-5);
+
+        assertEquals(4, histogram.getCount());
+        assertEquals(60, histogram.getSum());
+        assertEquals(0, histogram.getMin());
+        assertEquals(30, histogram.getMax());
+        assertEquals(15, histogram.getMean(), 0);
+
+        // exact in the linear buckets
+        assertEquals(Math.sqrt(125), histogram.getStdDev(), 1e-9);
+    }
+
+    @Test
+    public void testLinearPercentiles() throws Exception {
+
+        Histogram histogram = new Histogram();
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(1, histogram.getValueAtPercentile(0));
+        assertEquals(1, histogram.getValueAtPercentile(1));
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(99, histogram.getValueAtPercentile(99));
+        assertEquals(100, histogram.getValueAtPercentile(99.9));
+        assertEquals(100, histogram.getValueAtPercentile(100));
+        assertEquals(100, histogram.getValueAtPercentile(200));
+    }
+
+    @Test
+    public void testPercentiles() throws Exception {
+
+        Histogram histogram = new Histogram();
+
+        List<Long> values = new ArrayList<>();
+        Random random = new Random(0);
+
+        for (int i = 0; i < 10000; i++) {
+            // between 1 microsecond and 1 second
+            long value = 1000 + (long) (random.nextDouble() * random.nextDouble() * 1e9);
+            values.add(value);
+            histogram.record(value);
+        }
+
+        values.sort(null);
+
+        for (double percentile : MetricsRegistry.PERCENTILES) {
+
+            int rank = (int) Math.ceil(percentile / 100 * values.size());
+            long expected = values.get(rank - 1);
+            long actual = histogram.getValueAtPercentile(percentile);
+
+            // the highest value in the bucket of the expected value
+            assertTrue(actual >= expected);
+            assertTrue(actual - expected <= expected / Histogram.SUB_BUCKET_COUNT);
+        }
+
+        assertEquals((long) values.get(values.size() - 1), histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testPercentileLimitedToMax() throws Exception {
+
+        Histogram histogram = new Histogram();
+        histogram.record(1000);
+
+        // the bucket goes up to 1007, but nothing larger than 1000 was recorded
+        assertEquals(1007, Histogram.getHighestValue(Histogram.getIndex(1000)));
+        assertEquals(1000, histogram.getValueAtPercentile(50));
+        assertEquals(1000, histogram.getValueAtPercentile(99.9));
+    }
+
+    @Test
+    public void testLargeValues() throws Exception {
+
+        Histogram histogram = new Histogram();
+        histogram.record(Histogram.MAX_VALUE + 1);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+        assertEquals(Histogram.MAX_VALUE, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testReset() throws Exception {
+
+        Histogram histogram = new Histogram();
+        histogram.record(5);
+        histogram.record(500);
+
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getSum());
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+
+        histogram.record(7);
+
+        assertEquals(7, histogram.getMin());
+        assertEquals(7, histogram.getMax());
+        assertEquals(7, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testConcurrentRecord() throws Exception {
+
+        int threads = 4;
+        int values = 10000;
+
+        Histogram histogram = new Histogram();
+        List<Thread> list = new ArrayList<>();
+
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 1; j <= values; j++) {
+                    histogram.record(j);
+                }
+            });
+            list.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : list) {
+            thread.join();
+        }
+
+        assertEquals(threads * values, histogram.getCount());
+        assertEquals(threads * (long) values * (values + 1) / 2, histogram.getSum());
+        assertEquals(1, histogram.getMin());
+        assertEquals(values, histogram.getMax());
+    }
+}
@@ -0,0 +1,352 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class MetricsRegistryTest {
+
+    static List<String> getPaths(MetricsRegistry registry) {
+        List<String> paths = new ArrayList<>();
+        for (Timer timer : registry.getTimers()) {
+            paths.add(timer.getPath());
+        }
+        return paths;
+    }
+
+    @Test
+    public void testNestedTiming() throws Exception {
+
+        MetricsRegistry registry = new MetricsRegistry();
+
+        registry.startTiming("enrollment", true);
+        registry.startTiming("signing", false);
+        registry.endTiming("signing");
+        registry.startTiming("ldap", false);
+        registry.startTiming("add", false);
+        registry.endTiming("add");
+        registry.endTiming("ldap");
+        registry.endTiming("enrollment");
+
+        assertEquals(
+                Arrays.asList("enrollment", "enrollment/ldap", "enrollment/ldap/add", "enrollment/signing"),
+                getPaths(registry));
+
+        Timer enrollment = registry.getTimer("enrollment");
+        Timer ldap = registry.getTimer("enrollment/ldap");
+        Timer add = registry.getTimer("enrollment/ldap/add");
+        Timer signing = registry.getTimer("enrollment/signing");
+
+        assertSame(enrollment, ldap.getParent());
+        assertSame(ldap, add.getParent());
+        assertEquals("add", add.getName());
+
+        assertEquals(1, enrollment.getCount());
+        assertEquals(1, ldap.getCount());
+        assertEquals(1, add.getCount());
+        assertEquals(1, signing.getCount());
+
+        // nested operations are timed within the enclosing operation
+        assertTrue(add.getTotalTime() <= ldap.getTotalTime());
+        assertTrue(ldap.getTotalTime() + signing.getTotalTime() <= enrollment.getTotalTime());
+
+        // the same operations reuse the timers
+        registry.startTiming("enrollment", true);
+        registry.startTiming("signing", false);
+        registry.endTiming("signing");
+        registry.endTiming("enrollment");
+
+        assertEquals(2, enrollment.getCount());
+        assertEquals(2, signing.getCount());
+        assertEquals(1, ldap.getCount());
+    }
+
+    @Test
+    public void testOperationOutsideMainAction() throws Exception {
+
+        MetricsRegistry registry = new MetricsRegistry();
+
+        // not a main action and nothing in progress, ignored
+        registry.startTiming("signing", false);
+        registry.endTiming("signing");
+
+        // nothing in progress
+        registry.endTiming("enrollment");
+
+        assertEquals(Collections.emptyList(), registry.getTimers());
+
+        // the ignored operations do not affect the next main action
+        registry.startTiming("enrollment", true);
+        registry.endTiming("enrollment");
+
+        assertEquals(Collections.singletonList("enrollment"), getPaths(registry));
+        assertEquals(1, registry.getTimer("enrollment").getCount());
+    }
+
+    @Test
+    public void testDeepNesting() throws Exception {
+
+        MetricsRegistry registry = new MetricsRegistry();
+
+        // deeper than the initial per-thread stack
+        int depth = 40;
+
+        registry.startTiming("op0", true);
+        for (int i = 1; i < depth; i++) {
+            registry.startTiming("op" + i, false);
+        }
+
+        for (int i = depth - 1; i >= 0; i--) {
+            registry.endTiming("op" + i);
+        }
+
+        List<Timer> timers = registry.getTimers();
+        assertEquals(depth, timers.size());
+
+        Timer last = timers.get(depth - 1);
+        assertEquals("op" + (depth - 1), last.getName());
+        assertEquals(depth, last.getPath().split("/").length);
+
+        for (Timer timer : timers) {
+            assertEquals(1, timer.getCount());
+        }
+    }
+
+    @Test
+    public void testTimingPerThread() throws Exception {
+
+        MetricsRegistry registry = new MetricsRegistry();
+
+        registry.startTiming("enrollment", true);
+
+        // an operation on another thread is not part of this thread's operation
+        Thread thread = new Thread(() -> {
+            registry.startTiming("signing", false);
+            registry.endTiming("signing");
+            registry.startTiming("revocation", true);
+            registry.endTiming("revocation");
+        });
+        thread.start();
+        thread.join();
+
+        registry.endTiming("enrollment");
+
+        assertEquals(Arrays.asList("enrollment", "revocation"), getPaths(registry));
+    }
+
+    @Test
+    public void testCounters() throws Exception {
+
+        MetricsRegistry registry = new MetricsRegistry();
+
+        Counter timeouts = registry.getCounter("ldap_timeouts");
+        assertSame(timeouts, registry.getCounter("ldap_timeouts"));
+
+        timeouts.increment();
+        timeouts.add(2);
+        registry.getCounter("cert_requests").increment();
+
+        assertEquals(3, registry.getCounter("ldap_timeouts").getValue());
+
+        List<String> names = new ArrayList<>();
+        for (Counter counter : registry.getCounters()) {
+            names.add(counter.getName());
+        }
+        assertEquals(Arrays.asList("cert_requests", "ldap_timeouts"), names);
+    }
+
+    @Test
+    public void testReset() throws Exception {
+
+        MetricsRegistry registry = new MetricsRegistry();
+
+        registry.getTimer("enrollment/signing").record(1000);
+        registry.getCounter("ldap_timeouts").increment();
+
+        long startTime = registry.getStartTime();
+        Thread.sleep(5);
+
+        registry.reset();
+
+        assertTrue(registry.getStartTime() > startTime);
+        assertEquals(0, registry.getTimer("enrollment").getCount());
+        assertEquals(0, registry.getTimer("enrollment/signing").getCount());
+        assertEquals(0, registry.getCounter("ldap_timeouts").getValue());
+
+        // the timers are kept
+        assertEquals(Arrays.asList("enrollment", "enrollment/signing"), getPaths(registry));
+    }
+
+    @Test
+    public void testWritePrometheus() throws Exception {
+
+        MetricsRegistry registry = new MetricsRegistry();
+
+        registry.getTimer("enrollment").record(2000000000L);
+        registry.getTimer("enrollment/signing").record(250000000L);
+        registry.getCounter("ldap_timeouts").add(3);
+
+        StringBuilder sb = new StringBuilder();
+        registry.writePrometheus(sb);
+
+        String name = "pki_operation_duration_seconds";
+
+        String expected =
+                "# HELP " + name + " Duration of PKI operations.\n"
+                + "# TYPE " + name + " summary\n"
+                + name + "{operation=\"enrollment\",quantile=\"0.5\"} 2.0\n"
+                + name + "{operation=\"enrollment\",quantile=\"0.99\"} 2.0\n"
+                + name + "{operation=\"enrollment\",quantile=\"0.999\"} 2.0\n"
+                + name + "_sum{operation=\"enrollment\"} 2.0\n"
+                + name + "_count{operation=\"enrollment\"} 1\n"
+                + name + "{operation=\"enrollment/signing\",quantile=\"0.5\"} 0.25\n"
+                + name + "{operation=\"enrollment/signing\",quantile=\"0.99\"} 0.25\n"
+                + name + "{operation=\"enrollment/signing\",quantile=\"0.999\"} 0.25\n"
+                + name + "_sum{operation=\"enrollment/signing\"} 0.25\n"
+                + name + "_count{operation=\"enrollment/signing\"} 1\n"
+                + "# HELP " + name + "_max Longest duration of PKI operations.\n"
+                + "# TYPE " + name + "_max gauge\n"
+                + name + "_max{operation=\"enrollment\"} 2.0\n"
+                + name + "_max{operation=\"enrollment/signing\"} 0.25\n"
+                + "# TYPE pki_ldap_timeouts_total counter\n"
+                + "pki_ldap_timeouts_total 3\n";
+
+        assertEquals(expected, sb.toString());
+    }
+
+    @Test
+    public void testWritePrometheusFormat() throws Exception {
+
+        MetricsRegistry registry = new MetricsRegistry();
+
+        Histogram histogram = registry.getTimer("a\"b\\c\nd").getHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        registry.writePrometheus(sb);
+
+        String label = "{operation=\"a\\\"b\\\\c\\nd\"";
+        assertTrue(sb.toString().contains(label + ",quantile=\"0.5\"} "));
+
+        // every sample line is a metric name, optional labels, and a number
+        for (String line : sb.toString().split("\n")) {
+
+            if (line.startsWith("#")) {
+                assertTrue(line, line.matches("# (HELP|TYPE) [a-z_]+ .+"));
+                continue;
+            }
+
+            assertTrue(line, line.matches("[a-z_]+(\\{([a-z]+=\"([^\"\\\\\\n]|\\\\.)*\",?)+\\})? \\S+"));
+
+            String value = line.substring(line.lastIndexOf(' ') + 1);
+            Double.parseDouble(value);
+        }
+
+        // the median is within the bucket of the 500th value
+        String prefix = label + ",quantile=\"0.5\"} ";
+        int start = sb.indexOf(prefix) + prefix.length();
+        String median = sb.substring(start, sb.indexOf("\n", start));
+        double seconds = Double.parseDouble(median);
+        assertTrue(seconds >= 500e-6);
+        assertTrue(seconds <= 500e-6 * (1 + 1.0 / Histogram.SUB_BUCKET_COUNT));
+    }
+
+    @Test
+    public void testGauges() throws Exception {
+
+        MetricsRegistry registry = new MetricsRegistry();
+
+        AtomicLong depth = new AtomicLong(3);
+        Gauge gauge = registry.registerGauge("queue_depth", depth::get);
+
+        Map<String, String> labels = new HashMap<>();
+        labels.put("pool", "internaldb");
+        labels.put("conn", "a\"b");
+        registry.registerGauge("conn_idle", labels, () -> 5);
+
+        List<Gauge> gauges = registry.getGauges();
+        assertEquals(2, gauges.size());
+        assertEquals("conn_idle", gauges.get(0).getName());
+        assertEquals(Arrays.asList("conn", "pool"), new ArrayList<>(gauges.get(0).getLabels().keySet()));
+        assertSame(gauge, gauges.get(1));
+
+        // the value is read when exported
+        depth.set(7);
+        assertEquals(7, gauge.getValue());
+
+        // reset does not affect gauges
+        registry.reset();
+        assertEquals(2, registry.getGauges().size());
+
+        StringBuilder sb = new StringBuilder();
+        registry.writePrometheus(sb);
+
+        assertTrue(sb.toString().endsWith(
+                "# TYPE pki_conn_idle gauge\n"
+                + "pki_conn_idle{conn=\"a\\\"b\",pool=\"internaldb\"} 5\n"
+                + "# TYPE pki_queue_depth gauge\n"
+                + "pki_queue_depth 7\n"));
+
+        // a gauge with the same name and labels replaces the old one
+        Gauge replacement = registry.registerGauge("queue_depth", () -> 1);
+        assertEquals(2, registry.getGauges().size());
+
+        // removing the replaced gauge keeps the replacement
+        registry.removeGauge(gauge);
+        assertEquals(2, registry.getGauges().size());
+
+        registry.removeGauge(replacement);
+        assertEquals(1, registry.getGauges().size());
+        assertEquals("conn_idle", registry.getGauges().get(0).getName());
+    }
+
+    @Test
+    public void testGaugesWithSameName() throws Exception {
+
+        MetricsRegistry registry = new MetricsRegistry();
+
+        registry.registerGauge("conn_active", Collections.singletonMap("pool", "b"), () -> 2);
+        registry.registerGauge("conn_active_max", () -> 10);
+        registry.registerGauge("conn_active", Collections.singletonMap("pool", "a"), () -> 1);
+
+        StringBuilder sb = new StringBuilder();
+        registry.writePrometheus(sb);
+
+        // gauges with the same name are exported together
+        assertTrue(sb.toString().endsWith(
+                "# TYPE pki_conn_active gauge\n"
+                + "pki_conn_active{pool=\"a\"} 1\n"
+                + "pki_conn_active{pool=\"b\"} 2\n"
+                + "# TYPE pki_conn_active_max gauge\n"
+                + "pki_conn_active_max 10\n"));
+    }
+}
@@ -0,0 +1,355 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.ocsp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.netscape.security.util.Utils;
+import org.mozilla.jss.pkix.cert.Extension;
+import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
+
+import com.netscape.certsrv.ocsp.IOCSPAuthority;
+import com.netscape.cmsutil.ocsp.CertID;
+import com.netscape.cmsutil.ocsp.OCSPRequest;
+import com.netscape.cmsutil.ocsp.OCSPResponse;
+import com.netscape.cmsutil.ocsp.OCSPResponseStatus;
+import com.netscape.cmsutil.ocsp.Request;
+import com.netscape.cmsutil.ocsp.TBSRequest;
+
+public class OCSPResponseCacheTest {
+
+    static final OBJECT_IDENTIFIER SHA1 = new OBJECT_IDENTIFIER("1.3.14.3.2.26");
+    static final OBJECT_IDENTIFIER SHA256 = new OBJECT_IDENTIFIER("2.16.840.1.101.3.4.2.1");
+
+    static final byte[] NAME_HASH = { 0x01, 0x02, 0x03 };
+    static final byte[] KEY_HASH = { 0x0a, 0x0b, 0x0c };
+
+    /**
+     * Cache that does not parse the responses. Each response
+     * is served for the configured lifetime.
+     */
+    static class TestCache extends OCSPResponseCache {
+
+        long lifetime = 60000;
+
+        @Override
+        Entry createEntry(OCSPRequest request, OCSPResponse response, Generator generator) {
+
+            if (response == null) {
+                return null;
+            }
+
+            BigInteger serialNumber = new BigInteger(
+                    request.getTBSRequest().getRequestAt(0).getCertID().getSerialNumber().toString());
+
+            return new Entry(serialNumber, request, response, generator, System.currentTimeMillis() + lifetime);
+        }
+    }
+
+    static CertID createCertID(OBJECT_IDENTIFIER algorithm, long serialNumber) {
+        return new CertID(
+                new AlgorithmIdentifier(algorithm),
+                new OCTET_STRING(NAME_HASH),
+                new OCTET_STRING(KEY_HASH),
+                new INTEGER(serialNumber));
+    }
+
+    static OCSPRequest createRequest(SEQUENCE extensions, CertID... certIDs) {
+
+        SEQUENCE requestList = new SEQUENCE();
+        for (CertID certID : certIDs) {
+            requestList.addElement(new Request(certID, null));
+        }
+
+        return new OCSPRequest(new TBSRequest(null, null, requestList, extensions), null);
+    }
+
+    static OCSPRequest createRequest(long serialNumber) {
+        return createRequest(null, createCertID(SHA256, serialNumber));
+    }
+
+    static OCSPResponse createResponse() {
+        return new OCSPResponse(OCSPResponseStatus.SUCCESSFUL, null);
+    }
+
+    TestCache createCache(int maxEntries, int refreshInterval, int refreshThreshold) {
+        TestCache cache = new TestCache();
+        cache.init(maxEntries, 50, 3600, refreshInterval, refreshThreshold);
+        return cache;
+    }
+
+    void put(OCSPResponseCache cache, long serialNumber, OCSPResponse response, OCSPResponseCache.Generator generator) {
+        OCSPRequest request = createRequest(serialNumber);
+        cache.put(cache.createKey(request), request, response, generator, cache.getVersion());
+    }
+
+    @Test
+    public void testCreateKey() throws Exception {
+
+        OCSPResponseCache cache = createCache(10, 0, 0);
+
+        String key = cache.createKey(createRequest(null, createCertID(SHA256, 0x1234)));
+        assertEquals(SHA256 + ":" + Utils.HexEncode(NAME_HASH) + ":" + Utils.HexEncode(KEY_HASH) + ":1234", key);
+
+        // same certificate
+        assertEquals(key, cache.createKey(createRequest(null, createCertID(SHA256, 0x1234))));
+
+        // different serial number or hash algorithm
+        assertNotEquals(key, cache.createKey(createRequest(null, createCertID(SHA256, 0x1235))));
+        assertNotEquals(key, cache.createKey(createRequest(null, createCertID(SHA1, 0x1234))));
+    }
+
+    @Test
+    public void testCreateKeyNotCacheable() throws Exception {
+
+        OCSPResponseCache cache = createCache(10, 0, 0);
+
+        // multiple certificates
+        assertNull(cache.createKey(createRequest(null,
+                createCertID(SHA256, 1),
+                createCertID(SHA256, 2))));
+
+        // no certificates
+        assertNull(cache.createKey(createRequest(null)));
+
+        // nonce
+        SEQUENCE extensions = new SEQUENCE();
+        extensions.addElement(new Extension(IOCSPAuthority.OCSP_NONCE, false, new OCTET_STRING(new byte[] { 1, 2 })));
+        assertNull(cache.createKey(createRequest(extensions, createCertID(SHA256, 1))));
+    }
+
+    @Test
+    public void testLifetime() throws Exception {
+
+        OCSPResponseCache cache = new OCSPResponseCache();
+        cache.init(10, 50, 3600, 0, 0);
+
+        long now = 1650000000000L;
+
+        // no next update
+        assertEquals(3600000, cache.getLifetime(null, now));
+
+        // half of the remaining validity
+        assertEquals(600000, cache.getLifetime(new Date(now + 1200000), now));
+
+        // limited by max age
+        assertEquals(3600000, cache.getLifetime(new Date(now + 86400000), now));
+
+        // expired
+        assertEquals(0, cache.getLifetime(new Date(now), now));
+        assertEquals(-500, cache.getLifetime(new Date(now - 1000), now));
+    }
+
+    @Test
+    public void testGet() throws Exception {
+
+        TestCache cache = createCache(10, 0, 0);
+        OCSPResponse response = createResponse();
+
+        assertNull(cache.get("unknown"));
+
+        put(cache, 1, response, null);
+
+        assertSame(response, cache.get(cache.createKey(createRequest(1))));
+        assertNull(cache.get(cache.createKey(createRequest(2))));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testExpiredEntry() throws Exception {
+
+        TestCache cache = createCache(10, 0, 0);
+        cache.lifetime = -1;
+
+        put(cache, 1, createResponse(), null);
+
+        assertEquals(1, cache.size());
+        assertNull(cache.get(cache.createKey(createRequest(1))));
+    }
+
+    @Test
+    public void testFullCache() throws Exception {
+
+        TestCache cache = createCache(2, 0, 0);
+
+        put(cache, 1, createResponse(), null);
+        put(cache, 2, createResponse(), null);
+        put(cache, 3, createResponse(), null);
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get(cache.createKey(createRequest(3))));
+
+        // existing entries can be replaced
+        OCSPResponse response = createResponse();
+        put(cache, 2, response, null);
+        assertSame(response, cache.get(cache.createKey(createRequest(2))));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+
+        TestCache cache = createCache(10, 0, 0);
+
+        put(cache, 1, createResponse(), null);
+        put(cache, 2, createResponse(), null);
+
+        OCSPRequest request = createRequest(null, createCertID(SHA1, 1));
+        cache.put(cache.createKey(request), request, createResponse(), null, cache.getVersion());
+
+        // responses for all hash algorithms are removed
+        cache.remove(BigInteger.ONE);
+
+        assertEquals(1, cache.size());
+        assertNull(cache.get(cache.createKey(createRequest(1))));
+        assertNull(cache.get(cache.createKey(request)));
+        assertNotNull(cache.get(cache.createKey(createRequest(2))));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testRemoveMultiple() throws Exception {
+
+        TestCache cache = createCache(10, 0, 0);
+
+        put(cache, 1, createResponse(), null);
+        put(cache, 2, createResponse(), null);
+        put(cache, 3, createResponse(), null);
+
+        long version = cache.getVersion();
+
+        cache.remove(Arrays.asList(BigInteger.ONE, BigInteger.valueOf(3), BigInteger.TEN));
+
+        assertEquals(1, cache.size());
+        assertNull(cache.get(cache.createKey(createRequest(1))));
+        assertNotNull(cache.get(cache.createKey(createRequest(2))));
+        assertNull(cache.get(cache.createKey(createRequest(3))));
+
+        // responses signed before the removal are not stored
+        OCSPRequest request = createRequest(1);
+        cache.put(cache.createKey(request), request, createResponse(), null, version);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testRemoveWhileSigning() throws Exception {
+
+        TestCache cache = createCache(10, 0, 0);
+
+        // response is signed before the cert is revoked
+        // but stored after the cached responses are removed
+        OCSPRequest request = createRequest(1);
+        String key = cache.createKey(request);
+        long version = cache.getVersion();
+
+        cache.remove(BigInteger.ONE);
+        cache.put(key, request, createResponse(), null, version);
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get(key));
+
+        // same after clear()
+        version = cache.getVersion();
+        cache.clear();
+        cache.put(key, request, createResponse(), null, version);
+
+        assertEquals(0, cache.size());
+
+        // response signed after the removal is stored
+        cache.put(key, request, createResponse(), null, cache.getVersion());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+
+        TestCache cache = createCache(10, 60, 2);
+        cache.lifetime = 1000;
+
+        AtomicInteger generated = new AtomicInteger();
+        OCSPResponse newResponse = createResponse();
+
+        OCSPResponseCache.Generator generator = request -> {
+            generated.incrementAndGet();
+            return newResponse;
+        };
+
+        put(cache, 1, createResponse(), generator);
+        put(cache, 2, createResponse(), generator);
+
+        String hotKey = cache.createKey(createRequest(1));
+        String coldKey = cache.createKey(createRequest(2));
+
+        // only the first response is requested frequently
+        cache.get(hotKey);
+        cache.get(hotKey);
+        cache.get(coldKey);
+
+        cache.lifetime = 3600000;
+        cache.refresh();
+
+        // hot response is signed again, cold one is removed
+        assertEquals(1, generated.get());
+        assertEquals(1, cache.getRefreshes());
+        assertEquals(1, cache.size());
+        assertSame(newResponse, cache.get(hotKey));
+        assertNull(cache.get(coldKey));
+
+        // refreshed response is not due yet
+        cache.refresh();
+        assertEquals(1, generated.get());
+    }
+
+    @Test
+    public void testRefreshFailure() throws Exception {
+
+        TestCache cache = createCache(10, 60, 1);
+        cache.lifetime = 1000;
+
+        put(cache, 1, createResponse(), request -> {
+            throw new RuntimeException("Signing failed");
+        });
+        put(cache, 2, createResponse(), request -> null);
+
+        cache.get(cache.createKey(createRequest(1)));
+        cache.get(cache.createKey(createRequest(2)));
+
+        cache.refresh();
+
+        // responses that cannot be signed again are removed
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getRefreshes());
+    }
+}
@@ -0,0 +1,366 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.ocsp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.cmscore.base.SimpleProperties;
+
+public class OCSPSigningBatcherTest {
+
+    static final String ALGORITHM = "SHA256withRSA";
+
+    static final int CLIENTS = 32;
+    static final int REQUESTS = 128;
+
+    static KeyPair keyPair;
+
+    /**
+     * Software signer standing in for the token. Like SigningUnit,
+     * it keeps one initialized signature context per thread and
+     * counts how many contexts were created.
+     */
+    static class SoftTokenSigner implements OCSPSigningBatcher.Signer {
+
+        final ThreadLocal<Map<String, Signature>> contexts = ThreadLocal.withInitial(HashMap::new);
+        final AtomicInteger contextCount = new AtomicInteger();
+
+        @Override
+        public byte[] sign(byte[] data, String algname) throws Exception {
+
+            Map<String, Signature> map = contexts.get();
+            Signature signer = map.get(algname);
+
+            if (signer == null) {
+                signer = Signature.getInstance(algname);
+                signer.initSign(keyPair.getPrivate());
+                map.put(algname, signer);
+                contextCount.incrementAndGet();
+            }
+
+            signer.update(data);
+            return signer.sign();
+        }
+    }
+
+    static ExecutorService clients;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+
+        clients = Executors.newFixedThreadPool(CLIENTS);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        clients.shutdownNow();
+    }
+
+    static OCSPSigningBatcherConfig createConfig(int workers, int maxBatchSize, int window) {
+        OCSPSigningBatcherConfig config = new OCSPSigningBatcherConfig("signingBatcher", new SimpleProperties());
+        config.putBoolean("enable", true);
+        config.putInteger("workers", workers);
+        config.putInteger("maxBatchSize", maxBatchSize);
+        config.putInteger("window", window);
+        config.putInteger("timeout", 60000);
+        return config;
+    }
+
+    static boolean verify(byte[] data, byte[] signature) throws Exception {
+        Signature verifier = Signature.getInstance(ALGORITHM);
+        verifier.initVerify(keyPair.getPublic());
+        verifier.update(data);
+        return verifier.verify(signature);
+    }
+
+    /**
+     * Signs REQUESTS responses from CLIENTS threads and verifies
+     * the signatures.
+     */
+    static void run(OCSPSigningBatcher.Signer signer) throws Exception {
+
+        List<Future<Void>> futures = new ArrayList<>();
+
+        for (int c = 0; c < CLIENTS; c++) {
+            final int client = c;
+            futures.add(clients.submit(() -> {
+                for (int i = 0; i < REQUESTS / CLIENTS; i++) {
+                    byte[] data = ("response " + client + "-" + i).getBytes(StandardCharsets.UTF_8);
+                    byte[] signature = signer.sign(data, ALGORITHM);
+                    assertTrue(verify(data, signature));
+                }
+                return null;
+            }));
+        }
+
+        for (Future<Void> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testConcurrentClients() throws Exception {
+
+        SoftTokenSigner token = new SoftTokenSigner();
+        OCSPSigningBatcher batcher = new OCSPSigningBatcher(token);
+        batcher.init(createConfig(4, 32, 100));
+        batcher.startup();
+
+        try {
+            run(batcher::sign);
+        } finally {
+            batcher.shutdown();
+        }
+
+        int expected = (REQUESTS / CLIENTS) * CLIENTS;
+        assertEquals(expected, batcher.getSignatures());
+
+        // contexts are bounded by the signing threads, not by the clients
+        assertTrue(token.contextCount.get() <= 4);
+    }
+
+    static void waitForQueue(OCSPSigningBatcher batcher, int size) throws Exception {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (batcher.getQueueSize() < size) {
+            assertTrue("Requests not queued", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        SoftTokenSigner token = new SoftTokenSigner();
+
+        OCSPSigningBatcher batcher = new OCSPSigningBatcher(new OCSPSigningBatcher.Signer() {
+
+            @Override
+            public byte[] sign(byte[] data, String algname) throws Exception {
+                return token.sign(data, algname);
+            }
+
+            @Override
+            public List<byte[]> sign(List<byte[]> data, String algname) throws Exception {
+                // hold the first batch until the other requests are queued
+                entered.countDown();
+                release.await();
+                batchSizes.add(data.size());
+                return OCSPSigningBatcher.Signer.super.sign(data, algname);
+            }
+        });
+        batcher.init(createConfig(1, 32, 0));
+        batcher.startup();
+
+        try {
+            List<Future<byte[]>> futures = new ArrayList<>();
+            futures.add(clients.submit(() -> batcher.sign(new byte[] { 0 }, ALGORITHM)));
+            assertTrue(entered.await(10, TimeUnit.SECONDS));
+
+            for (int i = 1; i <= 8; i++) {
+                byte[] data = { (byte) i };
+                futures.add(clients.submit(() -> batcher.sign(data, ALGORITHM)));
+            }
+            waitForQueue(batcher, 8);
+
+            release.countDown();
+
+            for (int i = 0; i < futures.size(); i++) {
+                byte[] data = { (byte) i };
+                assertTrue(verify(data, futures.get(i).get(60, TimeUnit.SECONDS)));
+            }
+
+        } finally {
+            release.countDown();
+            batcher.shutdown();
+        }
+
+        // the queued requests are signed in a single call
+        assertEquals(Arrays.asList(1, 8), batchSizes);
+        assertEquals(2, batcher.getBatches());
+        assertEquals(9, batcher.getSignatures());
+    }
+
+    @Test
+    public void testAlgorithmGroups() throws Exception {
+
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+        OCSPSigningBatcher batcher = new OCSPSigningBatcher(new OCSPSigningBatcher.Signer() {
+
+            @Override
+            public byte[] sign(byte[] data, String algname) throws Exception {
+                throw new AssertionError("Unexpected single signature");
+            }
+
+            @Override
+            public List<byte[]> sign(List<byte[]> data, String algname) throws Exception {
+                calls.add(algname + ":" + data.size());
+                List<byte[]> signatures = new ArrayList<>();
+                for (byte[] d : data) {
+                    signatures.add((algname + ":" + d[0]).getBytes(StandardCharsets.UTF_8));
+                }
+                return signatures;
+            }
+        });
+        batcher.init(createConfig(1, 8, 0));
+
+        List<OCSPSigningBatcher.Job> batch = new ArrayList<>();
+        batch.add(new OCSPSigningBatcher.Job(new byte[] { 1 }, "SHA256withRSA"));
+        batch.add(new OCSPSigningBatcher.Job(new byte[] { 2 }, "SHA512withRSA"));
+        batch.add(new OCSPSigningBatcher.Job(new byte[] { 3 }, "SHA256withRSA"));
+
+        batcher.sign(batch);
+
+        assertEquals(Arrays.asList("SHA256withRSA:2", "SHA512withRSA:1"), calls);
+        assertEquals("SHA256withRSA:1", new String(batch.get(0).result.get(), StandardCharsets.UTF_8));
+        assertEquals("SHA512withRSA:2", new String(batch.get(1).result.get(), StandardCharsets.UTF_8));
+        assertEquals("SHA256withRSA:3", new String(batch.get(2).result.get(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testSignatureException() throws Exception {
+
+        SignatureException exception = new SignatureException("token failure");
+
+        OCSPSigningBatcher batcher = new OCSPSigningBatcher((data, algname) -> {
+            throw exception;
+        });
+        batcher.init(createConfig(1, 8, 0));
+        batcher.startup();
+
+        try {
+            batcher.sign(new byte[] { 1 }, ALGORITHM);
+            fail("Expected SignatureException");
+
+        } catch (SignatureException e) {
+            assertSame(exception, e);
+
+        } finally {
+            batcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testError() throws Exception {
+
+        Error error = new Error("token crashed");
+        AtomicInteger calls = new AtomicInteger();
+        SoftTokenSigner token = new SoftTokenSigner();
+
+        OCSPSigningBatcher batcher = new OCSPSigningBatcher((data, algname) -> {
+            if (calls.getAndIncrement() == 0) {
+                throw error;
+            }
+            return token.sign(data, algname);
+        });
+        batcher.init(createConfig(1, 8, 0));
+        batcher.startup();
+
+        try {
+            try {
+                batcher.sign(new byte[] { 1 }, ALGORITHM);
+                fail("Expected EBaseException");
+
+            } catch (EBaseException e) {
+                assertSame(error, e.getCause());
+            }
+
+            // the signing thread is still running
+            byte[] data = { 2 };
+            assertTrue(verify(data, batcher.sign(data, ALGORITHM)));
+
+        } finally {
+            batcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+
+        CountDownLatch release = new CountDownLatch(1);
+
+        OCSPSigningBatcher batcher = new OCSPSigningBatcher((data, algname) -> {
+            release.await();
+            return data;
+        });
+
+        OCSPSigningBatcherConfig config = createConfig(1, 8, 0);
+        config.putInteger("timeout", 100);
+        batcher.init(config);
+        batcher.startup();
+
+        try {
+            batcher.sign(new byte[] { 1 }, ALGORITHM);
+            fail("Expected EBaseException");
+
+        } catch (EBaseException e) {
+            assertTrue(e.getMessage().contains("timed out"));
+
+        } finally {
+            release.countDown();
+            batcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testSignAfterShutdown() throws Exception {
+
+        SoftTokenSigner token = new SoftTokenSigner();
+        OCSPSigningBatcher batcher = new OCSPSigningBatcher(token);
+        batcher.init(createConfig(2, 8, 0));
+        batcher.startup();
+        batcher.shutdown();
+
+        // signed in the calling thread
+        byte[] data = { 1, 2, 3 };
+        assertTrue(verify(data, batcher.sign(data, ALGORITHM)));
+        assertEquals(0, batcher.getSignatures());
+    }
+}
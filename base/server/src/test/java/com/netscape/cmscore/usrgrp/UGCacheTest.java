@@ -0,0 +1,223 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.usrgrp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.netscape.cmscore.base.SimpleProperties;
+
+public class UGCacheTest {
+
+    static final String ADMIN_DN = "uid=admin,ou=People,o=pki";
+    static final String AGENT_DN = "uid=admin2,ou=People,o=pki";
+
+    static class TestCache extends UGCache {
+
+        long time;
+
+        @Override
+        long getCurrentTime() {
+            return time;
+        }
+    }
+
+    static TestCache createCache(int maxEntries, int ttl) throws Exception {
+
+        UGCacheConfig config = new UGCacheConfig("cache", new SimpleProperties());
+        config.putInteger("maxEntries", maxEntries);
+        config.putInteger("ttl", ttl);
+
+        TestCache cache = new TestCache();
+        cache.init(config);
+
+        return cache;
+    }
+
+    static User createUser(String userID, String userDN) {
+        User user = new User();
+        user.setUserID(userID);
+        user.setUserDN(userDN);
+        return user;
+    }
+
+    @Test
+    public void testUser() throws Exception {
+
+        UGCache cache = createCache(10, 0);
+        assertNull(cache.getUser("admin"));
+
+        User user = createUser("admin", ADMIN_DN);
+        cache.putUser("admin", user, cache.getVersion());
+
+        User cachedUser = cache.getUser("ADMIN");
+        assertNotNull(cachedUser);
+        assertEquals("admin", cachedUser.getUserID());
+
+        // the cache returns copies
+        assertNotSame(user, cachedUser);
+        cachedUser.setUserID("changed");
+        assertEquals("admin", cache.getUser("admin").getUserID());
+
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testTTL() throws Exception {
+
+        TestCache cache = createCache(10, 60);
+
+        cache.time = 1000;
+        cache.putUser("admin", createUser("admin", ADMIN_DN), cache.getVersion());
+        cache.putMembership(ADMIN_DN, "Administrators", true, cache.getVersion());
+
+        cache.time = 60999;
+        assertNotNull(cache.getUser("admin"));
+        assertEquals(Boolean.TRUE, cache.getMembership(ADMIN_DN, "Administrators"));
+
+        cache.time = 61000;
+        assertNull(cache.getUser("admin"));
+        assertNull(cache.getMembership(ADMIN_DN, "Administrators"));
+        assertEquals(2, cache.getExpired());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testNoTTL() throws Exception {
+
+        TestCache cache = createCache(10, 0);
+
+        cache.putUser("admin", createUser("admin", ADMIN_DN), cache.getVersion());
+
+        cache.time = Long.MAX_VALUE;
+        assertNotNull(cache.getUser("admin"));
+    }
+
+    @Test
+    public void testVersionGuardedPut() throws Exception {
+
+        UGCache cache = createCache(10, 0);
+
+        // read from the directory before an invalidation
+        long version = cache.getVersion();
+        cache.invalidateGroup("Administrators");
+
+        cache.putMembership(ADMIN_DN, "Administrators", true, version);
+        cache.putUser("admin", createUser("admin", ADMIN_DN), version);
+        cache.putCertUser("cert", createUser("admin", ADMIN_DN), version);
+        assertEquals(0, cache.getSize());
+
+        // read after the invalidation
+        version = cache.getVersion();
+        cache.putMembership(ADMIN_DN, "Administrators", true, version);
+        assertEquals(Boolean.TRUE, cache.getMembership(ADMIN_DN, "Administrators"));
+    }
+
+    @Test
+    public void testInvalidateUser() throws Exception {
+
+        UGCache cache = createCache(10, 0);
+        long version = cache.getVersion();
+
+        cache.putUser("admin", createUser("admin", ADMIN_DN), version);
+        cache.putUser(ADMIN_DN, createUser("admin", ADMIN_DN), version);
+        cache.putCertUser("cert1", createUser("admin", ADMIN_DN), version);
+        cache.putMembership(ADMIN_DN, "Administrators", true, version);
+
+        cache.putUser("admin2", createUser("admin2", AGENT_DN), version);
+        cache.putCertUser("cert2", createUser("admin2", AGENT_DN), version);
+        cache.putMembership(AGENT_DN, "Administrators", false, version);
+
+        cache.invalidateUser("ADMIN", "UID=admin,ou=people,o=pki");
+
+        assertNull(cache.getUser("admin"));
+        assertNull(cache.getUser(ADMIN_DN));
+        assertNull(cache.getCertUser("cert1"));
+        assertNull(cache.getMembership(ADMIN_DN, "Administrators"));
+
+        // a user whose DN starts with the same string is kept
+        assertNotNull(cache.getUser("admin2"));
+        assertNotNull(cache.getCertUser("cert2"));
+        assertEquals(Boolean.FALSE, cache.getMembership(AGENT_DN, "Administrators"));
+
+        assertEquals(1, cache.getInvalidations());
+    }
+
+    @Test
+    public void testInvalidateGroup() throws Exception {
+
+        UGCache cache = createCache(10, 0);
+        long version = cache.getVersion();
+
+        cache.putMembership(ADMIN_DN, "Administrators", true, version);
+        cache.putMembership(AGENT_DN, "Administrators", false, version);
+        cache.putMembership(ADMIN_DN, "Enterprise Administrators", true, version);
+        cache.putMembership(ADMIN_DN, "Agents", true, version);
+
+        cache.invalidateGroup("ADMINISTRATORS");
+
+        assertNull(cache.getMembership(ADMIN_DN, "Administrators"));
+        assertNull(cache.getMembership(AGENT_DN, "Administrators"));
+
+        // groups whose names end with the same string are kept
+        assertEquals(Boolean.TRUE, cache.getMembership(ADMIN_DN, "Enterprise Administrators"));
+        assertEquals(Boolean.TRUE, cache.getMembership(ADMIN_DN, "Agents"));
+    }
+
+    @Test
+    public void testLRU() throws Exception {
+
+        UGCache cache = createCache(2, 0);
+        long version = cache.getVersion();
+
+        cache.putMembership(ADMIN_DN, "a", true, version);
+        cache.putMembership(ADMIN_DN, "b", true, version);
+
+        // use a so that b is the least recently used
+        assertNotNull(cache.getMembership(ADMIN_DN, "a"));
+
+        cache.putMembership(ADMIN_DN, "c", true, version);
+
+        assertNotNull(cache.getMembership(ADMIN_DN, "a"));
+        assertNull(cache.getMembership(ADMIN_DN, "b"));
+        assertNotNull(cache.getMembership(ADMIN_DN, "c"));
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void testClear() throws Exception {
+
+        UGCache cache = createCache(10, 0);
+        long version = cache.getVersion();
+
+        cache.putUser("admin", createUser("admin", ADMIN_DN), version);
+        cache.putMembership(ADMIN_DN, "Administrators", true, version);
+
+        cache.clear();
+
+        assertEquals(0, cache.getSize());
+        assertTrue(cache.getVersion() != version);
+        assertEquals(1, cache.getInvalidations());
+    }
+}
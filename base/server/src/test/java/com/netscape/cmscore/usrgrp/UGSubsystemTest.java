@@ -0,0 +1,113 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.usrgrp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class UGSubsystemTest {
+
+    static final String ADMIN_DN = "uid=admin,ou=People,o=pki";
+
+    UGSubsystem ugSubsystem;
+    UGCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+
+        cache = UGCacheTest.createCache(10, 0);
+
+        long version = cache.getVersion();
+        cache.putUser("admin", UGCacheTest.createUser("admin", ADMIN_DN), version);
+        cache.putMembership(ADMIN_DN, "Administrators", true, version);
+        cache.putMembership(ADMIN_DN, "Agents", true, version);
+
+        ugSubsystem = new UGSubsystem();
+        ugSubsystem.mBaseDN = "o=pki";
+        ugSubsystem.cache = cache;
+    }
+
+    @Test
+    public void testGroupChanged() throws Exception {
+
+        long membershipVersion = ugSubsystem.getMembershipVersion();
+
+        ugSubsystem.entryChanged("cn=Administrators,ou=Groups,o=pki");
+
+        assertNull(cache.getMembership(ADMIN_DN, "Administrators"));
+        assertNotNull(cache.getMembership(ADMIN_DN, "Agents"));
+        assertNotNull(cache.getUser("admin"));
+
+        assertEquals(membershipVersion + 1, ugSubsystem.getMembershipVersion());
+    }
+
+    @Test
+    public void testUserChanged() throws Exception {
+
+        long membershipVersion = ugSubsystem.getMembershipVersion();
+
+        ugSubsystem.entryChanged(ADMIN_DN);
+
+        assertNull(cache.getUser("admin"));
+        assertNull(cache.getMembership(ADMIN_DN, "Administrators"));
+        assertNull(cache.getMembership(ADMIN_DN, "Agents"));
+
+        assertEquals(membershipVersion, ugSubsystem.getMembershipVersion());
+    }
+
+    @Test
+    public void testCaseInsensitiveDN() throws Exception {
+
+        ugSubsystem.entryChanged("CN=Administrators,OU=groups,O=PKI");
+        assertNull(cache.getMembership(ADMIN_DN, "Administrators"));
+
+        ugSubsystem.entryChanged("UID=ADMIN,OU=people,O=PKI");
+        assertNull(cache.getUser("admin"));
+    }
+
+    @Test
+    public void testOtherEntries() throws Exception {
+
+        long membershipVersion = ugSubsystem.getMembershipVersion();
+
+        // entries that are not users or groups
+        ugSubsystem.entryChanged("cn=10001,ou=ranges,o=pki");
+        ugSubsystem.entryChanged("ou=Groups,o=pki");
+        ugSubsystem.entryChanged("o=pki");
+        ugSubsystem.entryChanged("cn=child,uid=admin,ou=People,o=pki");
+
+        assertNotNull(cache.getUser("admin"));
+        assertNotNull(cache.getMembership(ADMIN_DN, "Administrators"));
+        assertEquals(3, cache.getSize());
+
+        assertEquals(membershipVersion, ugSubsystem.getMembershipVersion());
+    }
+
+    @Test
+    public void testNoCache() throws Exception {
+
+        ugSubsystem.cache = null;
+
+        // changes are ignored without a cache
+        ugSubsystem.entryChanged("cn=Administrators,ou=Groups,o=pki");
+    }
+}
@@ -0,0 +1,76 @@
+#
+# Copyright Red Hat, Inc.
+#
+# SPDX-License-Identifier: GPL-2.0-or-later
+#
+from __future__ import absolute_import
+import logging
+
+import ldap
+
+import pki.server.upgrade
+
+logger = logging.getLogger(__name__)
+
+ATTRIBUTE_TYPE = \
+    "( crlCacheJournal-oid NAME 'crlCacheJournal' DESC 'CMS defined attribute' " \
+    "SYNTAX 1.3.6.1.4.1.1466.115.121.1.5 X-ORIGIN 'user defined' )"
+
+OBJECT_CLASS = \
+    "( crlIssuingPointRecord-oid NAME 'crlIssuingPointRecord' DESC 'CMS defined class' " \
+    "SUP top STRUCTURAL MUST cn MAY ( dateOfCreate $ dateOfModify $ crlNumber $ crlSize $ " \
+    "thisUpdate $ nextUpdate $ deltaNumber $ deltaSize $ firstUnsaved $ " \
+    "certificateRevocationList $ deltaRevocationList $ crlCache $ revokedCerts $ " \
+    "unrevokedCerts $ expiredCerts $ crlCacheJournal $ cACertificate ) " \
+    "X-ORIGIN 'user defined' )"
+
+
+class AddCRLCacheJournalSchema(pki.server.upgrade.PKIServerUpgradeScriptlet):
+
+    def __init__(self):
+        super(AddCRLCacheJournalSchema, self).__init__()
+        self.message = 'Add crlCacheJournal attribute to database schema'
+
+    def upgrade_subsystem(self, instance, subsystem):
+
+        if subsystem.name != 'ca':
+            return
+
+        try:
+            con = subsystem.open_database()
+
+        except Exception as e:  # pylint: disable=broad-except
+            logger.warning('Unable to connect to database: %s', e)
+            self.print_instructions()
+            return
+
+        try:
+            entries = con.ldap.search_s(
+                'cn=schema',
+                ldap.SCOPE_BASE,
+                '(objectClass=*)',
+                ['attributeTypes'])
+
+            for value in entries[0][1].get('attributeTypes', []):
+                if b"NAME 'crlCacheJournal'" in value:
+                    logger.info('Database schema already contains crlCacheJournal')
+                    return
+
+            logger.info('Adding crlCacheJournal to database schema')
+
+            con.ldap.modify_s('cn=schema', [
+                (ldap.MOD_ADD, 'attributeTypes', ATTRIBUTE_TYPE.encode()),
+                (ldap.MOD_ADD, 'objectClasses', OBJECT_CLASS.encode())
+            ])
+
+        except ldap.LDAPError as e:
+            logger.warning('Unable to update database schema: %s', e)
+            self.print_instructions()
+
+        finally:
+            con.close()
+
+    def print_instructions(self):
+        logger.warning(
+            'Run pki-server db-schema-upgrade before enabling '
+            'ca.crl.<id>.enableCacheJournal')